@@ -0,0 +1,66 @@
+package com.pharmacy.benchmarks;
+
+import com.pharmacy.entities.Customer;
+import com.pharmacy.functionalities.CustomerManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link CustomerManager} lookups for customers that are present and absent.
+ * <p>
+ * Lookups scan the whole list, and so does every add, so the largest size is kept to
+ * what the setup can fill in reasonable time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CustomerManagerBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    private int customerCount;
+
+    private CustomerManager manager;
+    private Customer[] customers;
+    private Customer stranger;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        manager = new CustomerManager();
+        customers = new Customer[customerCount];
+        for (int i = 0; i < customerCount; i++) {
+            customers[i] = new Customer("C" + i, "Customer " + i, "024" + i);
+            manager.addCustomer(customers[i]);
+        }
+        stranger = new Customer("X0", "Nobody", "0000000");
+    }
+
+    @Benchmark
+    public Optional<Customer> searchCustomerByID() {
+        return manager.searchCustomerByID(randomCustomer().getCustomerID());
+    }
+
+    @Benchmark
+    public Optional<Customer> searchCustomerByIDMissing() {
+        return manager.searchCustomerByID(stranger.getCustomerID());
+    }
+
+    @Benchmark
+    public boolean containsCustomer() {
+        return manager.containsCustomer(randomCustomer());
+    }
+
+    @Benchmark
+    public boolean containsCustomerMissing() {
+        return manager.containsCustomer(stranger);
+    }
+
+    private Customer randomCustomer() {
+        return customers[ThreadLocalRandom.current().nextInt(customers.length)];
+    }
+}
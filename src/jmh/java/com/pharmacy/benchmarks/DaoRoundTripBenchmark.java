@@ -0,0 +1,186 @@
+package com.pharmacy.benchmarks;
+
+import com.pharmacy.dao.CachingDrugDAO;
+import com.pharmacy.dao.DrugDAO;
+import com.pharmacy.dao.Page;
+import com.pharmacy.dao.SortOrder;
+import com.pharmacy.entities.Drug;
+import com.pharmacy.utils.PooledConnectionProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmarks DAO round trips through the connection pool against an in-memory H2
+ * database in PostgreSQL mode.
+ * <p>
+ * H2 has no network hop and a different planner, so these numbers show the cost the
+ * application adds around each query (pool borrow, statement preparation, row mapping,
+ * the drug cache) rather than what PostgreSQL will take. Statements H2 cannot run, such
+ * as {@code UPDATE ... RETURNING}, are left out.
+ * <p>
+ * The basket benchmarks insert the line items of one {@value #BASKET_LINES}-line sale in a
+ * transaction, once with a round trip per row and once as a single JDBC batch, which is
+ * how {@code SalesDAO} sends them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DaoRoundTripBenchmark {
+
+    private static final String URL = "jdbc:h2:mem:benchmark;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    private static final int BASKET_LINES = 30;
+    private static final String INSERT_ITEM_SQL =
+            "INSERT INTO basket_items (sales_id, drug_id, quantity) VALUES (?, ?, ?)";
+
+    @Param({"10000"})
+    private int drugCount;
+
+    private PooledConnectionProvider pool;
+    private DrugDAO drugDAO;
+    private CachingDrugDAO cachingDrugDAO;
+    private final AtomicLong nextId = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        pool = new PooledConnectionProvider(URL, new Properties(), 4, Duration.ofMinutes(5), Duration.ofSeconds(5));
+        try (Connection connection = pool.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP TABLE IF EXISTS drugs");
+                statement.execute("CREATE TABLE drugs (" +
+                        "drug_id VARCHAR(64) PRIMARY KEY, " +
+                        "drug_name VARCHAR(255) NOT NULL, " +
+                        "quantity INT NOT NULL, " +
+                        "stock_quantity INT NOT NULL, " +
+                        "price DOUBLE PRECISION NOT NULL)");
+                statement.execute("CREATE INDEX drugs_name_idx ON drugs (drug_name, drug_id)");
+                statement.execute("DROP TABLE IF EXISTS basket_items");
+                statement.execute("CREATE TABLE basket_items (" +
+                        "item_id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                        "sales_id VARCHAR(64) NOT NULL, " +
+                        "drug_id VARCHAR(64) NOT NULL, " +
+                        "quantity INT NOT NULL)");
+            }
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO drugs (drug_id, drug_name, quantity, stock_quantity, price) VALUES (?, ?, ?, ?, ?)")) {
+                for (int i = 0; i < drugCount; i++) {
+                    insert.setString(1, "D" + i);
+                    insert.setString(2, "Drug " + i);
+                    insert.setInt(3, 10);
+                    insert.setInt(4, 100);
+                    insert.setDouble(5, 2.5);
+                    insert.addBatch();
+                    if (i % 1000 == 999) insert.executeBatch();
+                }
+                insert.executeBatch();
+            }
+            connection.commit();
+            connection.setAutoCommit(true);
+        }
+        drugDAO = new DrugDAO(pool);
+        cachingDrugDAO = new CachingDrugDAO(pool, drugCount, Duration.ofMinutes(10));
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearBaskets() throws SQLException {
+        try (Connection connection = pool.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("TRUNCATE TABLE basket_items");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    public Drug getDrugById() throws SQLException {
+        return drugDAO.getDrugById(randomId());
+    }
+
+    @Benchmark
+    public Drug getDrugByIdCached() throws SQLException {
+        return cachingDrugDAO.getDrugById(randomId());
+    }
+
+    @Benchmark
+    public List<Drug> searchDrugsByName() throws SQLException {
+        return drugDAO.searchDrugsByName("Drug 123");
+    }
+
+    @Benchmark
+    public Page<Drug> fetchFirstPage() throws SQLException {
+        return drugDAO.fetchPage(null, 50, SortOrder.ASCENDING);
+    }
+
+    @Benchmark
+    public void addAndDeleteDrug() throws SQLException {
+        String id = "B" + nextId.getAndIncrement();
+        drugDAO.addDrug(new Drug(id, "Benchmark " + id, 1, 1, 1.0));
+        drugDAO.deleteDrug(id);
+    }
+
+    @Benchmark
+    public int insertBasketRowByRow() throws SQLException {
+        String salesId = "S" + nextId.getAndIncrement();
+        int inserted = 0;
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement pstmt = connection.prepareStatement(INSERT_ITEM_SQL)) {
+                for (int line = 0; line < BASKET_LINES; line++) {
+                    bindLine(pstmt, salesId, line);
+                    inserted += pstmt.executeUpdate();
+                }
+            }
+            connection.commit();
+            connection.setAutoCommit(true);
+        }
+        return inserted;
+    }
+
+    @Benchmark
+    public int insertBasketBatched() throws SQLException {
+        String salesId = "S" + nextId.getAndIncrement();
+        int inserted = 0;
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement pstmt = connection.prepareStatement(INSERT_ITEM_SQL)) {
+                for (int line = 0; line < BASKET_LINES; line++) {
+                    bindLine(pstmt, salesId, line);
+                    pstmt.addBatch();
+                }
+                for (int count : pstmt.executeBatch()) {
+                    inserted += count;
+                }
+            }
+            connection.commit();
+            connection.setAutoCommit(true);
+        }
+        return inserted;
+    }
+
+    private void bindLine(PreparedStatement pstmt, String salesId, int line) throws SQLException {
+        pstmt.setString(1, salesId);
+        pstmt.setString(2, "D" + (line * 31 % drugCount));
+        pstmt.setInt(3, 1 + line % 3);
+    }
+
+    private String randomId() {
+        return "D" + ThreadLocalRandom.current().nextInt(drugCount);
+    }
+}
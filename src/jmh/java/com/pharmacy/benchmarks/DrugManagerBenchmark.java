@@ -0,0 +1,97 @@
+package com.pharmacy.benchmarks;
+
+import com.pharmacy.entities.Drug;
+import com.pharmacy.functionalities.DrugManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link DrugManager} lookups, search and changes with catalogues of
+ * different sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+// A million drugs and their indexes do not fit in the default heap of a small machine
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class DrugManagerBenchmark {
+
+    private static final String[] STEMS = {
+            "Amoxicillin", "Paracetamol", "Ibuprofen", "Metformin", "Omeprazole",
+            "Lisinopril", "Atorvastatin", "Cetirizine", "Ciprofloxacin", "Salbutamol"
+    };
+
+    @Param({"10000", "100000", "1000000"})
+    private int drugCount;
+
+    private DrugManager manager;
+    private Drug[] drugs;
+    private int added;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        manager = new DrugManager();
+        drugs = new Drug[drugCount];
+        for (int i = 0; i < drugCount; i++) {
+            drugs[i] = drug("D" + i, i);
+            manager.addDrug(drugs[i]);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void removeAdded() {
+        // Keep the catalogue at its starting size between iterations
+        for (int i = 0; i < added; i++) {
+            manager.removeDrug("N" + i);
+        }
+        added = 0;
+    }
+
+    @Benchmark
+    public Optional<Drug> getDrugById() {
+        return manager.getDrugById(randomDrug().getDrugId());
+    }
+
+    @Benchmark
+    public Optional<Drug> searchDrugByName() {
+        return manager.searchDrugByName(randomDrug().getDrugName());
+    }
+
+    @Benchmark
+    public List<Drug> searchDrugsByPrefix() {
+        return manager.searchDrugs("parac", 20);
+    }
+
+    @Benchmark
+    public List<Drug> searchDrugsWithTypo() {
+        return manager.searchDrugs("ibuprofne", 20);
+    }
+
+    @Benchmark
+    public void updateDrug() {
+        Drug current = randomDrug();
+        manager.updateDrug(new Drug(current.getDrugId(), current.getDrugName(),
+                current.getDrugQuantity(), current.getStockQuantity(), current.getPrice() + 0.01));
+    }
+
+    @Benchmark
+    public void addDrug() {
+        int i = added++;
+        manager.addDrug(drug("N" + i, i));
+    }
+
+    private Drug randomDrug() {
+        return drugs[ThreadLocalRandom.current().nextInt(drugs.length)];
+    }
+
+    private static Drug drug(String id, int i) {
+        String name = STEMS[i % STEMS.length] + " " + (i / STEMS.length) + "mg";
+        return new Drug(id, name, 10, 100, 1.5 + i % 50);
+    }
+}
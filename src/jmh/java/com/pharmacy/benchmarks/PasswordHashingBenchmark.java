@@ -0,0 +1,54 @@
+package com.pharmacy.benchmarks;
+
+import com.pharmacy.entities.Personnel;
+import com.pharmacy.utils.PasswordUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks password hashing and verification with the default engine's costs.
+ * <p>
+ * The costs come from the same {@code pharmacy.password.*} system properties the
+ * application reads. Pass them to the forked JVM with {@code -jvmArgsAppend} to compare
+ * settings, for example {@code -jvmArgsAppend -Dpharmacy.password.memoryKiB=32768}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasswordHashingBenchmark {
+
+    private static final String PASSWORD = "correct horse battery staple";
+
+    private String hash;
+    private Personnel personnel;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        hash = PasswordUtils.hashPassword(PASSWORD);
+        personnel = new Personnel("benchmark", hash);
+    }
+
+    @Benchmark
+    public String hashPassword() {
+        return PasswordUtils.hashPassword(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean verifyPassword() {
+        return PasswordUtils.verifyPassword(PASSWORD, hash);
+    }
+
+    @Benchmark
+    public boolean verifyWrongPassword() {
+        return PasswordUtils.verifyPassword("wrong " + PASSWORD, hash);
+    }
+
+    @Benchmark
+    public boolean personnelVerifyPassword() {
+        return personnel.verifyPassword(PASSWORD);
+    }
+}
@@ -0,0 +1,371 @@
+package com.pharmacy.dao;
+
+import com.pharmacy.entities.Drug;
+import com.pharmacy.utils.ConnectionProvider;
+import com.pharmacy.utils.DatabaseUtils;
+import com.pharmacy.utils.TransactionManager;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * DrugDAO with a bounded, expiring in-memory cache in front of {@link #getDrugById}.
+ * <p>
+ * The cache is read-through: a miss loads the drug and remembers it. When many threads miss
+ * on the same drug at once, only one of them queries the database and the rest wait for
+ * its result. Writes made through this DAO are written through to the cache once they are
+ * committed: inside a {@link TransactionManager#inTransaction} the drug is only dropped
+ * from the cache, and stored when the transaction commits, so no other thread is served
+ * a change that may still roll back. Reads inside a transaction bypass the cache for the
+ * same reason, since they may see the transaction's own writes. Entries expire after a
+ * fixed time so that changes made by other terminals are picked up.
+ * <p>
+ * A hit takes no lock: entries live in a concurrent map, and each remembers roughly when it
+ * was last read. Once the cache is full, the least recently read tenth of it is evicted in
+ * one pass, so the scan is paid once per many loads rather than on every one.
+ * <p>
+ * Stock changed through this DAO drops the drug from the cache, again once committed, so
+ * the next read sees the new level. Stock taken by sales recorded elsewhere shows up once
+ * the entry expires; the conditional update in {@link #reserveStock} keeps that staleness
+ * from ever overselling.
+ * <p>
+ * Callers receive copies, so editing a returned drug never changes the cached one.
+ */
+public class CachingDrugDAO extends DrugDAO {
+
+    private static final int SHARED_SIZE = Integer.getInteger("pharmacy.drugCache.size", 5_000);
+    private static final Duration SHARED_EXPIRY = Duration.ofSeconds(Long.getLong("pharmacy.drugCache.expirySeconds", 30));
+
+    /** Reads closer together than this do not update an entry's access time. */
+    private static final long ACCESS_RESOLUTION_NANOS = 1_000_000_000L;
+
+    private static volatile CachingDrugDAO shared;
+
+    private final TransactionManager transactions;
+    private final int maximumSize;
+    private final long expireAfterWriteNanos;
+    private final ConcurrentHashMap<String, CachedDrug> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final ConcurrentHashMap<String, CompletableFuture<Drug>> loading = new ConcurrentHashMap<>();
+
+    // Bumped by every write so a load that raced the write does not cache the old row
+    private final AtomicLong writeGeneration = new AtomicLong();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder loadFailureCount = new LongAdder();
+
+    /**
+     * Initializes a new CachingDrugDAO.
+     *
+     * @param connectionProvider the source of database connections
+     * @param maximumSize        the maximum number of drugs held in memory
+     * @param expireAfterWrite   how long a cached drug is served before it is reloaded
+     */
+    public CachingDrugDAO(ConnectionProvider connectionProvider, int maximumSize, Duration expireAfterWrite) {
+        super(connectionProvider);
+        if (maximumSize <= 0) throw new IllegalArgumentException("Cache size must be positive.");
+        if (expireAfterWrite == null || expireAfterWrite.isNegative() || expireAfterWrite.isZero())
+            throw new IllegalArgumentException("Expiry must be positive.");
+        this.transactions = connectionProvider instanceof TransactionManager manager ? manager : null;
+        this.maximumSize = maximumSize;
+        this.expireAfterWriteNanos = expireAfterWrite.toNanos();
+    }
+
+    /**
+     * Returns the application-wide cache, so that edits made on one screen are written
+     * through to the copy that sales and stock lookups read from.
+     */
+    public static CachingDrugDAO shared() {
+        CachingDrugDAO current = shared;
+        if (current == null) {
+            synchronized (CachingDrugDAO.class) {
+                current = shared;
+                if (current == null) {
+                    current = new CachingDrugDAO(DatabaseUtils.getConnectionProvider(), SHARED_SIZE, SHARED_EXPIRY);
+                    shared = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Retrieves a drug by its ID, from memory when possible.
+     *
+     * @param drugId the drug ID
+     * @return a copy of the found drug, or null if not found
+     * @throws SQLException if the drug had to be loaded and a database access error occurred
+     */
+    @Override
+    public Drug getDrugById(String drugId) throws SQLException {
+        if (transactions != null && transactions.isInTransaction()) {
+            // May see the transaction's own uncommitted writes, so neither served from nor stored in the cache
+            return super.getDrugById(drugId);
+        }
+        Drug cached = lookup(drugId);
+        if (cached != null) {
+            hitCount.increment();
+            return copyOf(cached);
+        }
+        missCount.increment();
+
+        CompletableFuture<Drug> load = new CompletableFuture<>();
+        CompletableFuture<Drug> inFlight = loading.putIfAbsent(drugId, load);
+        if (inFlight != null) {
+            return copyOf(await(inFlight));
+        }
+        try {
+            long generation = writeGeneration.get();
+            Drug drug = super.getDrugById(drugId);
+            if (drug != null && generation == writeGeneration.get()) {
+                store(drug);
+            }
+            load.complete(drug);
+            return copyOf(drug);
+        } catch (SQLException | RuntimeException e) {
+            loadFailureCount.increment();
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(drugId, load);
+        }
+    }
+
+    @Override
+    public void addDrug(Drug drug) throws SQLException {
+        super.addDrug(drug);
+        storeAfterCommit(drug);
+    }
+
+    @Override
+    public void updateDrug(Drug drug) throws SQLException {
+        writeGeneration.incrementAndGet();
+        try {
+            super.updateDrug(drug);
+        } catch (SQLException | RuntimeException e) {
+            invalidate(drug.getDrugId());
+            throw e;
+        }
+        storeAfterCommit(drug);
+    }
+
+    @Override
+    public int adjustStock(String drugId, int delta) throws SQLException {
+        try {
+            return super.adjustStock(drugId, delta);
+        } finally {
+            invalidateAfterCommit(drugId);
+        }
+    }
+
+    @Override
+    public List<StockShortfall> reserveStock(Map<String, Integer> quantities) throws SQLException {
+        try {
+            return super.reserveStock(quantities);
+        } finally {
+            quantities.keySet().forEach(this::invalidateAfterCommit);
+        }
+    }
+
+    @Override
+    public void deleteDrug(String drugId) throws SQLException {
+        writeGeneration.incrementAndGet();
+        try {
+            super.deleteDrug(drugId);
+        } finally {
+            invalidateAfterCommit(drugId);
+        }
+    }
+
+    /**
+     * Drops a drug from the cache so the next read goes to the database.
+     *
+     * @param drugId the drug ID
+     */
+    public void invalidate(String drugId) {
+        writeGeneration.incrementAndGet();
+        entries.remove(drugId);
+    }
+
+    /**
+     * Drops every cached drug.
+     */
+    public void invalidateAll() {
+        writeGeneration.incrementAndGet();
+        entries.clear();
+    }
+
+    /**
+     * Returns a snapshot of the cache counters.
+     *
+     * @return the cache statistics
+     */
+    public CacheStats getStats() {
+        return new CacheStats(hitCount.sum(), missCount.sum(), evictionCount.sum(), loadFailureCount.sum(),
+                entries.size());
+    }
+
+    /**
+     * Drops the drug now and caches the written copy once the caller's transaction commits.
+     * A load that ran meanwhile could only have read the old row, so the commit also counts
+     * as a write.
+     */
+    private void storeAfterCommit(Drug drug) {
+        Drug written = copyOf(drug);
+        invalidate(written.getDrugId());
+        afterCommit(() -> {
+            writeGeneration.incrementAndGet();
+            store(written);
+        });
+    }
+
+    /**
+     * Drops the drug now and again once the caller's transaction commits, in case it was
+     * reloaded from the old row in between.
+     */
+    private void invalidateAfterCommit(String drugId) {
+        invalidate(drugId);
+        afterCommit(() -> invalidate(drugId));
+    }
+
+    private void afterCommit(Runnable action) {
+        if (transactions != null) {
+            transactions.afterCommit(action);
+        } else {
+            action.run();
+        }
+    }
+
+    private Drug lookup(String drugId) {
+        CachedDrug entry = entries.get(drugId);
+        if (entry == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        if (now - entry.storedAt > expireAfterWriteNanos) {
+            if (entries.remove(drugId, entry)) {
+                evictionCount.increment();
+            }
+            return null;
+        }
+        // Skipping most updates keeps hot entries from bouncing between cores' caches
+        if (now - entry.accessedAt > ACCESS_RESOLUTION_NANOS) {
+            entry.accessedAt = now;
+        }
+        return entry.drug;
+    }
+
+    private void store(Drug drug) {
+        entries.put(drug.getDrugId(), new CachedDrug(copyOf(drug), System.nanoTime()));
+        if (entries.size() > maximumSize && evictionLock.tryLock()) {
+            // Whoever holds the lock is already evicting; other loads need not wait for it
+            try {
+                evictLeastRecentlyRead();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void evictLeastRecentlyRead() {
+        int target = maximumSize - maximumSize / 10;
+        // Access times keep changing under concurrent reads, so the cut-off is taken from a copy
+        long[] accessTimes = entries.values().stream().mapToLong(entry -> entry.accessedAt).toArray();
+        int excess = accessTimes.length - target;
+        if (excess <= 0) return;
+        Arrays.sort(accessTimes);
+        long cutoff = accessTimes[excess - 1];
+        for (Map.Entry<String, CachedDrug> entry : entries.entrySet()) {
+            if (entries.size() <= target) break;
+            if (entry.getValue().accessedAt <= cutoff && entries.remove(entry.getKey(), entry.getValue())) {
+                evictionCount.increment();
+            }
+        }
+    }
+
+    private static Drug await(CompletableFuture<Drug> inFlight) throws SQLException {
+        try {
+            return inFlight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a drug to load.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sqlException) throw sqlException;
+            if (cause instanceof RuntimeException runtimeException) throw runtimeException;
+            throw new SQLException("Error loading drug.", cause);
+        }
+    }
+
+    private static Drug copyOf(Drug drug) {
+        if (drug == null) {
+            return null;
+        }
+        return new Drug(drug.getDrugId(), drug.getDrugName(), drug.getDrugQuantity(), drug.getStockQuantity(), drug.getPrice());
+    }
+
+    private static final class CachedDrug {
+        final Drug drug;
+        final long storedAt;
+        volatile long accessedAt;
+
+        CachedDrug(Drug drug, long storedAt) {
+            this.drug = drug;
+            this.storedAt = storedAt;
+            this.accessedAt = storedAt;
+        }
+    }
+
+    /**
+     * Point-in-time counters of a {@link CachingDrugDAO}.
+     */
+    public static final class CacheStats {
+        private final long hitCount;
+        private final long missCount;
+        private final long evictionCount;
+        private final long loadFailureCount;
+        private final int size;
+
+        CacheStats(long hitCount, long missCount, long evictionCount, long loadFailureCount, int size) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+            this.loadFailureCount = loadFailureCount;
+            this.size = size;
+        }
+
+        public long getHitCount() { return hitCount; }
+
+        public long getMissCount() { return missCount; }
+
+        /** @return entries dropped because the cache was full or the entry had expired */
+        public long getEvictionCount() { return evictionCount; }
+
+        public long getLoadFailureCount() { return loadFailureCount; }
+
+        public int getSize() { return size; }
+
+        /** @return the fraction of reads served from memory */
+        public double getHitRate() {
+            long requests = hitCount + missCount;
+            return requests == 0 ? 0.0 : hitCount / (double) requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("CacheStats[hits=%d, misses=%d, evictions=%d, loadFailures=%d, size=%d, hitRate=%.3f]",
+                    hitCount, missCount, evictionCount, loadFailureCount, size, getHitRate());
+        }
+    }
+}
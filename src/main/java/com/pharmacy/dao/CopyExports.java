@@ -0,0 +1,43 @@
+package com.pharmacy.dao;
+
+import com.pharmacy.utils.ConnectionProvider;
+import org.postgresql.PGConnection;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/**
+ * Writes query results to a stream with {@code COPY ... TO STDOUT}.
+ * <p>
+ * The server formats the rows as CSV and the driver copies them to the stream as they
+ * arrive, so nothing is held in memory and no entity is built per row.
+ */
+final class CopyExports {
+
+    private CopyExports() {
+    }
+
+    /**
+     * Writes a query's rows as CSV with a header line.
+     *
+     * @return the number of rows written
+     */
+    static long copyOut(ConnectionProvider connectionProvider, String query, OutputStream out)
+            throws SQLException, IOException {
+        try (Connection connection = connectionProvider.getConnection()) {
+            return connection.unwrap(PGConnection.class).getCopyAPI()
+                    .copyOut("COPY (" + query + ") TO STDOUT WITH (FORMAT csv, HEADER)", out);
+        }
+    }
+
+    /**
+     * COPY takes no bind parameters, so dates are written inline. The ISO form of a
+     * {@link LocalDate} contains only digits and dashes.
+     */
+    static String dateLiteral(LocalDate date) {
+        return "DATE '" + date + "'";
+    }
+}
@@ -0,0 +1,136 @@
+package com.pharmacy.dao;
+
+import com.pharmacy.utils.ConnectionProvider;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Builds lazily populated streams over server-side cursors.
+ * <p>
+ * The PostgreSQL driver only fetches rows in chunks when autocommit is off and a fetch
+ * size is set; otherwise it buffers the whole result in memory. Each stream borrows its
+ * own connection in that mode and gives it back when the stream is closed, so callers
+ * must close the stream, typically with try-with-resources.
+ * <p>
+ * Opening the cursor is timed as an execution of the registered statement; reading the
+ * rows afterwards is not.
+ */
+final class CursorStreams {
+
+    /** Rows fetched per round-trip. */
+    static final int FETCH_SIZE = 1000;
+
+    private CursorStreams() {
+    }
+
+    /**
+     * Sets the parameters of a prepared statement.
+     */
+    @FunctionalInterface
+    interface ParameterBinder {
+        void bind(PreparedStatement pstmt) throws SQLException;
+    }
+
+    /** Binder for statements without parameters. */
+    static final ParameterBinder NO_PARAMETERS = pstmt -> { };
+
+    /**
+     * Reads the next element from a result set, consuming as many rows as it needs.
+     *
+     * @param <T> the element type
+     */
+    @FunctionalInterface
+    interface ElementReader<T> {
+        /**
+         * @return the next element, or null once the result set is exhausted
+         */
+        T next(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Streams one entity per row.
+     */
+    static <T> Stream<T> stream(ConnectionProvider connectionProvider, StatementRegistry.Sql statement,
+                                ParameterBinder binder, RowMapper<T> mapper) throws SQLException {
+        return open(connectionProvider, statement, binder, rs -> rs.next() ? mapper.map(rs) : null);
+    }
+
+    /**
+     * Streams elements that may each span several rows.
+     */
+    static <T> Stream<T> open(ConnectionProvider connectionProvider, StatementRegistry.Sql statement,
+                              ParameterBinder binder, ElementReader<T> reader) throws SQLException {
+        Connection connection = connectionProvider.getConnection();
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            connection.setAutoCommit(false);
+            pstmt = statement.prepare(connection);
+            pstmt.setFetchSize(FETCH_SIZE);
+            binder.bind(pstmt);
+            rs = pstmt.executeQuery();
+        } catch (SQLException | RuntimeException e) {
+            closeAll(connection, pstmt, rs, e);
+            throw e;
+        }
+
+        ResultSet cursor = rs;
+        PreparedStatement prepared = pstmt;
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                T next;
+                try {
+                    next = reader.next(cursor);
+                } catch (SQLException e) {
+                    throw new UncheckedSQLException("Error reading from cursor: " + statement.getSql(), e);
+                }
+                if (next == null) {
+                    return false;
+                }
+                action.accept(next);
+                return true;
+            }
+        };
+        return StreamSupport.stream(spliterator, false)
+                .onClose(() -> closeAll(connection, prepared, cursor, null));
+    }
+
+    private static void closeAll(Connection connection, PreparedStatement pstmt, ResultSet rs, Throwable primary) {
+        SQLException failure = null;
+        try {
+            if (rs != null) rs.close();
+            if (pstmt != null) pstmt.close();
+            if (primary == null) {
+                connection.commit();
+            } else {
+                connection.rollback();
+            }
+        } catch (SQLException e) {
+            failure = e;
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+                connection.close();
+            } catch (SQLException e) {
+                if (failure == null) failure = e;
+            }
+        }
+        if (failure != null) {
+            if (primary != null) {
+                primary.addSuppressed(failure);
+            } else {
+                throw new UncheckedSQLException("Error closing cursor", failure);
+            }
+        }
+    }
+}
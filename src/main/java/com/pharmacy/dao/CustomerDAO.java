@@ -1,27 +1,56 @@
 package com.pharmacy.dao;
 
 import com.pharmacy.entities.Customer;
+import com.pharmacy.utils.ConnectionProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /**
  * DAO class for managing customer-related database operations.
  */
 public class CustomerDAO {
-    private static final Logger LOGGER = Logger.getLogger(CustomerDAO.class.getName());
-    private Connection connection;
+    /** The columns every customer query selects, read by position. */
+    static final Projection<Customer> COLUMNS = new Projection<>((rs, first) -> new Customer(
+            rs.getString(first),
+            rs.getString(first + 1),
+            rs.getString(first + 2)
+    ), "customer_id", "name", "contact_info");
+
+    private static final StatementRegistry.Sql INSERT_CUSTOMER = StatementRegistry.register(
+            "customer.insert", "INSERT INTO customers (customer_id, name, contact_info) VALUES (?, ?, ?)");
+    private static final StatementRegistry.Sql CUSTOMER_BY_ID = StatementRegistry.registerQuery(
+            "customer.byId", "SELECT " + COLUMNS.list() + " FROM customers WHERE customer_id = ?");
+    private static final StatementRegistry.Sql ALL_CUSTOMERS = StatementRegistry.registerQuery(
+            "customer.all", "SELECT " + COLUMNS.list() + " FROM customers");
+    private static final StatementRegistry.Sql UPDATE_CUSTOMER = StatementRegistry.register(
+            "customer.update", "UPDATE customers SET name = ?, contact_info = ? WHERE customer_id = ?");
+    private static final StatementRegistry.Sql DELETE_CUSTOMER = StatementRegistry.register(
+            "customer.delete", "DELETE FROM customers WHERE customer_id = ?");
+    private static final StatementRegistry.Sql STREAM_ALL = StatementRegistry.registerQuery(
+            "customer.streamAll", "SELECT " + COLUMNS.list() + " FROM customers");
+    /** The text depends on the page's direction and whether it is the first. */
+    private static final StatementRegistry.Sql PAGE = StatementRegistry.registerDynamic("customer.page");
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerDAO.class);
+
+    /** Tables page through customers alphabetically; the ID breaks ties between equal names. */
+    private static final KeysetQuery<Customer> PAGE_BY_NAME = new KeysetQuery<>(
+            List.of("name", "customer_id"), List.of("?", "?"),
+            customer -> new String[]{customer.getCustomerName(), customer.getCustomerID()});
+    private final ConnectionProvider connectionProvider;
 
     /**
-     * Initializes a new CustomerDAO with the given database connection.
+     * Initializes a new CustomerDAO with the given connection provider.
      *
-     * @param connection the database connection
+     * @param connectionProvider the source of database connections
      */
-    public CustomerDAO(Connection connection) {
-        this.connection = connection;
+    public CustomerDAO(ConnectionProvider connectionProvider) {
+        this.connectionProvider = connectionProvider;
     }
 
     /**
@@ -30,15 +59,15 @@ public class CustomerDAO {
      * @param customer the customer to add
      */
     public void addCustomer(Customer customer) {
-        String sql = "INSERT INTO customers (customer_id, name, contact_info) VALUES (?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = INSERT_CUSTOMER.prepare(connection)) {
             pstmt.setString(1, customer.getCustomerID());
             pstmt.setString(2, customer.getCustomerName());
             pstmt.setString(3, customer.getContactInfo());
             pstmt.executeUpdate();
-            LOGGER.log(Level.INFO, "Customer added successfully: {0}", customer);
+            LOGGER.debug("Customer added successfully: {}", customer);
         } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error adding customer: " + customer, e);
+            LOGGER.error("Error adding customer: {}", customer, e);
         }
     }
 
@@ -49,22 +78,18 @@ public class CustomerDAO {
      * @return the found customer, or null if not found
      */
     public Customer getCustomerById(String customerId) {
-        String sql = "SELECT * FROM customers WHERE customer_id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = CUSTOMER_BY_ID.prepare(connection)) {
             pstmt.setString(1, customerId);
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
-                    Customer customer = new Customer(
-                            rs.getString("customer_id"),
-                            rs.getString("name"),
-                            rs.getString("contact_info")
-                    );
-                    LOGGER.log(Level.INFO, "Customer retrieved successfully: {0}", customer);
+                    Customer customer = COLUMNS.map(rs, 1);
+                    LOGGER.debug("Customer retrieved successfully: {}", customer);
                     return customer;
                 }
             }
         } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error retrieving customer by ID: " + customerId, e);
+            LOGGER.error("Error retrieving customer by ID: {}", customerId, e);
         }
         return null;
     }
@@ -76,37 +101,72 @@ public class CustomerDAO {
      */
     public List<Customer> getAllCustomers() {
         List<Customer> customers = new ArrayList<>();
-        String sql = "SELECT * FROM customers";
-        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = ALL_CUSTOMERS.prepare(connection);
+             ResultSet rs = pstmt.executeQuery()) {
             while (rs.next()) {
-                customers.add(new Customer(
-                        rs.getString("customer_id"),
-                        rs.getString("name"),
-                        rs.getString("contact_info")
-                ));
+                customers.add(COLUMNS.map(rs, 1));
             }
-            LOGGER.log(Level.INFO, "All customers retrieved successfully");
+            LOGGER.debug("All customers retrieved successfully");
         } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error retrieving all customers", e);
+            LOGGER.error("Error retrieving all customers", e);
         }
         return customers;
     }
 
+    /**
+     * Streams all customers through a server-side cursor. The stream keeps a pooled
+     * connection until it is closed; use it in a try-with-resources block.
+     *
+     * @return a lazily populated stream of all customers
+     * @throws SQLException if the query cannot be started
+     */
+    public Stream<Customer> streamAllCustomers() throws SQLException {
+        return CursorStreams.stream(connectionProvider, STREAM_ALL,
+                CursorStreams.NO_PARAMETERS, COLUMNS.mapper());
+    }
+
+    /**
+     * Retrieves one page of customers ordered by name, seeking past {@code afterKey}
+     * rather than skipping rows with OFFSET.
+     *
+     * @param afterKey the end key of the previous page, or null for the first page
+     * @param limit    the maximum number of customers to return
+     * @param sort     the direction to walk the names in
+     * @return the page of customers
+     * @throws SQLException if a database access error occurs
+     */
+    public Page<Customer> fetchPage(String afterKey, int limit, SortOrder sort) throws SQLException {
+        KeysetQuery.checkLimit(limit);
+        String sql = "SELECT " + COLUMNS.list() + " FROM customers" + PAGE_BY_NAME.where(afterKey, sort) + PAGE_BY_NAME.orderBy(null, sort) + " LIMIT ?";
+        List<Customer> rows = new ArrayList<>(limit + 1);
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = PAGE.prepareText(connection, sql)) {
+            PAGE_BY_NAME.bind(pstmt, 1, afterKey, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(COLUMNS.map(rs, 1));
+                }
+            }
+        }
+        return PAGE_BY_NAME.toPage(rows, limit);
+    }
+
     /**
      * Updates an existing customer in the database.
      *
      * @param customer the customer to update
      */
     public void updateCustomer(Customer customer) {
-        String sql = "UPDATE customers SET name = ?, contact_info = ? WHERE customer_id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = UPDATE_CUSTOMER.prepare(connection)) {
             pstmt.setString(1, customer.getCustomerName());
             pstmt.setString(2, customer.getContactInfo());
             pstmt.setString(3, customer.getCustomerID());
             pstmt.executeUpdate();
-            LOGGER.log(Level.INFO, "Customer updated successfully: {0}", customer);
+            LOGGER.debug("Customer updated successfully: {}", customer);
         } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error updating customer: " + customer, e);
+            LOGGER.error("Error updating customer: {}", customer, e);
         }
     }
 
@@ -116,13 +176,13 @@ public class CustomerDAO {
      * @param customerId the customer ID
      */
     public void deleteCustomer(String customerId) {
-        String sql = "DELETE FROM customers WHERE customer_id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = DELETE_CUSTOMER.prepare(connection)) {
             pstmt.setString(1, customerId);
             pstmt.executeUpdate();
-            LOGGER.log(Level.INFO, "Customer deleted successfully: {0}", customerId);
+            LOGGER.debug("Customer deleted successfully: {}", customerId);
         } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error deleting customer: " + customerId, e);
+            LOGGER.error("Error deleting customer: {}", customerId, e);
         }
     }
 }
@@ -0,0 +1,32 @@
+package com.pharmacy.dao;
+
+import java.time.LocalDate;
+
+/**
+ * The number and value of the sales made on one day.
+ */
+public class DailySalesTotal {
+    private final LocalDate day;
+    private final int saleCount;
+    private final double totalAmount;
+
+    DailySalesTotal(LocalDate day, int saleCount, double totalAmount) {
+        this.day = day;
+        this.saleCount = saleCount;
+        this.totalAmount = totalAmount;
+    }
+
+    /** @return the day the sales were made */
+    public LocalDate getDay() { return day; }
+
+    /** @return how many sales were made that day */
+    public int getSaleCount() { return saleCount; }
+
+    /** @return the sum of the day's sale totals */
+    public double getTotalAmount() { return totalAmount; }
+
+    @Override
+    public String toString() {
+        return day + ": " + saleCount + " sales, " + totalAmount;
+    }
+}
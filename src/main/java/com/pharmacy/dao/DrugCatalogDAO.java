@@ -0,0 +1,218 @@
+package com.pharmacy.dao;
+
+import com.pharmacy.utils.ConnectionProvider;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+
+/**
+ * DAO class for loading drug catalogue rows in bulk.
+ * <p>
+ * Rows are streamed with {@code COPY FROM STDIN} into a temporary staging table, then merged
+ * into {@code drugs} with one upsert, all in one transaction. A drug that already exists
+ * gets the new name, pack quantity and price; its stock is left alone, as with
+ * {@link DrugDAO#updateDrug}. A row without an ID is matched to an existing drug of the
+ * same name, ignoring case, or becomes a new drug. If the same drug appears more than once, the last
+ * row wins.
+ */
+public class DrugCatalogDAO {
+
+    private static final String CREATE_STAGING_SQL =
+            "CREATE TEMPORARY TABLE drug_import (line_no BIGINT, drug_id VARCHAR, drug_name VARCHAR, " +
+            "quantity INTEGER, stock_quantity INTEGER, price DOUBLE PRECISION) ON COMMIT DROP";
+
+    private static final String COPY_SQL =
+            "COPY drug_import (line_no, drug_id, drug_name, quantity, stock_quantity, price) FROM STDIN WITH (FORMAT csv)";
+
+    private static final String MATCH_BY_NAME_SQL =
+            "UPDATE drug_import s SET drug_id = d.drug_id FROM drugs d " +
+            "WHERE s.drug_id IS NULL AND lower(d.drug_name) = lower(s.drug_name)";
+
+    // One new ID per distinct name, ignoring case, so repeated rows for a new drug merge into one
+    private static final String ASSIGN_IDS_SQL =
+            "UPDATE drug_import s SET drug_id = n.drug_id FROM (" +
+            " SELECT lower(drug_name) AS name_key, gen_random_uuid()::text AS drug_id FROM drug_import" +
+            " WHERE drug_id IS NULL GROUP BY lower(drug_name)" +
+            ") n WHERE s.drug_id IS NULL AND lower(s.drug_name) = n.name_key";
+
+    private static final String MERGE_SQL =
+            "WITH merged AS (" +
+            " INSERT INTO drugs (drug_id, drug_name, quantity, stock_quantity, price)" +
+            " SELECT DISTINCT ON (drug_id) drug_id, drug_name, quantity, stock_quantity, price" +
+            " FROM drug_import ORDER BY drug_id, line_no DESC" +
+            " ON CONFLICT (drug_id) DO UPDATE SET drug_name = EXCLUDED.drug_name," +
+            " quantity = EXCLUDED.quantity, price = EXCLUDED.price" +
+            " RETURNING (xmax = 0) AS inserted" +
+            ") SELECT COUNT(*) FILTER (WHERE inserted), COUNT(*) FILTER (WHERE NOT inserted) FROM merged";
+
+    private final ConnectionProvider connectionProvider;
+
+    /**
+     * Writes rows into the staging table.
+     */
+    @FunctionalInterface
+    public interface RowSource {
+        void writeTo(StagingWriter out) throws IOException;
+    }
+
+    /**
+     * Encodes rows in COPY's CSV format and sends them in large chunks.
+     */
+    public static final class StagingWriter {
+        private static final int CHUNK_CHARS = 64 * 1024;
+
+        private final CopyIn copyIn;
+        private final StringBuilder chunk = new StringBuilder(CHUNK_CHARS + 1024);
+        private long rowCount;
+
+        private StagingWriter(CopyIn copyIn) {
+            this.copyIn = copyIn;
+        }
+
+        /**
+         * Stages one row.
+         *
+         * @param lineNumber    where the row came from; later lines win over earlier ones
+         * @param drugId        the drug ID, or null to match by name
+         * @param drugName      the drug name
+         * @param quantity      the pack quantity
+         * @param stockQuantity the stock for a new drug
+         * @param price         the price
+         * @throws IOException if the row cannot be sent
+         */
+        public void write(long lineNumber, String drugId, String drugName, int quantity, int stockQuantity, double price)
+                throws IOException {
+            chunk.append(lineNumber).append(',');
+            if (drugId != null) appendQuoted(drugId);
+            chunk.append(',');
+            appendQuoted(drugName);
+            chunk.append(',').append(quantity)
+                    .append(',').append(stockQuantity)
+                    .append(',').append(price)
+                    .append('\n');
+            rowCount++;
+            if (chunk.length() >= CHUNK_CHARS) {
+                flush();
+            }
+        }
+
+        /** @return the rows staged so far */
+        public long getRowCount() {
+            return rowCount;
+        }
+
+        private void appendQuoted(String value) {
+            chunk.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') chunk.append('"');
+                chunk.append(c);
+            }
+            chunk.append('"');
+        }
+
+        private void flush() throws IOException {
+            if (chunk.length() == 0) return;
+            byte[] bytes = chunk.toString().getBytes(StandardCharsets.UTF_8);
+            chunk.setLength(0);
+            try {
+                copyIn.writeToCopy(bytes, 0, bytes.length);
+            } catch (SQLException e) {
+                throw new IOException("Could not send rows to the database.", e);
+            }
+        }
+    }
+
+    /**
+     * The outcome of a merge.
+     */
+    public static final class MergeResult {
+        private final long stagedCount;
+        private final long insertedCount;
+        private final long updatedCount;
+
+        MergeResult(long stagedCount, long insertedCount, long updatedCount) {
+            this.stagedCount = stagedCount;
+            this.insertedCount = insertedCount;
+            this.updatedCount = updatedCount;
+        }
+
+        /** @return the rows staged, including repeats of the same drug */
+        public long getStagedCount() { return stagedCount; }
+
+        public long getInsertedCount() { return insertedCount; }
+
+        public long getUpdatedCount() { return updatedCount; }
+    }
+
+    /**
+     * Initializes a new DrugCatalogDAO with the given connection provider.
+     *
+     * @param connectionProvider the source of database connections
+     */
+    public DrugCatalogDAO(ConnectionProvider connectionProvider) {
+        this.connectionProvider = connectionProvider;
+    }
+
+    /**
+     * Stages the rows a source writes and merges them into the drug table. Either every
+     * row is merged or, if anything fails, none.
+     *
+     * @param source writes the rows
+     * @return how many drugs were added and updated
+     * @throws IOException if the source fails
+     * @throws SQLException if a database access error occurs
+     */
+    public MergeResult upsert(RowSource source) throws IOException, SQLException {
+        try (Connection connection = connectionProvider.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute(CREATE_STAGING_SQL);
+                }
+                long stagedCount = stage(connection, source);
+                long[] counts = merge(connection);
+                connection.commit();
+                return new MergeResult(stagedCount, counts[0], counts[1]);
+            } catch (SQLException | IOException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private static long stage(Connection connection, RowSource source) throws SQLException, IOException {
+        CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL);
+        try {
+            StagingWriter writer = new StagingWriter(copyIn);
+            source.writeTo(writer);
+            writer.flush();
+            copyIn.endCopy();
+            return writer.getRowCount();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private static long[] merge(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            // Temporary tables are never analysed automatically; without statistics the
+            // joins below are planned as if the table were tiny
+            stmt.execute("ANALYZE drug_import");
+            stmt.executeUpdate(MATCH_BY_NAME_SQL);
+            stmt.executeUpdate(ASSIGN_IDS_SQL);
+            try (ResultSet rs = stmt.executeQuery(MERGE_SQL)) {
+                rs.next();
+                return new long[]{rs.getLong(1), rs.getLong(2)};
+            }
+        }
+    }
+}
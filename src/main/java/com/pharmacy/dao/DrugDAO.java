@@ -1,24 +1,65 @@
 package com.pharmacy.dao;
 
 import com.pharmacy.entities.Drug;
+import com.pharmacy.utils.ConnectionProvider;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
 
 /**
  * DAO class for managing drug-related database operations.
  */
 public class DrugDAO {
 
-    private final Connection connection;
+    /** Tables page through drugs alphabetically; the ID breaks ties between equal names. */
+    private static final KeysetQuery<Drug> PAGE_BY_NAME = new KeysetQuery<>(
+            List.of("drug_name", "drug_id"), List.of("?", "?"),
+            drug -> new String[]{drug.getDrugName(), drug.getDrugId()});
+
+    /** The columns every drug query selects, read by position. */
+    static final Projection<Drug> COLUMNS = new Projection<>((rs, first) -> new Drug(
+            rs.getString(first),
+            rs.getString(first + 1),
+            rs.getInt(first + 2),
+            rs.getInt(first + 3),
+            rs.getDouble(first + 4)
+    ), "drug_id", "drug_name", "quantity", "stock_quantity", "price");
+
+    private static final StatementRegistry.Sql INSERT_DRUG = StatementRegistry.register(
+            "drug.insert", "INSERT INTO drugs (drug_id, drug_name, quantity, stock_quantity, price) VALUES (?, ?, ?, ?, ?)");
+    private static final StatementRegistry.Sql DRUG_BY_ID = StatementRegistry.registerQuery(
+            "drug.byId", "SELECT " + COLUMNS.list() + " FROM drugs WHERE drug_id = ?");
+    private static final StatementRegistry.Sql UPDATE_DRUG = StatementRegistry.register(
+            "drug.update", "UPDATE drugs SET drug_name = ?, quantity = ?, price = ? WHERE drug_id = ? RETURNING stock_quantity");
+    private static final StatementRegistry.Sql ADJUST_STOCK = StatementRegistry.register(
+            "drug.adjustStock", "UPDATE drugs SET stock_quantity = stock_quantity + ? WHERE drug_id = ? AND stock_quantity + ? >= 0 RETURNING stock_quantity");
+    private static final StatementRegistry.Sql RESERVE_STOCK = StatementRegistry.register(
+            "drug.reserveStock", "UPDATE drugs SET stock_quantity = stock_quantity - ? WHERE drug_id = ? AND stock_quantity >= ?");
+    private static final StatementRegistry.Sql AVAILABLE_STOCK = StatementRegistry.registerQuery(
+            "drug.availableStock", "SELECT drug_id, stock_quantity FROM drugs WHERE drug_id = ANY (?)");
+    private static final StatementRegistry.Sql DELETE_DRUG = StatementRegistry.register(
+            "drug.delete", "DELETE FROM drugs WHERE drug_id = ?");
+    private static final StatementRegistry.Sql SEARCH_BY_NAME = StatementRegistry.registerQuery(
+            "drug.searchByName", "SELECT " + COLUMNS.list() + " FROM drugs WHERE drug_name ILIKE ?");
+    private static final StatementRegistry.Sql STREAM_ALL = StatementRegistry.registerQuery(
+            "drug.streamAll", "SELECT " + COLUMNS.list() + " FROM drugs");
+    /** The text depends on the page's direction and whether it is the first. */
+    private static final StatementRegistry.Sql PAGE = StatementRegistry.registerDynamic("drug.page");
+
+    private final ConnectionProvider connectionProvider;
 
     /**
-     * Initializes a new DrugDAO with the given database connection.
+     * Initializes a new DrugDAO with the given connection provider.
      *
-     * @param connection the database connection
+     * @param connectionProvider the source of database connections
      */
-    public DrugDAO(Connection connection) {
-        this.connection = connection;
+    public DrugDAO(ConnectionProvider connectionProvider) {
+        this.connectionProvider = connectionProvider;
     }
 
     /**
@@ -28,8 +69,8 @@ public class DrugDAO {
      * @throws SQLException if a database access error occurs
      */
     public void addDrug(Drug drug) throws SQLException {
-        String sql = "INSERT INTO drugs (drug_id, drug_name, quantity, stock_quantity, price) VALUES (?, ?, ?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = INSERT_DRUG.prepare(connection)) {
             pstmt.setString(1, drug.getDrugId());
             pstmt.setString(2, drug.getDrugName());
             pstmt.setInt(3, drug.getDrugQuantity());
@@ -47,18 +88,12 @@ public class DrugDAO {
      * @throws SQLException if a database access error occurs
      */
     public Drug getDrugById(String drugId) throws SQLException {
-        String sql = "SELECT * FROM drugs WHERE drug_id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = DRUG_BY_ID.prepare(connection)) {
             pstmt.setString(1, drugId);
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
-                    return new Drug(
-                            rs.getString("drug_id"),
-                            rs.getString("drug_name"),
-                            rs.getInt("quantity"),
-                            rs.getInt("stock_quantity"),
-                            rs.getDouble("price")
-                    );
+                    return COLUMNS.map(rs, 1);
                 }
             }
         }
@@ -73,38 +108,210 @@ public class DrugDAO {
      */
     public List<Drug> getAllDrugs() throws SQLException {
         List<Drug> drugs = new ArrayList<>();
-        String sql = "SELECT * FROM drugs";
-        try (Statement stmt = connection.createStatement();
+        String sql = "SELECT " + COLUMNS.list() + " FROM drugs";
+        try (Connection connection = connectionProvider.getConnection();
+             Statement stmt = connection.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             while (rs.next()) {
-                drugs.add(new Drug(
-                        rs.getString("drug_id"),
-                        rs.getString("drug_name"),
-                        rs.getInt("quantity"),
-                        rs.getInt("stock_quantity"),
-                        rs.getDouble("price")
-                ));
+                drugs.add(COLUMNS.map(rs, 1));
             }
         }
         return drugs;
     }
 
     /**
-     * Updates an existing drug in the database.
+     * Streams all drugs through a server-side cursor, so memory use stays flat however
+     * many rows the table holds. The stream keeps a pooled connection until it is closed;
+     * use it in a try-with-resources block.
+     *
+     * @return a lazily populated stream of all drugs
+     * @throws SQLException if the query cannot be started
+     */
+    public Stream<Drug> streamAllDrugs() throws SQLException {
+        return CursorStreams.stream(connectionProvider, STREAM_ALL,
+                CursorStreams.NO_PARAMETERS, COLUMNS.mapper());
+    }
+
+    /**
+     * Retrieves one page of drugs ordered by name, seeking past {@code afterKey} rather
+     * than skipping rows with OFFSET.
+     *
+     * @param afterKey the end key of the previous page, or null for the first page
+     * @param limit    the maximum number of drugs to return
+     * @param sort     the direction to walk the names in
+     * @return the page of drugs
+     * @throws SQLException if a database access error occurs
+     */
+    public Page<Drug> fetchPage(String afterKey, int limit, SortOrder sort) throws SQLException {
+        KeysetQuery.checkLimit(limit);
+        String sql = "SELECT " + COLUMNS.list() + " FROM drugs" + PAGE_BY_NAME.where(afterKey, sort) + PAGE_BY_NAME.orderBy(null, sort) + " LIMIT ?";
+        List<Drug> rows = new ArrayList<>(limit + 1);
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = PAGE.prepareText(connection, sql)) {
+            PAGE_BY_NAME.bind(pstmt, 1, afterKey, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(COLUMNS.map(rs, 1));
+                }
+            }
+        }
+        return PAGE_BY_NAME.toPage(rows, limit);
+    }
+
+    /**
+     * Updates an existing drug's catalogue details: name, pack quantity and price.
+     * <p>
+     * Stock is not overwritten, since tills may have sold units since the drug was read;
+     * use {@link #adjustStock} or {@link #reserveStock} to change it. The drug's stock
+     * quantity is refreshed from the database instead.
      *
      * @param drug the drug to update
      * @throws SQLException if a database access error occurs
      */
     public void updateDrug(Drug drug) throws SQLException {
-        String sql = "UPDATE drugs SET drug_name = ?, quantity = ?, stock_quantity = ?, price = ? WHERE drug_id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = UPDATE_DRUG.prepare(connection)) {
             pstmt.setString(1, drug.getDrugName());
             pstmt.setInt(2, drug.getDrugQuantity());
-            pstmt.setInt(3, drug.getStockQuantity());
-            pstmt.setDouble(4, drug.getPrice());
-            pstmt.setString(5, drug.getDrugId());
-            pstmt.executeUpdate();
+            pstmt.setDouble(3, drug.getPrice());
+            pstmt.setString(4, drug.getDrugId());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    drug.setStockQuantity(rs.getInt(1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Changes a drug's stock by a relative amount, for example after a stock count. Sales
+     * recorded meanwhile are kept, unlike overwriting the stock with an absolute value.
+     *
+     * @param drugId the drug ID
+     * @param delta  the units to add, or remove if negative
+     * @return the new stock quantity
+     * @throws InsufficientStockException if the stock would go below zero
+     * @throws SQLException if the drug does not exist or a database access error occurs
+     */
+    public int adjustStock(String drugId, int delta) throws SQLException {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = ADJUST_STOCK.prepare(connection)) {
+            pstmt.setInt(1, delta);
+            pstmt.setString(2, drugId);
+            pstmt.setInt(3, delta);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt(1);
+                }
+            }
+            Map<String, Integer> available = availableStock(connection, List.of(drugId));
+            if (!available.containsKey(drugId)) {
+                throw new SQLException("No drug with ID " + drugId + ".");
+            }
+            throw new InsufficientStockException(List.of(new StockShortfall(drugId, -delta, available.get(drugId))));
+        }
+    }
+
+    /**
+     * Takes one drug's units out of stock if enough are left.
+     *
+     * @param drugId   the drug ID
+     * @param quantity the units to take
+     * @return true if the units were reserved, false if too few were left
+     * @throws SQLException if a database access error occurs
+     */
+    public boolean reserveStock(String drugId, int quantity) throws SQLException {
+        return reserveStock(Map.of(drugId, quantity)).isEmpty();
+    }
+
+    /**
+     * Takes a basket's units out of stock, all or nothing.
+     *
+     * @param quantities the units to take, by drug ID
+     * @return the lines that were short; empty if every line was reserved
+     * @throws SQLException if a database access error occurs
+     */
+    public List<StockShortfall> reserveStock(Map<String, Integer> quantities) throws SQLException {
+        try (Connection connection = connectionProvider.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                List<StockShortfall> shortfalls = reserveStock(connection, quantities);
+                if (shortfalls.isEmpty()) {
+                    connection.commit();
+                } else {
+                    connection.rollback();
+                }
+                return shortfalls;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * Takes a basket's units out of stock within the caller's transaction.
+     * <p>
+     * Each line is a conditional decrement that only succeeds while enough stock is left,
+     * so concurrent tills never oversell and never lock more than the rows they touch.
+     * Lines are applied in drug ID order, so two baskets sharing drugs always lock them in
+     * the same order and cannot deadlock. The caller must roll back if any line is short.
+     *
+     * @param connection a connection with autocommit off
+     * @param quantities the units to take, by drug ID
+     * @return the lines that were short; empty if every line was reserved
+     * @throws SQLException if a database access error occurs
+     */
+    static List<StockShortfall> reserveStock(Connection connection, Map<String, Integer> quantities) throws SQLException {
+        if (quantities.isEmpty()) return List.of();
+        List<Map.Entry<String, Integer>> lines = new ArrayList<>(new TreeMap<>(quantities).entrySet());
+        int[] counts;
+        try (PreparedStatement pstmt = RESERVE_STOCK.prepare(connection)) {
+            for (Map.Entry<String, Integer> line : lines) {
+                if (line.getValue() <= 0) throw new IllegalArgumentException("Quantity must be positive.");
+                pstmt.setInt(1, line.getValue());
+                pstmt.setString(2, line.getKey());
+                pstmt.setInt(3, line.getValue());
+                pstmt.addBatch();
+            }
+            counts = pstmt.executeBatch();
+        }
+        Map<String, Integer> failed = new TreeMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                failed.put(lines.get(i).getKey(), lines.get(i).getValue());
+            }
+        }
+        return failed.isEmpty() ? List.of() : shortfalls(connection, failed);
+    }
+
+    /**
+     * Reports the stock left for lines that could not be taken. Drugs that no longer
+     * exist are reported with nothing available.
+     */
+    private static List<StockShortfall> shortfalls(Connection connection, Map<String, Integer> requested) throws SQLException {
+        Map<String, Integer> available = availableStock(connection, requested.keySet());
+        List<StockShortfall> shortfalls = new ArrayList<>(requested.size());
+        for (Map.Entry<String, Integer> line : requested.entrySet()) {
+            shortfalls.add(new StockShortfall(line.getKey(), line.getValue(), available.getOrDefault(line.getKey(), 0)));
+        }
+        return shortfalls;
+    }
+
+    private static Map<String, Integer> availableStock(Connection connection, Collection<String> drugIds) throws SQLException {
+        Map<String, Integer> available = new HashMap<>();
+        try (PreparedStatement pstmt = AVAILABLE_STOCK.prepare(connection)) {
+            pstmt.setArray(1, connection.createArrayOf("varchar", drugIds.toArray()));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    available.put(rs.getString(1), rs.getInt(2));
+                }
+            }
         }
+        return available;
     }
 
     /**
@@ -114,8 +321,8 @@ public class DrugDAO {
      * @throws SQLException if a database access error occurs
      */
     public void deleteDrug(String drugId) throws SQLException {
-        String sql = "DELETE FROM drugs WHERE drug_id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = DELETE_DRUG.prepare(connection)) {
             pstmt.setString(1, drugId);
             pstmt.executeUpdate();
         }
@@ -130,18 +337,12 @@ public class DrugDAO {
      */
     public List<Drug> searchDrugsByName(String name) throws SQLException {
         List<Drug> drugs = new ArrayList<>();
-        String sql = "SELECT * FROM drugs WHERE drug_name ILIKE ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = SEARCH_BY_NAME.prepare(connection)) {
             pstmt.setString(1, "%" + name + "%");
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    drugs.add(new Drug(
-                            rs.getString("drug_id"),
-                            rs.getString("drug_name"),
-                            rs.getInt("quantity"),
-                            rs.getInt("stock_quantity"),
-                            rs.getDouble("price")
-                    ));
+                    drugs.add(COLUMNS.map(rs, 1));
                 }
             }
         }
@@ -0,0 +1,62 @@
+package com.pharmacy.dao;
+
+import com.pharmacy.utils.ConnectionProvider;
+
+import java.sql.*;
+import java.time.LocalDate;
+
+/**
+ * DAO class for remembering how far each recurring export has got.
+ */
+public class ExportWatermarkDAO {
+
+    private static final StatementRegistry.Sql EXPORTED_THROUGH = StatementRegistry.registerQuery(
+            "exportWatermark.get", "SELECT exported_through FROM export_watermarks WHERE export_name = ?");
+    private static final StatementRegistry.Sql SET_EXPORTED_THROUGH = StatementRegistry.register(
+            "exportWatermark.set", "INSERT INTO export_watermarks (export_name, exported_through) VALUES (?, ?) " +
+                    "ON CONFLICT (export_name) DO UPDATE SET exported_through = EXCLUDED.exported_through, updated_at = now()");
+
+    private final ConnectionProvider connectionProvider;
+
+    /**
+     * Initializes a new ExportWatermarkDAO with the given connection provider.
+     *
+     * @param connectionProvider the source of database connections
+     */
+    public ExportWatermarkDAO(ConnectionProvider connectionProvider) {
+        this.connectionProvider = connectionProvider;
+    }
+
+    /**
+     * Retrieves the last day an export has covered.
+     *
+     * @param exportName the export
+     * @return the last day exported, or null if the export has never run
+     * @throws SQLException if a database access error occurs
+     */
+    public LocalDate getExportedThrough(String exportName) throws SQLException {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = EXPORTED_THROUGH.prepare(connection)) {
+            pstmt.setString(1, exportName);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getDate(1).toLocalDate() : null;
+            }
+        }
+    }
+
+    /**
+     * Records the last day an export has covered.
+     *
+     * @param exportName the export
+     * @param day        the last day exported
+     * @throws SQLException if a database access error occurs
+     */
+    public void setExportedThrough(String exportName, LocalDate day) throws SQLException {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = SET_EXPORTED_THROUGH.prepare(connection)) {
+            pstmt.setString(1, exportName);
+            pstmt.setDate(2, Date.valueOf(day));
+            pstmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.pharmacy.dao;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Thrown when a sale or stock adjustment would take a drug's stock below zero. Nothing
+ * was changed; the shortfalls say which lines were short and by how much.
+ */
+public class InsufficientStockException extends SQLException {
+    private final List<StockShortfall> shortfalls;
+
+    public InsufficientStockException(List<StockShortfall> shortfalls) {
+        super("Insufficient stock for " + shortfalls);
+        this.shortfalls = List.copyOf(shortfalls);
+    }
+
+    public List<StockShortfall> getShortfalls() {
+        return shortfalls;
+    }
+}
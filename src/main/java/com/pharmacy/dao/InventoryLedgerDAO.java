@@ -0,0 +1,282 @@
+package com.pharmacy.dao;
+
+import com.pharmacy.entities.LedgerEntry;
+import com.pharmacy.utils.ConnectionProvider;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * DAO class for the append-only inventory ledger and its balance snapshots.
+ * <p>
+ * Every stock movement is a row in {@code inventory_ledger}. From time to time the received
+ * and sold totals per drug are written to {@code inventory_snapshots}, tagged with the last entry
+ * they include. Balances are then read as the latest snapshot plus the entries recorded
+ * after it, so startup cost does not grow with the length of the history.
+ */
+public class InventoryLedgerDAO {
+
+    private static final StatementRegistry.Sql INSERT_ENTRY = StatementRegistry.register(
+            "ledger.insert", "INSERT INTO inventory_ledger (drug_id, entry_type, quantity, reference) VALUES (?, ?, ?, ?)");
+    private static final StatementRegistry.Sql LOCK_DRUG = StatementRegistry.register(
+            "ledger.lockDrug", "SELECT 1 FROM drugs WHERE drug_id = ? FOR UPDATE");
+    private static final StatementRegistry.Sql RECEIVED = StatementRegistry.registerQuery(
+            "ledger.received", "SELECT COALESCE(SUM(quantity), 0) FROM inventory_ledger"
+                    + " WHERE drug_id = ? AND entry_type = 'RECEIPT'");
+    private static final StatementRegistry.Sql ENTRIES_FOR_DRUG = StatementRegistry.registerQuery(
+            "ledger.entriesForDrug", "SELECT entry_id, drug_id, entry_type, quantity, reference, recorded_at " +
+                    "FROM inventory_ledger WHERE drug_id = ? ORDER BY entry_id");
+    private static final StatementRegistry.Sql LATEST_SNAPSHOT = StatementRegistry.registerQuery(
+            "ledger.latestSnapshot", "SELECT COALESCE(MAX(snapshot_entry_id), 0) FROM inventory_snapshots");
+    private static final StatementRegistry.Sql LAST_ENTRY = StatementRegistry.registerQuery(
+            "ledger.lastEntry", "SELECT COALESCE(MAX(entry_id), 0) FROM inventory_ledger");
+    private static final StatementRegistry.Sql DELETE_OLD_SNAPSHOTS = StatementRegistry.register(
+            "ledger.deleteOldSnapshots", "DELETE FROM inventory_snapshots WHERE snapshot_entry_id < ?");
+
+    // The latest snapshot plus every entry after it, up to and including entry ?
+    private static final String BALANCES_SQL =
+            "SELECT drug_id, SUM(received), SUM(sold) FROM (" +
+            " SELECT drug_id, received, sold FROM inventory_snapshots WHERE snapshot_entry_id = ?" +
+            " UNION ALL" +
+            " SELECT drug_id," +
+            "  CASE WHEN entry_type = 'RECEIPT' THEN quantity ELSE 0 END," +
+            "  CASE WHEN entry_type = 'SALE' THEN -quantity ELSE 0 END" +
+            " FROM inventory_ledger WHERE entry_id > ? AND entry_id <= ?" +
+            ") movements GROUP BY drug_id";
+    private static final StatementRegistry.Sql BALANCES = StatementRegistry.registerQuery(
+            "ledger.balances", BALANCES_SQL);
+    private static final StatementRegistry.Sql INSERT_SNAPSHOT = StatementRegistry.register(
+            "ledger.insertSnapshot", "INSERT INTO inventory_snapshots (snapshot_entry_id, drug_id, received, sold) " +
+                    "SELECT ?, drug_id, received, sold FROM (" + BALANCES_SQL + ") balances(drug_id, received, sold)");
+
+    private final ConnectionProvider connectionProvider;
+
+    /**
+     * A drug's running totals. The stock on hand is not one of them: it is
+     * {@code drugs.stock_quantity}, which also counts the stock the drug was created with.
+     */
+    public static final class Balance {
+        private final String drugId;
+        private final long received;
+        private final long sold;
+
+        Balance(String drugId, long received, long sold) {
+            this.drugId = drugId;
+            this.received = received;
+            this.sold = sold;
+        }
+
+        public String getDrugId() { return drugId; }
+
+        /** @return the sum of receipts, net of receipt corrections */
+        public long getReceived() { return received; }
+
+        /** @return the number of units sold */
+        public long getSold() { return sold; }
+    }
+
+    /**
+     * Initializes a new InventoryLedgerDAO with the given connection provider.
+     *
+     * @param connectionProvider The source of database connections.
+     */
+    public InventoryLedgerDAO(ConnectionProvider connectionProvider) {
+        this.connectionProvider = connectionProvider;
+    }
+
+    /**
+     * Records a stock movement.
+     *
+     * @param entry The movement to record.
+     * @return The entry as recorded, with its sequence number and time.
+     * @throws SQLException If a database access error occurs.
+     */
+    public LedgerEntry append(LedgerEntry entry) throws SQLException {
+        return appendAll(List.of(entry)).get(0);
+    }
+
+    /**
+     * Records several stock movements in one transaction, so that either all or none
+     * of them are recorded.
+     *
+     * @param entries The movements to record.
+     * @return The entries as recorded, in the same order.
+     * @throws SQLException If a database access error occurs.
+     */
+    public List<LedgerEntry> appendAll(Collection<LedgerEntry> entries) throws SQLException {
+        List<LedgerEntry> recorded = new ArrayList<>(entries.size());
+        if (entries.isEmpty()) return recorded;
+        try (Connection connection = connectionProvider.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement pstmt = INSERT_ENTRY.prepare(connection, "entry_id", "recorded_at")) {
+                for (LedgerEntry entry : entries) {
+                    pstmt.setString(1, entry.getDrugId());
+                    pstmt.setString(2, entry.getType().name());
+                    pstmt.setInt(3, entry.getQuantity());
+                    pstmt.setString(4, entry.getReference());
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                    for (LedgerEntry entry : entries) {
+                        if (!keys.next()) throw new SQLException("Ledger did not return an ID for every entry.");
+                        recorded.add(new LedgerEntry(keys.getLong(1), entry.getDrugId(), entry.getType(),
+                                entry.getQuantity(), entry.getReference(), keys.getTimestamp(2).toLocalDateTime()));
+                    }
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+        return recorded;
+    }
+
+    /**
+     * Locks a drug's row and then totals its receipts, so that the total stays current until
+     * the caller's transaction ends: other writers of the drug's stock wait for it. Call it
+     * inside a transaction; on its own the lock is released as soon as the total is read.
+     *
+     * @param drugId The drug ID.
+     * @return The units of the drug received, net of receipt corrections.
+     * @throws SQLException If a database access error occurs.
+     */
+    public long getReceivedForUpdate(String drugId) throws SQLException {
+        try (Connection connection = connectionProvider.getConnection()) {
+            // Two statements: under read committed, the total must be read after the lock is
+            // granted to see what the previous holder committed
+            try (PreparedStatement lock = LOCK_DRUG.prepare(connection)) {
+                lock.setString(1, drugId);
+                lock.executeQuery().close();
+            }
+            try (PreparedStatement pstmt = RECEIVED.prepare(connection)) {
+                pstmt.setString(1, drugId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    rs.next();
+                    return rs.getLong(1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Retrieves every drug's running totals as of now.
+     *
+     * @return The balances of all drugs that have ever moved.
+     * @throws SQLException If a database access error occurs.
+     */
+    public List<Balance> loadBalances() throws SQLException {
+        try (Connection connection = connectionProvider.getConnection()) {
+            long snapshotId = latestSnapshotId(connection);
+            return queryBalances(connection, snapshotId, Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Writes the current balances as a new snapshot and drops snapshots older than the
+     * previous one.
+     * <p>
+     * New entries are held back while the snapshot is taken. Without that, an entry whose
+     * transaction committed after the snapshot, but with a lower sequence number than the
+     * last entry it covered, would never be counted.
+     *
+     * @return The last entry covered by the snapshot.
+     * @throws SQLException If a database access error occurs.
+     */
+    public long writeSnapshot() throws SQLException {
+        try (Connection connection = connectionProvider.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                try (Statement stmt = connection.createStatement()) {
+                    // Waits for in-flight appends to commit and blocks new ones until we finish
+                    stmt.execute("LOCK TABLE inventory_ledger IN SHARE MODE");
+                }
+                long previousId = latestSnapshotId(connection);
+                long lastEntryId;
+                try (PreparedStatement pstmt = LAST_ENTRY.prepare(connection);
+                     ResultSet rs = pstmt.executeQuery()) {
+                    rs.next();
+                    lastEntryId = rs.getLong(1);
+                }
+                if (lastEntryId > previousId) {
+                    try (PreparedStatement pstmt = INSERT_SNAPSHOT.prepare(connection)) {
+                        pstmt.setLong(1, lastEntryId);
+                        pstmt.setLong(2, previousId);
+                        pstmt.setLong(3, previousId);
+                        pstmt.setLong(4, lastEntryId);
+                        pstmt.executeUpdate();
+                    }
+                    try (PreparedStatement pstmt = DELETE_OLD_SNAPSHOTS.prepare(connection)) {
+                        pstmt.setLong(1, previousId);
+                        pstmt.executeUpdate();
+                    }
+                }
+                connection.commit();
+                return Math.max(lastEntryId, previousId);
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the movements of one drug, oldest first.
+     *
+     * @param drugId The drug ID.
+     * @return The drug's ledger entries.
+     * @throws SQLException If a database access error occurs.
+     */
+    public List<LedgerEntry> getEntriesForDrug(String drugId) throws SQLException {
+        List<LedgerEntry> entries = new ArrayList<>();
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = ENTRIES_FOR_DRUG.prepare(connection)) {
+            pstmt.setString(1, drugId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    entries.add(new LedgerEntry(
+                            rs.getLong(1),
+                            rs.getString(2),
+                            LedgerEntry.Type.valueOf(rs.getString(3)),
+                            rs.getInt(4),
+                            rs.getString(5),
+                            rs.getTimestamp(6).toLocalDateTime()
+                    ));
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static long latestSnapshotId(Connection connection) throws SQLException {
+        try (PreparedStatement pstmt = LATEST_SNAPSHOT.prepare(connection);
+             ResultSet rs = pstmt.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static List<Balance> queryBalances(Connection connection, long snapshotId, long upToEntryId) throws SQLException {
+        List<Balance> balances = new ArrayList<>();
+        try (PreparedStatement pstmt = BALANCES.prepare(connection)) {
+            pstmt.setLong(1, snapshotId);
+            pstmt.setLong(2, snapshotId);
+            pstmt.setLong(3, upToEntryId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    balances.add(new Balance(rs.getString(1), rs.getLong(2), rs.getLong(3)));
+                }
+            }
+        }
+        return balances;
+    }
+}
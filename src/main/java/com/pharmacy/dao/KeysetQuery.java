@@ -0,0 +1,92 @@
+package com.pharmacy.dao;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Builds seek-method pagination clauses over a composite sort key.
+ * <p>
+ * Instead of {@code OFFSET}, which makes the server read and discard every skipped row,
+ * each page starts with a row-value comparison against the last key seen, e.g.
+ * {@code WHERE (drug_name, drug_id) > (?, ?)}. With an index on the key columns every page
+ * costs the same, however deep into the table it is.
+ *
+ * @param <T> the entity type
+ */
+final class KeysetQuery<T> {
+    private final List<String> keyColumns;
+    private final List<String> placeholders;
+    private final Function<T, String[]> keyOf;
+
+    /**
+     * @param keyColumns   the sort key columns, most significant first; the last must be unique
+     * @param placeholders the bind expression for each key column, e.g. {@code CAST(? AS date)}
+     * @param keyOf        extracts the key values of an entity, as strings
+     */
+    KeysetQuery(List<String> keyColumns, List<String> placeholders, Function<T, String[]> keyOf) {
+        this.keyColumns = keyColumns;
+        this.placeholders = placeholders;
+        this.keyOf = keyOf;
+    }
+
+    /**
+     * @return a {@code WHERE} clause seeking past {@code afterKey}, or an empty string for the first page
+     */
+    String where(String afterKey, SortOrder sort) {
+        if (afterKey == null) {
+            return "";
+        }
+        return " WHERE (" + String.join(", ", keyColumns) + ") " + sort.comparison()
+                + " (" + String.join(", ", placeholders) + ")";
+    }
+
+    /**
+     * @return an {@code ORDER BY} clause on the key columns, qualified with {@code alias} when not null
+     */
+    String orderBy(String alias, SortOrder sort) {
+        StringBuilder sb = new StringBuilder(" ORDER BY ");
+        for (int i = 0; i < keyColumns.size(); i++) {
+            if (i > 0) sb.append(", ");
+            if (alias != null) sb.append(alias).append('.');
+            sb.append(keyColumns.get(i)).append(' ').append(sort.keyword());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Binds the key values and then the row limit, which is one more than the page size so
+     * the caller can tell whether another page follows.
+     *
+     * @return the next free parameter index
+     */
+    int bind(PreparedStatement pstmt, int index, String afterKey, int limit) throws SQLException {
+        if (afterKey != null) {
+            for (String part : Page.decodeKey(afterKey, keyColumns.size())) {
+                pstmt.setString(index++, part);
+            }
+        }
+        pstmt.setInt(index++, limit + 1);
+        return index;
+    }
+
+    /**
+     * Trims the look-ahead row and builds the page.
+     */
+    Page<T> toPage(List<T> rows, int limit) {
+        boolean hasMore = rows.size() > limit;
+        List<T> items = hasMore ? rows.subList(0, limit) : rows;
+        if (items.isEmpty()) {
+            return new Page<>(items, null, null, false);
+        }
+        return new Page<>(items,
+                Page.encodeKey(keyOf.apply(items.get(0))),
+                Page.encodeKey(keyOf.apply(items.get(items.size() - 1))),
+                hasMore);
+    }
+
+    static void checkLimit(int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("Page size must be positive.");
+    }
+}
@@ -0,0 +1,78 @@
+package com.pharmacy.dao;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated query.
+ * <p>
+ * Keys are opaque strings that encode the sort key of a row. Pass {@link #getEndKey()}
+ * back as {@code afterKey} to read the following page, or {@link #getStartKey()} with the
+ * reversed sort order to read the preceding one.
+ *
+ * @param <T> the entity type
+ */
+public class Page<T> {
+    private static final char SEPARATOR = '\u001F';
+
+    private final List<T> items;
+    private final String startKey;
+    private final String endKey;
+    private final boolean hasMore;
+
+    Page(List<T> items, String startKey, String endKey, boolean hasMore) {
+        this.items = Collections.unmodifiableList(items);
+        this.startKey = startKey;
+        this.endKey = endKey;
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * @return the rows of this page, in the requested order
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return the key of the first row, or null if the page is empty
+     */
+    public String getStartKey() {
+        return startKey;
+    }
+
+    /**
+     * @return the key of the last row, or null if the page is empty
+     */
+    public String getEndKey() {
+        return endKey;
+    }
+
+    /**
+     * @return true if more rows follow this page in the requested order
+     */
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    static String encodeKey(String... parts) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.join(String.valueOf(SEPARATOR), parts).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String[] decodeKey(String key, int expectedParts) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(key), StandardCharsets.UTF_8)
+                    .split(String.valueOf(SEPARATOR), -1);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed page key.", e);
+        }
+        if (parts.length != expectedParts) {
+            throw new IllegalArgumentException("Malformed page key.");
+        }
+        return parts;
+    }
+}
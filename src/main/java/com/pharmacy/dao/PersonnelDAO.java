@@ -1,21 +1,67 @@
 package com.pharmacy.dao;
 
 import com.pharmacy.entities.Personnel;
+import com.pharmacy.utils.ConnectionProvider;
 
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class PersonnelDAO {
-    private Connection connection;
+    /** The columns every personnel query selects, read by position. */
+    static final Projection<Personnel> COLUMNS = new Projection<>((rs, first) -> new Personnel(
+            rs.getString(first),
+            rs.getString(first + 1)
+    ), "username", "hashed_password");
 
-    public PersonnelDAO(Connection connection) {
-        this.connection = connection;
+    // Shared by every instance, so a change made through any DAO reaches every listener
+    private static final List<Consumer<String>> credentialChangeListeners = new CopyOnWriteArrayList<>();
+
+    private static final StatementRegistry.Sql INSERT_PERSONNEL = StatementRegistry.register(
+            "personnel.insert", "INSERT INTO personnel (username, hashed_password) VALUES (?, ?)");
+    private static final StatementRegistry.Sql PERSONNEL_BY_USERNAME = StatementRegistry.registerQuery(
+            "personnel.byUsername", "SELECT " + COLUMNS.list() + " FROM personnel WHERE username = ?");
+    private static final StatementRegistry.Sql UPDATE_PASSWORD = StatementRegistry.register(
+            "personnel.updatePassword", "UPDATE personnel SET hashed_password = ? WHERE username = ?");
+    private static final StatementRegistry.Sql REHASH_PASSWORD = StatementRegistry.register(
+            "personnel.rehashPassword", "UPDATE personnel SET hashed_password = ? WHERE username = ? AND hashed_password = ?");
+    private static final StatementRegistry.Sql DELETE_PERSONNEL = StatementRegistry.register(
+            "personnel.delete", "DELETE FROM personnel WHERE username = ?");
+    private static final StatementRegistry.Sql ALL_PERSONNEL = StatementRegistry.registerQuery(
+            "personnel.all", "SELECT " + COLUMNS.list() + " FROM personnel");
+    private static final StatementRegistry.Sql STREAM_ALL = StatementRegistry.registerQuery(
+            "personnel.streamAll", "SELECT " + COLUMNS.list() + " FROM personnel");
+
+    private final ConnectionProvider connectionProvider;
+
+    public PersonnelDAO(ConnectionProvider connectionProvider) {
+        this.connectionProvider = connectionProvider;
+    }
+
+    /**
+     * Registers a listener that is told the username whenever a user's password is changed
+     * or the user is deleted, so that anything trusting the old password can be revoked.
+     */
+    public static void addCredentialChangeListener(Consumer<String> listener) {
+        credentialChangeListeners.add(listener);
+    }
+
+    public static void removeCredentialChangeListener(Consumer<String> listener) {
+        credentialChangeListeners.remove(listener);
+    }
+
+    private static void fireCredentialChange(String username) {
+        for (Consumer<String> listener : credentialChangeListeners) {
+            listener.accept(username);
+        }
     }
 
     public void addPersonnel(Personnel personnel) throws SQLException {
-        String sql = "INSERT INTO personnel (username, hashed_password) VALUES (?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = INSERT_PERSONNEL.prepare(connection)) {
             pstmt.setString(1, personnel.getUsername());
             pstmt.setString(2, personnel.getHashedPassword());
             pstmt.executeUpdate();
@@ -23,15 +69,12 @@ public class PersonnelDAO {
     }
 
     public Personnel getPersonnelByUsername(String username) throws SQLException {
-        String sql = "SELECT * FROM personnel WHERE username = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = PERSONNEL_BY_USERNAME.prepare(connection)) {
             pstmt.setString(1, username);
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
-                    return new Personnel(
-                            rs.getString("username"),
-                            rs.getString("hashed_password")
-                    );
+                    return COLUMNS.map(rs, 1);
                 }
             }
         }
@@ -40,33 +83,57 @@ public class PersonnelDAO {
 
     public List<Personnel> getAllPersonnel() throws SQLException {
         List<Personnel> personnelList = new ArrayList<>();
-        String sql = "SELECT * FROM personnel";
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = ALL_PERSONNEL.prepare(connection);
+             ResultSet rs = pstmt.executeQuery()) {
             while (rs.next()) {
-                personnelList.add(new Personnel(
-                        rs.getString("username"),
-                        rs.getString("hashed_password")
-                ));
+                personnelList.add(COLUMNS.map(rs, 1));
             }
         }
         return personnelList;
     }
 
+    public Stream<Personnel> streamAllPersonnel() throws SQLException {
+        return CursorStreams.stream(connectionProvider, STREAM_ALL,
+                CursorStreams.NO_PARAMETERS, COLUMNS.mapper());
+    }
+
     public void updatePersonnel(Personnel personnel) throws SQLException {
-        String sql = "UPDATE personnel SET hashed_password = ? WHERE username = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = UPDATE_PASSWORD.prepare(connection)) {
             pstmt.setString(1, personnel.getHashedPassword());
             pstmt.setString(2, personnel.getUsername());
-            pstmt.executeUpdate();
+            if (pstmt.executeUpdate() > 0) {
+                fireCredentialChange(personnel.getUsername());
+            }
+        }
+    }
+
+    /**
+     * Replaces a user's password hash with a new hash of the same password, for example
+     * after hashing costs have been raised. Nothing changes if the stored hash is no longer
+     * {@code oldHash}, so a password change made meanwhile is never overwritten. Sessions
+     * are left alone, since the password itself is unchanged.
+     *
+     * @return true if the hash was replaced
+     */
+    public boolean rehashPassword(String username, String oldHash, String newHash) throws SQLException {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = REHASH_PASSWORD.prepare(connection)) {
+            pstmt.setString(1, newHash);
+            pstmt.setString(2, username);
+            pstmt.setString(3, oldHash);
+            return pstmt.executeUpdate() > 0;
         }
     }
 
     public void deletePersonnel(String username) throws SQLException {
-        String sql = "DELETE FROM personnel WHERE username = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = DELETE_PERSONNEL.prepare(connection)) {
             pstmt.setString(1, username);
-            pstmt.executeUpdate();
+            if (pstmt.executeUpdate() > 0) {
+                fireCredentialChange(username);
+            }
         }
     }
 }
@@ -0,0 +1,82 @@
+package com.pharmacy.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * An entity's columns in a fixed order, together with the mapper that reads them.
+ * <p>
+ * Queries select exactly these columns instead of {@code SELECT *}, so no unused column
+ * crosses the wire, and because the order is fixed the mapper reads by position rather
+ * than looking each column up by name on every row. In a join the same projection can
+ * start at any position, so one mapper per entity serves every query that returns it.
+ *
+ * @param <T> the entity type
+ */
+final class Projection<T> {
+
+    /**
+     * Reads an entity from consecutive columns of the current row.
+     *
+     * @param <T> the entity type
+     */
+    @FunctionalInterface
+    interface PositionalMapper<T> {
+        /**
+         * @param rs    a result set positioned on a row
+         * @param first the position of the projection's first column
+         */
+        T map(ResultSet rs, int first) throws SQLException;
+    }
+
+    private final String[] columns;
+    private final PositionalMapper<T> mapper;
+    private final String list;
+    private final RowMapper<T> rowMapper;
+
+    /**
+     * @param mapper  reads the columns, in the order given
+     * @param columns the column names
+     */
+    Projection(PositionalMapper<T> mapper, String... columns) {
+        this.columns = columns.clone();
+        this.mapper = mapper;
+        this.list = String.join(", ", columns);
+        this.rowMapper = rs -> mapper.map(rs, 1);
+    }
+
+    /** @return the columns as a select list, such as {@code drug_id, drug_name} */
+    String list() {
+        return list;
+    }
+
+    /**
+     * @param alias the table alias
+     * @return the columns qualified with the alias, such as {@code d.drug_id, d.drug_name}
+     */
+    String list(String alias) {
+        StringBuilder qualified = new StringBuilder();
+        for (String column : columns) {
+            if (qualified.length() > 0) qualified.append(", ");
+            qualified.append(alias).append('.').append(column);
+        }
+        return qualified.toString();
+    }
+
+    /** @return the number of columns */
+    int size() {
+        return columns.length;
+    }
+
+    /** @return a mapper for result sets that start with this projection */
+    RowMapper<T> mapper() {
+        return rowMapper;
+    }
+
+    /**
+     * Reads the entity from the columns starting at {@code first}.
+     */
+    T map(ResultSet rs, int first) throws SQLException {
+        return mapper.map(rs, first);
+    }
+}
@@ -1,23 +1,53 @@
 package com.pharmacy.dao;
 
 import com.pharmacy.entities.Purchase;
+import com.pharmacy.utils.ConnectionProvider;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.sql.*;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * DAO class for managing purchase-related database operations.
  */
 public class PurchaseDAO {
-    private Connection connection;
+    /** The columns every purchase query selects, read by position. */
+    static final Projection<Purchase> COLUMNS = new Projection<>((rs, first) -> new Purchase(
+            rs.getString(first),
+            rs.getDate(first + 1).toLocalDate()
+    ), "id", "purchase_date");
+
+    private static final StatementRegistry.Sql INSERT_PURCHASE = StatementRegistry.register(
+            "purchase.insert", "INSERT INTO purchases (id, purchase_date) VALUES (?, ?)");
+    private static final StatementRegistry.Sql PURCHASE_BY_ID = StatementRegistry.registerQuery(
+            "purchase.byId", "SELECT " + COLUMNS.list() + " FROM purchases WHERE id = ?");
+    private static final StatementRegistry.Sql ALL_PURCHASES = StatementRegistry.registerQuery(
+            "purchase.all", "SELECT " + COLUMNS.list() + " FROM purchases");
+    private static final StatementRegistry.Sql UPDATE_PURCHASE = StatementRegistry.register(
+            "purchase.update", "UPDATE purchases SET purchase_date = ? WHERE id = ?");
+    private static final StatementRegistry.Sql DELETE_PURCHASE = StatementRegistry.register(
+            "purchase.delete", "DELETE FROM purchases WHERE id = ?");
+    private static final StatementRegistry.Sql STREAM_ALL = StatementRegistry.registerQuery(
+            "purchase.streamAll", "SELECT " + COLUMNS.list() + " FROM purchases");
+    /** The text depends on the page's direction and whether it is the first. */
+    private static final StatementRegistry.Sql PAGE = StatementRegistry.registerDynamic("purchase.page");
+
+    /** Purchases page by date; the ID breaks ties between purchases on the same day. */
+    private static final KeysetQuery<Purchase> PAGE_BY_DATE = new KeysetQuery<>(
+            List.of("purchase_date", "id"), List.of("CAST(? AS date)", "?"),
+            purchase -> new String[]{purchase.getPurchaseDate().toString(), purchase.getPurchaseId()});
+    private final ConnectionProvider connectionProvider;
 
     /**
-     * Initializes a new PurchaseDAO with the given database connection.
+     * Initializes a new PurchaseDAO with the given connection provider.
      *
-     * @param connection The database connection.
+     * @param connectionProvider The source of database connections.
      */
-    public PurchaseDAO(Connection connection) {
-        this.connection = connection;
+    public PurchaseDAO(ConnectionProvider connectionProvider) {
+        this.connectionProvider = connectionProvider;
     }
 
     /**
@@ -27,8 +57,8 @@ public class PurchaseDAO {
      * @throws SQLException If a database access error occurs.
      */
     public void addPurchase(Purchase purchase) throws SQLException {
-        String sql = "INSERT INTO purchases (id, purchase_date) VALUES (?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = INSERT_PURCHASE.prepare(connection)) {
             pstmt.setString(1, purchase.getPurchaseId());
             pstmt.setDate(2, Date.valueOf(purchase.getPurchaseDate()));
             pstmt.executeUpdate();
@@ -43,15 +73,12 @@ public class PurchaseDAO {
      * @throws SQLException If a database access error occurs.
      */
     public Purchase getPurchaseById(String id) throws SQLException {
-        String sql = "SELECT * FROM purchases WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = PURCHASE_BY_ID.prepare(connection)) {
             pstmt.setString(1, id);
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
-                    return new Purchase(
-                            rs.getString("id"),
-                            rs.getDate("purchase_date").toLocalDate()
-                    );
+                    return COLUMNS.map(rs, 1);
                 }
             }
         }
@@ -66,18 +93,72 @@ public class PurchaseDAO {
      */
     public List<Purchase> getAllPurchases() throws SQLException {
         List<Purchase> purchases = new ArrayList<>();
-        String sql = "SELECT * FROM purchases";
-        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = ALL_PURCHASES.prepare(connection);
+             ResultSet rs = pstmt.executeQuery()) {
             while (rs.next()) {
-                purchases.add(new Purchase(
-                        rs.getString("id"),
-                        rs.getDate("purchase_date").toLocalDate()
-                ));
+                purchases.add(COLUMNS.map(rs, 1));
             }
         }
         return purchases;
     }
 
+    /**
+     * Streams all purchases through a server-side cursor. The stream keeps a pooled
+     * connection until it is closed; use it in a try-with-resources block.
+     *
+     * @return A lazily populated stream of all purchases.
+     * @throws SQLException If the query cannot be started.
+     */
+    public Stream<Purchase> streamAllPurchases() throws SQLException {
+        return CursorStreams.stream(connectionProvider, STREAM_ALL,
+                CursorStreams.NO_PARAMETERS, COLUMNS.mapper());
+    }
+
+    /**
+     * Retrieves one page of purchases ordered by date, seeking past {@code afterKey}
+     * rather than skipping rows with OFFSET.
+     *
+     * @param afterKey The end key of the previous page, or null for the first page.
+     * @param limit    The maximum number of purchases to return.
+     * @param sort     The direction to walk the dates in.
+     * @return The page of purchases.
+     * @throws SQLException If a database access error occurs.
+     */
+    public Page<Purchase> fetchPage(String afterKey, int limit, SortOrder sort) throws SQLException {
+        KeysetQuery.checkLimit(limit);
+        String sql = "SELECT " + COLUMNS.list() + " FROM purchases" + PAGE_BY_DATE.where(afterKey, sort) + PAGE_BY_DATE.orderBy(null, sort) + " LIMIT ?";
+        List<Purchase> rows = new ArrayList<>(limit + 1);
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = PAGE.prepareText(connection, sql)) {
+            PAGE_BY_DATE.bind(pstmt, 1, afterKey, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(COLUMNS.map(rs, 1));
+                }
+            }
+        }
+        return PAGE_BY_DATE.toPage(rows, limit);
+    }
+
+    /**
+     * Writes the purchases made between two dates to a stream as CSV, with a header line.
+     * Rows are copied from the server as they arrive.
+     *
+     * @param from The first day to include.
+     * @param to   The last day to include.
+     * @param out  Receives the CSV.
+     * @return The number of purchases written.
+     * @throws SQLException If a database access error occurs.
+     * @throws IOException If the stream cannot be written.
+     */
+    public long exportPurchases(LocalDate from, LocalDate to, OutputStream out) throws SQLException, IOException {
+        return CopyExports.copyOut(connectionProvider,
+                "SELECT " + COLUMNS.list() + " FROM purchases"
+                        + " WHERE purchase_date BETWEEN " + CopyExports.dateLiteral(from) + " AND " + CopyExports.dateLiteral(to)
+                        + " ORDER BY purchase_date, id", out);
+    }
+
     /**
      * Updates an existing purchase in the database.
      *
@@ -85,8 +166,8 @@ public class PurchaseDAO {
      * @throws SQLException If a database access error occurs.
      */
     public void updatePurchase(Purchase purchase) throws SQLException {
-        String sql = "UPDATE purchases SET purchase_date = ? WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = UPDATE_PURCHASE.prepare(connection)) {
             pstmt.setDate(1, Date.valueOf(purchase.getPurchaseDate()));
             pstmt.setString(2, purchase.getPurchaseId());
             pstmt.executeUpdate();
@@ -100,8 +181,8 @@ public class PurchaseDAO {
      * @throws SQLException If a database access error occurs.
      */
     public void deletePurchase(String id) throws SQLException {
-        String sql = "DELETE FROM purchases WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = DELETE_PURCHASE.prepare(connection)) {
             pstmt.setString(1, id);
             pstmt.executeUpdate();
         }
@@ -0,0 +1,22 @@
+package com.pharmacy.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Turns the current row of a result set into an entity.
+ *
+ * @param <T> the entity type
+ */
+@FunctionalInterface
+interface RowMapper<T> {
+
+    /**
+     * Maps the row the result set is positioned on.
+     *
+     * @param rs a result set positioned on a row
+     * @return the mapped entity
+     * @throws SQLException if a column cannot be read
+     */
+    T map(ResultSet rs) throws SQLException;
+}
@@ -0,0 +1,75 @@
+package com.pharmacy.dao;
+
+import com.pharmacy.entities.Drug;
+import com.pharmacy.entities.Sales;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rebuilds {@link Sales} objects from the rows of a sales/sales_items/drugs join.
+ * <p>
+ * Each row holds, in order: sales ID, date, total amount, customer name, item quantity,
+ * then the drug's columns as projected by {@link DrugDAO#COLUMNS}.
+ * <p>
+ * Rows must arrive grouped by sale. Drugs are resolved through an identity map that lives
+ * as long as the assembler, so a drug sold in many sales is materialised once and every
+ * sale references the same instance.
+ */
+final class SalesAssembler {
+    private static final int DRUG_COLUMN = 6;
+
+    private final Map<String, Drug> drugs = new HashMap<>();
+    private Sales current;
+    private Map<Drug, Integer> currentItems;
+
+    /**
+     * Feeds the next joined row.
+     *
+     * @param rs a result set positioned on a row
+     * @return the previous sale if this row starts a new one, otherwise null
+     * @throws SQLException if a column cannot be read
+     */
+    Sales accept(ResultSet rs) throws SQLException {
+        String salesId = rs.getString(1);
+        Sales completed = null;
+        if (current == null || !current.getSalesId().equals(salesId)) {
+            completed = finish();
+            current = new Sales(
+                    salesId,
+                    rs.getDate(2).toLocalDate(),
+                    rs.getString(4),
+                    rs.getDouble(3)
+            );
+            currentItems = new HashMap<>();
+        }
+
+        String drugId = rs.getString(DRUG_COLUMN);
+        if (drugId != null) {
+            Drug drug = drugs.get(drugId);
+            if (drug == null) {
+                drug = DrugDAO.COLUMNS.map(rs, DRUG_COLUMN);
+                drugs.put(drugId, drug);
+            }
+            currentItems.merge(drug, rs.getInt(5), Integer::sum);
+        }
+        return completed;
+    }
+
+    /**
+     * Completes the sale currently being assembled.
+     *
+     * @return the last sale, or null if no row has been fed since the previous call
+     */
+    Sales finish() {
+        Sales completed = current;
+        if (completed != null && !currentItems.isEmpty()) {
+            completed.setItemsSold(currentItems);
+        }
+        current = null;
+        currentItems = null;
+        return completed;
+    }
+}
@@ -2,147 +2,505 @@ package com.pharmacy.dao;
 
 import com.pharmacy.entities.Sales;
 import com.pharmacy.entities.Drug;
+import com.pharmacy.utils.ConnectionProvider;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.sql.*;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * DAO class for managing sales-related database operations.
+ * <p>
+ * The sales and sales_items tables are split into monthly partitions on the sale date
+ * (see {@link SalesPartitionDAO}). Methods that take a date range only read the months it
+ * covers. Methods that take a sale ID look its date up in the sales_ids table, which
+ * also keeps IDs unique across months, and then read only that month. Reading all sales
+ * visits every month that is still attached.
+ * <p>
+ * Partitions are never created here: that would lock both tables until the sale's
+ * transaction ends. A sale dated in a month without a partition is rejected by the
+ * database instead.
  */
 public class SalesDAO {
-    private Connection connection;
+    private static final StatementRegistry.Sql INSERT_SALE_ID = StatementRegistry.register(
+            "sales.insertId", "INSERT INTO sales_ids (sales_id, sales_date) VALUES (?, ?)");
+    private static final StatementRegistry.Sql INSERT_SALE = StatementRegistry.register(
+            "sales.insert", "INSERT INTO sales (sales_id, sales_date, total_amount, customer_name) VALUES (?, ?, ?, ?)");
+    private static final StatementRegistry.Sql INSERT_SALE_ITEM = StatementRegistry.register(
+            "sales.insertItem", "INSERT INTO sales_items (sales_id, sales_date, drug_id, quantity) VALUES (?, ?, ?, ?)");
 
     /**
-     * Initializes a new SalesDAO with the given database connection.
+     * Sales joined to their line items and the drugs on each line. Items whose drug no
+     * longer exists are dropped rather than turned into placeholder drugs. The column
+     * order is the one {@link SalesAssembler} reads by position.
+     */
+    private static final String SALES_WITH_ITEMS_COLUMNS =
+            "SELECT s.sales_id, s.sales_date, s.total_amount, s.customer_name, si.quantity, "
+                    + DrugDAO.COLUMNS.list("d") + " ";
+    private static final String ITEMS_JOIN =
+            " LEFT JOIN (sales_items si JOIN drugs d ON d.drug_id = si.drug_id)"
+                    + " ON si.sales_id = s.sales_id AND si.sales_date = s.sales_date";
+    private static final String SALES_WITH_ITEMS_SQL = SALES_WITH_ITEMS_COLUMNS + "FROM sales s" + ITEMS_JOIN;
+    /**
+     * The planner does not carry a range on s.sales_date over to si.sales_date, so the
+     * range is repeated on the items for their partitions to be pruned as well. Bound by
+     * {@link #bindRange}.
+     */
+    private static final String SALES_BETWEEN_SQL = SALES_WITH_ITEMS_COLUMNS + "FROM sales s" + ITEMS_JOIN
+            + " AND si.sales_date BETWEEN ? AND ? WHERE s.sales_date BETWEEN ? AND ? ORDER BY s.sales_date, s.sales_id";
+    /** The date comes from sales_ids, so only the sale's month is read. */
+    private static final StatementRegistry.Sql SALE_BY_ID = StatementRegistry.registerQuery(
+            "sales.byId", SALES_WITH_ITEMS_SQL
+                    + " WHERE s.sales_id = ? AND s.sales_date = (SELECT sales_date FROM sales_ids WHERE sales_id = ?)");
+    private static final StatementRegistry.Sql SALES_BETWEEN = StatementRegistry.registerQuery(
+            "sales.between", SALES_BETWEEN_SQL);
+    private static final StatementRegistry.Sql ALL_SALES = StatementRegistry.registerQuery(
+            "sales.all", SALES_WITH_ITEMS_SQL + " ORDER BY s.sales_date, s.sales_id");
+    /** Cascades to the sale and its line items, moving them to the new date's month. */
+    private static final StatementRegistry.Sql MOVE_SALE = StatementRegistry.register(
+            "sales.move", "UPDATE sales_ids SET sales_date = ? WHERE sales_id = ? AND sales_date <> ?");
+    private static final StatementRegistry.Sql UPDATE_SALE = StatementRegistry.register(
+            "sales.update", "UPDATE sales SET total_amount = ?, customer_name = ? WHERE sales_id = ? AND sales_date = ?");
+    /** Cascades to the sale and its line items. */
+    private static final StatementRegistry.Sql DELETE_SALE = StatementRegistry.register(
+            "sales.delete", "DELETE FROM sales_ids WHERE sales_id = ?");
+    private static final StatementRegistry.Sql DAILY_TOTALS = StatementRegistry.registerQuery(
+            "sales.dailyTotals", "SELECT sales_date, count(*), sum(total_amount) FROM sales"
+                    + " WHERE sales_date BETWEEN ? AND ? GROUP BY sales_date ORDER BY sales_date");
+    private static final StatementRegistry.Sql STREAM_ALL = StatementRegistry.registerQuery(
+            "sales.streamAll", SALES_WITH_ITEMS_SQL + " ORDER BY s.sales_date, s.sales_id");
+    private static final StatementRegistry.Sql STREAM_BETWEEN = StatementRegistry.registerQuery(
+            "sales.streamBetween", SALES_BETWEEN_SQL);
+    /** The text depends on the page's direction and whether it is the first. */
+    private static final StatementRegistry.Sql PAGE = StatementRegistry.registerDynamic("sales.page");
+
+    /** Sales page by date; the ID breaks ties between sales on the same day. */
+    private static final KeysetQuery<Sales> PAGE_BY_DATE = new KeysetQuery<>(
+            List.of("sales_date", "sales_id"), List.of("CAST(? AS date)", "?"),
+            sales -> new String[]{sales.getSalesDate().toString(), sales.getSalesId()});
+
+    /** Rows queued on the statements before a batch is sent to the server. */
+    private static final int BATCH_SIZE = 500;
+
+    private final ConnectionProvider connectionProvider;
+
+    /**
+     * Initializes a new SalesDAO with the given connection provider.
      *
-     * @param connection the database connection
+     * @param connectionProvider the source of database connections
      */
-    public SalesDAO(Connection connection) {
-        this.connection = connection;
+    public SalesDAO(ConnectionProvider connectionProvider) {
+        this.connectionProvider = connectionProvider;
     }
 
     /**
-     * Adds a new sale to the database.
+     * Adds several sales in a single transaction, but rejects each sale on its own: a sale
+     * that fails, for example for lack of stock, is left out and the others are still stored.
+     * The units sold are taken out of stock in the same transaction, which records no ledger
+     * entries; run it inside {@code StockLedger.recordWith} so the movements are kept.
+     * <p>
+     * The whole group is first attempted as one batch. Only if that fails is it replayed
+     * sale by sale, each behind a savepoint, so the common case costs no extra round-trips.
      *
-     * @param sales the sale to add
-     * @throws SQLException if a database access error occurs
+     * @param salesList the sales to add
+     * @return for each sale in order, null if it was stored or the reason it was rejected
+     * @throws SQLException if the transaction itself failed; no sale is stored in that case
      */
-    public void addSale(Sales sales) throws SQLException {
-        String salesSQL = "INSERT INTO sales (sales_id, sales_date, total_amount, customer_name) VALUES (?, ?, ?, ?)";
-        String salesItemsSQL = "INSERT INTO sales_items (sales_id, drug_id, quantity) VALUES (?, ?, ?)";
-        try (PreparedStatement salesStmt = connection.prepareStatement(salesSQL);
-             PreparedStatement salesItemsStmt = connection.prepareStatement(salesItemsSQL)) {
-            connection.setAutoCommit(false); // Start transaction
-            salesStmt.setString(1, sales.getSalesId());
-            salesStmt.setDate(2, Date.valueOf(sales.getSalesDate()));
-            salesStmt.setDouble(3, sales.getTotalAmount());
-            salesStmt.setString(4, sales.getCustomerName());
-            salesStmt.executeUpdate();
+    public List<SQLException> addSalesIsolated(List<Sales> salesList) throws SQLException {
+        List<SQLException> outcomes = new ArrayList<>(Collections.nCopies(salesList.size(), null));
+        if (salesList.isEmpty()) {
+            return outcomes;
+        }
+        try (Connection connection = connectionProvider.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                try {
+                    insertSales(connection, salesList);
+                } catch (SQLException e) {
+                    if (isConnectionFailure(e)) throw e;
+                    connection.rollback();
+                    for (int i = 0; i < salesList.size(); i++) {
+                        Savepoint savepoint = connection.setSavepoint();
+                        try {
+                            insertSales(connection, List.of(salesList.get(i)));
+                            connection.releaseSavepoint(savepoint);
+                        } catch (SQLException saleFailure) {
+                            if (isConnectionFailure(saleFailure)) throw saleFailure;
+                            connection.rollback(savepoint);
+                            outcomes.set(i, saleFailure);
+                        }
+                    }
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+        return outcomes;
+    }
+
+    /**
+     * Reserves the stock for the sales and inserts their headers and line items on the
+     * caller's transaction.
+     */
+    private static void insertSales(Connection connection, Collection<Sales> salesList) throws SQLException {
+        List<StockShortfall> shortfalls = DrugDAO.reserveStock(connection, unitsSold(salesList));
+        if (!shortfalls.isEmpty()) {
+            throw new InsufficientStockException(shortfalls);
+        }
+        try (PreparedStatement idStmt = INSERT_SALE_ID.prepare(connection);
+             PreparedStatement salesStmt = INSERT_SALE.prepare(connection);
+             PreparedStatement salesItemsStmt = INSERT_SALE_ITEM.prepare(connection)) {
+            int pendingRows = 0;
+            for (Sales sales : salesList) {
+                Date salesDate = Date.valueOf(sales.getSalesDate());
+                idStmt.setString(1, sales.getSalesId());
+                idStmt.setDate(2, salesDate);
+                idStmt.addBatch();
+                salesStmt.setString(1, sales.getSalesId());
+                salesStmt.setDate(2, salesDate);
+                salesStmt.setDouble(3, sales.getTotalAmount());
+                salesStmt.setString(4, sales.getCustomerName());
+                salesStmt.addBatch();
+                pendingRows++;
+
+                for (Map.Entry<Drug, Integer> entry : sales.getItemsSold().entrySet()) {
+                    salesItemsStmt.setString(1, sales.getSalesId());
+                    salesItemsStmt.setDate(2, salesDate);
+                    salesItemsStmt.setString(3, entry.getKey().getDrugId());
+                    salesItemsStmt.setInt(4, entry.getValue());
+                    salesItemsStmt.addBatch();
+                    pendingRows++;
+                }
+
+                if (pendingRows >= BATCH_SIZE) {
+                    flush(idStmt, salesStmt, salesItemsStmt);
+                    pendingRows = 0;
+                }
+            }
+            flush(idStmt, salesStmt, salesItemsStmt);
+        }
+    }
+
+    private static boolean isConnectionFailure(SQLException e) {
+        String state = e.getSQLState();
+        return state != null && state.startsWith("08");
+    }
 
+    private static Map<String, Integer> unitsSold(Collection<Sales> salesList) {
+        Map<String, Integer> units = new HashMap<>();
+        for (Sales sales : salesList) {
             for (Map.Entry<Drug, Integer> entry : sales.getItemsSold().entrySet()) {
-                salesItemsStmt.setString(1, sales.getSalesId());
-                salesItemsStmt.setString(2, entry.getKey().getDrugId());
-                salesItemsStmt.setInt(3, entry.getValue());
-                salesItemsStmt.executeUpdate();
+                units.merge(entry.getKey().getDrugId(), entry.getValue(), Integer::sum);
             }
-            connection.commit(); // Commit transaction
-        } catch (SQLException e) {
-            connection.rollback(); // Rollback on error
-            throw e;
-        } finally {
-            connection.setAutoCommit(true); // Restore default
         }
+        return units;
     }
 
     /**
-     * Retrieves a sale by its ID.
+     * Sends the pending IDs, then the header rows, then their line items, so no row ever
+     * references one the database has not seen yet. A reused sale ID fails on the first.
+     */
+    private static void flush(PreparedStatement idStmt, PreparedStatement salesStmt, PreparedStatement salesItemsStmt)
+            throws SQLException {
+        idStmt.executeBatch();
+        salesStmt.executeBatch();
+        salesItemsStmt.executeBatch();
+    }
+
+    /**
+     * Retrieves a sale by its ID, together with its line items.
      *
      * @param salesId the sale ID
      * @return the found sale, or null if not found
      * @throws SQLException if a database access error occurs
      */
     public Sales getSaleById(String salesId) throws SQLException {
-        String salesSQL = "SELECT * FROM sales WHERE sales_id = ?";
-        String salesItemsSQL = "SELECT * FROM sales_items WHERE sales_id = ?";
-        try (PreparedStatement salesStmt = connection.prepareStatement(salesSQL);
-             PreparedStatement salesItemsStmt = connection.prepareStatement(salesItemsSQL)) {
-            salesStmt.setString(1, salesId);
-            try (ResultSet rs = salesStmt.executeQuery()) {
-                if (rs.next()) {
-                    LocalDate salesDate = rs.getDate("sales_date").toLocalDate();
-                    double totalAmount = rs.getDouble("total_amount");
-                    String customerName = rs.getString("customer_name");
-                    Sales sales = new Sales(salesId, salesDate, customerName, totalAmount);
-
-                    salesItemsStmt.setString(1, salesId);
-                    try (ResultSet itemsRS = salesItemsStmt.executeQuery()) {
-                        Map<Drug, Integer> itemsSold = new HashMap<>();
-                        while (itemsRS.next()) {
-                            String drugId = itemsRS.getString("drug_id");
-                            int quantity = itemsRS.getInt("quantity");
-                            Drug drug = new Drug(drugId, "", 0, 0, 0); // Placeholder for Drug object
-                            itemsSold.put(drug, quantity);
-                        }
-                        sales.setItemsSold(itemsSold);
-                    }
-                    return sales;
-                }
+        List<Sales> salesList = new ArrayList<>(1);
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = SALE_BY_ID.prepare(connection)) {
+            pstmt.setString(1, salesId);
+            pstmt.setString(2, salesId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                assemble(rs, salesList::add);
             }
         }
-        return null;
+        return salesList.isEmpty() ? null : salesList.get(0);
     }
 
     /**
-     * Retrieves all sales from the database.
+     * Retrieves all sales from the database, together with their line items. This reads
+     * every attached month; prefer {@link #getSalesBetween} or a stream for large ranges.
      *
-     * @return a list of all sales
+     * @return a list of all sales, ordered by date
      * @throws SQLException if a database access error occurs
      */
     public List<Sales> getAllSales() throws SQLException {
         List<Sales> salesList = new ArrayList<>();
-        String sql = "SELECT * FROM sales";
-        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                String salesId = rs.getString("sales_id");
-                LocalDate salesDate = rs.getDate("sales_date").toLocalDate();
-                double totalAmount = rs.getDouble("total_amount");
-                String customerName = rs.getString("customer_name");
-                Sales sales = new Sales(salesId, salesDate, customerName, totalAmount);
-                salesList.add(sales);
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = ALL_SALES.prepare(connection);
+             ResultSet rs = pstmt.executeQuery()) {
+            assemble(rs, salesList::add);
+        }
+        return salesList;
+    }
+
+    /**
+     * Retrieves the sales made between two dates, together with their line items.
+     *
+     * @param from the first day to include
+     * @param to   the last day to include
+     * @return the matching sales, ordered by date
+     * @throws SQLException if a database access error occurs
+     */
+    public List<Sales> getSalesBetween(LocalDate from, LocalDate to) throws SQLException {
+        List<Sales> salesList = new ArrayList<>();
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = SALES_BETWEEN.prepare(connection)) {
+            bindRange(pstmt, from, to);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                assemble(rs, salesList::add);
             }
         }
         return salesList;
     }
 
     /**
-     * Updates an existing sale in the database.
+     * Retrieves one page of sales ordered by date, together with their line items. The
+     * page boundaries are chosen on the sales table alone, seeking past {@code afterKey}
+     * rather than skipping rows with OFFSET, and only that page's items are joined in.
+     *
+     * @param afterKey the end key of the previous page, or null for the first page
+     * @param limit    the maximum number of sales to return
+     * @param sort     the direction to walk the dates in
+     * @return the page of sales
+     * @throws SQLException if a database access error occurs
+     */
+    public Page<Sales> fetchPage(String afterKey, int limit, SortOrder sort) throws SQLException {
+        KeysetQuery.checkLimit(limit);
+        String sql = "WITH page AS (SELECT sales_id, sales_date, total_amount, customer_name FROM sales" + PAGE_BY_DATE.where(afterKey, sort)
+                + PAGE_BY_DATE.orderBy(null, sort) + " LIMIT ?) "
+                + SALES_WITH_ITEMS_COLUMNS + "FROM page s" + ITEMS_JOIN + PAGE_BY_DATE.orderBy("s", sort);
+        List<Sales> rows = new ArrayList<>(limit + 1);
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = PAGE.prepareText(connection, sql)) {
+            PAGE_BY_DATE.bind(pstmt, 1, afterKey, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                assemble(rs, rows::add);
+            }
+        }
+        return PAGE_BY_DATE.toPage(rows, limit);
+    }
+
+    /**
+     * Streams all sales, together with their line items, through a server-side cursor.
+     * The stream keeps a pooled connection until it is closed; use it in a
+     * try-with-resources block.
+     *
+     * @return a lazily populated stream of all sales in date order
+     * @throws SQLException if the query cannot be started
+     */
+    public Stream<Sales> streamAllSales() throws SQLException {
+        return CursorStreams.open(connectionProvider, STREAM_ALL,
+                CursorStreams.NO_PARAMETERS, assemblingReader());
+    }
+
+    /**
+     * Streams the sales made between two dates, together with their line items, through a
+     * server-side cursor. The stream keeps a pooled connection until it is closed; use it
+     * in a try-with-resources block.
+     *
+     * @param from the first day to include
+     * @param to   the last day to include
+     * @return a lazily populated stream of the matching sales in date order
+     * @throws SQLException if the query cannot be started
+     */
+    public Stream<Sales> streamSalesBetween(LocalDate from, LocalDate to) throws SQLException {
+        return CursorStreams.open(connectionProvider, STREAM_BETWEEN, pstmt -> bindRange(pstmt, from, to),
+                assemblingReader());
+    }
+
+    /** Binds a date range to {@link #SALES_BETWEEN_SQL}: once for the items, once for the sales. */
+    private static void bindRange(PreparedStatement pstmt, LocalDate from, LocalDate to) throws SQLException {
+        Date first = Date.valueOf(from);
+        Date last = Date.valueOf(to);
+        pstmt.setDate(1, first);
+        pstmt.setDate(2, last);
+        pstmt.setDate(3, first);
+        pstmt.setDate(4, last);
+    }
+
+    /**
+     * Totals the sales of each day between two dates. Days without sales are left out.
+     *
+     * @param from the first day to include
+     * @param to   the last day to include
+     * @return one total per day with sales, in date order
+     * @throws SQLException if a database access error occurs
+     */
+    public List<DailySalesTotal> getDailyTotals(LocalDate from, LocalDate to) throws SQLException {
+        List<DailySalesTotal> totals = new ArrayList<>();
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = DAILY_TOTALS.prepare(connection)) {
+            pstmt.setDate(1, Date.valueOf(from));
+            pstmt.setDate(2, Date.valueOf(to));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    totals.add(new DailySalesTotal(rs.getDate(1).toLocalDate(), rs.getInt(2), rs.getDouble(3)));
+                }
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Totals the sales of each day of the month so far. Only the current month's
+     * partition is read, however much history is kept.
+     *
+     * @param today the last day to include; its month is the one reported
+     * @return one total per day with sales, in date order
+     * @throws SQLException if a database access error occurs
+     */
+    public List<DailySalesTotal> getMonthToDateTotals(LocalDate today) throws SQLException {
+        return getDailyTotals(YearMonth.from(today).atDay(1), today);
+    }
+
+    /**
+     * Writes the sales made between two dates to a stream as CSV, one row per sale with a
+     * header line. Rows are copied from the server as they arrive.
+     *
+     * @param from the first day to include
+     * @param to   the last day to include
+     * @param out  receives the CSV
+     * @return the number of sales written
+     * @throws SQLException if a database access error occurs
+     * @throws IOException if the stream cannot be written
+     */
+    public long exportSales(LocalDate from, LocalDate to, OutputStream out) throws SQLException, IOException {
+        return CopyExports.copyOut(connectionProvider,
+                "SELECT sales_id, sales_date, total_amount, customer_name FROM sales"
+                        + " WHERE sales_date BETWEEN " + CopyExports.dateLiteral(from) + " AND " + CopyExports.dateLiteral(to)
+                        + " ORDER BY sales_date, sales_id", out);
+    }
+
+    /**
+     * Writes the line items of the sales made between two dates to a stream as CSV, with a
+     * header line. Rows are copied from the server as they arrive.
+     *
+     * @param from the first day to include
+     * @param to   the last day to include
+     * @param out  receives the CSV
+     * @return the number of line items written
+     * @throws SQLException if a database access error occurs
+     * @throws IOException if the stream cannot be written
+     */
+    public long exportSaleItems(LocalDate from, LocalDate to, OutputStream out) throws SQLException, IOException {
+        return CopyExports.copyOut(connectionProvider,
+                "SELECT sales_id, drug_id, quantity FROM sales_items"
+                        + " WHERE sales_date BETWEEN " + CopyExports.dateLiteral(from) + " AND " + CopyExports.dateLiteral(to)
+                        + " ORDER BY sales_date, sales_id, drug_id", out);
+    }
+
+    /**
+     * Passes the sales made between two dates to a callback, one fully hydrated sale at a
+     * time. Memory use does not depend on the size of the range.
+     *
+     * @param from   the first day to include
+     * @param to     the last day to include
+     * @param action receives each sale in date order
+     * @throws SQLException if a database access error occurs
+     */
+    public void forEachSaleBetween(LocalDate from, LocalDate to, Consumer<Sales> action) throws SQLException {
+        try (Stream<Sales> sales = streamSalesBetween(from, to)) {
+            sales.forEach(action);
+        } catch (UncheckedSQLException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Reads one sale per call, consuming however many joined rows it spans.
+     */
+    private static CursorStreams.ElementReader<Sales> assemblingReader() {
+        SalesAssembler assembler = new SalesAssembler();
+        return rs -> {
+            while (rs.next()) {
+                Sales completed = assembler.accept(rs);
+                if (completed != null) {
+                    return completed;
+                }
+            }
+            return assembler.finish();
+        };
+    }
+
+    private static void assemble(ResultSet rs, Consumer<Sales> sink) throws SQLException {
+        SalesAssembler assembler = new SalesAssembler();
+        while (rs.next()) {
+            Sales completed = assembler.accept(rs);
+            if (completed != null) {
+                sink.accept(completed);
+            }
+        }
+        Sales last = assembler.finish();
+        if (last != null) {
+            sink.accept(last);
+        }
+    }
+
+    /**
+     * Updates an existing sale in the database. A changed date moves the sale and its
+     * line items to the new date's month.
      *
      * @param sales the sale to update
      * @throws SQLException if a database access error occurs
      */
     public void updateSale(Sales sales) throws SQLException {
-        String sql = "UPDATE sales SET sales_date = ?, total_amount = ?, customer_name = ? WHERE sales_id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setDate(1, Date.valueOf(sales.getSalesDate()));
-            pstmt.setDouble(2, sales.getTotalAmount());
-            pstmt.setString(3, sales.getCustomerName());
-            pstmt.setString(4, sales.getSalesId());
-            pstmt.executeUpdate();
+        Date salesDate = Date.valueOf(sales.getSalesDate());
+        try (Connection connection = connectionProvider.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement moveStmt = MOVE_SALE.prepare(connection);
+                 PreparedStatement updateStmt = UPDATE_SALE.prepare(connection)) {
+                moveStmt.setDate(1, salesDate);
+                moveStmt.setString(2, sales.getSalesId());
+                moveStmt.setDate(3, salesDate);
+                moveStmt.executeUpdate();
+                updateStmt.setDouble(1, sales.getTotalAmount());
+                updateStmt.setString(2, sales.getCustomerName());
+                updateStmt.setString(3, sales.getSalesId());
+                updateStmt.setDate(4, salesDate);
+                updateStmt.executeUpdate();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
         }
     }
 
     /**
-     * Deletes a sale from the database by its ID.
+     * Deletes a sale, together with its line items, from the database by its ID.
      *
      * @param salesId the sale ID
      * @throws SQLException if a database access error occurs
      */
     public void deleteSale(String salesId) throws SQLException {
-        String sql = "DELETE FROM sales WHERE sales_id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = DELETE_SALE.prepare(connection)) {
             pstmt.setString(1, salesId);
             pstmt.executeUpdate();
         }
@@ -0,0 +1,133 @@
+package com.pharmacy.dao;
+
+import com.pharmacy.utils.ConnectionProvider;
+
+import java.sql.*;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * DAO class for the monthly partitions of the sales and sales_items tables.
+ * <p>
+ * A sale can only be stored once its month has a partition. Creating one locks both
+ * tables against every till and report until its transaction ends, so it is done ahead of
+ * time and never while selling: {@link #ensureMonthsAhead} runs at startup and then daily.
+ * <p>
+ * Months that are no longer needed day to day can be detached with {@link #archiveBefore}.
+ * Their rows move to the {@code sales_archive} schema, where they can still be queried,
+ * and the application's reads stop seeing them.
+ */
+public class SalesPartitionDAO {
+
+    // The functions create and detach partitions, so only the catalogue read is a query
+    private static final StatementRegistry.Sql ENSURE = StatementRegistry.register(
+            "salesPartition.ensure", "SELECT ensure_sales_partition(?)");
+    private static final StatementRegistry.Sql ARCHIVE = StatementRegistry.register(
+            "salesPartition.archive", "SELECT archive_sales_partition(?)");
+    private static final StatementRegistry.Sql ATTACHED = StatementRegistry.registerQuery(
+            "salesPartition.attached", "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                    "WHERE i.inhparent = 'sales'::regclass");
+
+    private final ConnectionProvider connectionProvider;
+
+    /**
+     * Initializes a new SalesPartitionDAO with the given connection provider.
+     *
+     * @param connectionProvider the source of database connections
+     */
+    public SalesPartitionDAO(ConnectionProvider connectionProvider) {
+        this.connectionProvider = connectionProvider;
+    }
+
+    /**
+     * Creates the partitions for a month and the months after it, where they are missing.
+     * Each month is created in its own short transaction.
+     *
+     * @param first  the first month to create
+     * @param months how many months to create, at least one
+     * @return the months that were created
+     * @throws SQLException if a database access error occurs
+     */
+    public List<YearMonth> ensureMonthsAhead(YearMonth first, int months) throws SQLException {
+        if (months < 1) throw new IllegalArgumentException("At least one month must be created.");
+        List<YearMonth> created = new ArrayList<>();
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = ENSURE.prepare(connection)) {
+            for (int i = 0; i < months; i++) {
+                YearMonth month = first.plusMonths(i);
+                pstmt.setDate(1, Date.valueOf(month.atDay(1)));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next() && rs.getBoolean(1)) {
+                        created.add(month);
+                    }
+                }
+            }
+        }
+        return created;
+    }
+
+    /**
+     * Detaches every month before the given one and moves it to the archive schema.
+     *
+     * @param keepFrom the oldest month to keep attached
+     * @return the months archived, oldest first
+     * @throws SQLException if a database access error occurs; months archived before the
+     *                      failure stay archived
+     */
+    public List<YearMonth> archiveBefore(YearMonth keepFrom) throws SQLException {
+        List<YearMonth> archived = new ArrayList<>();
+        try (Connection connection = connectionProvider.getConnection()) {
+            for (YearMonth month : attachedMonths(connection)) {
+                if (!month.isBefore(keepFrom)) {
+                    break;
+                }
+                // One transaction per month, so the lock on the tables is held only briefly
+                try (PreparedStatement pstmt = ARCHIVE.prepare(connection)) {
+                    pstmt.setDate(1, Date.valueOf(month.atDay(1)));
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        if (rs.next() && rs.getBoolean(1)) {
+                            archived.add(month);
+                        }
+                    }
+                }
+            }
+        }
+        return archived;
+    }
+
+    /**
+     * Retrieves the months that currently have a partition attached.
+     *
+     * @return the months, oldest first
+     * @throws SQLException if a database access error occurs
+     */
+    public List<YearMonth> getAttachedMonths() throws SQLException {
+        try (Connection connection = connectionProvider.getConnection()) {
+            return new ArrayList<>(attachedMonths(connection));
+        }
+    }
+
+    private static TreeSet<YearMonth> attachedMonths(Connection connection) throws SQLException {
+        TreeSet<YearMonth> months = new TreeSet<>();
+        try (PreparedStatement pstmt = ATTACHED.prepare(connection);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                YearMonth month = monthOf(rs.getString(1));
+                if (month != null) {
+                    months.add(month);
+                }
+            }
+        }
+        return months;
+    }
+
+    /** Reads the month back out of a partition name such as {@code sales_2024_03}. */
+    static YearMonth monthOf(String partition) {
+        if (!partition.matches("sales_\\d{4}_\\d{2}")) {
+            return null;
+        }
+        return YearMonth.of(Integer.parseInt(partition.substring(6, 10)), Integer.parseInt(partition.substring(11, 13)));
+    }
+}
@@ -0,0 +1,32 @@
+package com.pharmacy.dao;
+
+/**
+ * Direction in which a keyset-paginated query walks its sort key.
+ */
+public enum SortOrder {
+    ASCENDING("ASC", ">"),
+    DESCENDING("DESC", "<");
+
+    private final String keyword;
+    private final String comparison;
+
+    SortOrder(String keyword, String comparison) {
+        this.keyword = keyword;
+        this.comparison = comparison;
+    }
+
+    /**
+     * @return the opposite direction
+     */
+    public SortOrder reversed() {
+        return this == ASCENDING ? DESCENDING : ASCENDING;
+    }
+
+    String keyword() {
+        return keyword;
+    }
+
+    String comparison() {
+        return comparison;
+    }
+}
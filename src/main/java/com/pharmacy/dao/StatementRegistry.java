@@ -0,0 +1,279 @@
+package com.pharmacy.dao;
+
+import com.pharmacy.utils.Metrics;
+import com.pharmacy.utils.SlowQueryLog;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Central list of the DAO layer's SQL, with execution counts and latencies per statement.
+ * <p>
+ * Each statement is registered once, under a name, as a constant of the DAO that runs it,
+ * so its text is the same string on every call. That is what lets the PostgreSQL driver
+ * reuse work across calls: it keeps a per-connection cache of prepared queries keyed by
+ * SQL text, and once a query has run {@code prepareThreshold} times on a connection it is
+ * kept as a named server-side statement, so later calls skip parsing and planning. Pooled
+ * connections are reused, so those plans outlive any single borrow. The driver settings
+ * are made in {@link com.pharmacy.utils.DatabaseUtils}.
+ * <p>
+ * Each statement's executions are also recorded on the {@link Metrics} timer
+ * {@code dao.<name>}, for percentiles alongside the rest of the application's timings.
+ * Statements whose text is built per call, such as keyset page queries, are registered
+ * with {@link #registerDynamic} and timed under one name whatever their text.
+ * <p>
+ * Statements registered with {@link #registerQuery} are declared free of side effects, and
+ * only those may be run a second time by {@link SlowQueryLog} to analyze a slow execution.
+ */
+public final class StatementRegistry {
+
+    private static final Map<String, Sql> STATEMENTS = new ConcurrentHashMap<>();
+
+    private StatementRegistry() {
+    }
+
+    /**
+     * Registers a statement.
+     *
+     * @param name a unique name, such as {@code drug.byId}
+     * @param sql  the SQL text
+     * @return the registered statement
+     * @throws IllegalStateException if another statement already has the name
+     */
+    static Sql register(String name, String sql) {
+        return register(name, sql, false);
+    }
+
+    /**
+     * Registers a statement that only reads, and calls no function with side effects, so
+     * that running it again changes nothing.
+     *
+     * @param name a unique name, such as {@code drug.byId}
+     * @param sql  the SQL text
+     * @return the registered statement
+     * @throws IllegalStateException if another statement already has the name
+     */
+    static Sql registerQuery(String name, String sql) {
+        SlowQueryLog.declareReadOnly(sql);
+        return register(name, sql, true);
+    }
+
+    /**
+     * Registers a statement whose SQL text is built on each call. The text is given to
+     * {@link Sql#prepareText}; its executions are counted and timed under the name. Such
+     * statements are not declared read-only, so slow ones are never run a second time.
+     *
+     * @param name a unique name, such as {@code drug.page}
+     * @return the registered statement
+     * @throws IllegalStateException if another statement already has the name
+     */
+    static Sql registerDynamic(String name) {
+        return register(name, null, false);
+    }
+
+    private static Sql register(String name, String sql, boolean readOnly) {
+        Sql statement = new Sql(name, sql, readOnly);
+        Sql existing = STATEMENTS.putIfAbsent(name, statement);
+        if (existing != null && (!Objects.equals(existing.sql, sql) || existing.readOnly != readOnly)) {
+            throw new IllegalStateException("Statement " + name + " is already registered with different SQL.");
+        }
+        return existing != null ? existing : statement;
+    }
+
+    /**
+     * Returns every registered statement's counters, most time spent first.
+     *
+     * @return a snapshot of the counters
+     */
+    public static List<StatementStats> getStats() {
+        List<StatementStats> stats = new ArrayList<>(STATEMENTS.size());
+        for (Sql statement : STATEMENTS.values()) {
+            stats.add(statement.getStats());
+        }
+        stats.sort(Comparator.comparingLong(StatementStats::getTotalNanos).reversed());
+        return stats;
+    }
+
+    /**
+     * A registered SQL statement.
+     */
+    public static final class Sql {
+        private final String name;
+        private final String sql;
+        private final boolean readOnly;
+        private final LongAdder executionCount = new LongAdder();
+        private final LongAdder failureCount = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+        private final Metrics.Timer latency;
+
+        private Sql(String name, String sql, boolean readOnly) {
+            this.name = name;
+            this.sql = sql;
+            this.readOnly = readOnly;
+            this.latency = Metrics.timer("dao." + name);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /** @return the SQL text, or null if it is built on each call */
+        public String getSql() {
+            return sql;
+        }
+
+        /** @return whether the statement was registered as free of side effects */
+        public boolean isReadOnly() {
+            return readOnly;
+        }
+
+        /**
+         * Prepares the statement on a connection. Its executions are timed.
+         *
+         * @param connection the connection
+         * @return the prepared statement, to be closed by the caller
+         * @throws SQLException if the statement cannot be prepared
+         */
+        PreparedStatement prepare(Connection connection) throws SQLException {
+            return timed(connection.prepareStatement(fixedSql()));
+        }
+
+        /**
+         * Prepares the statement on a connection, returning the given generated columns.
+         *
+         * @param connection    the connection
+         * @param returnColumns the columns to read from {@link PreparedStatement#getGeneratedKeys}
+         * @return the prepared statement, to be closed by the caller
+         * @throws SQLException if the statement cannot be prepared
+         */
+        PreparedStatement prepare(Connection connection, String... returnColumns) throws SQLException {
+            return timed(connection.prepareStatement(fixedSql(), returnColumns));
+        }
+
+        /**
+         * Prepares this call's text of a statement registered with {@link #registerDynamic}.
+         * Its executions are timed.
+         *
+         * @param connection the connection
+         * @param text       the SQL text built for this call
+         * @return the prepared statement, to be closed by the caller
+         * @throws SQLException if the statement cannot be prepared
+         */
+        PreparedStatement prepareText(Connection connection, String text) throws SQLException {
+            if (sql != null) throw new IllegalStateException("Statement " + name + " has fixed SQL.");
+            return timed(connection.prepareStatement(text));
+        }
+
+        private String fixedSql() {
+            if (sql == null) throw new IllegalStateException("Statement " + name + " has no fixed SQL.");
+            return sql;
+        }
+
+        StatementStats getStats() {
+            return new StatementStats(name, sql, executionCount.sum(), failureCount.sum(), totalNanos.sum(), maxNanos.get());
+        }
+
+        private PreparedStatement timed(PreparedStatement pstmt) {
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    new Timer(pstmt));
+        }
+
+        /**
+         * Times the execute calls of one prepared statement.
+         */
+        private final class Timer implements InvocationHandler {
+            private final PreparedStatement target;
+
+            Timer(PreparedStatement target) {
+                this.target = target;
+            }
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (!method.getName().startsWith("execute")) {
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+                long start = System.nanoTime();
+                try {
+                    return method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    failureCount.increment();
+                    throw e.getCause();
+                } finally {
+                    long elapsed = System.nanoTime() - start;
+                    executionCount.increment();
+                    totalNanos.add(elapsed);
+                    maxNanos.accumulate(elapsed);
+                    latency.record(elapsed);
+                }
+            }
+        }
+    }
+
+    /**
+     * A statement's counters at one point in time.
+     */
+    public static final class StatementStats {
+        private final String name;
+        private final String sql;
+        private final long executionCount;
+        private final long failureCount;
+        private final long totalNanos;
+        private final long maxNanos;
+
+        StatementStats(String name, String sql, long executionCount, long failureCount, long totalNanos, long maxNanos) {
+            this.name = name;
+            this.sql = sql;
+            this.executionCount = executionCount;
+            this.failureCount = failureCount;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public String getName() { return name; }
+
+        /** @return the SQL text, or null if it is built on each call */
+        public String getSql() { return sql; }
+
+        public long getExecutionCount() { return executionCount; }
+
+        /** @return executions that threw */
+        public long getFailureCount() { return failureCount; }
+
+        public long getTotalNanos() { return totalNanos; }
+
+        public double getAverageMillis() {
+            return executionCount == 0 ? 0.0 : totalNanos / (double) executionCount / 1_000_000.0;
+        }
+
+        public double getMaxMillis() {
+            return maxNanos / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s[executions=%d, failures=%d, avgMs=%.3f, maxMs=%.3f]",
+                    name, executionCount, failureCount, getAverageMillis(), getMaxMillis());
+        }
+    }
+}
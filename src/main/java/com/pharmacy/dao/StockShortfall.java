@@ -0,0 +1,33 @@
+package com.pharmacy.dao;
+
+/**
+ * A basket line that could not be reserved because too little stock was left.
+ */
+public class StockShortfall {
+    private final String drugId;
+    private final int requested;
+    private final int available;
+
+    StockShortfall(String drugId, int requested, int available) {
+        this.drugId = drugId;
+        this.requested = requested;
+        this.available = available;
+    }
+
+    /** @return the drug that ran short */
+    public String getDrugId() { return drugId; }
+
+    /** @return the quantity the basket asked for */
+    public int getRequested() { return requested; }
+
+    /** @return the stock left when the reservation was attempted, or 0 if the drug no longer exists */
+    public int getAvailable() { return available; }
+
+    /** @return how many units are missing */
+    public int getMissing() { return requested - available; }
+
+    @Override
+    public String toString() {
+        return drugId + ": requested " + requested + ", available " + available;
+    }
+}
@@ -1,39 +1,59 @@
 package com.pharmacy.dao;
 
 import com.pharmacy.entities.Supplier;
+import com.pharmacy.utils.ConnectionProvider;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 public class SupplierDAO {
 
-    private Connection connection;
+    /** The columns every supplier query selects, read by position. */
+    static final Projection<Supplier> COLUMNS = new Projection<>((rs, first) -> new Supplier(
+            rs.getString(first),
+            rs.getString(first + 1),
+            rs.getString(first + 2),
+            rs.getString(first + 3)
+    ), "id", "name", "contact", "location");
 
-    public SupplierDAO(Connection connection) {
-        this.connection = connection;
+    private static final StatementRegistry.Sql INSERT_SUPPLIER = StatementRegistry.register(
+            "supplier.insert", "INSERT INTO suppliers (id, name, contact, location) VALUES (?, ?, ?, ?)");
+    private static final StatementRegistry.Sql SUPPLIER_BY_ID = StatementRegistry.registerQuery(
+            "supplier.byId", "SELECT " + COLUMNS.list() + " FROM suppliers WHERE id = ?");
+    private static final StatementRegistry.Sql ALL_SUPPLIERS = StatementRegistry.registerQuery(
+            "supplier.all", "SELECT " + COLUMNS.list() + " FROM suppliers");
+    private static final StatementRegistry.Sql UPDATE_SUPPLIER = StatementRegistry.register(
+            "supplier.update", "UPDATE suppliers SET name = ?, contact = ?, location = ? WHERE id = ?");
+    private static final StatementRegistry.Sql DELETE_SUPPLIER = StatementRegistry.register(
+            "supplier.delete", "DELETE FROM suppliers WHERE id = ?");
+    private static final StatementRegistry.Sql STREAM_ALL = StatementRegistry.registerQuery(
+            "supplier.streamAll", "SELECT " + COLUMNS.list() + " FROM suppliers");
+
+    private final ConnectionProvider connectionProvider;
+
+    public SupplierDAO(ConnectionProvider connectionProvider) {
+        this.connectionProvider = connectionProvider;
     }
 
     public void addSupplier(Supplier supplier) throws SQLException {
-        String sql = "INSERT INTO suppliers (id, name, location) VALUES (?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = INSERT_SUPPLIER.prepare(connection)) {
+            pstmt.setString(1, supplier.getSupplierId());
             pstmt.setString(2, supplier.getSupplierName());
-            pstmt.setString(3, supplier.getLocation());
-            pstmt.setString(1, supplier.getContactInfo());
+            pstmt.setString(3, supplier.getContactInfo());
+            pstmt.setString(4, supplier.getLocation());
             pstmt.executeUpdate();
         }
     }
 
-    public Supplier getSupplierById(int id) throws SQLException {
-        String sql = "SELECT * FROM suppliers WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setInt(1, id);
+    public Supplier getSupplierById(String id) throws SQLException {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = SUPPLIER_BY_ID.prepare(connection)) {
+            pstmt.setString(1, id);
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
-                    return new Supplier(
-                            rs.getString("name"),
-                            rs.getString("location"),
-                            rs.getString("contact")
-                    );
+                    return COLUMNS.map(rs, 1);
                 }
             }
         }
@@ -42,34 +62,36 @@ public class SupplierDAO {
 
     public List<Supplier> getAllSuppliers() throws SQLException {
         List<Supplier> suppliers = new ArrayList<>();
-        String sql = "SELECT * FROM suppliers";
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = ALL_SUPPLIERS.prepare(connection);
+             ResultSet rs = pstmt.executeQuery()) {
             while (rs.next()) {
-                suppliers.add(new Supplier(
-                        rs.getString("name"),
-                        rs.getString("location"),
-                        rs.getString("contact")
-                ));
+                suppliers.add(COLUMNS.map(rs, 1));
             }
         }
         return suppliers;
     }
 
+    public Stream<Supplier> streamAllSuppliers() throws SQLException {
+        return CursorStreams.stream(connectionProvider, STREAM_ALL,
+                CursorStreams.NO_PARAMETERS, COLUMNS.mapper());
+    }
+
     public void updateSupplier(Supplier supplier) throws SQLException {
-        String sql = "UPDATE suppliers SET name = ?, location = ? WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = UPDATE_SUPPLIER.prepare(connection)) {
             pstmt.setString(1, supplier.getSupplierName());
-            pstmt.setString(2, supplier.getLocation());
-            pstmt.setString(3, supplier.getContactInfo());
+            pstmt.setString(2, supplier.getContactInfo());
+            pstmt.setString(3, supplier.getLocation());
+            pstmt.setString(4, supplier.getSupplierId());
             pstmt.executeUpdate();
         }
     }
 
-    public void deleteSupplier(int id) throws SQLException {
-        String sql = "DELETE FROM suppliers WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setInt(1, id);
+    public void deleteSupplier(String id) throws SQLException {
+        try (Connection connection = connectionProvider.getConnection();
+             PreparedStatement pstmt = DELETE_SUPPLIER.prepare(connection)) {
+            pstmt.setString(1, id);
             pstmt.executeUpdate();
         }
     }
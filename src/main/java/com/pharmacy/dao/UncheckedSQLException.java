@@ -0,0 +1,25 @@
+package com.pharmacy.dao;
+
+import java.sql.SQLException;
+
+/**
+ * Carries a {@link SQLException} out of code that cannot throw checked exceptions,
+ * such as the element source of a {@link java.util.stream.Stream}.
+ */
+public class UncheckedSQLException extends RuntimeException {
+
+    /**
+     * Wraps a SQLException.
+     *
+     * @param message the detail message
+     * @param cause   the database error
+     */
+    public UncheckedSQLException(String message, SQLException cause) {
+        super(message, cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
@@ -18,7 +18,7 @@ public class Drug {
     /**
      * Constructs a new Drug instance with the specified attributes.
      *
-     * @param drugId
+     * @param drugId        The unique ID of the drug, or null/empty to generate one.
      * @param drugName      The name of the drug.
      * @param drugQuantity  The quantity of the drug available for sale.
      * @param stockQuantity The quantity of the drug in stock.
@@ -37,7 +37,8 @@ public class Drug {
         if (price < 0) {
             throw new IllegalArgumentException("Price cannot be negative.");
         }
-        this.drugId = generateDrugCode(); // Generate unique ID using UUID
+        // Keep the caller's ID so drugs loaded from the database retain their identity
+        this.drugId = (drugId == null || drugId.isEmpty()) ? generateDrugCode() : drugId;
         this.drugName = drugName;
         this.drugQuantity = drugQuantity;
         this.stockQuantity = stockQuantity;
@@ -114,6 +115,19 @@ public class Drug {
     public void removeSupplier(String supplierId) {
         suppliers.remove(supplierId);
     }
+
+    // Drugs are identified by their ID alone, so an edited copy still matches the original
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Drug)) return false;
+        return drugId.equals(((Drug) o).drugId);
+    }
+
+    @Override
+    public int hashCode() {
+        return drugId.hashCode();
+    }
 }
 
 
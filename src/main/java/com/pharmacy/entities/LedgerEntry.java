@@ -0,0 +1,140 @@
+package com.pharmacy.entities;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents one stock movement in the inventory ledger.
+ * <p>
+ * Entries are never changed once recorded. A mistake is corrected by recording another
+ * entry, so the ledger always explains how the current stock came about.
+ */
+public class LedgerEntry {
+
+    /**
+     * The kind of stock movement.
+     */
+    public enum Type {
+        /** Stock received from a supplier. A negative quantity corrects an earlier receipt. */
+        RECEIPT,
+        /** Stock sold to a customer. The quantity is negative. */
+        SALE,
+        /** A manual correction, such as a stock count, breakage or expiry. */
+        ADJUSTMENT
+    }
+
+    private final long entryId;
+    private final String drugId;
+    private final Type type;
+    private final int quantity;
+    private final String reference;
+    private final LocalDateTime recordedAt;
+
+    /**
+     * Constructs a new LedgerEntry that has not yet been recorded.
+     *
+     * @param drugId    The ID of the drug that moved.
+     * @param type      The kind of movement.
+     * @param quantity  The change in stock on hand; positive for stock in, negative for stock out.
+     * @param reference The sale, purchase or reason behind the movement, or null.
+     */
+    public LedgerEntry(String drugId, Type type, int quantity, String reference) {
+        this(0L, drugId, type, quantity, reference, null);
+    }
+
+    /**
+     * Constructs a LedgerEntry as read back from the ledger.
+     *
+     * @param entryId    The ledger sequence number.
+     * @param drugId     The ID of the drug that moved.
+     * @param type       The kind of movement.
+     * @param quantity   The change in stock on hand.
+     * @param reference  The sale, purchase or reason behind the movement, or null.
+     * @param recordedAt When the movement was recorded.
+     */
+    public LedgerEntry(long entryId, String drugId, Type type, int quantity, String reference, LocalDateTime recordedAt) {
+        if (drugId == null || drugId.isEmpty()) {
+            throw new IllegalArgumentException("Drug ID cannot be null or empty.");
+        }
+        if (type == null) {
+            throw new IllegalArgumentException("Entry type cannot be null.");
+        }
+        if (quantity == 0) {
+            throw new IllegalArgumentException("Quantity cannot be zero.");
+        }
+        if (type == Type.SALE && quantity > 0) {
+            throw new IllegalArgumentException("A sale must reduce stock.");
+        }
+        this.entryId = entryId;
+        this.drugId = drugId;
+        this.type = type;
+        this.quantity = quantity;
+        this.reference = reference;
+        this.recordedAt = recordedAt;
+    }
+
+    /**
+     * Retrieves the ledger sequence number.
+     *
+     * @return The entry ID, or 0 if the entry has not been recorded.
+     */
+    public long getEntryId() {
+        return entryId;
+    }
+
+    /**
+     * Retrieves the ID of the drug that moved.
+     *
+     * @return The drug ID.
+     */
+    public String getDrugId() {
+        return drugId;
+    }
+
+    /**
+     * Retrieves the kind of movement.
+     *
+     * @return The entry type.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Retrieves the change in stock on hand.
+     *
+     * @return The signed quantity.
+     */
+    public int getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Retrieves the sale, purchase or reason behind the movement.
+     *
+     * @return The reference, or null.
+     */
+    public String getReference() {
+        return reference;
+    }
+
+    /**
+     * Retrieves when the movement was recorded.
+     *
+     * @return The time recorded, or null if the entry has not been recorded.
+     */
+    public LocalDateTime getRecordedAt() {
+        return recordedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "LedgerEntry{" +
+                "entryId=" + entryId +
+                ", drugId='" + drugId + '\'' +
+                ", type=" + type +
+                ", quantity=" + quantity +
+                ", reference='" + reference + '\'' +
+                ", recordedAt=" + recordedAt +
+                '}';
+    }
+}
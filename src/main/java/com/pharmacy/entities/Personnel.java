@@ -1,9 +1,6 @@
 package com.pharmacy.entities;
 
-import org.bouncycastle.crypto.generators.SCrypt;
-import org.bouncycastle.util.encoders.Hex;
-
-import java.security.SecureRandom;
+import com.pharmacy.utils.CredentialEngine;
 
 public class Personnel {
     private String username;
@@ -28,17 +25,16 @@ public class Personnel {
 
     // Method to hash the password during registration or password change
     public static String hashPassword(String password) {
-        byte[] salt = new byte[16];
-        new SecureRandom().nextBytes(salt);
-        byte[] hash = SCrypt.generate(password.getBytes(), salt, 16384, 8, 1, 32);
-        return Hex.toHexString(salt) + "$" + Hex.toHexString(hash);
+        return CredentialEngine.getDefault().hash(password);
     }
 
-    // Method to verify password
+    // Method to verify password; accepts current and legacy hash formats
     public boolean verifyPassword(String password) {
-        String[] parts = hashedPassword.split("\\$");
-        byte[] salt = Hex.decode(parts[0]);
-        byte[] hash = SCrypt.generate(password.getBytes(), salt, 16384, 8, 1, 32);
-        return Hex.toHexString(hash).equals(parts[1]);
+        return CredentialEngine.getDefault().verify(password, hashedPassword);
+    }
+
+    // Whether the stored hash should be upgraded after the next successful login
+    public boolean needsRehash() {
+        return CredentialEngine.getDefault().needsRehash(hashedPassword);
     }
 }
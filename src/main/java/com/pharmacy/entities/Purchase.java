@@ -3,7 +3,6 @@ package com.pharmacy.entities;
 import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
 
 /**
  * Represents a purchase transaction in the pharmacy.
@@ -27,17 +26,12 @@ public class Purchase {
         if (purchaseDate == null) {
             throw new IllegalArgumentException("Purchase date cannot be null.");
         }
-        this.purchaseId = generatePurchaseID();
+        this.purchaseId = purchaseId;
         this.purchaseDate = purchaseDate;
         this.itemsPurchased = new HashMap<>();
         this.totalAmount = 0.0; // Initialize total amount to zero
     }
 
-    private String generatePurchaseID()
-    {
-        return UUID.randomUUID().toString();
-    }
-
     // Getters and Setters
 
     /**
@@ -0,0 +1,234 @@
+package com.pharmacy.functionalities;
+
+import com.pharmacy.dao.SalesDAO;
+import com.pharmacy.entities.Drug;
+import com.pharmacy.entities.LedgerEntry;
+import com.pharmacy.entities.Sales;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accepts sales from any number of tills and stores them in shared transactions.
+ * <p>
+ * Submitted sales wait in a bounded queue. A single writer takes them off in groups,
+ * either {@code maxBatch} sales or whatever arrived within {@code maxDelay} of the first,
+ * and stores each group in one transaction. Committing once per group instead of once per
+ * sale is what raises throughput, while {@code maxDelay} bounds the extra wait.
+ * <p>
+ * A sale that cannot be stored, for example for lack of stock, fails on its own; the rest
+ * of its group is still committed. Each caller's future completes only after the commit,
+ * so a completed sale is durable. Given a {@link StockLedger}, the stock movements of a
+ * group's sales are recorded in the same transaction. If the queue is full the sale is
+ * refused at once rather than left to wait.
+ */
+public class CheckoutService implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CheckoutService.class);
+
+    private final SalesDAO salesDAO;
+    private final StockLedger ledger;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+    private final BlockingQueue<PendingSale> queue;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    private final LongAdder committedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder batchCount = new LongAdder();
+
+    private static final class PendingSale {
+        final Sales sales;
+        final CompletableFuture<Sales> result = new CompletableFuture<>();
+
+        PendingSale(Sales sales) {
+            this.sales = sales;
+        }
+    }
+
+    /** Queued by {@link #close}; the writer stops when it reaches it. */
+    private static final PendingSale STOP = new PendingSale(null);
+
+    /**
+     * Creates a checkout service and starts its writer.
+     *
+     * @param salesDAO      stores the sales
+     * @param ledger        receives the stock movements of committed sales, or null
+     * @param maxBatch      the most sales committed together
+     * @param maxDelay      the longest a sale waits for others to join its group
+     * @param queueCapacity the most sales waiting to be written
+     */
+    public CheckoutService(SalesDAO salesDAO, StockLedger ledger, int maxBatch, Duration maxDelay, int queueCapacity) {
+        if (maxBatch <= 0) throw new IllegalArgumentException("Batch size must be positive.");
+        if (queueCapacity <= 0) throw new IllegalArgumentException("Queue capacity must be positive.");
+        this.salesDAO = salesDAO;
+        this.ledger = ledger;
+        this.maxBatch = maxBatch;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writer = new Thread(this::writeLoop, "checkout-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues a sale to be stored.
+     *
+     * @param sales the sale
+     * @return completes with the sale once it is committed, or exceptionally with the
+     *         reason it was rejected; an {@link com.pharmacy.dao.InsufficientStockException}
+     *         names the lines that were short
+     */
+    public CompletableFuture<Sales> submit(Sales sales) {
+        if (sales == null) throw new IllegalArgumentException("Sale cannot be null.");
+        PendingSale pending = new PendingSale(sales);
+        if (closed || !queue.offer(pending)) {
+            rejectedCount.increment();
+            return CompletableFuture.failedFuture(new RejectedExecutionException(
+                    closed ? "Checkout is closed." : "Checkout is busy; please try again."));
+        }
+        return pending.result;
+    }
+
+    /** @return sales committed since the service started */
+    public long getCommittedCount() {
+        return committedCount.sum();
+    }
+
+    /** @return sales refused or rolled back */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /** @return the mean number of sales per transaction */
+    public double getAverageBatchSize() {
+        long batches = batchCount.sum();
+        return batches == 0 ? 0.0 : (committedCount.sum() + rejectedCount.sum()) / (double) batches;
+    }
+
+    /** @return sales waiting to be written */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Stops accepting sales, writes the ones already queued and stops the writer.
+     * <p>
+     * The writer is told to stop by a marker queued behind the waiting sales, not by an
+     * interrupt: an interrupted thread cannot borrow a connection, so the sales still
+     * queued would be rejected instead of written.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(STOP);
+                writer.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        // A sale that slipped in while the writer was stopping
+        PendingSale late;
+        while ((late = queue.poll()) != null) {
+            rejectedCount.increment();
+            late.result.completeExceptionally(new RejectedExecutionException("Checkout is closed."));
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingSale> batch = new ArrayList<>(maxBatch);
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                PendingSale first = queue.take();
+                if (first == STOP) break;
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingSale next = remaining > 0 && !closed
+                            ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+                            : queue.poll();
+                    if (next == null) break;
+                    if (next == STOP) {
+                        stopping = true;
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Nothing here interrupts the writer; write what was gathered and carry on
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingSale> batch) {
+        batchCount.increment();
+        List<Sales> salesList = new ArrayList<>(batch.size());
+        for (PendingSale pending : batch) {
+            salesList.add(pending.sales);
+        }
+
+        List<SQLException> outcomes;
+        try {
+            outcomes = ledger == null
+                    ? salesDAO.addSalesIsolated(salesList)
+                    : ledger.recordWith(() -> salesDAO.addSalesIsolated(salesList), result -> movements(batch, result));
+        } catch (SQLException | RuntimeException e) {
+            LOGGER.warn("Could not store {} sale(s)", batch.size(), e);
+            rejectedCount.add(batch.size());
+            for (PendingSale pending : batch) {
+                pending.result.completeExceptionally(e);
+            }
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            PendingSale pending = batch.get(i);
+            SQLException failure = outcomes.get(i);
+            if (failure != null) {
+                rejectedCount.increment();
+                pending.result.completeExceptionally(failure);
+            } else {
+                committedCount.increment();
+                pending.result.complete(pending.sales);
+            }
+        }
+    }
+
+    /** The stock movements of the sales that were stored. */
+    private static List<LedgerEntry> movements(List<PendingSale> batch, List<SQLException> outcomes) {
+        List<LedgerEntry> movements = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (outcomes.get(i) != null) continue;
+            Sales sales = batch.get(i).sales;
+            for (Map.Entry<Drug, Integer> item : sales.getItemsSold().entrySet()) {
+                movements.add(new LedgerEntry(item.getKey().getDrugId(), LedgerEntry.Type.SALE,
+                        -item.getValue(), sales.getSalesId()));
+            }
+        }
+        return movements;
+    }
+}
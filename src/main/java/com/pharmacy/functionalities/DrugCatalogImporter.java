@@ -0,0 +1,211 @@
+package com.pharmacy.functionalities;
+
+import com.pharmacy.dao.DrugCatalogDAO;
+import com.pharmacy.entities.Drug;
+import com.pharmacy.utils.CsvReader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Imports a drug catalogue or supplier price list from a CSV file.
+ * <p>
+ * The first line names the columns: {@code drug_name}, {@code quantity} and {@code price}
+ * are required, {@code drug_id} and {@code stock_quantity} are optional, and columns may
+ * come in any order. Rows are read one at a time, checked against the same rules as
+ * {@link Drug} and against what the drugs table can hold, and streamed to the database as
+ * they are read, so memory use does not grow with the file. Rows that fail the checks are left out and reported with their line
+ * numbers; the rest are merged in one transaction by {@link DrugCatalogDAO}.
+ */
+public class DrugCatalogImporter {
+
+    /** Lines read between progress reports. */
+    private static final int PROGRESS_INTERVAL = 10_000;
+
+    /** Rejected rows described in the report; further rejections are only counted. */
+    private static final int MAX_REPORTED_ERRORS = 1_000;
+
+    /** The largest price {@code drugs.price NUMERIC(12, 2)} holds. */
+    private static final BigDecimal MAX_PRICE = new BigDecimal("9999999999.99");
+
+    private final DrugCatalogDAO catalogDAO;
+
+    /**
+     * Told how far an import has got. Called on the importing thread.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * @param rowsRead     data rows read so far
+         * @param rowsRejected rows among them that failed the checks
+         */
+        void onProgress(long rowsRead, long rowsRejected);
+    }
+
+    /**
+     * Initializes a new DrugCatalogImporter.
+     *
+     * @param catalogDAO merges the rows into the drug table
+     */
+    public DrugCatalogImporter(DrugCatalogDAO catalogDAO) {
+        this.catalogDAO = catalogDAO;
+    }
+
+    /**
+     * Imports a UTF-8 CSV file.
+     *
+     * @param file     the file
+     * @param listener told of progress, or null
+     * @return what was imported and what was rejected
+     * @throws IllegalArgumentException if the header lacks a required column
+     * @throws IOException if the file cannot be read
+     * @throws SQLException if the rows cannot be stored; nothing is imported in that case
+     */
+    public ImportReport importCsv(Path file, ProgressListener listener) throws IOException, SQLException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importCsv(reader, listener);
+        }
+    }
+
+    /**
+     * Imports CSV text.
+     *
+     * @param reader   the CSV text
+     * @param listener told of progress, or null
+     * @return what was imported and what was rejected
+     * @throws IllegalArgumentException if the header lacks a required column
+     * @throws IOException if the text cannot be read
+     * @throws SQLException if the rows cannot be stored; nothing is imported in that case
+     */
+    public ImportReport importCsv(Reader reader, ProgressListener listener) throws IOException, SQLException {
+        CsvReader csv = new CsvReader(reader);
+        List<String> header = csv.next();
+        if (header == null) {
+            return new ImportReport(0, 0, 0, 0, List.of());
+        }
+        Columns columns = new Columns(header);
+        List<ImportReport.RowError> errors = new ArrayList<>();
+        long[] counts = new long[2]; // rows read, rows rejected
+
+        DrugCatalogDAO.MergeResult result = catalogDAO.upsert(out -> {
+            List<String> fields;
+            while ((fields = csv.next()) != null) {
+                counts[0]++;
+                long line = csv.getLineNumber();
+                try {
+                    String drugId = columns.optional(fields, columns.drugId);
+                    String name = columns.required(fields, columns.drugName, "drug_name");
+                    int quantity = parseInt(columns.required(fields, columns.quantity, "quantity"), "quantity");
+                    String stockText = columns.optional(fields, columns.stockQuantity);
+                    int stock = stockText == null ? 0 : parseInt(stockText, "stock_quantity");
+                    double price = parsePrice(columns.required(fields, columns.price, "price"));
+                    // Applies the same checks as entering the drug by hand
+                    new Drug(drugId, name, quantity, stock, price);
+                    // A value the table cannot hold would fail the whole merge, not just this row
+                    checkFitsTable(drugId, name, price);
+                    out.write(line, drugId, name, quantity, stock, price);
+                } catch (IllegalArgumentException e) {
+                    counts[1]++;
+                    if (errors.size() < MAX_REPORTED_ERRORS) {
+                        errors.add(new ImportReport.RowError(line, e.getMessage()));
+                    }
+                }
+                if (listener != null && counts[0] % PROGRESS_INTERVAL == 0) {
+                    listener.onProgress(counts[0], counts[1]);
+                }
+            }
+        });
+        if (listener != null) {
+            listener.onProgress(counts[0], counts[1]);
+        }
+        return new ImportReport(counts[0], result.getInsertedCount(), result.getUpdatedCount(), counts[1], errors);
+    }
+
+    private static int parseInt(String text, String column) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + column + ": '" + text + "'.");
+        }
+    }
+
+    private static double parsePrice(String text) {
+        double price;
+        try {
+            price = Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid price: '" + text + "'.");
+        }
+        if (!Double.isFinite(price)) {
+            throw new IllegalArgumentException("Invalid price: '" + text + "'.");
+        }
+        return price;
+    }
+
+    private static void checkFitsTable(String drugId, String name, double price) {
+        // PostgreSQL rounds half away from zero when storing into a NUMERIC column
+        if (BigDecimal.valueOf(price).setScale(2, RoundingMode.HALF_UP).compareTo(MAX_PRICE) > 0) {
+            throw new IllegalArgumentException("Price " + price + " is larger than " + MAX_PRICE.toPlainString() + ".");
+        }
+        if (drugId != null && drugId.indexOf('\0') >= 0) {
+            throw new IllegalArgumentException("The drug_id contains a NUL character.");
+        }
+        if (name.indexOf('\0') >= 0) {
+            throw new IllegalArgumentException("The drug_name contains a NUL character.");
+        }
+    }
+
+    /**
+     * Positions of the known columns in the header, or -1 if absent.
+     */
+    private static final class Columns {
+        final int drugId;
+        final int drugName;
+        final int quantity;
+        final int stockQuantity;
+        final int price;
+
+        Columns(List<String> header) {
+            Map<String, Integer> positions = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                positions.putIfAbsent(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+            }
+            drugId = positions.getOrDefault("drug_id", -1);
+            drugName = positions.getOrDefault("drug_name", -1);
+            quantity = positions.getOrDefault("quantity", -1);
+            stockQuantity = positions.getOrDefault("stock_quantity", -1);
+            price = positions.getOrDefault("price", -1);
+            List<String> missing = new ArrayList<>();
+            if (drugName < 0) missing.add("drug_name");
+            if (quantity < 0) missing.add("quantity");
+            if (price < 0) missing.add("price");
+            if (!missing.isEmpty()) {
+                throw new IllegalArgumentException("The file has no " + String.join(", ", missing) + " column.");
+            }
+        }
+
+        /** @return the trimmed value, or null if the column is absent or the value blank */
+        String optional(List<String> fields, int position) {
+            if (position < 0 || position >= fields.size()) return null;
+            String value = fields.get(position).trim();
+            return value.isEmpty() ? null : value;
+        }
+
+        String required(List<String> fields, int position, String column) {
+            String value = optional(fields, position);
+            if (value == null) throw new IllegalArgumentException("Missing " + column + ".");
+            return value;
+        }
+    }
+}
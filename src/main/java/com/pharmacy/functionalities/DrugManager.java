@@ -3,22 +3,32 @@ package com.pharmacy.functionalities;
 import com.pharmacy.entities.Drug;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Manages drug-related operations.
+ * <p>
+ * Drugs are indexed by ID and by case-folded name, so lookups take constant time however
+ * many drugs are held, and by a {@link DrugSearchIndex} for partial-name search. All
+ * operations are safe to call from several threads; changes to one drug are serialised on
+ * its ID so the indexes always agree.
  */
 public class DrugManager {
-    private List<Drug> drugs;
+    private final ConcurrentHashMap<String, IndexedDrug> drugsById;
+    private final ConcurrentHashMap<String, Set<String>> drugIdsByName;
+    private final DrugSearchIndex searchIndex;
 
     /**
      * Initializes a new DrugManager.
      */
     public DrugManager() {
-        this.drugs = new ArrayList<>();
+        this.drugsById = new ConcurrentHashMap<>();
+        this.drugIdsByName = new ConcurrentHashMap<>();
+        this.searchIndex = new DrugSearchIndex();
     }
 
     /**
@@ -29,8 +39,10 @@ public class DrugManager {
      */
     public void addDrug(Drug drug) {
         if (drug == null) throw new IllegalArgumentException("Drug cannot be null.");
-        if (containsDrug(drug)) throw new IllegalArgumentException("Drug already exists.");
-        this.drugs.add(drug);
+        drugsById.compute(drug.getDrugId(), (id, existing) -> {
+            if (existing != null) throw new IllegalArgumentException("Drug already exists.");
+            return index(drug);
+        });
     }
 
     /**
@@ -41,20 +53,37 @@ public class DrugManager {
      */
     public void updateDrug(Drug drug) {
         if (drug == null) throw new IllegalArgumentException("Drug cannot be null.");
-        int index = this.drugs.indexOf(drug);
-        if (index == -1) throw new IllegalArgumentException("Drug does not exist.");
-        this.drugs.set(index, drug);
+        drugsById.compute(drug.getDrugId(), (id, existing) -> {
+            if (existing == null) throw new IllegalArgumentException("Drug does not exist.");
+            unindex(existing);
+            return index(drug);
+        });
     }
 
     /**
      * Removes an existing drug.
      *
-     * @param drug the drug to remove
-     * @throws IllegalArgumentException if the drug is null
+     * @param drugId the ID of the drug to remove
+     * @throws IllegalArgumentException if the drug ID is null
      */
-    public void removeDrug(String drug) {
-        if (drug == null) throw new IllegalArgumentException("Drug cannot be null.");
-        this.drugs.remove(drug);
+    public void removeDrug(String drugId) {
+        if (drugId == null) throw new IllegalArgumentException("Drug cannot be null.");
+        drugsById.computeIfPresent(drugId, (id, existing) -> {
+            unindex(existing);
+            return null;
+        });
+    }
+
+    /**
+     * Looks up a drug by ID.
+     *
+     * @param drugId the drug ID
+     * @return an Optional containing the drug, or empty if not found
+     */
+    public Optional<Drug> getDrugById(String drugId) {
+        if (drugId == null) return Optional.empty();
+        IndexedDrug entry = drugsById.get(drugId);
+        return entry == null ? Optional.empty() : Optional.of(entry.drug);
     }
 
     /**
@@ -68,22 +97,36 @@ public class DrugManager {
         if (drugName == null || drugName.isEmpty()) {
             throw new IllegalArgumentException("Drug name cannot be null or empty.");
         }
-        return drugs.stream()
-                .filter(drug -> drug.getDrugName().equalsIgnoreCase(drugName))
-                .findFirst();
+        Set<String> ids = drugIdsByName.get(fold(drugName));
+        if (ids == null) {
+            return Optional.empty();
+        }
+        for (String id : ids) {
+            IndexedDrug entry = drugsById.get(id);
+            if (entry != null) {
+                return Optional.of(entry.drug);
+            }
+        }
+        return Optional.empty();
     }
 
-
-
-
     /**
-     * Checks if the drug already exists.
+     * Finds drugs by partial name, as typed into a search box. Prefix and substring
+     * matches rank above typo-tolerant ones.
      *
-     * @param drug the drug to check
-     * @return true if the drug exists, false otherwise
+     * @param query the text typed so far
+     * @param limit the maximum number of drugs to return
+     * @return the best matching drugs, best first
      */
-    private boolean containsDrug(Drug drug) {
-        return this.drugs.contains(drug);
+    public List<Drug> searchDrugs(String query, int limit) {
+        List<Drug> drugs = new ArrayList<>(Math.max(0, limit));
+        for (DrugSearchIndex.Match match : searchIndex.search(query, limit)) {
+            IndexedDrug entry = drugsById.get(match.getDrugId());
+            if (entry != null) {
+                drugs.add(entry.drug);
+            }
+        }
+        return drugs;
     }
 
     /**
@@ -92,6 +135,58 @@ public class DrugManager {
      * @return a list of all drugs
      */
     public List<Drug> getAllDrugs() {
-        return new ArrayList<>(this.drugs);
+        List<Drug> drugs = new ArrayList<>(drugsById.size());
+        for (IndexedDrug entry : drugsById.values()) {
+            drugs.add(entry.drug);
+        }
+        return drugs;
+    }
+
+    /**
+     * Returns the number of drugs held.
+     *
+     * @return the drug count
+     */
+    public int size() {
+        return drugsById.size();
+    }
+
+    // Called with the drug's ID locked in drugsById
+    private IndexedDrug index(Drug drug) {
+        IndexedDrug entry = new IndexedDrug(drug, fold(drug.getDrugName()));
+        drugIdsByName.compute(entry.foldedName, (name, ids) -> {
+            if (ids == null) ids = ConcurrentHashMap.newKeySet();
+            ids.add(drug.getDrugId());
+            return ids;
+        });
+        searchIndex.put(drug.getDrugId(), drug.getDrugName());
+        return entry;
+    }
+
+    // Called with the drug's ID locked in drugsById
+    private void unindex(IndexedDrug entry) {
+        drugIdsByName.computeIfPresent(entry.foldedName, (name, ids) -> {
+            ids.remove(entry.drug.getDrugId());
+            return ids.isEmpty() ? null : ids;
+        });
+        searchIndex.remove(entry.drug.getDrugId());
+    }
+
+    private static String fold(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * A drug together with the name it was indexed under, which may differ from its
+     * current name if the caller renamed the instance in place before updating it.
+     */
+    private static final class IndexedDrug {
+        final Drug drug;
+        final String foldedName;
+
+        IndexedDrug(Drug drug, String foldedName) {
+            this.drug = drug;
+            this.foldedName = foldedName;
+        }
     }
 }
@@ -0,0 +1,350 @@
+package com.pharmacy.functionalities;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In-memory search over drug names for the counter search box.
+ * <p>
+ * Three structures are kept in step on every add, update and remove, which run one at a
+ * time:
+ * <ul>
+ *     <li>a sorted map of every word start in every name, for prefix matches,</li>
+ *     <li>a trigram index, for substring matches anywhere in a name,</li>
+ *     <li>the folded name of each drug, to verify candidates.</li>
+ * </ul>
+ * A query first collects prefix and substring hits. Only if that yields fewer than the
+ * requested number of results does it fall back to typo-tolerant matching, which scores
+ * trigram-sharing candidates by their edit distance to the nearest prefix of the name.
+ * Postings are verified against the current name, so a reader racing a writer may miss a
+ * drug that is being renamed but never returns a wrong one.
+ */
+public class DrugSearchIndex {
+
+    private static final int GRAM = 3;
+
+    /** Word-start keys scanned per requested result before the prefix scan stops. */
+    private static final int PREFIX_SCAN_FACTOR = 16;
+
+    /** Candidates with the most shared trigrams that are checked for typos. */
+    private static final int FUZZY_CANDIDATES = 256;
+
+    // Rank buckets, best first
+    private static final int EXACT = 0;
+    private static final int NAME_PREFIX = 1;
+    private static final int WORD_PREFIX = 2;
+    private static final int SUBSTRING = 3;
+    private static final int FUZZY = 4;
+
+    private final ConcurrentHashMap<String, String> namesById = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, Set<String>> idsByWordStart = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, Set<String>> idsByTrigram = new ConcurrentHashMap<>();
+
+    // Writers take turns, so a drug's postings match its name and an emptied set is never
+    // dropped while another drug is being added to it; readers take no lock
+    private final Object writeLock = new Object();
+
+    /**
+     * A ranked search result.
+     */
+    public static final class Match {
+        private final String drugId;
+        private final int rank;
+        private final int distance;
+        private final String name;
+
+        Match(String drugId, String name, int rank, int distance) {
+            this.drugId = drugId;
+            this.name = name;
+            this.rank = rank;
+            this.distance = distance;
+        }
+
+        public String getDrugId() {
+            return drugId;
+        }
+
+        /**
+         * @return the edit distance for typo-tolerant matches, 0 otherwise
+         */
+        public int getDistance() {
+            return distance;
+        }
+    }
+
+    private static final Comparator<Match> BEST_FIRST = Comparator
+            .comparingInt((Match m) -> m.rank)
+            .thenComparingInt(m -> m.distance)
+            .thenComparingInt(m -> m.name.length())
+            .thenComparing(m -> m.name);
+
+    /**
+     * Adds a drug to the index, replacing any entry with the same ID.
+     *
+     * @param drugId   the drug ID
+     * @param drugName the drug name
+     */
+    public void put(String drugId, String drugName) {
+        String folded = fold(drugName);
+        synchronized (writeLock) {
+            String previous = namesById.put(drugId, folded);
+            if (previous != null) {
+                if (previous.equals(folded)) return;
+                unpost(drugId, previous);
+            }
+            post(drugId, folded);
+        }
+    }
+
+    /**
+     * Removes a drug from the index.
+     *
+     * @param drugId the drug ID
+     */
+    public void remove(String drugId) {
+        synchronized (writeLock) {
+            String previous = namesById.remove(drugId);
+            if (previous != null) {
+                unpost(drugId, previous);
+            }
+        }
+    }
+
+    /**
+     * Removes every drug from the index.
+     */
+    public void clear() {
+        synchronized (writeLock) {
+            namesById.clear();
+            idsByWordStart.clear();
+            idsByTrigram.clear();
+        }
+    }
+
+    /**
+     * Finds the drugs whose names best match a partial, possibly misspelt query.
+     *
+     * @param query the text typed so far
+     * @param limit the maximum number of matches to return
+     * @return matches, best first
+     */
+    public List<Match> search(String query, int limit) {
+        if (query == null || limit <= 0) return Collections.emptyList();
+        String q = fold(query);
+        if (q.isEmpty()) return Collections.emptyList();
+
+        Map<String, Match> found = new HashMap<>();
+        collectPrefixMatches(q, found, limit);
+        if (q.length() >= GRAM) {
+            collectSubstringMatches(q, found);
+        }
+        if (found.size() < limit && q.length() >= GRAM) {
+            collectFuzzyMatches(q, found);
+        }
+        return topK(found.values(), limit);
+    }
+
+    private void collectPrefixMatches(String q, Map<String, Match> found, int limit) {
+        // Keys come back in lexicographic order, so an exact match is seen first and shorter
+        // names before their extensions; a one-letter query need not walk the whole range.
+        NavigableMap<String, Set<String>> range = idsByWordStart.subMap(q, true, q + Character.MAX_VALUE, false);
+        int budget = limit * PREFIX_SCAN_FACTOR;
+        for (Set<String> ids : range.values()) {
+            if (--budget < 0) break;
+            for (String id : ids) {
+                String name = namesById.get(id);
+                if (name == null || found.containsKey(id)) continue;
+                int rank;
+                if (name.equals(q)) rank = EXACT;
+                else if (name.startsWith(q)) rank = NAME_PREFIX;
+                else if (containsWordStartingWith(name, q)) rank = WORD_PREFIX;
+                else continue; // stale posting
+                found.put(id, new Match(id, name, rank, 0));
+            }
+        }
+    }
+
+    private void collectSubstringMatches(String q, Map<String, Match> found) {
+        // Intersect postings starting from the rarest trigram
+        Set<String> smallest = null;
+        for (String gram : trigrams(q)) {
+            Set<String> ids = idsByTrigram.get(gram);
+            if (ids == null) return;
+            if (smallest == null || ids.size() < smallest.size()) smallest = ids;
+        }
+        if (smallest == null) return;
+        for (String id : smallest) {
+            if (found.containsKey(id)) continue;
+            String name = namesById.get(id);
+            if (name != null && name.contains(q)) {
+                found.put(id, new Match(id, name, SUBSTRING, 0));
+            }
+        }
+    }
+
+    private void collectFuzzyMatches(String q, Map<String, Match> found) {
+        int maxDistance = q.length() <= 4 ? 1 : 2;
+        Map<String, Integer> shared = new HashMap<>();
+        for (String gram : trigrams(q)) {
+            Set<String> ids = idsByTrigram.get(gram);
+            if (ids == null) continue;
+            for (String id : ids) {
+                if (!found.containsKey(id)) shared.merge(id, 1, Integer::sum);
+            }
+        }
+        List<Map.Entry<String, Integer>> candidates = new ArrayList<>(shared.entrySet());
+        if (candidates.size() > FUZZY_CANDIDATES) {
+            candidates.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+            candidates = candidates.subList(0, FUZZY_CANDIDATES);
+        }
+        for (Map.Entry<String, Integer> candidate : candidates) {
+            String id = candidate.getKey();
+            String name = namesById.get(id);
+            if (name == null) continue;
+            int distance = prefixDistance(q, name, maxDistance);
+            if (distance <= maxDistance) {
+                found.put(id, new Match(id, name, FUZZY, distance));
+            }
+        }
+    }
+
+    private static List<Match> topK(Iterable<Match> matches, int limit) {
+        PriorityQueue<Match> worstFirst = new PriorityQueue<>(limit + 1, BEST_FIRST.reversed());
+        for (Match match : matches) {
+            worstFirst.offer(match);
+            if (worstFirst.size() > limit) worstFirst.poll();
+        }
+        List<Match> result = new ArrayList<>(worstFirst);
+        result.sort(BEST_FIRST);
+        return result;
+    }
+
+    /**
+     * Smallest Damerau-Levenshtein (optimal string alignment) distance between the query
+     * and any prefix of any word-aligned suffix of the name, so that a half-typed word
+     * still matches. Stops early once every cell exceeds {@code max}.
+     */
+    static int prefixDistance(String q, String name, int max) {
+        int best = Integer.MAX_VALUE;
+        for (int start = 0; start < name.length(); start++) {
+            if (start > 0 && name.charAt(start - 1) != ' ') continue;
+            best = Math.min(best, prefixDistanceFrom(q, name, start, max));
+            if (best == 0) break;
+        }
+        return best;
+    }
+
+    /** @return the number of word starts and trigrams with drugs posted under them */
+    int getPostingCount() {
+        return idsByWordStart.size() + idsByTrigram.size();
+    }
+
+    private static int prefixDistanceFrom(String q, String name, int start, int max) {
+        int m = q.length();
+        int n = Math.min(name.length() - start, m + max);
+        int[] prevPrev = new int[n + 1];
+        int[] prev = new int[n + 1];
+        int[] cur = new int[n + 1];
+        for (int j = 0; j <= n; j++) prev[j] = j;
+        for (int i = 1; i <= m; i++) {
+            cur[0] = i;
+            int rowMin = cur[0];
+            for (int j = 1; j <= n; j++) {
+                char qc = q.charAt(i - 1);
+                char nc = name.charAt(start + j - 1);
+                int cost = qc == nc ? 0 : 1;
+                int value = Math.min(Math.min(prev[j] + 1, cur[j - 1] + 1), prev[j - 1] + cost);
+                if (i > 1 && j > 1 && qc == name.charAt(start + j - 2) && q.charAt(i - 2) == nc) {
+                    value = Math.min(value, prevPrev[j - 2] + 1);
+                }
+                cur[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > max) return rowMin;
+            int[] recycled = prevPrev;
+            prevPrev = prev;
+            prev = cur;
+            cur = recycled;
+        }
+        // The query may match any prefix of the name, so take the best cell of the last row
+        int best = Integer.MAX_VALUE;
+        for (int j = 0; j <= n; j++) best = Math.min(best, prev[j]);
+        return best;
+    }
+
+    private void post(String id, String name) {
+        for (String start : wordStarts(name)) {
+            idsByWordStart.compute(start, (k, ids) -> withId(ids, id));
+        }
+        for (String gram : trigrams(name)) {
+            idsByTrigram.compute(gram, (k, ids) -> withId(ids, id));
+        }
+    }
+
+    /** Adds inside the map's compute, so the set and its key change together. */
+    private static Set<String> withId(Set<String> ids, String id) {
+        Set<String> result = ids != null ? ids : ConcurrentHashMap.newKeySet();
+        result.add(id);
+        return result;
+    }
+
+    private void unpost(String id, String name) {
+        for (String start : wordStarts(name)) {
+            idsByWordStart.computeIfPresent(start, (k, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+        for (String gram : trigrams(name)) {
+            idsByTrigram.computeIfPresent(gram, (k, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    /**
+     * The name from the start of each word onward, so "extra" finds "panadol extra".
+     */
+    private static Set<String> wordStarts(String name) {
+        Set<String> starts = new HashSet<>();
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != ' ' && (i == 0 || name.charAt(i - 1) == ' ')) {
+                starts.add(name.substring(i));
+            }
+        }
+        return starts;
+    }
+
+    private static Set<String> trigrams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private static boolean containsWordStartingWith(String name, String q) {
+        int index = name.indexOf(q);
+        while (index >= 0) {
+            if (index == 0 || name.charAt(index - 1) == ' ') return true;
+            index = name.indexOf(q, index + 1);
+        }
+        return false;
+    }
+
+    private static String fold(String text) {
+        return text.toLowerCase(Locale.ROOT).trim().replaceAll("\\s+", " ");
+    }
+}
@@ -0,0 +1,202 @@
+package com.pharmacy.functionalities;
+
+import com.pharmacy.dao.ExportWatermarkDAO;
+import com.pharmacy.dao.PurchaseDAO;
+import com.pharmacy.dao.SalesDAO;
+import com.pharmacy.utils.TransactionManager;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes sales and purchase history to gzip-compressed CSV files for accounting.
+ * <p>
+ * Each export produces one file per table, named after the table and the dates covered,
+ * such as {@code sales_2024-01-01_2024-01-31.csv.gz}. Rows are copied from the database
+ * straight through the compressor into the file, so memory use does not depend on how
+ * many rows are exported. All files of one export are read in a single repeatable-read
+ * transaction, so every line item belongs to a sale in the same export.
+ * <p>
+ * Files are written under a temporary name, forced to disk and then renamed, so a file
+ * with its final name is always complete. An incremental export covers whole days from
+ * the day after the previous one up to yesterday, and only moves its watermark once its
+ * files are in place.
+ */
+public class HistoryExporter {
+
+    /** The watermark name used by {@link #exportIncremental}. */
+    public static final String INCREMENTAL_EXPORT = "history";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final TransactionManager transactions;
+    private final SalesDAO salesDAO;
+    private final PurchaseDAO purchaseDAO;
+    private final ExportWatermarkDAO watermarkDAO;
+    private final Clock clock;
+
+    /**
+     * The files one export wrote.
+     */
+    public static final class ExportResult {
+        private final LocalDate from;
+        private final LocalDate to;
+        private final List<Path> files;
+        private final long salesCount;
+        private final long saleItemCount;
+        private final long purchaseCount;
+
+        ExportResult(LocalDate from, LocalDate to, List<Path> files, long salesCount, long saleItemCount, long purchaseCount) {
+            this.from = from;
+            this.to = to;
+            this.files = Collections.unmodifiableList(files);
+            this.salesCount = salesCount;
+            this.saleItemCount = saleItemCount;
+            this.purchaseCount = purchaseCount;
+        }
+
+        public LocalDate getFrom() { return from; }
+
+        public LocalDate getTo() { return to; }
+
+        public List<Path> getFiles() { return files; }
+
+        public long getSalesCount() { return salesCount; }
+
+        public long getSaleItemCount() { return saleItemCount; }
+
+        public long getPurchaseCount() { return purchaseCount; }
+
+        @Override
+        public String toString() {
+            return String.format("ExportResult[%s..%s, sales=%d, saleItems=%d, purchases=%d]",
+                    from, to, salesCount, saleItemCount, purchaseCount);
+        }
+    }
+
+    /**
+     * Writes a table's rows to a stream.
+     */
+    @FunctionalInterface
+    private interface TableExport {
+        long writeTo(OutputStream out) throws SQLException, IOException;
+    }
+
+    /**
+     * Initializes a new HistoryExporter.
+     *
+     * @param transactions the source of database connections
+     */
+    public HistoryExporter(TransactionManager transactions) {
+        this(transactions, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Initializes a new HistoryExporter.
+     *
+     * @param transactions the source of database connections
+     * @param clock        decides what "yesterday" is for incremental exports
+     */
+    public HistoryExporter(TransactionManager transactions, Clock clock) {
+        this.transactions = transactions;
+        this.salesDAO = new SalesDAO(transactions);
+        this.purchaseDAO = new PurchaseDAO(transactions);
+        this.watermarkDAO = new ExportWatermarkDAO(transactions);
+        this.clock = clock;
+    }
+
+    /**
+     * Exports the sales, line items and purchases of a date range.
+     *
+     * @param from      the first day to include
+     * @param to        the last day to include
+     * @param directory where the files are written; existing files of the same name are replaced
+     * @return the files written and their row counts
+     * @throws IllegalArgumentException if {@code from} is after {@code to}
+     * @throws IOException if a file cannot be written
+     * @throws SQLException if a database access error occurs
+     */
+    public ExportResult exportRange(LocalDate from, LocalDate to, Path directory) throws IOException, SQLException {
+        if (from.isAfter(to)) throw new IllegalArgumentException("The range ends before it starts.");
+        Files.createDirectories(directory);
+        String suffix = "_" + from + "_" + to + ".csv.gz";
+        List<Path> files = new ArrayList<>(3);
+        long[] counts = new long[3];
+        try {
+            transactions.inTransaction(Connection.TRANSACTION_REPEATABLE_READ, () -> {
+                try {
+                    counts[0] = writeFile(directory.resolve("sales" + suffix), files,
+                            out -> salesDAO.exportSales(from, to, out));
+                    counts[1] = writeFile(directory.resolve("sales_items" + suffix), files,
+                            out -> salesDAO.exportSaleItems(from, to, out));
+                    counts[2] = writeFile(directory.resolve("purchases" + suffix), files,
+                            out -> purchaseDAO.exportPurchases(from, to, out));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return null;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return new ExportResult(from, to, files, counts[0], counts[1], counts[2]);
+    }
+
+    /**
+     * Exports every whole day not yet exported, up to and including yesterday. The first
+     * run exports all history.
+     *
+     * @param directory where the files are written
+     * @return the export, or empty if there were no new whole days
+     * @throws IOException if a file cannot be written; the watermark is not moved
+     * @throws SQLException if a database access error occurs; the watermark is not moved
+     */
+    public Optional<ExportResult> exportIncremental(Path directory) throws IOException, SQLException {
+        LocalDate exportedThrough = watermarkDAO.getExportedThrough(INCREMENTAL_EXPORT);
+        LocalDate from = exportedThrough == null ? LocalDate.EPOCH : exportedThrough.plusDays(1);
+        LocalDate to = LocalDate.now(clock).minusDays(1);
+        if (from.isAfter(to)) {
+            return Optional.empty();
+        }
+        ExportResult result = exportRange(from, to, directory);
+        watermarkDAO.setExportedThrough(INCREMENTAL_EXPORT, to);
+        return Optional.of(result);
+    }
+
+    private static long writeFile(Path target, List<Path> written, TableExport export) throws IOException, SQLException {
+        Path partial = target.resolveSibling(target.getFileName() + ".part");
+        long rows;
+        try (FileChannel channel = FileChannel.open(partial,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             GZIPOutputStream gzip = new GZIPOutputStream(
+                     new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE), BUFFER_SIZE)) {
+            rows = export.writeTo(gzip);
+            gzip.finish();
+            gzip.flush();
+            channel.force(true);
+        } catch (IOException | SQLException | RuntimeException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+        Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        written.add(target);
+        return rows;
+    }
+}
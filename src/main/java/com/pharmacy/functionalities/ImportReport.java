@@ -0,0 +1,72 @@
+package com.pharmacy.functionalities;
+
+import java.util.List;
+
+/**
+ * The outcome of a catalogue import.
+ */
+public class ImportReport {
+    private final long rowsRead;
+    private final long insertedCount;
+    private final long updatedCount;
+    private final long rejectedCount;
+    private final List<RowError> errors;
+
+    /**
+     * A row that was left out, and why.
+     */
+    public static final class RowError {
+        private final long lineNumber;
+        private final String message;
+
+        RowError(long lineNumber, String message) {
+            this.lineNumber = lineNumber;
+            this.message = message;
+        }
+
+        public long getLineNumber() { return lineNumber; }
+
+        public String getMessage() { return message; }
+
+        @Override
+        public String toString() {
+            return "Line " + lineNumber + ": " + message;
+        }
+    }
+
+    ImportReport(long rowsRead, long insertedCount, long updatedCount, long rejectedCount, List<RowError> errors) {
+        this.rowsRead = rowsRead;
+        this.insertedCount = insertedCount;
+        this.updatedCount = updatedCount;
+        this.rejectedCount = rejectedCount;
+        this.errors = List.copyOf(errors);
+    }
+
+    /** @return the data rows in the file, not counting the header */
+    public long getRowsRead() { return rowsRead; }
+
+    /** @return the drugs added */
+    public long getInsertedCount() { return insertedCount; }
+
+    /** @return the existing drugs updated */
+    public long getUpdatedCount() { return updatedCount; }
+
+    /** @return the rows left out because they failed the checks */
+    public long getRejectedCount() { return rejectedCount; }
+
+    /**
+     * @return the rejected rows, in file order; only the first ones are listed if there
+     *         were many, see {@link #isErrorListTruncated}
+     */
+    public List<RowError> getErrors() { return errors; }
+
+    public boolean isErrorListTruncated() {
+        return errors.size() < rejectedCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ImportReport[read=%d, inserted=%d, updated=%d, rejected=%d]",
+                rowsRead, insertedCount, updatedCount, rejectedCount);
+    }
+}
@@ -2,37 +2,198 @@ package com.pharmacy.functionalities;
 
 import com.pharmacy.dao.PersonnelDAO;
 import com.pharmacy.entities.Personnel;
+import com.pharmacy.utils.ConnectionProvider;
 import com.pharmacy.utils.DatabaseUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class LoginService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoginService.class);
+
+    // Each check can take tens of megabytes, so only a few run at once across the application
+    private static final int MAX_CONCURRENT_HASHES = Integer.getInteger("pharmacy.login.maxConcurrentHashes", 2);
+    private static final int HASH_QUEUE_CAPACITY = Integer.getInteger("pharmacy.login.queueCapacity", 32);
+    private static final Duration HASH_QUEUE_TIMEOUT = Duration.ofSeconds(Long.getLong("pharmacy.login.queueTimeoutSeconds", 10));
+
+    private static final PasswordVerifier SHARED_VERIFIER =
+            new PasswordVerifier(MAX_CONCURRENT_HASHES, HASH_QUEUE_CAPACITY, HASH_QUEUE_TIMEOUT);
+
+    private static final Duration SESSION_LIFETIME = Duration.ofHours(Long.getLong("pharmacy.session.lifetimeHours", 12));
+    private static final Duration SESSION_IDLE_TIMEOUT = Duration.ofMinutes(Long.getLong("pharmacy.session.idleMinutes", 5));
+
+    private static final SessionManager SHARED_SESSIONS = new SessionManager(SESSION_LIFETIME, SESSION_IDLE_TIMEOUT);
+
+    static {
+        // A changed or removed password must not keep unlocking old sessions
+        PersonnelDAO.addCredentialChangeListener(SHARED_SESSIONS::revokeUser);
+    }
+
     private PersonnelDAO personnelDAO;
+    private final PasswordVerifier verifier;
+    private final SessionManager sessions;
 
     public LoginService() {
-        try {
-            this.personnelDAO = new PersonnelDAO(DatabaseUtils.getConnection());
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        this(DatabaseUtils.getConnectionProvider());
+    }
+
+    public LoginService(ConnectionProvider connectionProvider) {
+        this(connectionProvider, SHARED_VERIFIER);
+    }
+
+    public LoginService(ConnectionProvider connectionProvider, PasswordVerifier verifier) {
+        this(connectionProvider, verifier, SHARED_SESSIONS);
+    }
+
+    public LoginService(ConnectionProvider connectionProvider, PasswordVerifier verifier, SessionManager sessions) {
+        this.personnelDAO = new PersonnelDAO(connectionProvider);
+        this.verifier = verifier;
+        this.sessions = sessions;
+    }
+
+    /**
+     * Checks a user's password and, if it matches, starts a session.
+     *
+     * @return the outcome, with a session token when the password was verified
+     * @throws SQLException if the user could not be looked up; no failure is counted
+     */
+    public LoginResult login(String username, String plainPassword) throws SQLException {
+        PasswordVerifier.Outcome outcome = authenticate(username, plainPassword);
+        String token = outcome == PasswordVerifier.Outcome.VERIFIED ? sessions.issue(username, plainPassword) : null;
+        return new LoginResult(outcome, token);
+    }
+
+    /**
+     * Returns the user of a valid, unlocked session. Takes microseconds and does not touch
+     * the database.
+     */
+    public Optional<String> currentUser(String sessionToken) {
+        return sessions.validate(sessionToken);
     }
 
-    public boolean loginUser(String username, String plainPassword) {
-        Personnel user = getUserFromDatabase(username);
+    /**
+     * Locks a session until the user re-enters their password.
+     */
+    public void lock(String sessionToken) {
+        sessions.lock(sessionToken);
+    }
+
+    /**
+     * Returns whether a session is locked, without counting the check as activity.
+     *
+     * @return true if the session is alive and can be unlocked with the password
+     */
+    public boolean isLocked(String sessionToken) {
+        return sessions.isLocked(sessionToken);
+    }
+
+    /**
+     * Unlocks a locked session without a database lookup or a full password hash.
+     *
+     * @return true if the password matched and the session is unlocked
+     */
+    public boolean unlock(String sessionToken, String plainPassword) {
+        return sessions.unlock(sessionToken, plainPassword);
+    }
+
+    public void logout(String sessionToken) {
+        sessions.logout(sessionToken);
+    }
+
+    /**
+     * Frees the memory of expired sessions. Meant to run periodically.
+     */
+    public void purgeExpiredSessions() {
+        sessions.purgeExpired();
+    }
+
+    public boolean loginUser(String username, String plainPassword) throws SQLException {
+        return authenticate(username, plainPassword) == PasswordVerifier.Outcome.VERIFIED;
+    }
+
+    /**
+     * Checks a user's password from this terminal. The terminal is shared by every user at
+     * the counter, so only the user's own failures are throttled, not the terminal's.
+     *
+     * @return the outcome, which tells a wrong password apart from a throttled or busy login
+     * @throws SQLException if the user could not be looked up; no failure is counted
+     */
+    public PasswordVerifier.Outcome authenticate(String username, String plainPassword) throws SQLException {
+        return authenticate(username, plainPassword, null);
+    }
+
+    /**
+     * Checks a user's password. Hash checks are queued on the shared verifier, and repeated
+     * failures for the user or the source are throttled.
+     *
+     * @param source where the attempt comes from, used for throttling, or null for this terminal
+     * @return the outcome
+     * @throws SQLException if the user could not be looked up. No failure is counted, so an
+     *         outage does not throttle the users who tried to log in during it
+     */
+    public PasswordVerifier.Outcome authenticate(String username, String plainPassword, String source)
+            throws SQLException {
+        Personnel user = personnelDAO.getPersonnelByUsername(username);
 
         if (user != null) {
-            return user.verifyPassword(plainPassword);
+            AtomicReference<String> upgradedHash = new AtomicReference<>();
+            PasswordVerifier.Outcome outcome = verifier.verify(username, source, () -> {
+                if (!user.verifyPassword(plainPassword)) return false;
+                // Hash again while the password is at hand if its format or costs are out of date
+                if (user.needsRehash()) upgradedHash.set(Personnel.hashPassword(plainPassword));
+                return true;
+            });
+            if (outcome == PasswordVerifier.Outcome.VERIFIED && upgradedHash.get() != null) {
+                upgradeHash(user, upgradedHash.get());
+            }
+            return outcome;
         }
-        return false;
+        return verifier.reject(username, source);
     }
 
-    private Personnel getUserFromDatabase(String username) {
+    private void upgradeHash(Personnel user, String newHash) {
         try {
-            return personnelDAO.getPersonnelByUsername(username);
+            personnelDAO.rehashPassword(user.getUsername(), user.getHashedPassword(), newHash);
         } catch (SQLException e) {
-            e.printStackTrace();
+            // The login still succeeds; the upgrade is retried next time
+            LOGGER.warn("Could not upgrade the password hash of {}", user.getUsername(), e);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the shared verifier's queue and latency counters.
+     */
+    public VerifierMetrics getVerifierMetrics() {
+        return verifier.getMetrics();
+    }
+
+    /**
+     * The outcome of {@link #login}.
+     */
+    public static final class LoginResult {
+        private final PasswordVerifier.Outcome outcome;
+        private final String sessionToken;
+
+        LoginResult(PasswordVerifier.Outcome outcome, String sessionToken) {
+            this.outcome = outcome;
+            this.sessionToken = sessionToken;
+        }
+
+        public PasswordVerifier.Outcome getOutcome() {
+            return outcome;
+        }
+
+        /**
+         * @return the new session's token, if the password was verified
+         */
+        public Optional<String> getSessionToken() {
+            return Optional.ofNullable(sessionToken);
         }
-        return null;
     }
 
     public boolean registerUser(String username, String plainPassword) {
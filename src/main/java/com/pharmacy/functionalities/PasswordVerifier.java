@@ -0,0 +1,294 @@
+package com.pharmacy.functionalities;
+
+import com.pharmacy.utils.Metrics;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs password hash checks on a small, fixed set of threads.
+ * <p>
+ * Each check can allocate tens of megabytes, so the number that run at once is capped.
+ * Further checks wait in a bounded queue. A check that waits longer than the queue
+ * timeout is abandoned without hashing, and a check that finds the queue full is
+ * turned away at once. A caller waits no longer than the queue timeout plus the hash
+ * timeout, however long the check takes. Memory used by logins therefore stays bounded
+ * however many arrive together.
+ * <p>
+ * Repeated failures for the same user or from the same source are throttled. After a
+ * few consecutive failures, further attempts are refused without hashing for a delay
+ * that doubles with each failure, up to a maximum. A success clears the user's count and
+ * takes a user's worth of typos off the source's count, so that one person's mistakes on
+ * a shared terminal do not add up to a lockout for everyone using it. Attempts without a
+ * source, such as logins at this machine's own screen, are throttled by user only.
+ * <p>
+ * Failures are forgotten once their delay has long passed, and the number of users and
+ * sources tracked is bounded, so a flood of made-up names cannot exhaust memory.
+ */
+public class PasswordVerifier implements AutoCloseable {
+
+    /** Consecutive failures allowed for one user before attempts are delayed. */
+    private static final int FREE_ATTEMPTS_PER_USER = 3;
+
+    /** Failures allowed from one source, which may be a terminal shared by a whole shift. */
+    private static final int FREE_ATTEMPTS_PER_SOURCE = 10;
+    private static final long BASE_DELAY_MILLIS = 1_000;
+    private static final long MAX_DELAY_MILLIS = Duration.ofMinutes(5).toMillis();
+
+    /** Users and sources tracked before entries that are not blocking anyone are dropped. */
+    private static final int MAX_TRACKED_KEYS = 10_000;
+
+    /** Failures between sweeps for entries whose delay has long passed. */
+    private static final int PRUNE_INTERVAL = 1_024;
+
+    /** How long a check may hash once started, by default; far more than a healthy check takes. */
+    private static final Duration DEFAULT_HASH_TIMEOUT = Duration.ofSeconds(30);
+    private static final Metrics.Timer QUEUE_TIMER = Metrics.timer("login.queue");
+    private static final Metrics.Timer HASH_TIMER = Metrics.timer("login.hash");
+
+    /**
+     * The outcome of a verification.
+     */
+    public enum Outcome {
+        /** The password matched. */
+        VERIFIED,
+        /** The password did not match. */
+        REJECTED,
+        /** Too many recent failures for this user or source; nothing was hashed. */
+        THROTTLED,
+        /** The verifier was saturated, or the check took too long; the attempt does not count. */
+        BUSY
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final int maxConcurrent;
+    private final long queueTimeoutNanos;
+    private final long hashTimeoutNanos;
+    private final ConcurrentHashMap<String, Failures> failures = new ConcurrentHashMap<>();
+    private final AtomicInteger failuresSincePrune = new AtomicInteger();
+
+    private final LongAdder verifiedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder throttledCount = new LongAdder();
+    private final LongAdder busyCount = new LongAdder();
+    private final LongAdder hashCount = new LongAdder();
+    private final LongAdder totalHashNanos = new LongAdder();
+    private final LongAccumulator maxHashNanos = new LongAccumulator(Math::max, 0L);
+    private final LongAdder totalQueueNanos = new LongAdder();
+
+    /**
+     * Creates a verifier.
+     *
+     * @param maxConcurrent the number of checks that may run at once
+     * @param queueCapacity the number of checks that may wait for a thread
+     * @param queueTimeout  how long a check may wait before it is abandoned
+     */
+    public PasswordVerifier(int maxConcurrent, int queueCapacity, Duration queueTimeout) {
+        this(maxConcurrent, queueCapacity, queueTimeout, DEFAULT_HASH_TIMEOUT);
+    }
+
+    /**
+     * Creates a verifier.
+     *
+     * @param maxConcurrent the number of checks that may run at once
+     * @param queueCapacity the number of checks that may wait for a thread
+     * @param queueTimeout  how long a check may wait before it is abandoned
+     * @param hashTimeout   how long the caller waits for a started check before giving up on it
+     */
+    public PasswordVerifier(int maxConcurrent, int queueCapacity, Duration queueTimeout, Duration hashTimeout) {
+        if (maxConcurrent <= 0) throw new IllegalArgumentException("Concurrency must be positive.");
+        if (queueCapacity < 0) throw new IllegalArgumentException("Queue capacity cannot be negative.");
+        this.maxConcurrent = maxConcurrent;
+        this.queueTimeoutNanos = queueTimeout.toNanos();
+        this.hashTimeoutNanos = hashTimeout.toNanos();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                    Thread thread = new Thread(runnable, "password-verifier-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Runs a password check, subject to throttling and admission control.
+     *
+     * @param username the user logging in
+     * @param source   where the attempt comes from, such as the terminal's address, or
+     *                 null for this machine's own screen
+     * @param check    the hash comparison; returns true if the password matches
+     * @return the outcome
+     */
+    public Outcome verify(String username, String source, BooleanSupplier check) {
+        String userKey = "user:" + username;
+        String sourceKey = source == null ? null : "source:" + source;
+        long now = System.currentTimeMillis();
+        if (isThrottled(userKey, now) || (sourceKey != null && isThrottled(sourceKey, now))) {
+            throttledCount.increment();
+            return Outcome.THROTTLED;
+        }
+
+        long queuedAt = System.nanoTime();
+        Future<Boolean> future;
+        try {
+            future = executor.submit(() -> {
+                long started = System.nanoTime();
+                totalQueueNanos.add(started - queuedAt);
+                QUEUE_TIMER.record(started - queuedAt);
+                if (started - queuedAt > queueTimeoutNanos) {
+                    return null;
+                }
+                try {
+                    return check.getAsBoolean();
+                } finally {
+                    long elapsed = System.nanoTime() - started;
+                    hashCount.increment();
+                    totalHashNanos.add(elapsed);
+                    maxHashNanos.accumulate(elapsed);
+                    HASH_TIMER.record(elapsed);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            busyCount.increment();
+            return Outcome.BUSY;
+        }
+
+        Boolean matched;
+        try {
+            matched = future.get(queueTimeoutNanos + hashTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // A check already hashing keeps its thread until it returns, so the cap still holds
+            future.cancel(true);
+            busyCount.increment();
+            return Outcome.BUSY;
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            busyCount.increment();
+            return Outcome.BUSY;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) throw runtimeException;
+            if (cause instanceof Error error) throw error;
+            throw new IllegalStateException(cause);
+        }
+
+        if (matched == null) {
+            busyCount.increment();
+            return Outcome.BUSY;
+        }
+        if (matched) {
+            verifiedCount.increment();
+            failures.remove(userKey);
+            if (sourceKey != null) forgiveSource(sourceKey);
+            return Outcome.VERIFIED;
+        }
+        rejectedCount.increment();
+        recordFailure(userKey, now, FREE_ATTEMPTS_PER_USER);
+        if (sourceKey != null) recordFailure(sourceKey, now, FREE_ATTEMPTS_PER_SOURCE);
+        return Outcome.REJECTED;
+    }
+
+    /**
+     * Records a failed attempt that did not reach the hash check, such as an unknown
+     * username, so that guessing usernames is throttled as well.
+     *
+     * @param username the user logging in
+     * @param source   where the attempt comes from, or null for this machine's own screen
+     * @return {@link Outcome#THROTTLED} if the caller was already throttled, otherwise {@link Outcome#REJECTED}
+     */
+    public Outcome reject(String username, String source) {
+        long now = System.currentTimeMillis();
+        String userKey = "user:" + username;
+        String sourceKey = source == null ? null : "source:" + source;
+        if (isThrottled(userKey, now) || (sourceKey != null && isThrottled(sourceKey, now))) {
+            throttledCount.increment();
+            return Outcome.THROTTLED;
+        }
+        rejectedCount.increment();
+        recordFailure(userKey, now, FREE_ATTEMPTS_PER_USER);
+        if (sourceKey != null) recordFailure(sourceKey, now, FREE_ATTEMPTS_PER_SOURCE);
+        return Outcome.REJECTED;
+    }
+
+    /**
+     * Returns a snapshot of the verifier's counters.
+     */
+    public VerifierMetrics getMetrics() {
+        return new VerifierMetrics(executor.getActiveCount(), executor.getQueue().size(), maxConcurrent,
+                verifiedCount.sum(), rejectedCount.sum(), throttledCount.sum(), busyCount.sum(),
+                hashCount.sum(), totalHashNanos.sum(), maxHashNanos.get(), totalQueueNanos.sum());
+    }
+
+    /**
+     * Stops accepting checks. Checks already queued still run.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private boolean isThrottled(String key, long now) {
+        Failures entry = failures.get(key);
+        return entry != null && now < entry.blockedUntil;
+    }
+
+    private void recordFailure(String key, long now, int freeAttempts) {
+        failures.compute(key, (k, entry) -> {
+            // Forget failures once their delay has long passed
+            if (entry == null || now - entry.lastFailure > MAX_DELAY_MILLIS) entry = new Failures();
+            entry.count++;
+            entry.lastFailure = now;
+            if (entry.count >= freeAttempts) {
+                int doublings = Math.min(entry.count - freeAttempts, 20);
+                entry.blockedUntil = now + Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << doublings);
+            }
+            return entry;
+        });
+        if (failures.size() > MAX_TRACKED_KEYS || failuresSincePrune.incrementAndGet() >= PRUNE_INTERVAL) {
+            prune(now);
+        }
+    }
+
+    /**
+     * Takes the failures one user may make before being delayed off a source's count. A
+     * delay already imposed on the source stays until it runs out.
+     */
+    private void forgiveSource(String key) {
+        failures.computeIfPresent(key, (k, entry) -> {
+            entry.count = Math.max(0, entry.count - FREE_ATTEMPTS_PER_USER);
+            return entry.count == 0 && System.currentTimeMillis() >= entry.blockedUntil ? null : entry;
+        });
+    }
+
+    private void prune(long now) {
+        failuresSincePrune.set(0);
+        failures.values().removeIf(entry -> now - entry.lastFailure > MAX_DELAY_MILLIS);
+        if (failures.size() > MAX_TRACKED_KEYS) {
+            // Still flooded with distinct names: keep only the entries delaying someone now
+            failures.values().removeIf(entry -> now >= entry.blockedUntil);
+        }
+    }
+
+    /** @return the number of users and sources with failures on record */
+    int getTrackedCount() {
+        return failures.size();
+    }
+
+    private static final class Failures {
+        int count;
+        long lastFailure;
+        long blockedUntil;
+    }
+}
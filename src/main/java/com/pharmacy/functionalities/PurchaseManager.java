@@ -1,19 +1,33 @@
 package com.pharmacy.functionalities;
 
+import com.pharmacy.dao.DrugDAO;
 import com.pharmacy.entities.Drug;
+import com.pharmacy.entities.LedgerEntry;
+
+import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.List;
 
 /**
  * Manages purchase-related operations.
+ * <p>
+ * Purchases are recorded as receipts in the stock ledger and added to the drug's stock in
+ * the same transaction. Nothing is ever deleted: changing or removing a purchase records a
+ * correcting receipt for the difference.
  */
 public class PurchaseManager {
-    private HashMap<Drug, Integer> purchases;
+    private final StockLedger ledger;
+    private final DrugDAO drugDAO;
 
     /**
      * Initializes a new PurchaseManager.
+     *
+     * @param ledger the stock ledger purchases are recorded in
+     * @param drugDAO updates the drugs' stock, and looks drugs up when listing purchases
      */
-    public PurchaseManager() {
-        this.purchases = new HashMap<>();
+    public PurchaseManager(StockLedger ledger, DrugDAO drugDAO) {
+        this.ledger = ledger;
+        this.drugDAO = drugDAO;
     }
 
     /**
@@ -22,11 +36,53 @@ public class PurchaseManager {
      * @param drug the drug being purchased
      * @param quantity the quantity of the drug being purchased
      * @throws IllegalArgumentException if the drug is null or quantity is not positive
+     * @throws SQLException if the purchase could not be recorded
      */
-    public void addPurchase(Drug drug, int quantity) {
+    public void addPurchase(Drug drug, int quantity) throws SQLException {
         if (drug == null) throw new IllegalArgumentException("Drug cannot be null.");
         if (quantity <= 0) throw new IllegalArgumentException("Quantity must be positive.");
-        purchases.put(drug, purchases.getOrDefault(drug, 0) + quantity);
+        LedgerEntry receipt = new LedgerEntry(drug.getDrugId(), LedgerEntry.Type.RECEIPT, quantity, null);
+        ledger.recordWith(() -> drugDAO.adjustStock(drug.getDrugId(), quantity), stock -> List.of(receipt));
+    }
+
+    /**
+     * Changes the total quantity purchased for a drug by recording a correcting receipt.
+     *
+     * @param drug the drug whose purchases are corrected
+     * @param newTotal the correct total quantity purchased
+     * @throws IllegalArgumentException if the drug is null or the total is negative
+     * @throws com.pharmacy.dao.InsufficientStockException if the units to take back have
+     *         already been sold
+     * @throws SQLException if the correction could not be recorded
+     */
+    public void correctPurchase(Drug drug, int newTotal) throws SQLException {
+        if (drug == null) throw new IllegalArgumentException("Drug cannot be null.");
+        if (newTotal < 0) throw new IllegalArgumentException("Quantity cannot be negative.");
+        String drugId = drug.getDrugId();
+        // The current total is read in the transaction, so a purchase or correction committed
+        // meanwhile on another till is not undone
+        ledger.recordWith(() -> {
+            int difference = Math.toIntExact(newTotal - ledger.lockReceived(drugId));
+            if (difference != 0) {
+                drugDAO.adjustStock(drugId, difference);
+            }
+            return difference;
+        }, difference -> difference == 0
+                ? List.of()
+                : List.of(new LedgerEntry(drugId, LedgerEntry.Type.RECEIPT, difference, "correction")));
+    }
+
+    /**
+     * Reverses all purchases of a drug.
+     *
+     * @param drug the drug whose purchases are removed
+     * @throws IllegalArgumentException if the drug is null
+     * @throws com.pharmacy.dao.InsufficientStockException if some of the units have already
+     *         been sold
+     * @throws SQLException if the reversal could not be recorded
+     */
+    public void removePurchase(Drug drug) throws SQLException {
+        correctPurchase(drug, 0);
     }
 
     /**
@@ -38,15 +94,25 @@ public class PurchaseManager {
      */
     public int getTotalPurchased(Drug drug) {
         if (drug == null) throw new IllegalArgumentException("Drug cannot be null.");
-        return purchases.getOrDefault(drug, 0);
+        return Math.toIntExact(ledger.getReceived(drug.getDrugId()));
     }
 
     /**
      * Lists all purchases.
      *
      * @return a map of all purchases with drugs and their quantities
+     * @throws SQLException if a drug could not be looked up
      */
-    public HashMap<Drug, Integer> listAllPurchases() {
-        return new HashMap<>(purchases);
+    public HashMap<Drug, Integer> listAllPurchases() throws SQLException {
+        HashMap<Drug, Integer> purchases = new HashMap<>();
+        for (String drugId : ledger.getDrugIds()) {
+            long received = ledger.getReceived(drugId);
+            if (received == 0) continue;
+            Drug drug = drugDAO.getDrugById(drugId);
+            if (drug != null) {
+                purchases.put(drug, Math.toIntExact(received));
+            }
+        }
+        return purchases;
     }
 }
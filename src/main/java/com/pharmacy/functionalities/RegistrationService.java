@@ -1,6 +1,7 @@
 package com.pharmacy.functionalities;
 
 import com.pharmacy.entities.Personnel;
+import com.pharmacy.utils.ConnectionProvider;
 import com.pharmacy.utils.DatabaseUtils;
 import com.pharmacy.utils.PasswordUtils;
 
@@ -12,6 +13,23 @@ import java.sql.SQLException;
  * Manages registration-related operations.
  */
 public class RegistrationService {
+    private final ConnectionProvider connectionProvider;
+
+    /**
+     * Initializes a new RegistrationService backed by the shared connection pool.
+     */
+    public RegistrationService() {
+        this(DatabaseUtils.getConnectionProvider());
+    }
+
+    /**
+     * Initializes a new RegistrationService.
+     *
+     * @param connectionProvider the source of database connections
+     */
+    public RegistrationService(ConnectionProvider connectionProvider) {
+        this.connectionProvider = connectionProvider;
+    }
 
     /**
      * Registers a new user.
@@ -34,7 +52,7 @@ public class RegistrationService {
     private void saveUserToDatabase(Personnel user) {
         String query = "INSERT INTO personnel (username, hashed_password) VALUES (?, ?)";
 
-        try (Connection connection = DatabaseUtils.getConnection();
+        try (Connection connection = connectionProvider.getConnection();
              PreparedStatement statement = connection.prepareStatement(query)) {
 
             statement.setString(1, user.getUsername());
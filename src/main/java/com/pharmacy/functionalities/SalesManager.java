@@ -1,19 +1,47 @@
 package com.pharmacy.functionalities;
 
+import com.pharmacy.dao.DrugDAO;
+import com.pharmacy.dao.InsufficientStockException;
+import com.pharmacy.dao.StockShortfall;
 import com.pharmacy.entities.Drug;
+import com.pharmacy.entities.LedgerEntry;
+
+import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Manages sales-related operations.
+ * <p>
+ * Sales are taken out of the drug's stock and recorded in the stock ledger in the same
+ * transaction, so totals survive restarts and are shared by every till.
  */
 public class SalesManager {
-    private HashMap<Drug, Integer> sales;
+    private final StockLedger ledger;
+    private final DrugDAO drugDAO;
 
     /**
      * Initializes a new SalesManager.
+     *
+     * @param ledger the stock ledger sales are recorded in
+     * @param drugDAO takes sold units out of stock, and looks drugs up when listing sales
+     */
+    public SalesManager(StockLedger ledger, DrugDAO drugDAO) {
+        this.ledger = ledger;
+        this.drugDAO = drugDAO;
+    }
+
+    /**
+     * Adds a new sale.
+     *
+     * @param drug the drug being sold
+     * @param quantity the quantity of the drug being sold
+     * @throws IllegalArgumentException if the drug is null or quantity is not positive
+     * @throws SQLException if the sale could not be recorded
      */
-    public SalesManager() {
-        this.sales = new HashMap<>();
+    public void addSale(Drug drug, int quantity) throws SQLException {
+        addSale(drug, quantity, null);
     }
 
     /**
@@ -21,12 +49,20 @@ public class SalesManager {
      *
      * @param drug the drug being sold
      * @param quantity the quantity of the drug being sold
+     * @param salesId the sale this line belongs to, or null
      * @throws IllegalArgumentException if the drug is null or quantity is not positive
+     * @throws InsufficientStockException if the drug has too little stock
+     * @throws SQLException if the sale could not be recorded
      */
-    public void addSale(Drug drug, int quantity) {
+    public void addSale(Drug drug, int quantity, String salesId) throws SQLException {
         if (drug == null) throw new IllegalArgumentException("Drug cannot be null.");
         if (quantity <= 0) throw new IllegalArgumentException("Quantity must be positive.");
-        sales.put(drug, sales.getOrDefault(drug, 0) + quantity);
+        LedgerEntry sale = new LedgerEntry(drug.getDrugId(), LedgerEntry.Type.SALE, -quantity, salesId);
+        ledger.recordWith(() -> {
+            List<StockShortfall> shortfalls = drugDAO.reserveStock(Map.of(drug.getDrugId(), quantity));
+            if (!shortfalls.isEmpty()) throw new InsufficientStockException(shortfalls);
+            return shortfalls;
+        }, reserved -> List.of(sale));
     }
 
     /**
@@ -38,15 +74,25 @@ public class SalesManager {
      */
     public int getTotalSold(Drug drug) {
         if (drug == null) throw new IllegalArgumentException("Drug cannot be null.");
-        return sales.getOrDefault(drug, 0);
+        return Math.toIntExact(ledger.getSold(drug.getDrugId()));
     }
 
     /**
      * Lists all sales.
      *
      * @return a map of all sales with drugs and their quantities
+     * @throws SQLException if a drug could not be looked up
      */
-    public HashMap<Drug, Integer> listAllSales() {
-        return new HashMap<>(sales);
+    public HashMap<Drug, Integer> listAllSales() throws SQLException {
+        HashMap<Drug, Integer> sales = new HashMap<>();
+        for (String drugId : ledger.getDrugIds()) {
+            long sold = ledger.getSold(drugId);
+            if (sold == 0) continue;
+            Drug drug = drugDAO.getDrugById(drugId);
+            if (drug != null) {
+                sales.put(drug, Math.toIntExact(sold));
+            }
+        }
+        return sales;
     }
 }
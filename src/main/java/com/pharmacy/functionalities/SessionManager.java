@@ -0,0 +1,251 @@
+package com.pharmacy.functionalities;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Issues and checks login sessions so that a user who has already proven their password
+ * is not made to pay for a full password hash again during the same shift.
+ * <p>
+ * A session token names the user, the session and its expiry, and is signed with a key
+ * that only this process holds. Checking a token recomputes the signature and looks the
+ * session up in memory; neither step touches the database or the password hasher.
+ * <p>
+ * A session locks after a period of inactivity, or when {@link #lock} is called. It is
+ * unlocked by re-entering the password, which is compared against a keyed digest taken
+ * at login rather than the stored password hash. Too many wrong unlock attempts end the
+ * session, so the user must log in again in full. Sessions end when they expire, on
+ * {@link #logout}, or when the user's password changes.
+ */
+public class SessionManager {
+
+    private static final String VERSION = "v1";
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int ID_LENGTH = 16;
+    private static final int MAX_UNLOCK_FAILURES = 5;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> macs;
+    private final SecureRandom random = new SecureRandom();
+    private final long lifetimeMillis;
+    private final long idleTimeoutMillis;
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a session manager with a fresh signing key. Tokens do not survive a restart.
+     *
+     * @param lifetime    how long a session lasts from login
+     * @param idleTimeout how long a session may go unused before it locks
+     */
+    public SessionManager(Duration lifetime, Duration idleTimeout) {
+        byte[] keyBytes = new byte[32];
+        random.nextBytes(keyBytes);
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.macs = ThreadLocal.withInitial(this::newMac);
+        this.lifetimeMillis = lifetime.toMillis();
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+    }
+
+    /**
+     * Starts a session for a user whose password has just been verified.
+     *
+     * @param username the user
+     * @param password the verified password, kept only as a keyed digest for unlocking
+     * @return the session token
+     */
+    public String issue(String username, String password) {
+        byte[] idBytes = new byte[ID_LENGTH];
+        random.nextBytes(idBytes);
+        String sessionId = ENCODER.encodeToString(idBytes);
+        long now = System.currentTimeMillis();
+        long expiresAt = now + lifetimeMillis;
+
+        String payload = VERSION + "." + ENCODER.encodeToString(username.getBytes(StandardCharsets.UTF_8))
+                + "." + sessionId + "." + expiresAt;
+        sessions.put(sessionId, new Session(username, expiresAt, unlockDigest(sessionId, password), now));
+        return payload + "." + ENCODER.encodeToString(sign(payload));
+    }
+
+    /**
+     * Checks a token and records activity on its session.
+     *
+     * @param token the session token
+     * @return the user, if the session is valid and unlocked
+     */
+    public Optional<String> validate(String token) {
+        Session session = find(token);
+        if (session == null) return Optional.empty();
+        synchronized (session) {
+            long now = System.currentTimeMillis();
+            if (session.isIdle(now, idleTimeoutMillis)) session.locked = true;
+            if (session.locked) return Optional.empty();
+            session.lastActivity = now;
+            return Optional.of(session.username);
+        }
+    }
+
+    /**
+     * Returns whether the token's session is still alive but locked.
+     *
+     * @param token the session token
+     * @return true if the session can be unlocked with the password
+     */
+    public boolean isLocked(String token) {
+        Session session = find(token);
+        if (session == null) return false;
+        synchronized (session) {
+            return session.locked || session.isIdle(System.currentTimeMillis(), idleTimeoutMillis);
+        }
+    }
+
+    /**
+     * Locks the session, for example when the user steps away from the terminal.
+     *
+     * @param token the session token
+     */
+    public void lock(String token) {
+        Session session = find(token);
+        if (session == null) return;
+        synchronized (session) {
+            session.locked = true;
+        }
+    }
+
+    /**
+     * Unlocks a locked session with the user's password, without rehashing it.
+     *
+     * @param token    the session token
+     * @param password the password entered
+     * @return true if the session is now unlocked
+     */
+    public boolean unlock(String token, String password) {
+        String sessionId = sessionIdOf(token);
+        Session session = find(token);
+        if (session == null) return false;
+        synchronized (session) {
+            if (MessageDigest.isEqual(session.unlockDigest, unlockDigest(sessionId, password))) {
+                session.locked = false;
+                session.unlockFailures = 0;
+                session.lastActivity = System.currentTimeMillis();
+                return true;
+            }
+            if (++session.unlockFailures >= MAX_UNLOCK_FAILURES) {
+                sessions.remove(sessionId, session);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Ends the token's session.
+     *
+     * @param token the session token
+     */
+    public void logout(String token) {
+        String sessionId = sessionIdOf(token);
+        if (sessionId != null && find(token) != null) {
+            sessions.remove(sessionId);
+        }
+    }
+
+    /**
+     * Ends every session of a user, for example after a password change.
+     *
+     * @param username the user
+     */
+    public void revokeUser(String username) {
+        sessions.values().removeIf(session -> session.username.equals(username));
+    }
+
+    /**
+     * Discards sessions that have expired. Expired sessions are rejected either way; this
+     * only frees their memory.
+     */
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        sessions.values().removeIf(session -> now >= session.expiresAt);
+    }
+
+    private Session find(String token) {
+        if (token == null) return null;
+        int signatureStart = token.lastIndexOf('.');
+        if (signatureStart < 0) return null;
+        String payload = token.substring(0, signatureStart);
+        byte[] signature;
+        try {
+            signature = DECODER.decode(token.substring(signatureStart + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (!MessageDigest.isEqual(signature, sign(payload))) return null;
+
+        String[] parts = payload.split("\\.");
+        if (parts.length != 4 || !VERSION.equals(parts[0])) return null;
+        long expiresAt;
+        try {
+            expiresAt = Long.parseLong(parts[3]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (System.currentTimeMillis() >= expiresAt) {
+            sessions.remove(parts[2]);
+            return null;
+        }
+        return sessions.get(parts[2]);
+    }
+
+    private static String sessionIdOf(String token) {
+        if (token == null) return null;
+        String[] parts = token.split("\\.");
+        return parts.length == 5 ? parts[2] : null;
+    }
+
+    private byte[] unlockDigest(String sessionId, String password) {
+        return macs.get().doFinal(("unlock:" + sessionId + ":" + password).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private byte[] sign(String payload) {
+        return macs.get().doFinal(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available.", e);
+        }
+    }
+
+    private static final class Session {
+        final String username;
+        final long expiresAt;
+        final byte[] unlockDigest;
+        long lastActivity;
+        boolean locked;
+        int unlockFailures;
+
+        Session(String username, long expiresAt, byte[] unlockDigest, long lastActivity) {
+            this.username = username;
+            this.expiresAt = expiresAt;
+            this.unlockDigest = unlockDigest;
+            this.lastActivity = lastActivity;
+        }
+
+        boolean isIdle(long now, long idleTimeoutMillis) {
+            return now - lastActivity > idleTimeoutMillis;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.pharmacy.functionalities;
+
+import com.pharmacy.dao.InventoryLedgerDAO;
+import com.pharmacy.entities.LedgerEntry;
+import com.pharmacy.utils.DatabaseUtils;
+import com.pharmacy.utils.TransactionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Keeps every drug's received and sold totals in memory, backed by the persistent
+ * inventory ledger.
+ * <p>
+ * The stock on hand is {@code drugs.stock_quantity}; the ledger is the history of its
+ * changes. Every movement is recorded through {@link #recordWith}, in the same transaction
+ * as the stock change it describes, so the two cannot drift apart. The stock a drug is
+ * created with is its opening balance, not a movement.
+ * <p>
+ * Movements are applied to the in-memory counters only once they are committed, so the
+ * counters never show movements that were not recorded. Each counter is a
+ * {@link LongAdder}, so tills recording movements for the same drug do not contend, and
+ * reading a total is a map lookup.
+ * <p>
+ * On {@link #load} the balances are read from the latest snapshot plus the movements
+ * recorded since, so a restart does not replay the whole history. Snapshots are written
+ * periodically once {@link #startSnapshots} is called. Each snapshot is followed by a
+ * reload, which also picks up movements recorded by other terminals.
+ */
+public class StockLedger implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StockLedger.class);
+
+    private static final Duration SNAPSHOT_INTERVAL =
+            Duration.ofMinutes(Long.getLong("pharmacy.ledger.snapshotMinutes", 15));
+
+    private static volatile StockLedger shared;
+
+    private final InventoryLedgerDAO ledgerDAO;
+    private final TransactionManager transactions;
+    private volatile Map<String, Balance> balances = new ConcurrentHashMap<>();
+
+    // Recording holds the read side across commit-and-apply; reloading takes the write side,
+    // so a movement is never counted in neither or both of the old and new balances
+    private final ReentrantReadWriteLock reloadLock = new ReentrantReadWriteLock();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Running totals for one drug.
+     */
+    private static final class Balance {
+        final LongAdder received = new LongAdder();
+        final LongAdder sold = new LongAdder();
+
+        void apply(LedgerEntry.Type type, long quantity) {
+            if (type == LedgerEntry.Type.RECEIPT) received.add(quantity);
+            if (type == LedgerEntry.Type.SALE) sold.add(-quantity);
+        }
+    }
+
+    /**
+     * Initializes a new StockLedger. Call {@link #load} before reading balances.
+     *
+     * @param ledgerDAO    the persistent ledger
+     * @param transactions the provider the ledger DAO borrows from, used to record movements
+     *                     together with other work
+     */
+    public StockLedger(InventoryLedgerDAO ledgerDAO, TransactionManager transactions) {
+        this.ledgerDAO = ledgerDAO;
+        this.transactions = transactions;
+    }
+
+    /**
+     * Returns the application-wide ledger, loading it and starting its snapshots on first use.
+     *
+     * @throws SQLException if the balances cannot be loaded
+     */
+    public static StockLedger shared() throws SQLException {
+        StockLedger current = shared;
+        if (current == null) {
+            synchronized (StockLedger.class) {
+                current = shared;
+                if (current == null) {
+                    TransactionManager transactions = DatabaseUtils.getConnectionProvider();
+                    current = new StockLedger(new InventoryLedgerDAO(transactions), transactions);
+                    current.load();
+                    current.startSnapshots(SNAPSHOT_INTERVAL);
+                    shared = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Reads all balances from the latest snapshot and the movements recorded since.
+     *
+     * @throws SQLException if a database access error occurs
+     */
+    public void load() throws SQLException {
+        reloadLock.writeLock().lock();
+        try {
+            Map<String, Balance> loaded = new ConcurrentHashMap<>();
+            for (InventoryLedgerDAO.Balance row : ledgerDAO.loadBalances()) {
+                Balance balance = new Balance();
+                balance.received.add(row.getReceived());
+                balance.sold.add(row.getSold());
+                loaded.put(row.getDrugId(), balance);
+            }
+            balances = loaded;
+        } finally {
+            reloadLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Runs work and records the stock movements it produced in the same transaction, so
+     * that either both are committed or neither is. Balances change only after the commit.
+     *
+     * @param work      the work, which must borrow its connections from this ledger's
+     *                  transaction manager
+     * @param movements the movements to record for the work's result
+     * @return the work's result
+     * @throws SQLException          if the work or the movements failed; nothing is committed
+     * @throws IllegalStateException if called inside another transaction, whose commit the
+     *                               balances could not wait for
+     */
+    public <T> T recordWith(TransactionManager.Work<T> work,
+                            Function<? super T, ? extends Collection<LedgerEntry>> movements) throws SQLException {
+        if (transactions.isInTransaction()) {
+            throw new IllegalStateException("Stock movements must be recorded in their own transaction.");
+        }
+        reloadLock.readLock().lock();
+        try {
+            List<LedgerEntry> recorded = new ArrayList<>();
+            T result = transactions.inTransaction(() -> {
+                T value = work.execute();
+                recorded.addAll(ledgerDAO.appendAll(movements.apply(value)));
+                return value;
+            });
+            apply(recorded);
+            return result;
+        } finally {
+            reloadLock.readLock().unlock();
+        }
+    }
+
+    private void apply(List<LedgerEntry> recorded) {
+        for (LedgerEntry entry : recorded) {
+            balances.computeIfAbsent(entry.getDrugId(), id -> new Balance()).apply(entry.getType(), entry.getQuantity());
+        }
+    }
+
+    /**
+     * Returns the units of a drug received, net of receipt corrections.
+     *
+     * @param drugId the drug ID
+     * @return the received total
+     */
+    public long getReceived(String drugId) {
+        Balance balance = balances.get(drugId);
+        return balance == null ? 0 : balance.received.sum();
+    }
+
+    /**
+     * Reads the units of a drug received from the ledger itself and locks the drug until the
+     * transaction ends. For work run by {@link #recordWith} that computes a movement from the
+     * total, which the in-memory counter may not have caught up with.
+     *
+     * @param drugId the drug ID
+     * @return the committed received total, net of receipt corrections
+     * @throws SQLException if a database access error occurs
+     */
+    public long lockReceived(String drugId) throws SQLException {
+        return ledgerDAO.getReceivedForUpdate(drugId);
+    }
+
+    /**
+     * Returns the units of a drug sold.
+     *
+     * @param drugId the drug ID
+     * @return the sold total
+     */
+    public long getSold(String drugId) {
+        Balance balance = balances.get(drugId);
+        return balance == null ? 0 : balance.sold.sum();
+    }
+
+    /**
+     * Returns the IDs of all drugs that have ever moved.
+     *
+     * @return a snapshot of the drug IDs
+     */
+    public List<String> getDrugIds() {
+        return new ArrayList<>(balances.keySet());
+    }
+
+    /**
+     * Retrieves the full movement history of a drug from the ledger.
+     *
+     * @param drugId the drug ID
+     * @return the drug's entries, oldest first
+     * @throws SQLException if a database access error occurs
+     */
+    public List<LedgerEntry> getHistory(String drugId) throws SQLException {
+        return ledgerDAO.getEntriesForDrug(drugId);
+    }
+
+    /**
+     * Writes a snapshot now and reloads the balances from it.
+     *
+     * @throws SQLException if a database access error occurs
+     */
+    public void snapshot() throws SQLException {
+        ledgerDAO.writeSnapshot();
+        load();
+    }
+
+    /**
+     * Writes a snapshot at a fixed interval until {@link #close} is called.
+     *
+     * @param interval the time between snapshots
+     */
+    public synchronized void startSnapshots(Duration interval) {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-ledger-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = interval.toMillis();
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (SQLException e) {
+                // Try again at the next interval; balances stay correct without snapshots
+                LOGGER.warn("Could not write a stock ledger snapshot", e);
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops taking snapshots.
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+}
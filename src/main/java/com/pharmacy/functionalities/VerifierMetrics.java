@@ -0,0 +1,76 @@
+package com.pharmacy.functionalities;
+
+/**
+ * Point-in-time snapshot of a {@link PasswordVerifier}'s counters.
+ */
+public class VerifierMetrics {
+    private final int active;
+    private final int queued;
+    private final int maxConcurrent;
+    private final long verifiedCount;
+    private final long rejectedCount;
+    private final long throttledCount;
+    private final long busyCount;
+    private final long hashCount;
+    private final long totalHashNanos;
+    private final long maxHashNanos;
+    private final long totalQueueNanos;
+
+    VerifierMetrics(int active, int queued, int maxConcurrent, long verifiedCount, long rejectedCount,
+                    long throttledCount, long busyCount, long hashCount, long totalHashNanos, long maxHashNanos, long totalQueueNanos) {
+        this.active = active;
+        this.queued = queued;
+        this.maxConcurrent = maxConcurrent;
+        this.verifiedCount = verifiedCount;
+        this.rejectedCount = rejectedCount;
+        this.throttledCount = throttledCount;
+        this.busyCount = busyCount;
+        this.hashCount = hashCount;
+        this.totalHashNanos = totalHashNanos;
+        this.maxHashNanos = maxHashNanos;
+        this.totalQueueNanos = totalQueueNanos;
+    }
+
+    /** @return checks hashing right now */
+    public int getActive() { return active; }
+
+    /** @return checks waiting for a thread */
+    public int getQueueDepth() { return queued; }
+
+    /** @return the configured number of checks that may hash at once */
+    public int getMaxConcurrent() { return maxConcurrent; }
+
+    /** @return checks whose password matched */
+    public long getVerifiedCount() { return verifiedCount; }
+
+    /** @return attempts that failed, including unknown users */
+    public long getRejectedCount() { return rejectedCount; }
+
+    /** @return attempts refused because of earlier failures */
+    public long getThrottledCount() { return throttledCount; }
+
+    /** @return checks turned away because the queue was full or the wait too long */
+    public long getBusyCount() { return busyCount; }
+
+    /** @return mean time spent hashing per check, in milliseconds */
+    public double getAverageHashMillis() {
+        return hashCount == 0 ? 0.0 : totalHashNanos / (double) hashCount / 1_000_000.0;
+    }
+
+    /** @return longest time a check spent hashing, in milliseconds */
+    public double getMaxHashMillis() {
+        return maxHashNanos / 1_000_000.0;
+    }
+
+    /** @return mean time a check waited for a thread, in milliseconds */
+    public double getAverageQueueMillis() {
+        return hashCount == 0 ? 0.0 : totalQueueNanos / (double) hashCount / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("VerifierMetrics[active=%d, queued=%d, max=%d, verified=%d, rejected=%d, throttled=%d, busy=%d, avgQueue=%.3fms, avgHash=%.3fms, maxHash=%.3fms]",
+                active, queued, maxConcurrent, verifiedCount, rejectedCount, throttledCount, busyCount,
+                getAverageQueueMillis(), getAverageHashMillis(), getMaxHashMillis());
+    }
+}
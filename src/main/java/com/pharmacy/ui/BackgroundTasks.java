@@ -0,0 +1,299 @@
+package com.pharmacy.ui;
+
+import com.pharmacy.utils.Metrics;
+import javafx.application.Platform;
+import javafx.scene.Node;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Runs a view's database work off the JavaFX Application Thread.
+ * <p>
+ * Each piece of work runs on its own virtual thread, and its result or error is handed
+ * back to the FX thread. Work is submitted under a key. Submitting again under a key
+ * that is still running cancels the earlier run and discards its result, so only the
+ * latest request for a view's data is shown. Work without a key, such as a save, is
+ * never cancelled by later work.
+ * <p>
+ * Cancelling never interrupts the work's thread: interrupting a virtual thread blocked in
+ * JDBC closes the connection's socket, which breaks the pooled connection. Cancelled work
+ * instead runs on until its current call returns, and its result is discarded; debounced
+ * work that has not started yet is skipped, and a stream stops at its next row.
+ * <p>
+ * Large results can be streamed. Rows are queued as they are produced and published to
+ * the FX thread in batches. Each pulse stops publishing once its time budget is spent,
+ * which keeps frames short while a big load is running.
+ * <p>
+ * A view that names itself gets its keyed work timed, from when the work starts until
+ * its result has been handed to the view, on the {@link Metrics} timer
+ * {@code ui.<view>.<key>}.
+ * <p>
+ * Apart from the work itself, every method must be called on the FX thread.
+ */
+public class BackgroundTasks {
+
+    /** Time a single pulse may spend handing streamed rows to the view. */
+    private static final long PUBLISH_BUDGET_NANOS = Duration.ofMillis(8).toNanos();
+
+    /** Largest number of rows handed to the view in one callback. */
+    private static final int MAX_BATCH = 500;
+
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Work that produces its rows one at a time.
+     *
+     * @param <T> the row type
+     */
+    @FunctionalInterface
+    public interface StreamingWork<T> {
+        void produce(Consumer<T> sink) throws Exception;
+    }
+
+    private final Map<Object, Ticket> running = new HashMap<>();
+    private final Map<Object, Metrics.Timer> timers = new HashMap<>();
+    private final String viewName;
+    private Consumer<Throwable> errorHandler = Throwable::printStackTrace;
+
+    /**
+     * Creates an instance whose work is not timed.
+     */
+    public BackgroundTasks() {
+        this(null);
+    }
+
+    /**
+     * Creates an instance that times its keyed work under the view's name.
+     *
+     * @param viewName the view, such as {@code drugs}, or null to time nothing
+     */
+    public BackgroundTasks(String viewName) {
+        this.viewName = viewName;
+    }
+
+    /**
+     * Sets the handler for errors raised by work submitted without its own handler.
+     * By default they are printed.
+     *
+     * @param errorHandler receives errors on the FX thread
+     */
+    public void setErrorHandler(Consumer<Throwable> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Runs work in the background and passes its result to {@code onSuccess} on the FX thread.
+     *
+     * @param key       identifies the work for coalescing and cancellation, or null
+     * @param work      the work to run
+     * @param onSuccess receives the result
+     */
+    public <T> void run(Object key, Callable<T> work, Consumer<? super T> onSuccess) {
+        run(key, Duration.ZERO, work, onSuccess, errorHandler);
+    }
+
+    /**
+     * Runs work in the background, passing its result or error back on the FX thread.
+     *
+     * @param key       identifies the work for coalescing and cancellation, or null
+     * @param work      the work to run
+     * @param onSuccess receives the result
+     * @param onFailure receives the error
+     */
+    public <T> void run(Object key, Callable<T> work, Consumer<? super T> onSuccess, Consumer<Throwable> onFailure) {
+        run(key, Duration.ZERO, work, onSuccess, onFailure);
+    }
+
+    /**
+     * Runs work after a quiet period. Each new submission under the same key restarts
+     * the wait, so a burst of requests, such as keystrokes, results in a single run.
+     *
+     * @param key       identifies the work for coalescing and cancellation
+     * @param delay     how long to wait for further submissions
+     * @param work      the work to run
+     * @param onSuccess receives the result
+     */
+    public <T> void runDebounced(Object key, Duration delay, Callable<T> work, Consumer<? super T> onSuccess) {
+        run(key, delay, work, onSuccess, errorHandler);
+    }
+
+    /**
+     * Streams rows from background work to the view in frame-sized batches.
+     *
+     * @param key        identifies the work for coalescing and cancellation, or null
+     * @param work       produces the rows
+     * @param onBatch    receives each batch of rows
+     * @param onComplete called once every row has been published
+     */
+    public <T> void stream(Object key, StreamingWork<T> work, Consumer<List<T>> onBatch, Runnable onComplete) {
+        Ticket ticket = register(key);
+        Metrics.Timer timer = timerFor(key);
+        long started = System.nanoTime();
+        ConcurrentLinkedQueue<T> queue = new ConcurrentLinkedQueue<>();
+        AtomicBoolean publishScheduled = new AtomicBoolean();
+        AtomicBoolean produced = new AtomicBoolean();
+
+        Runnable publish = new Runnable() {
+            @Override
+            public void run() {
+                publishScheduled.set(false);
+                if (ticket.cancelled) return;
+                long start = System.nanoTime();
+                while (!queue.isEmpty()) {
+                    List<T> batch = new ArrayList<>(Math.min(MAX_BATCH, queue.size()));
+                    T row;
+                    while (batch.size() < MAX_BATCH && (row = queue.poll()) != null) {
+                        batch.add(row);
+                    }
+                    onBatch.accept(batch);
+                    if (System.nanoTime() - start > PUBLISH_BUDGET_NANOS) {
+                        // Out of budget for this pulse; carry on in the next one
+                        if (publishScheduled.compareAndSet(false, true)) Platform.runLater(this);
+                        return;
+                    }
+                }
+                if (produced.get() && queue.isEmpty()) {
+                    finish(key, ticket);
+                    onComplete.run();
+                    if (timer != null) timer.recordSince(started);
+                }
+            }
+        };
+
+        EXECUTOR.execute(() -> {
+            try {
+                work.produce(row -> {
+                    if (ticket.cancelled) throw new CancelledException();
+                    queue.add(row);
+                    if (publishScheduled.compareAndSet(false, true)) Platform.runLater(publish);
+                });
+                produced.set(true);
+                if (publishScheduled.compareAndSet(false, true)) Platform.runLater(publish);
+            } catch (CancelledException e) {
+                // The view no longer wants these rows
+            } catch (Throwable e) {
+                Platform.runLater(() -> {
+                    if (finish(key, ticket)) errorHandler.accept(e);
+                });
+            }
+        });
+    }
+
+    /**
+     * Cancels the work running under a key. Its result is discarded.
+     *
+     * @param key the work's key
+     */
+    public void cancel(Object key) {
+        Ticket ticket = running.remove(key);
+        if (ticket != null) ticket.cancel();
+    }
+
+    /**
+     * Cancels all work submitted through this instance.
+     */
+    public void cancelAll() {
+        running.values().forEach(Ticket::cancel);
+        running.clear();
+    }
+
+    /**
+     * Returns whether work is running under a key.
+     *
+     * @param key the work's key
+     * @return true if the work has not yet finished or been cancelled
+     */
+    public boolean isRunning(Object key) {
+        return running.containsKey(key);
+    }
+
+    /**
+     * Cancels all work once the node is removed from its scene, for example when the
+     * user switches to another view.
+     *
+     * @param node a node of the view that owns this instance
+     */
+    public void cancelWhenDetached(Node node) {
+        node.sceneProperty().addListener((obs, oldScene, newScene) -> {
+            if (oldScene != null && newScene == null) {
+                cancelAll();
+            }
+        });
+    }
+
+    private <T> void run(Object key, Duration delay, Callable<T> work,
+                         Consumer<? super T> onSuccess, Consumer<Throwable> onFailure) {
+        Ticket ticket = register(key);
+        Metrics.Timer timer = timerFor(key);
+        long delayMillis = delay.toMillis();
+        EXECUTOR.execute(() -> {
+            try {
+                if (delayMillis > 0) Thread.sleep(delayMillis);
+                if (ticket.cancelled) return;
+                long started = System.nanoTime();
+                T result = work.call();
+                Platform.runLater(() -> {
+                    if (finish(key, ticket)) {
+                        onSuccess.accept(result);
+                        if (timer != null) timer.recordSince(started);
+                    }
+                });
+            } catch (InterruptedException e) {
+                // Nothing here interrupts the work; treat it as a cancellation
+            } catch (Throwable e) {
+                Platform.runLater(() -> {
+                    if (finish(key, ticket)) onFailure.accept(e);
+                });
+            }
+        });
+    }
+
+    private Ticket register(Object key) {
+        Ticket ticket = new Ticket();
+        if (key != null) {
+            Ticket previous = running.put(key, ticket);
+            if (previous != null) previous.cancel();
+        }
+        return ticket;
+    }
+
+    private Metrics.Timer timerFor(Object key) {
+        if (viewName == null || key == null) return null;
+        return timers.computeIfAbsent(key, k -> Metrics.timer("ui." + viewName + "." + k));
+    }
+
+    /**
+     * Retires a ticket on the FX thread.
+     *
+     * @return true if its result should still be delivered
+     */
+    private boolean finish(Object key, Ticket ticket) {
+        if (key != null) running.remove(key, ticket);
+        return !ticket.cancelled;
+    }
+
+    private static final class Ticket {
+        volatile boolean cancelled;
+
+        /** Asks the work to stop at its next check; never interrupts it. */
+        void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private static final class CancelledException extends RuntimeException {
+        CancelledException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -1,24 +1,52 @@
 package com.pharmacy.ui;
 
+import com.pharmacy.dao.SalesPartitionDAO;
+import com.pharmacy.functionalities.LoginService;
 import com.pharmacy.ui.controllers.LoginController;
+import com.pharmacy.ui.controllers.SalesController;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import com.pharmacy.utils.ConnectionProvider;
 import com.pharmacy.utils.DatabaseUtils;
+import com.pharmacy.utils.Metrics;
+import com.pharmacy.utils.MetricsEndpoint;
+import com.pharmacy.utils.SchemaMigrator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.time.YearMonth;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class MainApp extends Application {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(MainApp.class);
+
+    /** Months of sales partitions kept ready, starting with the current one. */
+    private static final int PARTITION_MONTHS_AHEAD = 3;
+
+    /** How often the memory of expired sessions is freed. */
+    private static final long SESSION_PURGE_MINUTES = 30;
+
     private Stage primaryStage;
-    private Connection connection;
+    private ConnectionProvider connectionProvider;
+    private String sessionToken;
+    private LoginService loginService;
+    private SessionLock sessionLock;
+    private MetricsEndpoint metricsEndpoint;
+    private ScheduledExecutorService maintenance;
 
     @Override
     public void start(Stage primaryStage) {
         this.primaryStage = primaryStage;
+        startMetricsEndpoint();
         try {
             initDatabaseConnection();
             initLogin(); // Show login page first
@@ -28,17 +56,99 @@ public class MainApp extends Application {
     }
 
     private void initDatabaseConnection() throws SQLException {
-        String url = "jdbc:postgresql://localhost:5432/ad_pharmacy";
-        String user = "pharmacy_user";
-        String password = "gooses2@";
-        this.connection = DriverManager.getConnection(url, user, password);
+        this.connectionProvider = DatabaseUtils.getConnectionProvider();
+        this.loginService = new LoginService(connectionProvider);
+        // Borrow once up front so a bad configuration fails at startup, not at first login
+        try (Connection connection = connectionProvider.getConnection()) {
+            if (!connection.isValid(2)) {
+                throw new SQLException("The database did not answer a validity check within 2 seconds.");
+            }
+        }
+        if (Boolean.parseBoolean(System.getProperty("pharmacy.db.migrate", "true"))) {
+            int applied = new SchemaMigrator(connectionProvider).migrate();
+            if (applied > 0) LOGGER.info("Applied {} schema migration(s)", applied);
+        }
+        // Partitions for the coming months, so the first sale of a month does not wait on DDL
+        SalesPartitionDAO partitions = new SalesPartitionDAO(connectionProvider);
+        partitions.ensureMonthsAhead(YearMonth.now(), PARTITION_MONTHS_AHEAD);
+        startMaintenance(partitions);
+    }
+
+    /**
+     * Keeps the sales partitions ahead of the calendar once a day, and frees expired login
+     * sessions, while the application runs.
+     */
+    private void startMaintenance(SalesPartitionDAO partitions) {
+        maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.scheduleWithFixedDelay(() -> {
+            try {
+                partitions.ensureMonthsAhead(YearMonth.now(), PARTITION_MONTHS_AHEAD);
+            } catch (SQLException | RuntimeException e) {
+                // Months are created well ahead, so tomorrow's run is soon enough
+                LOGGER.warn("Could not create sales partitions ahead of time", e);
+            }
+        }, 1, 1, TimeUnit.DAYS);
+        maintenance.scheduleWithFixedDelay(loginService::purgeExpiredSessions,
+                SESSION_PURGE_MINUTES, SESSION_PURGE_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public ConnectionProvider getConnectionProvider() {
+        return connectionProvider;
+    }
+
+    /**
+     * Remembers the signed-in user's session, which screens can check or lock without
+     * asking for a full login again.
+     */
+    public void setSessionToken(String sessionToken) {
+        this.sessionToken = sessionToken;
+    }
+
+    public String getSessionToken() {
+        return sessionToken;
+    }
+
+    /**
+     * Serves timings on localhost when {@code pharmacy.metrics.port} is set.
+     */
+    private void startMetricsEndpoint() {
+        Integer port = Integer.getInteger("pharmacy.metrics.port");
+        if (port == null) return;
+        try {
+            metricsEndpoint = new MetricsEndpoint(port);
+        } catch (IOException e) {
+            LOGGER.warn("Metrics endpoint not started on port {}", port, e);
+        }
     }
 
-    public Connection getConnection() {
-        return connection;
+    @Override
+    public void stop() {
+        if (metricsEndpoint != null) metricsEndpoint.close();
+        if (maintenance != null) maintenance.shutdownNow();
+        // Queued sales are written before the pool closes
+        SalesController.closeCheckout();
+        // Dumped at exit so the timings cover the whole session
+        String dumpFile = System.getProperty("pharmacy.metrics.dumpFile");
+        if (dumpFile != null) {
+            try {
+                Metrics.dump(Path.of(dumpFile));
+            } catch (IOException e) {
+                LOGGER.warn("Could not write the metrics dump to {}", dumpFile, e);
+            }
+        }
+        DatabaseUtils.shutdown();
     }
 
     public void initLogin() {
+        if (sessionLock != null) {
+            sessionLock.stop();
+            sessionLock = null;
+        }
+        sessionToken = null;
         try {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/pharmacy/views/LoginLayout.fxml"));
             Scene scene = new Scene(loader.load(), 1000, 800);
@@ -58,6 +168,9 @@ public class MainApp extends Application {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/pharmacy/views/Dashboard.fxml"));
             Scene scene = new Scene(loader.load(), 1000, 800);
             scene.getStylesheets().add(getClass().getResource("/com/pharmacy/styles/Dashboard.css").toExternalForm());
+            // Locks the dashboard when the session goes idle; logging out returns to the login page
+            sessionLock = new SessionLock(loginService, sessionToken, this::initLogin);
+            sessionLock.attach(scene);
             primaryStage.setScene(scene);
             primaryStage.setTitle("AD Chemist - Dashboard");
             primaryStage.show();
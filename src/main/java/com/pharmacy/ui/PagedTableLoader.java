@@ -0,0 +1,231 @@
+package com.pharmacy.ui;
+
+import com.pharmacy.dao.Page;
+import com.pharmacy.dao.SortOrder;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
+import javafx.scene.control.IndexedCell;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.control.TableView;
+import javafx.scene.control.skin.VirtualFlow;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Feeds a {@link TableView} from a keyset-paginated DAO query, one page at a time.
+ * <p>
+ * The first page is loaded on {@link #reload()}; further pages are fetched as the user
+ * scrolls toward either end of the table. At most {@code maxPages} pages are held at once:
+ * when a new page would exceed that, the page at the opposite end is dropped and fetched
+ * again if the user scrolls back to it. Memory therefore stays bounded however large the
+ * underlying table is.
+ * <p>
+ * Pages are fetched in the background and added to the table when they arrive. A reload
+ * discards any fetch still in flight, and fetches stop when the table leaves the scene.
+ * <p>
+ * To show other rows in the table for a while, such as search results, {@link #pause()}
+ * the loader first; {@link #reload()} takes the table back.
+ *
+ * @param <T> the row type
+ */
+public class PagedTableLoader<T> {
+
+    /** Fraction of the scroll range from either end at which the next page is fetched. */
+    private static final double PREFETCH_THRESHOLD = 0.1;
+
+    private static final String FETCH = "fetch";
+
+    /**
+     * A keyset-paginated query, typically a DAO's {@code fetchPage} method.
+     *
+     * @param <T> the row type
+     */
+    @FunctionalInterface
+    public interface PageSource<T> {
+        Page<T> fetch(String afterKey, int limit, SortOrder sort) throws SQLException;
+    }
+
+    private final TableView<T> table;
+    private final PageSource<T> source;
+    private final int pageSize;
+    private final int maxPages;
+    private final ObservableList<T> rows = FXCollections.observableArrayList();
+    private final Deque<ResidentPage> pages = new ArrayDeque<>();
+    private final BackgroundTasks tasks;
+
+    private SortOrder sort = SortOrder.ASCENDING;
+    private boolean moreBefore;
+    private boolean moreAfter;
+    private boolean paused;
+    private Consumer<SQLException> errorHandler = Throwable::printStackTrace;
+
+    /**
+     * Binds a loader to a table. Columns are made unsortable, since sorting a partial
+     * window on the client would misrepresent the data; use {@link #setSortOrder} instead.
+     *
+     * @param table    the table to fill; its id names the fetch timer
+     * @param source   the paginated query
+     * @param pageSize the number of rows fetched per page
+     * @param maxPages the number of pages held in memory at once
+     */
+    public PagedTableLoader(TableView<T> table, PageSource<T> source, int pageSize, int maxPages) {
+        if (pageSize <= 0) throw new IllegalArgumentException("Page size must be positive.");
+        if (maxPages < 2) throw new IllegalArgumentException("At least two pages must be resident.");
+        this.table = table;
+        this.source = source;
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+        this.tasks = new BackgroundTasks(table.getId());
+
+        table.getColumns().forEach(column -> column.setSortable(false));
+        tasks.cancelWhenDetached(table);
+        table.skinProperty().addListener((obs, oldSkin, newSkin) -> attachScrollListener());
+        if (table.getSkin() != null) {
+            attachScrollListener();
+        }
+    }
+
+    /**
+     * Discards the loaded rows and loads the first page again.
+     */
+    public void reload() {
+        // A fetch still in flight is not interrupted; it finishes and its page is dropped
+        tasks.cancel(FETCH);
+        paused = false;
+        table.setItems(rows);
+        rows.clear();
+        pages.clear();
+        moreBefore = false;
+        moreAfter = true;
+        loadNext();
+        table.scrollTo(0);
+    }
+
+    /**
+     * Stops fetching pages and leaves the table alone until the next {@link #reload()}, so
+     * the caller can show its own rows in it. A fetch still in flight is dropped.
+     */
+    public void pause() {
+        tasks.cancel(FETCH);
+        paused = true;
+    }
+
+    /**
+     * Changes the sort direction and reloads from the first page.
+     *
+     * @param sort the new direction
+     */
+    public void setSortOrder(SortOrder sort) {
+        this.sort = sort;
+        reload();
+    }
+
+    /**
+     * Sets the handler for errors raised by the page source. By default they are printed.
+     *
+     * @param errorHandler receives database errors
+     */
+    public void setErrorHandler(Consumer<SQLException> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    private void loadNext() {
+        if (paused || tasks.isRunning(FETCH) || !moreAfter) return;
+        String afterKey = pages.isEmpty() ? null : pages.peekLast().endKey;
+        fetch(afterKey, sort, this::appendPage);
+    }
+
+    private void appendPage(Page<T> page) {
+        moreAfter = page.hasMore();
+        if (page.getItems().isEmpty()) return;
+
+        rows.addAll(page.getItems());
+        pages.addLast(new ResidentPage(page.getItems().size(), page.getStartKey(), page.getEndKey()));
+        if (pages.size() > maxPages) {
+            int firstVisible = firstVisibleIndex();
+            ResidentPage dropped = pages.removeFirst();
+            rows.remove(0, dropped.size);
+            moreBefore = true;
+            table.scrollTo(Math.max(0, firstVisible - dropped.size));
+        }
+    }
+
+    private void loadPrevious() {
+        if (paused || tasks.isRunning(FETCH) || !moreBefore || pages.isEmpty()) return;
+        fetch(pages.peekFirst().startKey, sort.reversed(), this::prependPage);
+    }
+
+    private void prependPage(Page<T> page) {
+        moreBefore = page.hasMore();
+        if (page.getItems().isEmpty()) return;
+
+        List<T> items = new ArrayList<>(page.getItems());
+        Collections.reverse(items);
+        int firstVisible = firstVisibleIndex();
+        rows.addAll(0, items);
+        pages.addFirst(new ResidentPage(items.size(), page.getEndKey(), page.getStartKey()));
+        if (pages.size() > maxPages) {
+            ResidentPage dropped = pages.removeLast();
+            rows.remove(rows.size() - dropped.size, rows.size());
+            moreAfter = true;
+        }
+        table.scrollTo(firstVisible + items.size());
+    }
+
+    private void fetch(String afterKey, SortOrder order, Consumer<Page<T>> onPage) {
+        tasks.run(FETCH, () -> source.fetch(afterKey, pageSize, order), onPage, e -> {
+            if (e instanceof SQLException sqlException) {
+                errorHandler.accept(sqlException);
+            } else {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private int firstVisibleIndex() {
+        Node node = table.lookup(".virtual-flow");
+        if (node instanceof VirtualFlow<?> flow) {
+            IndexedCell<?> cell = flow.getFirstVisibleCell();
+            if (cell != null) {
+                return cell.getIndex();
+            }
+        }
+        return 0;
+    }
+
+    private void attachScrollListener() {
+        for (Node node : table.lookupAll(".scroll-bar")) {
+            if (node instanceof ScrollBar scrollBar && scrollBar.getOrientation() == Orientation.VERTICAL) {
+                scrollBar.valueProperty().addListener((obs, oldValue, newValue) -> {
+                    double range = scrollBar.getMax() - scrollBar.getMin();
+                    if (newValue.doubleValue() >= scrollBar.getMax() - range * PREFETCH_THRESHOLD) {
+                        loadNext();
+                    } else if (newValue.doubleValue() <= scrollBar.getMin() + range * PREFETCH_THRESHOLD) {
+                        loadPrevious();
+                    }
+                });
+                return;
+            }
+        }
+    }
+
+    private static final class ResidentPage {
+        final int size;
+        final String startKey;
+        final String endKey;
+
+        ResidentPage(int size, String startKey, String endKey) {
+            this.size = size;
+            this.startKey = startKey;
+            this.endKey = endKey;
+        }
+    }
+}
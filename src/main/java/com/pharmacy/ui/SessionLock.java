@@ -0,0 +1,138 @@
+package com.pharmacy.ui;
+
+import com.pharmacy.functionalities.LoginService;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.control.ButtonBar;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.Dialog;
+import javafx.scene.control.PasswordField;
+import javafx.scene.input.InputEvent;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseEvent;
+import javafx.util.Duration;
+
+import java.util.Optional;
+
+/**
+ * Locks the screen when the signed-in user's session goes idle or is locked, and unlocks
+ * it with the user's password through {@link LoginService#unlock}, which needs neither the
+ * database nor a full password hash.
+ * <p>
+ * Every key or mouse press on the scene counts as activity on the session; a press on a
+ * locked session is swallowed and brings up the lock screen instead. The session is also
+ * checked on a timer, so the screen locks while nobody touches it. Choosing to log out, or
+ * too many wrong passwords, ends the session and hands control back to the application.
+ * <p>
+ * Every method must be called on the FX thread.
+ */
+public class SessionLock {
+
+    /** How often an untouched screen checks whether its session has locked. */
+    private static final Duration CHECK_INTERVAL = Duration.seconds(15);
+
+    private final LoginService loginService;
+    private final String sessionToken;
+    private final Runnable onSessionEnded;
+    private final Timeline timer;
+    private boolean showing;
+    private boolean ended;
+
+    /**
+     * @param loginService   checks and unlocks the session
+     * @param sessionToken   the signed-in user's session
+     * @param onSessionEnded called once the session has ended, for example to show the login screen
+     */
+    public SessionLock(LoginService loginService, String sessionToken, Runnable onSessionEnded) {
+        this.loginService = loginService;
+        this.sessionToken = sessionToken;
+        this.onSessionEnded = onSessionEnded;
+        this.timer = new Timeline(new KeyFrame(CHECK_INTERVAL, event -> {
+            if (loginService.isLocked(sessionToken)) Platform.runLater(this::showLockScreen);
+        }));
+        this.timer.setCycleCount(Animation.INDEFINITE);
+    }
+
+    /**
+     * Starts watching the scene's input and the session.
+     *
+     * @param scene the scene shown while the user is signed in
+     */
+    public void attach(Scene scene) {
+        scene.addEventFilter(KeyEvent.KEY_PRESSED, this::onActivity);
+        scene.addEventFilter(MouseEvent.MOUSE_PRESSED, this::onActivity);
+        timer.play();
+    }
+
+    /**
+     * Stops checking the session, for example when the user signs out.
+     */
+    public void stop() {
+        ended = true;
+        timer.stop();
+    }
+
+    private void onActivity(InputEvent event) {
+        if (ended || showing) return;
+        if (loginService.currentUser(sessionToken).isPresent()) return;
+        event.consume();
+        if (loginService.isLocked(sessionToken)) {
+            Platform.runLater(this::showLockScreen);
+        } else {
+            end();
+        }
+    }
+
+    private void showLockScreen() {
+        if (ended || showing) return;
+        showing = true;
+        try {
+            String header = "The screen is locked. Enter your password to continue.";
+            while (true) {
+                Optional<String> password = askPassword(header);
+                if (password.isEmpty()) {
+                    loginService.logout(sessionToken);
+                    end();
+                    return;
+                }
+                if (loginService.unlock(sessionToken, password.get())) {
+                    return;
+                }
+                if (!loginService.isLocked(sessionToken)) {
+                    // Too many wrong passwords ended the session
+                    end();
+                    return;
+                }
+                header = "Incorrect password. Please try again.";
+            }
+        } finally {
+            showing = false;
+        }
+    }
+
+    private Optional<String> askPassword(String header) {
+        Dialog<String> dialog = new Dialog<>();
+        dialog.setTitle("AD Chemist - Locked");
+        dialog.setHeaderText(header);
+
+        ButtonType unlockButtonType = new ButtonType("Unlock", ButtonBar.ButtonData.OK_DONE);
+        ButtonType logoutButtonType = new ButtonType("Log Out", ButtonBar.ButtonData.CANCEL_CLOSE);
+        dialog.getDialogPane().getButtonTypes().addAll(unlockButtonType, logoutButtonType);
+
+        PasswordField passwordField = new PasswordField();
+        dialog.getDialogPane().setContent(passwordField);
+        Platform.runLater(passwordField::requestFocus);
+
+        dialog.setResultConverter(dialogButton -> dialogButton == unlockButtonType ? passwordField.getText() : null);
+        return dialog.showAndWait();
+    }
+
+    private void end() {
+        if (ended) return;
+        stop();
+        onSessionEnded.run();
+    }
+}
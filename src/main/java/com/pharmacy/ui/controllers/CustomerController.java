@@ -1,7 +1,10 @@
 package com.pharmacy.ui.controllers;
 
+import com.pharmacy.dao.CustomerDAO;
 import com.pharmacy.entities.Customer;
-import com.pharmacy.functionalities.CustomerManager; // Replace with the actual class name
+import com.pharmacy.ui.BackgroundTasks;
+import com.pharmacy.ui.PagedTableLoader;
+import com.pharmacy.utils.DatabaseUtils;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.fxml.FXML;
@@ -12,6 +15,9 @@ import java.util.Optional;
 
 public class CustomerController {
 
+    private static final int PAGE_SIZE = 200;
+    private static final int MAX_RESIDENT_PAGES = 5;
+
     @FXML
     private TableView<Customer> customersTable;
 
@@ -27,7 +33,9 @@ public class CustomerController {
     @FXML
     private TextField searchField;
 
-    private CustomerManager customerManager = new CustomerManager();
+    private CustomerDAO customerDAO = new CustomerDAO(DatabaseUtils.getConnectionProvider());
+    private PagedTableLoader<Customer> customersPager;
+    private final BackgroundTasks tasks = new BackgroundTasks("customers");
 
     @FXML
     public void initialize() {
@@ -35,20 +43,24 @@ public class CustomerController {
         nameColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getCustomerName()));
         contactInfoColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getContactInfo()));
 
+        customersPager = new PagedTableLoader<>(customersTable, customerDAO::fetchPage, PAGE_SIZE, MAX_RESIDENT_PAGES);
+        customersPager.setErrorHandler(e -> showAlert("Database Error", e.getMessage()));
+        tasks.setErrorHandler(e -> showAlert("Database Error", e.getMessage()));
+        tasks.cancelWhenDetached(customersTable);
         loadAllCustomers();
     }
 
     private void loadAllCustomers() {
-        customersTable.setItems(FXCollections.observableArrayList(customerManager.listAllCustomers()));
+        customersPager.reload();
     }
 
     @FXML
     private void handleAddCustomer() {
         Optional<Customer> result = showCustomerDialog(null);
-        result.ifPresent(customer -> {
-            customerManager.addCustomer(customer);
-            loadAllCustomers();
-        });
+        result.ifPresent(customer -> tasks.run(null, () -> {
+            customerDAO.addCustomer(customer);
+            return customer;
+        }, added -> loadAllCustomers()));
     }
 
     @FXML
@@ -56,10 +68,10 @@ public class CustomerController {
         Customer selectedCustomer = customersTable.getSelectionModel().getSelectedItem();
         if (selectedCustomer != null) {
             Optional<Customer> result = showCustomerDialog(selectedCustomer);
-            result.ifPresent(customer -> {
-                customerManager.updateCustomer(customer);
-                loadAllCustomers();
-            });
+            result.ifPresent(customer -> tasks.run(null, () -> {
+                customerDAO.updateCustomer(customer);
+                return customer;
+            }, updated -> loadAllCustomers()));
         } else {
             showAlert("No Customer Selected", "Please select a customer to edit.");
         }
@@ -69,8 +81,11 @@ public class CustomerController {
     private void handleRemoveCustomer() {
         Customer selectedCustomer = customersTable.getSelectionModel().getSelectedItem();
         if (selectedCustomer != null) {
-            customerManager.removeCustomer(selectedCustomer);
-            loadAllCustomers();
+            String customerId = selectedCustomer.getCustomerID();
+            tasks.run(null, () -> {
+                customerDAO.deleteCustomer(customerId);
+                return customerId;
+            }, removed -> loadAllCustomers());
         } else {
             showAlert("No Customer Selected", "Please select a customer to remove.");
         }
@@ -80,9 +95,13 @@ public class CustomerController {
     private void handleSearchCustomer() {
         String searchText = searchField.getText();
         if (searchText != null && !searchText.isEmpty()) {
-            Optional<Customer> customer = customerManager.searchCustomerByID(searchText); // Adjust as needed
-            customer.ifPresent(c -> customersTable.setItems(FXCollections.observableArrayList(c)));
+            tasks.run("search", () -> customerDAO.getCustomerById(searchText), customer -> {
+                if (customer != null) {
+                    customersTable.setItems(FXCollections.observableArrayList(customer));
+                }
+            });
         } else {
+            tasks.cancel("search");
             loadAllCustomers();
         }
     }
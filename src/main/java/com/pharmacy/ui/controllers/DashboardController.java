@@ -1,5 +1,6 @@
 package com.pharmacy.ui.controllers;
 
+import com.pharmacy.utils.Metrics;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Node;
@@ -27,6 +28,11 @@ public class DashboardController {
         loadView("/com/pharmacy/views/Drugs.fxml");
     }
 
+    @FXML
+    private void handleSalesButtonAction() {
+        loadView("/com/pharmacy/views/Sales.fxml");
+    }
+
     @FXML
     private void handleCustomersButtonAction() {
         loadView("/com/pharmacy/views/Customer.fxml");
@@ -48,13 +54,21 @@ public class DashboardController {
             if (loadedViews.containsKey(fxmlPath)) {
                 rootLayout.setCenter(loadedViews.get(fxmlPath));
             } else {
+                long start = System.nanoTime();
                 FXMLLoader loader = new FXMLLoader(getClass().getResource(fxmlPath));
                 Node view = loader.load();
                 loadedViews.put(fxmlPath, view); // Store the loaded view
                 rootLayout.setCenter(view);
+                Metrics.timer("ui.view." + viewName(fxmlPath)).recordSince(start);
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
+
+    // "/com/pharmacy/views/Drugs.fxml" -> "drugs"
+    private static String viewName(String fxmlPath) {
+        String file = fxmlPath.substring(fxmlPath.lastIndexOf('/') + 1);
+        return file.replace(".fxml", "").toLowerCase();
+    }
 }
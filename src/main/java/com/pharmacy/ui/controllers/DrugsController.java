@@ -1,7 +1,18 @@
 package com.pharmacy.ui.controllers;
 
+import com.pharmacy.dao.CachingDrugDAO;
+import com.pharmacy.dao.DrugCatalogDAO;
+import com.pharmacy.dao.InsufficientStockException;
+import com.pharmacy.dao.UncheckedSQLException;
 import com.pharmacy.entities.Drug;
+import com.pharmacy.entities.LedgerEntry;
+import com.pharmacy.functionalities.DrugCatalogImporter;
 import com.pharmacy.functionalities.DrugManager;
+import com.pharmacy.functionalities.StockLedger;
+import com.pharmacy.ui.BackgroundTasks;
+import com.pharmacy.ui.PagedTableLoader;
+import com.pharmacy.utils.DatabaseUtils;
+import javafx.application.Platform;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
@@ -10,10 +21,21 @@ import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
+
+import java.io.File;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class DrugsController {
 
+    private static final int PAGE_SIZE = 200;
+    private static final int MAX_RESIDENT_PAGES = 5;
+    private static final int SEARCH_LIMIT = 50;
+    private static final int IMPORT_ERRORS_SHOWN = 10;
+
     @FXML
     private TableView<Drug> drugsTable;
 
@@ -35,6 +57,16 @@ public class DrugsController {
     @FXML
     private TextField searchField;
 
+    @FXML
+    private ProgressIndicator importProgress;
+
+    @FXML
+    private Label importStatus;
+
+    // Shared, so edits made on this screen are seen by sales and stock lookups
+    private CachingDrugDAO drugDAO = CachingDrugDAO.shared();
+    private PagedTableLoader<Drug> drugsPager;
+    private final BackgroundTasks tasks = new BackgroundTasks("drugs");
     private DrugManager drugManager = new DrugManager();
     private ObservableList<Drug> drugList = FXCollections.observableArrayList();
 
@@ -46,12 +78,55 @@ public class DrugsController {
         stockColumn.setCellValueFactory(cellData -> new SimpleIntegerProperty(cellData.getValue().getStockQuantity()).asObject());
         priceColumn.setCellValueFactory(cellData -> new SimpleDoubleProperty(cellData.getValue().getPrice()).asObject());
 
+        drugsPager = new PagedTableLoader<>(drugsTable, drugDAO::fetchPage, PAGE_SIZE, MAX_RESIDENT_PAGES);
+        drugsPager.setErrorHandler(e -> showAlert("Database Error", e.getMessage()));
+        tasks.setErrorHandler(this::showDatabaseError);
+        tasks.cancelWhenDetached(drugsTable);
         loadAllDrugs();
+        loadSearchIndex();
+
+        // Refresh the results on every keystroke; only the latest search is shown
+        searchField.textProperty().addListener((obs, oldText, newText) -> showSearchResults(newText));
     }
 
     private void loadAllDrugs() {
-        drugList.setAll(drugManager.getAllDrugs());
-        drugsTable.setItems(drugList);
+        drugsPager.reload();
+    }
+
+    private void loadSearchIndex() {
+        // DrugManager is safe to fill from the loading thread
+        tasks.run("index", () -> {
+            try (Stream<Drug> drugs = drugDAO.streamAllDrugs()) {
+                drugs.forEach(drug -> {
+                    if (drugManager.getDrugById(drug.getDrugId()).isPresent()) {
+                        drugManager.updateDrug(drug);
+                    } else {
+                        drugManager.addDrug(drug);
+                    }
+                });
+            }
+            return drugManager.size();
+        }, size -> { });
+    }
+
+    private void showSearchResults(String searchText) {
+        showSearchResults(searchText, matches -> { });
+    }
+
+    private void showSearchResults(String searchText, Consumer<List<Drug>> onShown) {
+        if (searchText == null || searchText.isBlank()) {
+            tasks.cancel("search");
+            loadAllDrugs();
+            onShown.accept(List.of());
+            return;
+        }
+        tasks.run("search", () -> drugManager.searchDrugs(searchText, SEARCH_LIMIT), matches -> {
+            // Show only the matching drugs; clearing the search goes back to the paged view
+            drugsPager.pause();
+            drugList.setAll(matches);
+            drugsTable.setItems(drugList);
+            onShown.accept(matches);
+        });
     }
 
     @FXML
@@ -63,10 +138,11 @@ public class DrugsController {
     @FXML
     private void handleAddDrug() {
         Optional<Drug> result = showDrugDialog(null);
-        result.ifPresent(drug -> {
+        result.ifPresent(drug -> tasks.run(null, () -> {
+            drugDAO.addDrug(drug);
             drugManager.addDrug(drug);
-            loadAllDrugs();
-        });
+            return drug;
+        }, added -> loadAllDrugs()));
     }
 
     @FXML
@@ -74,10 +150,21 @@ public class DrugsController {
         Drug selectedDrug = drugsTable.getSelectionModel().getSelectedItem();
         if (selectedDrug != null) {
             Optional<Drug> result = showDrugDialog(selectedDrug);
-            result.ifPresent(drug -> {
+            // Details, stock change and its ledger entry are saved together or not at all, and the
+            // stock change is applied as a difference so units sold while the dialog was open are kept
+            result.ifPresent(drug -> tasks.run(null, () -> {
+                int stockChange = drug.getStockQuantity() - selectedDrug.getStockQuantity();
+                StockLedger.shared().recordWith(() -> {
+                    drugDAO.updateDrug(drug);
+                    if (stockChange != 0) {
+                        drug.setStockQuantity(drugDAO.adjustStock(drug.getDrugId(), stockChange));
+                    }
+                    return drug;
+                }, updated -> stockChange == 0 ? List.of() : List.of(new LedgerEntry(
+                        drug.getDrugId(), LedgerEntry.Type.ADJUSTMENT, stockChange, "stock count")));
                 drugManager.updateDrug(drug);
-                loadAllDrugs();
-            });
+                return drug;
+            }, updated -> loadAllDrugs()));
         } else {
             showAlert("No Drug Selected", "Please select a drug to edit.");
         }
@@ -87,27 +174,71 @@ public class DrugsController {
     private void handleRemoveDrug() {
         Drug selectedDrug = drugsTable.getSelectionModel().getSelectedItem();
         if (selectedDrug != null) {
-            drugManager.removeDrug(selectedDrug.getDrugId());
-            loadAllDrugs();
+            String drugId = selectedDrug.getDrugId();
+            tasks.run(null, () -> {
+                drugDAO.deleteDrug(drugId);
+                drugManager.removeDrug(drugId);
+                return drugId;
+            }, removed -> loadAllDrugs());
         } else {
             showAlert("No Drug Selected", "Please select a drug to delete.");
         }
     }
 
+    @FXML
+    private void handleImportDrugs() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Import Drug Catalogue");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV files", "*.csv"));
+        File file = chooser.showOpenDialog(drugsTable.getScene().getWindow());
+        if (file == null) return;
+
+        DrugCatalogImporter importer = new DrugCatalogImporter(new DrugCatalogDAO(DatabaseUtils.getConnectionProvider()));
+        showImportProgress(true);
+        importStatus.setText("Importing " + file.getName() + "...");
+        // Reported every few thousand rows from the importing thread
+        DrugCatalogImporter.ProgressListener progress = (rowsRead, rowsRejected) -> Platform.runLater(() ->
+                importStatus.setText(String.format("Importing %s: %,d rows read, %,d rejected",
+                        file.getName(), rowsRead, rowsRejected)));
+        tasks.run("import", () -> importer.importCsv(file.toPath(), progress), report -> {
+            showImportProgress(false);
+            drugDAO.invalidateAll();
+            loadAllDrugs();
+            loadSearchIndex();
+            StringBuilder message = new StringBuilder(String.format(
+                    "%d drugs added, %d updated, %d rows rejected.",
+                    report.getInsertedCount(), report.getUpdatedCount(), report.getRejectedCount()));
+            report.getErrors().stream().limit(IMPORT_ERRORS_SHOWN)
+                    .forEach(error -> message.append('\n').append(error));
+            if (report.getRejectedCount() > IMPORT_ERRORS_SHOWN) {
+                message.append("\n...");
+            }
+            showAlert("Import Finished", message.toString());
+        }, e -> {
+            showImportProgress(false);
+            showAlert("Import Failed", (e instanceof UncheckedSQLException ? e.getCause() : e).getMessage());
+        });
+    }
+
+    private void showImportProgress(boolean importing) {
+        importProgress.setVisible(importing);
+        importProgress.setManaged(importing);
+        if (!importing) {
+            importStatus.setText("");
+        }
+    }
+
     @FXML
     private void handleSearchDrugs() {
         String searchText = searchField.getText();
         if (searchText != null && !searchText.isEmpty()) {
-            Optional<Drug> drugOpt = drugManager.searchDrugByName(searchText);
-            if (drugOpt.isPresent()) {
-                // If the drug is found, update the table with that drug
-                drugList.setAll(drugOpt.get()); // Use Collections.singletonList for single item
-                drugsTable.setItems(drugList);
-            } else {
-                showAlert("No Drug Found", "No drug found with the given name.");
-                // Optionally clear the table or reload all drugs
-                loadAllDrugs();
-            }
+            showSearchResults(searchText, matches -> {
+                if (matches.isEmpty()) {
+                    showAlert("No Drug Found", "No drug found with the given name.");
+                    // Optionally clear the table or reload all drugs
+                    loadAllDrugs();
+                }
+            });
         } else {
             loadAllDrugs(); // Reload all drugs if search text is empty
         }
@@ -164,6 +295,15 @@ public class DrugsController {
         return dialog.showAndWait();
     }
 
+    private void showDatabaseError(Throwable e) {
+        if (e instanceof UncheckedSQLException unchecked) e = unchecked.getCause();
+        if (e instanceof InsufficientStockException shortage) {
+            showAlert("Insufficient Stock", "Stock cannot go below zero: " + shortage.getShortfalls());
+            return;
+        }
+        showAlert("Database Error", e.getMessage());
+    }
+
     private void showAlert(String title, String message) {
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle(title);
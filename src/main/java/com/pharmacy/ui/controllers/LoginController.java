@@ -5,6 +5,7 @@ import javafx.scene.control.Alert;
 import javafx.scene.control.PasswordField;
 import javafx.scene.control.TextField;
 import com.pharmacy.functionalities.LoginService;
+import com.pharmacy.ui.BackgroundTasks;
 import com.pharmacy.ui.MainApp;
 
 public class LoginController {
@@ -17,6 +18,7 @@ public class LoginController {
 
     private LoginService loginService = new LoginService();
     private MainApp mainApp;
+    private final BackgroundTasks tasks = new BackgroundTasks("login");
 
     public void setMainApp(MainApp mainApp) {
         this.mainApp = mainApp;
@@ -32,16 +34,23 @@ public class LoginController {
             return;
         }
 
-        boolean loginSuccess = loginService.loginUser(username, password);
-        if (loginSuccess) {
-            mainApp.showDashboard();
-        } else {
-            showAlert("Login failed", "Incorrect username or password.");
-        }
+        // Password hashing is deliberately slow, so keep it off the FX thread
+        tasks.run("login", () -> loginService.login(username, password), result -> {
+            switch (result.getOutcome()) {
+                case VERIFIED -> {
+                    mainApp.setSessionToken(result.getSessionToken().orElseThrow());
+                    mainApp.showDashboard();
+                }
+                case THROTTLED -> showAlert("Login failed", "Too many failed attempts. Please wait a moment and try again.");
+                case BUSY -> showAlert("Login failed", "The system is busy. Please try again.");
+                default -> showAlert("Login failed", "Incorrect username or password.");
+            }
+        }, e -> showAlert("Login failed", "Could not reach the database. Please try again."));
     }
 
     @FXML
     private void handleCancel() {
+        tasks.cancel("login");
         usernameField.clear();
         passwordField.clear();
     }
@@ -1,15 +1,18 @@
 package com.pharmacy.ui.controllers;
 
+import com.pharmacy.dao.CachingDrugDAO;
+import com.pharmacy.dao.DrugDAO;
 import com.pharmacy.entities.Drug;
-import com.pharmacy.functionalities.DrugManager;
 import com.pharmacy.functionalities.PurchaseManager;
+import com.pharmacy.functionalities.StockLedger;
+import com.pharmacy.ui.BackgroundTasks;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
 
-import java.util.Collection;
+import java.sql.SQLException;
 import java.util.Map;
 import java.util.Optional;
 
@@ -27,39 +30,65 @@ public class PurchaseController {
     @FXML
     private TextField searchField;
 
-    private PurchaseManager purchaseManager = new PurchaseManager();
-    private DrugManager drugManager = new DrugManager();
+    private final DrugDAO drugDAO = CachingDrugDAO.shared();
+    private final BackgroundTasks tasks = new BackgroundTasks("purchases");
+    private volatile PurchaseManager purchaseManager;
 
     @FXML
     public void initialize() {
         drugColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getKey().getDrugName()));
         quantityColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getValue().toString()));
 
+        tasks.setErrorHandler(e -> showAlert("Database Error", e.getMessage()));
+        tasks.cancelWhenDetached(purchasesTable);
         loadAllPurchases();
     }
 
+    /**
+     * Returns the ledger-backed manager; the first call loads the ledger, so call it in the background.
+     */
+    private PurchaseManager purchaseManager() throws SQLException {
+        PurchaseManager manager = purchaseManager;
+        if (manager == null) {
+            manager = new PurchaseManager(StockLedger.shared(), drugDAO);
+            purchaseManager = manager;
+        }
+        return manager;
+    }
+
     private void loadAllPurchases() {
-        purchasesTable.setItems(FXCollections.observableArrayList(purchaseManager.listAllPurchases().entrySet()));
+        tasks.run("load", () -> purchaseManager().listAllPurchases(),
+                purchases -> purchasesTable.setItems(FXCollections.observableArrayList(purchases.entrySet())));
     }
 
     @FXML
     private void handleAddPurchase() {
-        Optional<Map.Entry<Drug, Integer>> result = showPurchaseDialog(null);
-        result.ifPresent(entry -> {
-            purchaseManager.addPurchase(entry.getKey(), entry.getValue());
-            loadAllPurchases();
-        });
+        Optional<Map.Entry<String, Integer>> result = showPurchaseDialog(null);
+        result.ifPresent(entry -> tasks.run(null, () -> {
+            Optional<Drug> drug = findDrugByName(entry.getKey());
+            if (drug.isPresent()) {
+                purchaseManager().addPurchase(drug.get(), entry.getValue());
+            }
+            return drug.isPresent();
+        }, found -> {
+            if (found) {
+                loadAllPurchases();
+            } else {
+                showAlert("Invalid Drug", "The drug specified does not exist.");
+            }
+        }));
     }
 
     @FXML
     private void handleEditPurchase() {
         Map.Entry<Drug, Integer> selectedPurchase = purchasesTable.getSelectionModel().getSelectedItem();
         if (selectedPurchase != null) {
-            Optional<Map.Entry<Drug, Integer>> result = showPurchaseDialog(selectedPurchase);
-            result.ifPresent(entry -> {
-                purchaseManager.addPurchase(entry.getKey(), entry.getValue() - selectedPurchase.getValue());
-                loadAllPurchases();
-            });
+            Optional<Map.Entry<String, Integer>> result = showPurchaseDialog(selectedPurchase);
+            // The drug stays the same; only the total purchased is corrected
+            result.ifPresent(entry -> tasks.run(null, () -> {
+                purchaseManager().correctPurchase(selectedPurchase.getKey(), entry.getValue());
+                return entry;
+            }, corrected -> loadAllPurchases()));
         } else {
             showAlert("No Purchase Selected", "Please select a purchase to edit.");
         }
@@ -69,8 +98,10 @@ public class PurchaseController {
     private void handleRemovePurchase() {
         Map.Entry<Drug, Integer> selectedPurchase = purchasesTable.getSelectionModel().getSelectedItem();
         if (selectedPurchase != null) {
-            purchaseManager.addPurchase(selectedPurchase.getKey(), -selectedPurchase.getValue());
-            loadAllPurchases();
+            tasks.run(null, () -> {
+                purchaseManager().removePurchase(selectedPurchase.getKey());
+                return selectedPurchase;
+            }, removed -> loadAllPurchases());
         } else {
             showAlert("No Purchase Selected", "Please select a purchase to remove.");
         }
@@ -80,19 +111,22 @@ public class PurchaseController {
     private void handleSearchPurchase() {
         String searchText = searchField.getText();
         if (searchText != null && !searchText.isEmpty()) {
-            Optional<Drug> drug = drugManager.searchDrugByName(searchText);
-            if (drug.isPresent()) {
+            tasks.run("load", () -> {
+                Optional<Drug> drug = findDrugByName(searchText);
+                if (drug.isEmpty()) return null;
                 // Filter purchases based on the found drug
-                purchasesTable.setItems(FXCollections.observableArrayList(
-                        purchaseManager.listAllPurchases().entrySet().stream()
-                                .filter(entry -> entry.getKey().equals(drug.get()))
-                                .toList()
-                ));
-            } else {
-                showAlert("No Drug Found", "No drug found with the given name.");
-                // Optionally clear the table or reload all purchases
-                loadAllPurchases();
-            }
+                return purchaseManager().listAllPurchases().entrySet().stream()
+                        .filter(entry -> entry.getKey().equals(drug.get()))
+                        .toList();
+            }, purchases -> {
+                if (purchases != null) {
+                    purchasesTable.setItems(FXCollections.observableArrayList(purchases));
+                } else {
+                    showAlert("No Drug Found", "No drug found with the given name.");
+                    // Optionally clear the table or reload all purchases
+                    loadAllPurchases();
+                }
+            });
         } else {
             loadAllPurchases(); // Reload all purchases if search text is empty
         }
@@ -104,8 +138,17 @@ public class PurchaseController {
         loadAllPurchases();
     }
 
-    private Optional<Map.Entry<Drug, Integer>> showPurchaseDialog(Map.Entry<Drug, Integer> entry) {
-        Dialog<Map.Entry<Drug, Integer>> dialog = new Dialog<>();
+    // Only the drug named exactly: stock must never be booked to a drug that merely
+    // contains the name
+    private Optional<Drug> findDrugByName(String drugName) throws SQLException {
+        String name = drugName.trim();
+        return drugDAO.searchDrugsByName(name).stream()
+                .filter(drug -> drug.getDrugName().equalsIgnoreCase(name))
+                .findFirst();
+    }
+
+    private Optional<Map.Entry<String, Integer>> showPurchaseDialog(Map.Entry<Drug, Integer> entry) {
+        Dialog<Map.Entry<String, Integer>> dialog = new Dialog<>();
         dialog.setTitle(entry == null ? "Add Purchase" : "Edit Purchase");
 
         ButtonType saveButtonType = new ButtonType("Save", ButtonBar.ButtonData.OK_DONE);
@@ -117,6 +160,7 @@ public class PurchaseController {
 
         if (entry != null) {
             drugNameField.setText(entry.getKey().getDrugName());
+            drugNameField.setEditable(false);
             quantityField.setText(entry.getValue().toString());
         }
 
@@ -126,12 +170,12 @@ public class PurchaseController {
         dialog.setResultConverter(dialogButton -> {
             if (dialogButton == saveButtonType) {
                 String drugName = drugNameField.getText();
-                int quantity = Integer.parseInt(quantityField.getText());
-                Optional<Drug> drug = drugManager.searchDrugByName(drugName);
-                if (drug.isPresent()) {
-                    return Map.entry(drug.get(), quantity);
-                } else {
-                    showAlert("Invalid Drug", "The drug specified does not exist.");
+                try {
+                    int quantity = Integer.parseInt(quantityField.getText());
+                    // The drug is looked up in the background once the dialog closes
+                    return Map.entry(drugName, quantity);
+                } catch (NumberFormatException e) {
+                    showAlert("Invalid Input", "Quantity must be a whole number.");
                 }
             }
             return null;
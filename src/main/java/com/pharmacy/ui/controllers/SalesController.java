@@ -0,0 +1,225 @@
+package com.pharmacy.ui.controllers;
+
+import com.pharmacy.dao.CachingDrugDAO;
+import com.pharmacy.dao.DailySalesTotal;
+import com.pharmacy.dao.SalesDAO;
+import com.pharmacy.entities.Drug;
+import com.pharmacy.entities.Sales;
+import com.pharmacy.functionalities.CheckoutService;
+import com.pharmacy.functionalities.HistoryExporter;
+import com.pharmacy.functionalities.StockLedger;
+import com.pharmacy.ui.BackgroundTasks;
+import com.pharmacy.utils.DatabaseUtils;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.collections.FXCollections;
+import javafx.fxml.FXML;
+import javafx.scene.control.*;
+import javafx.scene.layout.VBox;
+import javafx.stage.DirectoryChooser;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+
+public class SalesController {
+
+    private static final int CHECKOUT_BATCH = 32;
+    private static final Duration CHECKOUT_DELAY = Duration.ofMillis(5);
+    private static final int CHECKOUT_QUEUE = 256;
+
+    /** Partial matches offered when the drug name typed matches none exactly. */
+    private static final int MAX_CHOICES = 20;
+
+    private static final SalesDAO SALES_DAO = new SalesDAO(DatabaseUtils.getConnectionProvider());
+
+    // One writer for every till in the application; created on first use because it
+    // needs the stock ledger loaded
+    private static CheckoutService checkout;
+
+    @FXML
+    private TableView<DailySalesTotal> totalsTable;
+
+    @FXML
+    private TableColumn<DailySalesTotal, String> dayColumn;
+
+    @FXML
+    private TableColumn<DailySalesTotal, Integer> countColumn;
+
+    @FXML
+    private TableColumn<DailySalesTotal, Double> amountColumn;
+
+    private final CachingDrugDAO drugDAO = CachingDrugDAO.shared();
+    private final BackgroundTasks tasks = new BackgroundTasks("sales");
+
+    @FXML
+    public void initialize() {
+        dayColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getDay().toString()));
+        countColumn.setCellValueFactory(cellData -> new SimpleIntegerProperty(cellData.getValue().getSaleCount()).asObject());
+        amountColumn.setCellValueFactory(cellData -> new SimpleDoubleProperty(cellData.getValue().getTotalAmount()).asObject());
+
+        tasks.setErrorHandler(e -> showAlert("Database Error", e.getMessage()));
+        tasks.cancelWhenDetached(totalsTable);
+        loadTotals();
+    }
+
+    /**
+     * Returns the shared checkout; the first call loads the stock ledger, so call it in the background.
+     */
+    private static synchronized CheckoutService checkout() throws SQLException {
+        if (checkout == null) {
+            checkout = new CheckoutService(SALES_DAO, StockLedger.shared(), CHECKOUT_BATCH, CHECKOUT_DELAY, CHECKOUT_QUEUE);
+        }
+        return checkout;
+    }
+
+    /**
+     * Writes the sales still queued and stops the shared checkout, if it was started.
+     */
+    public static synchronized void closeCheckout() {
+        if (checkout != null) {
+            checkout.close();
+            checkout = null;
+        }
+    }
+
+    private void loadTotals() {
+        tasks.run("load", () -> SALES_DAO.getMonthToDateTotals(LocalDate.now()),
+                totals -> totalsTable.setItems(FXCollections.observableArrayList(totals)));
+    }
+
+    @FXML
+    private void handleNewSale() {
+        Optional<SaleInput> result = showSaleDialog();
+        result.ifPresent(input -> tasks.run(null, () -> drugDAO.searchDrugsByName(input.drugName),
+                matches -> chooseDrug(input.drugName, matches).ifPresent(drug -> sell(input, drug))));
+    }
+
+    private void sell(SaleInput input, Drug drug) {
+        tasks.run(null, () -> {
+            Sales sales = new Sales(UUID.randomUUID().toString(), LocalDate.now(), input.customerName,
+                    drug.getPrice() * input.quantity);
+            sales.setItemsSold(Map.of(drug, input.quantity));
+            try {
+                checkout().submit(sales).get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+            // The sale lowered the stock the cache holds
+            drugDAO.invalidate(drug.getDrugId());
+            return sales;
+        }, sales -> loadTotals(), e -> showAlert("Sale Not Stored", e.getMessage()));
+    }
+
+    @FXML
+    private void handleRefresh() {
+        loadTotals();
+    }
+
+    @FXML
+    private void handleExportHistory() {
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("Export Sales and Purchase History");
+        File directory = chooser.showDialog(totalsTable.getScene().getWindow());
+        if (directory == null) return;
+
+        // Picks up where the last export stopped, so the same days are never exported twice
+        HistoryExporter exporter = new HistoryExporter(DatabaseUtils.getConnectionProvider());
+        tasks.run(null, () -> exporter.exportIncremental(directory.toPath()), result -> showAlert("History Export",
+                result.map(export -> String.format("Exported %s to %s: %d sales, %d sale items and %d purchases.",
+                                export.getFrom(), export.getTo(), export.getSalesCount(),
+                                export.getSaleItemCount(), export.getPurchaseCount()))
+                        .orElse("History is already exported up to yesterday.")),
+                e -> showAlert("Export Failed", e.getMessage()));
+    }
+
+    /**
+     * Returns the drug whose name matches exactly, ignoring case. Otherwise the cashier picks
+     * one of the partial matches, so a typo never charges for a drug nobody chose.
+     */
+    private Optional<Drug> chooseDrug(String drugName, List<Drug> matches) {
+        Optional<Drug> exact = matches.stream()
+                .filter(drug -> drug.getDrugName().equalsIgnoreCase(drugName.trim()))
+                .findFirst();
+        if (exact.isPresent()) return exact;
+        if (matches.isEmpty()) {
+            showAlert("Invalid Drug", "The drug specified does not exist.");
+            return Optional.empty();
+        }
+
+        Map<String, Drug> byLabel = new LinkedHashMap<>();
+        matches.stream()
+                .sorted(Comparator.comparing(Drug::getDrugName, String.CASE_INSENSITIVE_ORDER))
+                .limit(MAX_CHOICES)
+                .forEach(drug -> byLabel.putIfAbsent(drug.getDrugName() + " (" + drug.getDrugId() + ")", drug));
+        ChoiceDialog<String> dialog = new ChoiceDialog<>(null, byLabel.keySet());
+        dialog.setTitle("Choose Drug");
+        dialog.setHeaderText("No drug is named \"" + drugName + "\". Choose the one being sold.");
+        return dialog.showAndWait().map(byLabel::get);
+    }
+
+    private static final class SaleInput {
+        final String customerName;
+        final String drugName;
+        final int quantity;
+
+        SaleInput(String customerName, String drugName, int quantity) {
+            this.customerName = customerName;
+            this.drugName = drugName;
+            this.quantity = quantity;
+        }
+    }
+
+    private Optional<SaleInput> showSaleDialog() {
+        Dialog<SaleInput> dialog = new Dialog<>();
+        dialog.setTitle("New Sale");
+
+        ButtonType sellButtonType = new ButtonType("Sell", ButtonBar.ButtonData.OK_DONE);
+        dialog.getDialogPane().getButtonTypes().addAll(sellButtonType, ButtonType.CANCEL);
+
+        VBox vbox = new VBox(10);
+        TextField customerField = new TextField();
+        TextField drugNameField = new TextField();
+        TextField quantityField = new TextField();
+
+        vbox.getChildren().addAll(new Label("Customer:"), customerField, new Label("Drug Name:"), drugNameField,
+                new Label("Quantity:"), quantityField);
+        dialog.getDialogPane().setContent(vbox);
+
+        dialog.setResultConverter(dialogButton -> {
+            if (dialogButton == sellButtonType) {
+                try {
+                    int quantity = Integer.parseInt(quantityField.getText());
+                    if (quantity <= 0 || customerField.getText().isBlank()) {
+                        showAlert("Invalid Input", "Enter a customer and a positive quantity.");
+                        return null;
+                    }
+                    // The drug is looked up in the background once the dialog closes
+                    return new SaleInput(customerField.getText().trim(), drugNameField.getText(), quantity);
+                } catch (NumberFormatException e) {
+                    showAlert("Invalid Input", "Quantity must be a whole number.");
+                }
+            }
+            return null;
+        });
+
+        return dialog.showAndWait();
+    }
+
+    private void showAlert(String title, String message) {
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle(title);
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+}
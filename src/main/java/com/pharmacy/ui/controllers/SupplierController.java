@@ -121,7 +121,7 @@ public class SupplierController {
 
                 try {
                     if (supplier == null) {
-                        return new Supplier(name, location, contact);
+                        return new Supplier(name, contact, location);
                     } else {
                         supplier.setSupplierName(name);
                         supplier.setLocation(location);
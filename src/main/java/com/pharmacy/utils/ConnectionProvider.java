@@ -0,0 +1,23 @@
+package com.pharmacy.utils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Source of database connections for the DAO and service layers.
+ * <p>
+ * Callers borrow a connection for the duration of one operation and must close it
+ * when done; depending on the implementation, closing hands the connection back
+ * rather than tearing down the socket.
+ */
+@FunctionalInterface
+public interface ConnectionProvider {
+
+    /**
+     * Borrows a connection.
+     *
+     * @return an open connection, to be closed by the caller
+     * @throws SQLException if no connection could be obtained
+     */
+    Connection getConnection() throws SQLException;
+}
@@ -0,0 +1,331 @@
+package com.pharmacy.utils;
+
+import org.bouncycastle.crypto.generators.Argon2BytesGenerator;
+import org.bouncycastle.crypto.generators.SCrypt;
+import org.bouncycastle.crypto.params.Argon2Parameters;
+import org.bouncycastle.util.encoders.DecoderException;
+import org.bouncycastle.util.encoders.Hex;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * Hashes and verifies passwords for every part of the application.
+ * <p>
+ * New hashes use Argon2id and are stored in the PHC string format, which records the
+ * algorithm, its version and the cost parameters next to the salt and hash:
+ * <pre>
+ * $argon2id$v=19$m=65536,t=2,p=1$&lt;salt&gt;$&lt;hash&gt;
+ * </pre>
+ * Because each hash carries its own parameters, operators can change the costs at any
+ * time without breaking existing passwords. {@link #needsRehash} reports hashes that
+ * were made with other settings, so callers can replace them at the next successful login.
+ * <p>
+ * Two older formats are still verified: the hex {@code salt$hash} SCrypt format once
+ * written by {@code Personnel}, and the Base64 {@code salt||hash} Argon2id format once
+ * written by {@code PasswordUtils}. Both always need a rehash.
+ * <p>
+ * The default engine takes its costs from the system properties
+ * {@code pharmacy.password.memoryKiB}, {@code pharmacy.password.iterations} and
+ * {@code pharmacy.password.parallelism}. Running this class prints settings calibrated for
+ * the current machine.
+ */
+public class CredentialEngine {
+
+    private static final String PHC_PREFIX = "$argon2id$";
+    private static final int ARGON2_VERSION = Argon2Parameters.ARGON2_VERSION_13;
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH = 32;
+
+    // Settings of the formats written before hashes carried their own parameters
+    private static final int LEGACY_SCRYPT_COST = 16384;
+    private static final int LEGACY_SCRYPT_BLOCK_SIZE = 8;
+    private static final int LEGACY_SCRYPT_PARALLELISM = 1;
+    private static final Parameters LEGACY_ARGON2 = new Parameters(65536, 2, 1);
+
+    /** Smallest memory cost calibration will choose, in KiB. */
+    private static final int MIN_MEMORY_KIB = 19 * 1024;
+
+    private static final Base64.Encoder ENCODER = Base64.getEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getDecoder();
+
+    private static final CredentialEngine DEFAULT = new CredentialEngine(new Parameters(
+            Integer.getInteger("pharmacy.password.memoryKiB", 65536),
+            Integer.getInteger("pharmacy.password.iterations", 2),
+            Integer.getInteger("pharmacy.password.parallelism", 1)));
+
+    private final Parameters parameters;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    /**
+     * Argon2id cost parameters.
+     */
+    public static final class Parameters {
+        private final int memoryKiB;
+        private final int iterations;
+        private final int parallelism;
+
+        /**
+         * @param memoryKiB   memory used per hash, in KiB
+         * @param iterations  passes over that memory
+         * @param parallelism lanes computed per hash
+         */
+        public Parameters(int memoryKiB, int iterations, int parallelism) {
+            if (memoryKiB < 8 * parallelism) throw new IllegalArgumentException("Memory cost is too small.");
+            if (iterations < 1) throw new IllegalArgumentException("Iterations must be positive.");
+            if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be positive.");
+            this.memoryKiB = memoryKiB;
+            this.iterations = iterations;
+            this.parallelism = parallelism;
+        }
+
+        public int getMemoryKiB() { return memoryKiB; }
+
+        public int getIterations() { return iterations; }
+
+        public int getParallelism() { return parallelism; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Parameters that)) return false;
+            return memoryKiB == that.memoryKiB && iterations == that.iterations && parallelism == that.parallelism;
+        }
+
+        @Override
+        public int hashCode() {
+            return (memoryKiB * 31 + iterations) * 31 + parallelism;
+        }
+
+        @Override
+        public String toString() {
+            return "m=" + memoryKiB + ",t=" + iterations + ",p=" + parallelism;
+        }
+    }
+
+    /**
+     * Creates an engine that hashes new passwords with the given costs.
+     *
+     * @param parameters the Argon2id costs
+     */
+    public CredentialEngine(Parameters parameters) {
+        this.parameters = parameters;
+    }
+
+    /**
+     * Returns the engine configured from system properties.
+     */
+    public static CredentialEngine getDefault() {
+        return DEFAULT;
+    }
+
+    public Parameters getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Hashes a password with a fresh salt.
+     *
+     * @param password the plain text password
+     * @return the PHC-encoded hash
+     */
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_LENGTH];
+        secureRandom.nextBytes(salt);
+        byte[] hash = argon2(password, salt, parameters, HASH_LENGTH);
+        return PHC_PREFIX + "v=" + ARGON2_VERSION + "$" + parameters + "$"
+                + ENCODER.encodeToString(salt) + "$" + ENCODER.encodeToString(hash);
+    }
+
+    /**
+     * Checks a password against a stored hash in any supported format.
+     *
+     * @param password the plain text password
+     * @param encoded  the stored hash
+     * @return true if the password matches; false if it does not or the hash is unreadable
+     */
+    public boolean verify(String password, String encoded) {
+        if (password == null || encoded == null) return false;
+        try {
+            if (encoded.startsWith(PHC_PREFIX)) {
+                return verifyPhc(password, encoded);
+            }
+            if (encoded.indexOf('$') > 0) {
+                return verifyLegacyScrypt(password, encoded);
+            }
+            return verifyLegacyArgon2(password, encoded);
+        } catch (IllegalArgumentException | DecoderException e) {
+            // Malformed hash: treat as a mismatch rather than failing the login screen
+            return false;
+        }
+    }
+
+    /**
+     * Returns whether a stored hash should be replaced with one made by {@link #hash},
+     * because it uses an older format or different costs.
+     *
+     * @param encoded the stored hash
+     * @return true if the hash should be upgraded after the next successful verification
+     */
+    public boolean needsRehash(String encoded) {
+        if (encoded == null || !encoded.startsWith(PHC_PREFIX)) return true;
+        try {
+            Phc phc = Phc.parse(encoded);
+            return phc.version != ARGON2_VERSION || !phc.parameters.equals(parameters)
+                    || phc.salt.length != SALT_LENGTH || phc.hash.length != HASH_LENGTH;
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Picks Argon2id costs for this machine. Memory is kept at {@code maxMemoryKiB} and
+     * iterations are raised until one hash takes at least the target time. If a single
+     * iteration is already too slow, memory is halved instead, down to 19 MiB.
+     *
+     * @param target       the desired time for one verification
+     * @param maxMemoryKiB the most memory one hash may use, in KiB
+     * @param parallelism  lanes computed per hash
+     * @return the chosen parameters
+     */
+    public static Parameters calibrate(Duration target, int maxMemoryKiB, int parallelism) {
+        long targetNanos = target.toNanos();
+        byte[] salt = new byte[SALT_LENGTH];
+        String sample = "calibration-password";
+
+        int memory = maxMemoryKiB;
+        Parameters candidate = new Parameters(memory, 1, parallelism);
+        long elapsed = time(sample, salt, candidate);
+        while (elapsed > targetNanos && memory / 2 >= MIN_MEMORY_KIB) {
+            memory /= 2;
+            candidate = new Parameters(memory, 1, parallelism);
+            elapsed = time(sample, salt, candidate);
+        }
+        if (elapsed >= targetNanos) return candidate;
+
+        // Iteration cost is close to linear, so estimate, then adjust against measurements
+        int iterations = (int) Math.max(1, targetNanos / Math.max(1, elapsed));
+        candidate = new Parameters(memory, iterations, parallelism);
+        elapsed = time(sample, salt, candidate);
+        while (elapsed < targetNanos) {
+            candidate = new Parameters(memory, candidate.iterations + 1, parallelism);
+            elapsed = time(sample, salt, candidate);
+        }
+        return candidate;
+    }
+
+    /**
+     * Calibration mode. Prints system properties that give about the requested verify time,
+     * in milliseconds (default 500), on this machine.
+     */
+    public static void main(String[] args) {
+        Duration target = Duration.ofMillis(args.length > 0 ? Long.parseLong(args[0]) : 500);
+        int maxMemoryKiB = args.length > 1 ? Integer.parseInt(args[1]) : 65536;
+        Parameters chosen = calibrate(target, maxMemoryKiB, 1);
+        long millis = time("calibration-password", new byte[SALT_LENGTH], chosen) / 1_000_000;
+        System.out.println("Calibrated for " + target.toMillis() + " ms, measured " + millis + " ms:");
+        System.out.println("-Dpharmacy.password.memoryKiB=" + chosen.memoryKiB
+                + " -Dpharmacy.password.iterations=" + chosen.iterations
+                + " -Dpharmacy.password.parallelism=" + chosen.parallelism);
+    }
+
+    private static long time(String password, byte[] salt, Parameters parameters) {
+        // Best of three, to keep a stray GC pause from skewing the choice
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            argon2(password, salt, parameters, HASH_LENGTH);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static boolean verifyPhc(String password, String encoded) {
+        Phc phc = Phc.parse(encoded);
+        byte[] calculated = argon2(password, phc.salt, phc.parameters, phc.hash.length);
+        return MessageDigest.isEqual(calculated, phc.hash);
+    }
+
+    private static boolean verifyLegacyScrypt(String password, String encoded) {
+        String[] parts = encoded.split("\\$");
+        if (parts.length != 2) throw new IllegalArgumentException("Malformed SCrypt hash.");
+        byte[] salt = Hex.decode(parts[0]);
+        byte[] expected = Hex.decode(parts[1]);
+        byte[] calculated = SCrypt.generate(password.getBytes(StandardCharsets.UTF_8), salt,
+                LEGACY_SCRYPT_COST, LEGACY_SCRYPT_BLOCK_SIZE, LEGACY_SCRYPT_PARALLELISM, expected.length);
+        return MessageDigest.isEqual(calculated, expected);
+    }
+
+    private static boolean verifyLegacyArgon2(String password, String encoded) {
+        byte[] hashWithSalt = Base64.getDecoder().decode(encoded);
+        if (hashWithSalt.length != SALT_LENGTH + HASH_LENGTH) throw new IllegalArgumentException("Malformed Argon2 hash.");
+        byte[] salt = new byte[SALT_LENGTH];
+        byte[] expected = new byte[HASH_LENGTH];
+        System.arraycopy(hashWithSalt, 0, salt, 0, SALT_LENGTH);
+        System.arraycopy(hashWithSalt, SALT_LENGTH, expected, 0, HASH_LENGTH);
+        return MessageDigest.isEqual(argon2(password, salt, LEGACY_ARGON2, HASH_LENGTH), expected);
+    }
+
+    private static byte[] argon2(String password, byte[] salt, Parameters parameters, int length) {
+        Argon2Parameters argon2Parameters = new Argon2Parameters.Builder(Argon2Parameters.ARGON2_id)
+                .withVersion(ARGON2_VERSION)
+                .withSalt(salt)
+                .withParallelism(parameters.parallelism)
+                .withMemoryAsKB(parameters.memoryKiB)
+                .withIterations(parameters.iterations)
+                .build();
+        Argon2BytesGenerator generator = new Argon2BytesGenerator();
+        generator.init(argon2Parameters);
+        byte[] hash = new byte[length];
+        generator.generateBytes(password.getBytes(StandardCharsets.UTF_8), hash);
+        return hash;
+    }
+
+    /**
+     * The fields of a PHC-encoded Argon2id hash.
+     */
+    private static final class Phc {
+        final int version;
+        final Parameters parameters;
+        final byte[] salt;
+        final byte[] hash;
+
+        private Phc(int version, Parameters parameters, byte[] salt, byte[] hash) {
+            this.version = version;
+            this.parameters = parameters;
+            this.salt = salt;
+            this.hash = hash;
+        }
+
+        static Phc parse(String encoded) {
+            // "", "argon2id", "v=19", "m=..,t=..,p=..", salt, hash
+            String[] parts = encoded.split("\\$");
+            if (parts.length != 6 || !parts[2].startsWith("v=")) {
+                throw new IllegalArgumentException("Malformed password hash.");
+            }
+            int version;
+            int memory = -1, iterations = -1, parallelism = -1;
+            try {
+                version = Integer.parseInt(parts[2].substring(2));
+                for (String parameter : parts[3].split(",")) {
+                    int eq = parameter.indexOf('=');
+                    if (eq < 0) throw new IllegalArgumentException("Malformed password hash.");
+                    int value = Integer.parseInt(parameter.substring(eq + 1));
+                    switch (parameter.substring(0, eq)) {
+                        case "m" -> memory = value;
+                        case "t" -> iterations = value;
+                        case "p" -> parallelism = value;
+                        default -> throw new IllegalArgumentException("Unknown hash parameter.");
+                    }
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Malformed password hash.", e);
+            }
+            return new Phc(version, new Parameters(memory, iterations, parallelism),
+                    DECODER.decode(parts[4]), DECODER.decode(parts[5]));
+        }
+    }
+}
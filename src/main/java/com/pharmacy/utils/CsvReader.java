@@ -0,0 +1,139 @@
+package com.pharmacy.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads comma-separated records one at a time, so memory use does not depend on the
+ * size of the file.
+ * <p>
+ * Follows RFC 4180: fields may be quoted, a quoted field may contain commas, line breaks
+ * and doubled quotes, and lines may end in CRLF or LF. Blank lines are skipped. A byte
+ * order mark at the start of the input, as spreadsheet programs write, is skipped too.
+ */
+public class CsvReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private long lineNumber = 1;
+    private long recordLineNumber;
+    private boolean started;
+
+    /**
+     * @param reader the input; it is read in large chunks, so need not be buffered
+     */
+    public CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return the record's fields, or null at the end of the input
+     * @throws IOException if the input cannot be read or ends inside a quoted field
+     */
+    public List<String> next() throws IOException {
+        if (!started) {
+            started = true;
+            if (peek() == BYTE_ORDER_MARK) read();
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean started = false;
+        int c;
+        while ((c = read()) != -1) {
+            if (!started) {
+                if (c == '\r' || c == '\n') {
+                    skipLineEnd(c);
+                    continue;
+                }
+                started = true;
+                recordLineNumber = lineNumber;
+            }
+            if (quoted) {
+                if (c == '"') {
+                    if (peek() == '"') {
+                        read();
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    if (c == '\n') lineNumber++;
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r' || c == '\n') {
+                skipLineEnd(c);
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+        }
+        if (quoted) {
+            throw new IOException("Unterminated quoted field starting on line " + recordLineNumber + ".");
+        }
+        if (!started) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * @return the line on which the last record returned by {@link #next} starts
+     */
+    public long getLineNumber() {
+        return recordLineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void skipLineEnd(int c) throws IOException {
+        if (c == '\r' && peek() == '\n') {
+            read();
+        }
+        lineNumber++;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int count = reader.read(buffer, 0, buffer.length);
+        if (count <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = count;
+        return true;
+    }
+}
@@ -1,8 +1,9 @@
 package com.pharmacy.utils;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Properties;
 
 public class DatabaseUtils {
 
@@ -10,7 +11,91 @@ public class DatabaseUtils {
     private static final String USER = "pharmacy_user";
     private static final String PASSWORD = "gooses2@";
 
+    private static final int POOL_SIZE = Integer.getInteger("pharmacy.db.poolSize", 10);
+    private static final Duration IDLE_TIMEOUT = Duration.ofMinutes(Long.getLong("pharmacy.db.idleTimeoutMinutes", 10));
+    private static final Duration BORROW_TIMEOUT = Duration.ofSeconds(Long.getLong("pharmacy.db.borrowTimeoutSeconds", 5));
+    private static final Duration VALIDATION_INTERVAL = Duration.ofSeconds(Long.getLong("pharmacy.db.validationIntervalSeconds", 5));
+    private static final int PREPARE_THRESHOLD = Integer.getInteger("pharmacy.db.prepareThreshold", 3);
+    private static final int STATEMENT_CACHE_QUERIES = Integer.getInteger("pharmacy.db.statementCacheQueries", 256);
+    private static final long SLOW_QUERY_MILLIS = Long.getLong("pharmacy.db.slowQueryMillis", 500);
+    private static final boolean EXPLAIN_SLOW_QUERIES = Boolean.getBoolean("pharmacy.db.explainSlowQueries");
+
+    private static volatile PooledConnectionProvider pool;
+
+    // Negative disables the slow-query log
+    private static final SlowQueryLog SLOW_QUERIES = SLOW_QUERY_MILLIS < 0 ? null
+            : new SlowQueryLog(Duration.ofMillis(SLOW_QUERY_MILLIS), EXPLAIN_SLOW_QUERIES);
+
+    // Survives shutdown(); it borrows from whichever pool is current
+    private static final TransactionManager TRANSACTIONS = new TransactionManager(DatabaseUtils::borrow);
+
+    /**
+     * Borrows a connection from the shared pool, or the current thread's transaction
+     * connection inside {@link #inTransaction}. Closing it returns it.
+     */
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+        return TRANSACTIONS.getConnection();
+    }
+
+    /**
+     * Returns the shared connection provider that DAOs and services borrow from.
+     */
+    public static TransactionManager getConnectionProvider() {
+        return TRANSACTIONS;
+    }
+
+    /**
+     * Runs work in one transaction across any number of DAOs built on the shared provider.
+     *
+     * @see TransactionManager#inTransaction
+     */
+    public static <T> T inTransaction(TransactionManager.Work<T> work) throws SQLException {
+        return TRANSACTIONS.inTransaction(work);
+    }
+
+    /**
+     * Returns a snapshot of the shared pool's counters.
+     */
+    public static PoolMetrics getPoolMetrics() {
+        return pool().getMetrics();
+    }
+
+    /**
+     * Closes the shared pool. A later borrow starts a fresh one.
+     */
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+
+    private static Connection borrow() throws SQLException {
+        Connection connection = pool().getConnection();
+        return SLOW_QUERIES == null ? connection : SLOW_QUERIES.wrap(connection);
+    }
+
+    private static PooledConnectionProvider pool() {
+        PooledConnectionProvider current = pool;
+        if (current == null) {
+            synchronized (DatabaseUtils.class) {
+                current = pool;
+                if (current == null) {
+                    Properties properties = new Properties();
+                    properties.setProperty("user", USER);
+                    properties.setProperty("password", PASSWORD);
+                    // Lets the PostgreSQL driver fold executeBatch() inserts into multi-row INSERTs
+                    properties.setProperty("reWriteBatchedInserts", "true");
+                    // A statement run this many times on a connection becomes a named server-side
+                    // plan; the driver keeps up to this many per connection, keyed by SQL text
+                    properties.setProperty("prepareThreshold", Integer.toString(PREPARE_THRESHOLD));
+                    properties.setProperty("preparedStatementCacheQueries", Integer.toString(STATEMENT_CACHE_QUERIES));
+                    current = new PooledConnectionProvider(URL, properties, POOL_SIZE, IDLE_TIMEOUT, BORROW_TIMEOUT,
+                            VALIDATION_INTERVAL);
+                    pool = current;
+                }
+            }
+        }
+        return current;
     }
 }
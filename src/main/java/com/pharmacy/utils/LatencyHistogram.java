@@ -0,0 +1,125 @@
+package com.pharmacy.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records durations into log-linear buckets so percentiles can be read at any time.
+ * <p>
+ * Every power of two is split into {@value #SUB_BUCKETS} equal buckets, so a reported
+ * value is never more than about 3% above the true one, from nanoseconds up to an hour.
+ * Longer durations are counted in the last bucket. The bucket array is allocated once;
+ * recording only increments counters, so it allocates nothing, takes no lock and is safe
+ * to call from any thread.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final long HIGHEST_TRACKABLE = TimeUnit.HOURS.toNanos(1);
+    private static final int BUCKET_COUNT = indexOf(HIGHEST_TRACKABLE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos the duration in nanoseconds; negative values count as zero
+     */
+    public void record(long nanos) {
+        long value = Math.max(0L, nanos);
+        counts.incrementAndGet(indexOf(Math.min(value, HIGHEST_TRACKABLE)));
+        count.increment();
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+    }
+
+    /**
+     * Takes a copy of the counters. Recording may continue while this runs, so the copy
+     * can be a few samples out of step with itself, but never by more than that.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, totalNanos.sum(), maxNanos.get());
+    }
+
+    /**
+     * Bucket for a value: values below {@code 2 * SUB_BUCKETS} have a bucket each; above
+     * that, the top {@code SUB_BUCKET_BITS + 1} bits of the value pick the bucket.
+     */
+    private static int indexOf(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /** The largest value that falls in a bucket. */
+    private static long highestIn(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long top = (index & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+
+    /**
+     * A histogram's counters at one point in time.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+
+        private Snapshot(long[] counts, long count, long totalNanos, long maxNanos) {
+            this.counts = counts;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getCount() { return count; }
+
+        public long getTotalNanos() { return totalNanos; }
+
+        public long getMaxNanos() { return maxNanos; }
+
+        public double getMeanNanos() {
+            return count == 0 ? 0.0 : totalNanos / (double) count;
+        }
+
+        /**
+         * Returns the duration that the given share of samples did not exceed.
+         *
+         * @param percentile between 0 and 100, such as 99.9
+         * @return the duration in nanoseconds, or 0 if nothing was recorded
+         */
+        public long getPercentileNanos(double percentile) {
+            if (count == 0) return 0L;
+            long rank = Math.max(1L, (long) Math.ceil(count * Math.min(100.0, Math.max(0.0, percentile)) / 100.0));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestIn(i), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.pharmacy.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Application-wide named timers, for finding where a workflow spends its time.
+ * <p>
+ * Code that wants a timer looks it up once, usually into a constant, and then records
+ * durations on it:
+ * <pre>
+ * private static final Metrics.Timer LOAD = Metrics.timer("ui.drugs.load");
+ * ...
+ * long start = System.nanoTime();
+ * ...
+ * LOAD.recordSince(start);
+ * </pre>
+ * Recording goes into a {@link LatencyHistogram}, so it is cheap enough for every call
+ * on a hot path. Names are dotted, with the layer first: {@code dao.*} for statements,
+ * {@code pool.*} for the connection pool, {@code login.*} for password checks and
+ * {@code ui.*} for views.
+ * <p>
+ * The timers can be read as text or JSON, through {@link MetricsEndpoint} or by writing
+ * them to a file with {@link #dump}.
+ */
+public final class Metrics {
+
+    private static final Map<String, Timer> TIMERS = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Returns the timer with the given name, creating it on first use.
+     *
+     * @param name the timer's name, such as {@code dao.drug.byId}
+     * @return the timer
+     */
+    public static Timer timer(String name) {
+        if (name == null || name.isEmpty()) throw new IllegalArgumentException("Timer name cannot be null or empty.");
+        return TIMERS.computeIfAbsent(name, Timer::new);
+    }
+
+    /**
+     * Returns every timer's counters, in name order.
+     *
+     * @return a snapshot of the timers
+     */
+    public static List<TimerStats> getStats() {
+        List<TimerStats> stats = new ArrayList<>(TIMERS.size());
+        for (Timer timer : TIMERS.values()) {
+            stats.add(timer.getStats());
+        }
+        stats.sort(Comparator.comparing(TimerStats::getName));
+        return stats;
+    }
+
+    /**
+     * Writes every timer as one line of text, with times in milliseconds.
+     *
+     * @param out where to write
+     * @throws IOException if writing fails
+     */
+    public static void writeText(Writer out) throws IOException {
+        for (TimerStats stats : getStats()) {
+            out.write(String.format(Locale.ROOT, "%s count=%d mean=%.3f p50=%.3f p90=%.3f p99=%.3f p999=%.3f max=%.3f%n",
+                    stats.getName(), stats.getCount(), stats.getMeanMillis(), stats.getP50Millis(),
+                    stats.getP90Millis(), stats.getP99Millis(), stats.getP999Millis(), stats.getMaxMillis()));
+        }
+    }
+
+    /**
+     * Writes every timer as a JSON object keyed by name, with times in milliseconds.
+     *
+     * @param out where to write
+     * @throws IOException if writing fails
+     */
+    public static void writeJson(Writer out) throws IOException {
+        out.write("{");
+        boolean first = true;
+        for (TimerStats stats : getStats()) {
+            if (!first) out.write(",");
+            first = false;
+            out.write(String.format(Locale.ROOT,
+                    "%n  \"%s\": {\"count\": %d, \"meanMs\": %.3f, \"p50Ms\": %.3f, \"p90Ms\": %.3f, \"p99Ms\": %.3f, \"p999Ms\": %.3f, \"maxMs\": %.3f}",
+                    escapeJson(stats.getName()), stats.getCount(), stats.getMeanMillis(), stats.getP50Millis(),
+                    stats.getP90Millis(), stats.getP99Millis(), stats.getP999Millis(), stats.getMaxMillis()));
+        }
+        out.write(String.format("%n}%n"));
+    }
+
+    /**
+     * Writes every timer to a file, as JSON if the file name ends in {@code .json} and as
+     * text otherwise. The file is replaced in one step, so readers never see half of it.
+     *
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void dump(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        Path partial = absolute.resolveSibling(absolute.getFileName() + ".part");
+        try (Writer out = Files.newBufferedWriter(partial, StandardCharsets.UTF_8)) {
+            if (absolute.getFileName().toString().endsWith(".json")) {
+                writeJson(out);
+            } else {
+                writeText(out);
+            }
+        }
+        Files.move(partial, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String escapeJson(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c < 0x20) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * A named latency histogram.
+     */
+    public static final class Timer {
+        private final String name;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private Timer(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Records one duration.
+         *
+         * @param nanos the duration in nanoseconds
+         */
+        public void record(long nanos) {
+            histogram.record(nanos);
+        }
+
+        /**
+         * Records the time since a {@link System#nanoTime} reading.
+         *
+         * @param startNanos the reading taken when the timed work began
+         */
+        public void recordSince(long startNanos) {
+            histogram.record(System.nanoTime() - startNanos);
+        }
+
+        public TimerStats getStats() {
+            return new TimerStats(name, histogram.snapshot());
+        }
+    }
+
+    /**
+     * A timer's counters at one point in time.
+     */
+    public static final class TimerStats {
+        private final String name;
+        private final LatencyHistogram.Snapshot snapshot;
+
+        TimerStats(String name, LatencyHistogram.Snapshot snapshot) {
+            this.name = name;
+            this.snapshot = snapshot;
+        }
+
+        public String getName() { return name; }
+
+        public long getCount() { return snapshot.getCount(); }
+
+        public double getMeanMillis() { return snapshot.getMeanNanos() / 1_000_000.0; }
+
+        public double getP50Millis() { return percentileMillis(50.0); }
+
+        public double getP90Millis() { return percentileMillis(90.0); }
+
+        public double getP99Millis() { return percentileMillis(99.0); }
+
+        public double getP999Millis() { return percentileMillis(99.9); }
+
+        public double getMaxMillis() { return snapshot.getMaxNanos() / 1_000_000.0; }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return the duration that share of samples did not exceed, in milliseconds
+         */
+        public double percentileMillis(double percentile) {
+            return snapshot.getPercentileNanos(percentile) / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("TimerStats[%s, count=%d, mean=%.3fms, p99=%.3fms, max=%.3fms]",
+                    name, getCount(), getMeanMillis(), getP99Millis(), getMaxMillis());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.pharmacy.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves {@link Metrics} over HTTP on the loopback interface, for reading while the
+ * application runs:
+ * <ul>
+ *     <li>{@code GET /metrics} returns one line of text per timer.</li>
+ *     <li>{@code GET /metrics.json} returns the same as JSON.</li>
+ * </ul>
+ * Only this machine can connect. Requests are answered on one background thread.
+ */
+public class MetricsEndpoint implements AutoCloseable {
+
+    private final HttpServer server;
+
+    /**
+     * Starts serving.
+     *
+     * @param port the port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public MetricsEndpoint(int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", this::handle);
+        server.start();
+    }
+
+    /**
+     * @return the port being listened on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops serving. Requests in progress get a second to finish.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            String path = exchange.getRequestURI().getPath();
+            StringWriter body = new StringWriter();
+            if (path.equals("/metrics.json")) {
+                Metrics.writeJson(body);
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            } else if (path.equals("/metrics")) {
+                Metrics.writeText(body);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            } else {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.pharmacy.utils;
+
+/**
+ * Point-in-time snapshot of a {@link PooledConnectionProvider}'s counters.
+ */
+public class PoolMetrics {
+    private final int active;
+    private final int idle;
+    private final int maxSize;
+    private final long borrowCount;
+    private final long timeoutCount;
+    private final long createdCount;
+    private final long evictedCount;
+    private final long totalWaitNanos;
+    private final long maxWaitNanos;
+
+    PoolMetrics(int active, int idle, int maxSize, long borrowCount, long timeoutCount,
+                long createdCount, long evictedCount, long totalWaitNanos, long maxWaitNanos) {
+        this.active = active;
+        this.idle = idle;
+        this.maxSize = maxSize;
+        this.borrowCount = borrowCount;
+        this.timeoutCount = timeoutCount;
+        this.createdCount = createdCount;
+        this.evictedCount = evictedCount;
+        this.totalWaitNanos = totalWaitNanos;
+        this.maxWaitNanos = maxWaitNanos;
+    }
+
+    /** @return connections currently lent out */
+    public int getActive() { return active; }
+
+    /** @return open connections waiting in the pool */
+    public int getIdle() { return idle; }
+
+    /** @return the configured upper bound on open connections */
+    public int getMaxSize() { return maxSize; }
+
+    /** @return successful borrows since the pool was created */
+    public long getBorrowCount() { return borrowCount; }
+
+    /** @return borrows that gave up after the borrow timeout */
+    public long getTimeoutCount() { return timeoutCount; }
+
+    /** @return physical connections opened */
+    public long getCreatedCount() { return createdCount; }
+
+    /** @return physical connections closed for being idle too long or failing validation */
+    public long getEvictedCount() { return evictedCount; }
+
+    /** @return mean time a successful borrow waited, in milliseconds */
+    public double getAverageWaitMillis() {
+        return borrowCount == 0 ? 0.0 : totalWaitNanos / (double) borrowCount / 1_000_000.0;
+    }
+
+    /** @return longest time a successful borrow waited, in milliseconds */
+    public double getMaxWaitMillis() {
+        return maxWaitNanos / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PoolMetrics[active=%d, idle=%d, max=%d, borrows=%d, timeouts=%d, created=%d, evicted=%d, avgWait=%.3fms, maxWait=%.3fms]",
+                active, idle, maxSize, borrowCount, timeoutCount, createdCount, evictedCount,
+                getAverageWaitMillis(), getMaxWaitMillis());
+    }
+}
@@ -0,0 +1,314 @@
+package com.pharmacy.utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of physical JDBC connections.
+ * <p>
+ * Borrowed connections are proxies: closing one hands the physical connection back to
+ * the pool instead of closing the socket. Connections that have sat idle for longer than
+ * the validation interval are checked with {@link Connection#isValid} before they are lent
+ * out again, and are closed once they have sat unused for longer than the idle timeout.
+ */
+public class PooledConnectionProvider implements ConnectionProvider, AutoCloseable {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final Duration DEFAULT_VALIDATION_INTERVAL = Duration.ofSeconds(5);
+    private static final Metrics.Timer WAIT_TIMER = Metrics.timer("pool.wait");
+
+    private final String url;
+    private final Properties properties;
+    private final int maxSize;
+    private final long idleTimeoutNanos;
+    private final long borrowTimeoutNanos;
+    private final long validationIntervalNanos;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<IdleConnection> idle = new LinkedBlockingDeque<>();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder evictedCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0L);
+
+    /**
+     * Creates a pool. No connection is opened until the first borrow.
+     *
+     * @param url           the JDBC URL
+     * @param properties    driver properties, including {@code user} and {@code password}
+     * @param maxSize       the maximum number of open connections
+     * @param idleTimeout   how long an unused connection may stay open
+     * @param borrowTimeout how long a borrow waits for a free connection before failing
+     */
+    public PooledConnectionProvider(String url, Properties properties, int maxSize,
+                                    Duration idleTimeout, Duration borrowTimeout) {
+        this(url, properties, maxSize, idleTimeout, borrowTimeout, DEFAULT_VALIDATION_INTERVAL);
+    }
+
+    /**
+     * Creates a pool. No connection is opened until the first borrow.
+     *
+     * @param url                the JDBC URL
+     * @param properties         driver properties, including {@code user} and {@code password}
+     * @param maxSize            the maximum number of open connections
+     * @param idleTimeout        how long an unused connection may stay open
+     * @param borrowTimeout      how long a borrow waits for a free connection before failing
+     * @param validationInterval how long a connection may sit idle and still be lent out
+     *                           without a round trip to check it; zero checks every borrow
+     */
+    public PooledConnectionProvider(String url, Properties properties, int maxSize,
+                                    Duration idleTimeout, Duration borrowTimeout, Duration validationInterval) {
+        if (url == null || url.isEmpty()) throw new IllegalArgumentException("URL cannot be null or empty.");
+        if (maxSize <= 0) throw new IllegalArgumentException("Pool size must be positive.");
+        if (idleTimeout == null || idleTimeout.isNegative() || idleTimeout.isZero())
+            throw new IllegalArgumentException("Idle timeout must be positive.");
+        if (borrowTimeout == null || borrowTimeout.isNegative())
+            throw new IllegalArgumentException("Borrow timeout cannot be negative.");
+        if (validationInterval == null || validationInterval.isNegative())
+            throw new IllegalArgumentException("Validation interval cannot be negative.");
+        this.url = url;
+        this.properties = new Properties();
+        this.properties.putAll(properties);
+        this.maxSize = maxSize;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.borrowTimeoutNanos = borrowTimeout.toNanos();
+        this.validationIntervalNanos = validationInterval.toNanos();
+        this.permits = new Semaphore(maxSize, true);
+
+        long sweepMillis = Math.max(1000L, idleTimeout.toMillis() / 2);
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.evictor.scheduleWithFixedDelay(this::evictIdle, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection, waiting up to the borrow timeout for one to become free.
+     *
+     * @return a pooled connection; closing it returns it to the pool
+     * @throws SQLTransientConnectionException if the borrow timeout elapses
+     * @throws SQLException if the pool is closed or a new connection cannot be opened
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed.");
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                timeoutCount.increment();
+                throw new SQLTransientConnectionException("Timed out after " + TimeUnit.NANOSECONDS.toMillis(borrowTimeoutNanos)
+                        + " ms waiting for a database connection: " + getMetrics());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection.", e);
+        }
+
+        try {
+            Connection physical = takeValidIdle();
+            if (physical == null) {
+                physical = DriverManager.getConnection(url, properties);
+                createdCount.increment();
+            }
+            long waited = System.nanoTime() - start;
+            borrowCount.increment();
+            totalWaitNanos.add(waited);
+            maxWaitNanos.accumulate(waited);
+            WAIT_TIMER.record(waited);
+            active.incrementAndGet();
+            return lease(physical);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a snapshot of the pool's counters.
+     *
+     * @return the current pool metrics
+     */
+    public PoolMetrics getMetrics() {
+        return new PoolMetrics(active.get(), idle.size(), maxSize,
+                borrowCount.sum(), timeoutCount.sum(), createdCount.sum(), evictedCount.sum(),
+                totalWaitNanos.sum(), maxWaitNanos.get());
+    }
+
+    /**
+     * Closes every idle connection and stops lending. Connections still borrowed are
+     * closed as they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        IdleConnection entry;
+        while ((entry = idle.pollFirst()) != null) {
+            closeQuietly(entry.connection);
+        }
+    }
+
+    private Connection takeValidIdle() {
+        IdleConnection entry;
+        while ((entry = idle.pollFirst()) != null) {
+            long idleFor = System.nanoTime() - entry.idleSince;
+            if (idleFor > idleTimeoutNanos) {
+                discard(entry.connection);
+                continue;
+            }
+            // Recently returned connections were working moments ago; a failure on one
+            // still marks its lease broken so it is discarded when handed back
+            if (idleFor < validationIntervalNanos) {
+                return entry.connection;
+            }
+            try {
+                if (entry.connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    return entry.connection;
+                }
+            } catch (SQLException e) {
+                // fall through and discard
+            }
+            discard(entry.connection);
+        }
+        return null;
+    }
+
+    private void release(Connection physical, boolean broken) {
+        active.decrementAndGet();
+        try {
+            if (closed || broken || physical.isClosed()) {
+                discard(physical);
+                return;
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            if (physical.isReadOnly()) {
+                physical.setReadOnly(false);
+            }
+            physical.clearWarnings();
+            idle.offerFirst(new IdleConnection(physical, System.nanoTime()));
+        } catch (SQLException e) {
+            discard(physical);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void evictIdle() {
+        long now = System.nanoTime();
+        Iterator<IdleConnection> it = idle.descendingIterator();
+        while (it.hasNext()) {
+            IdleConnection entry = it.next();
+            if (now - entry.idleSince > idleTimeoutNanos && idle.remove(entry)) {
+                discard(entry.connection);
+            }
+        }
+    }
+
+    private void discard(Connection physical) {
+        evictedCount.increment();
+        closeQuietly(physical);
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            // nothing useful to do with a connection we are throwing away
+        }
+    }
+
+    private Connection lease(Connection physical) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new Lease(physical));
+    }
+
+    private static final class IdleConnection {
+        final Connection connection;
+        final long idleSince;
+
+        IdleConnection(Connection connection, long idleSince) {
+            this.connection = connection;
+            this.idleSince = idleSince;
+        }
+    }
+
+    /**
+     * Forwards calls to the physical connection until the borrower closes it.
+     */
+    private final class Lease implements InvocationHandler {
+        private final Connection physical;
+        private final AtomicBoolean returned = new AtomicBoolean();
+        private volatile boolean broken;
+
+        Lease(Connection physical) {
+            this.physical = physical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (returned.compareAndSet(false, true)) {
+                        release(physical, broken);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned.get() || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + physical + "]";
+                default:
+                    break;
+            }
+            if (returned.get()) {
+                throw new SQLException("Connection has already been returned to the pool.");
+            }
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException sqlException) {
+                    String state = sqlException.getSQLState();
+                    if (state != null && state.startsWith("08")) {
+                        broken = true; // connection-level failure, do not reuse
+                    }
+                }
+                throw cause;
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.pharmacy.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Brings the database schema up to date at startup.
+ * <p>
+ * The schema is defined by numbered SQL scripts under {@code /db/migration}, named
+ * {@code V<version>__<description>.sql} and listed in {@link #MIGRATIONS}. Each script runs
+ * once, in its own transaction, and is then recorded in {@code schema_migrations} with a
+ * checksum of its text. A script that has been edited after it ran is reported rather than
+ * run again; changes to the schema belong in a new script.
+ * <p>
+ * An advisory lock is held while migrating, so several instances starting together do not
+ * run the same script twice.
+ */
+public class SchemaMigrator {
+
+    /** The scripts, in the order they run. Append new ones; never reorder or edit. */
+    static final List<String> MIGRATIONS = List.of(
+            "V1__create_tables.sql",
+            "V2__add_query_indexes.sql",
+            "V3__partition_sales.sql",
+            "V4__drop_snapshot_on_hand.sql"
+    );
+
+    private static final String LOCATION = "/db/migration/";
+
+    // Arbitrary, but fixed: every instance must take the same lock
+    private static final long LOCK_KEY = 0x5048_4152_4d41_4359L;
+
+    private static final String CREATE_HISTORY_SQL =
+            "CREATE TABLE IF NOT EXISTS schema_migrations (" +
+            "version INTEGER PRIMARY KEY, script TEXT NOT NULL, checksum BIGINT NOT NULL, " +
+            "applied_at TIMESTAMP NOT NULL DEFAULT now())";
+
+    private final ConnectionProvider connectionProvider;
+
+    /**
+     * @param connectionProvider the source of database connections
+     */
+    public SchemaMigrator(ConnectionProvider connectionProvider) {
+        this.connectionProvider = connectionProvider;
+    }
+
+    /**
+     * Runs every script that has not run yet.
+     *
+     * @return the number of scripts run
+     * @throws SQLException if a script fails, in which case its changes are rolled back and
+     *                      later scripts are not run, or if an applied script has changed
+     */
+    public int migrate() throws SQLException {
+        try (Connection connection = connectionProvider.getConnection()) {
+            lock(connection, "SELECT pg_advisory_lock(?)");
+            try {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute(CREATE_HISTORY_SQL);
+                }
+                Map<Integer, Long> applied = appliedChecksums(connection);
+                int count = 0;
+                for (String script : MIGRATIONS) {
+                    int version = versionOf(script);
+                    String sql = load(script);
+                    long checksum = checksum(sql);
+                    Long appliedChecksum = applied.get(version);
+                    if (appliedChecksum == null) {
+                        apply(connection, version, script, sql, checksum);
+                        count++;
+                    } else if (appliedChecksum != checksum) {
+                        throw new SQLException("Migration " + script + " has changed since it was applied.");
+                    }
+                }
+                return count;
+            } finally {
+                lock(connection, "SELECT pg_advisory_unlock(?)");
+            }
+        }
+    }
+
+    private static void apply(Connection connection, int version, String script, String sql, long checksum)
+            throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            try (Statement stmt = connection.createStatement()) {
+                // The driver splits the script into its statements
+                stmt.execute(sql);
+            }
+            try (PreparedStatement pstmt = connection.prepareStatement(
+                    "INSERT INTO schema_migrations (version, script, checksum) VALUES (?, ?, ?)")) {
+                pstmt.setInt(1, version);
+                pstmt.setString(2, script);
+                pstmt.setLong(3, checksum);
+                pstmt.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw new SQLException("Migration " + script + " failed: " + e.getMessage(), e.getSQLState(), e);
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static Map<Integer, Long> appliedChecksums(Connection connection) throws SQLException {
+        Map<Integer, Long> applied = new HashMap<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM schema_migrations")) {
+            while (rs.next()) {
+                applied.put(rs.getInt(1), rs.getLong(2));
+            }
+        }
+        return applied;
+    }
+
+    private static void lock(Connection connection, String sql) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            pstmt.setLong(1, LOCK_KEY);
+            pstmt.execute();
+        }
+    }
+
+    static int versionOf(String script) {
+        int separator = script.indexOf("__");
+        if (!script.startsWith("V") || separator < 2 || !script.endsWith(".sql")) {
+            throw new IllegalStateException("Migration " + script + " is not named V<version>__<description>.sql.");
+        }
+        return Integer.parseInt(script.substring(1, separator));
+    }
+
+    private static String load(String script) throws SQLException {
+        try (InputStream in = SchemaMigrator.class.getResourceAsStream(LOCATION + script)) {
+            if (in == null) throw new SQLException("Migration " + script + " is missing from " + LOCATION + ".");
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new SQLException("Migration " + script + " could not be read.", e);
+        }
+    }
+
+    // Line endings are normalised so a checkout on another platform does not look edited
+    private static long checksum(String sql) {
+        CRC32 crc = new CRC32();
+        crc.update(sql.replace("\r\n", "\n").getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,392 @@
+package com.pharmacy.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.temporal.TemporalAccessor;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs statements that take longer than a threshold, through the {@code com.pharmacy.slowquery}
+ * logger, which the bundled logback configuration writes to a rolling file.
+ * <p>
+ * {@link #wrap} puts a proxy around a connection that watches every statement prepared or
+ * created on it. A statement's time is the time spent executing it plus the time spent
+ * fetching its rows, but not the time the caller spends on each row, so a slowly consumed
+ * stream is not reported as a slow query. Each entry has the SQL, the bind parameters,
+ * the number of rows and the time taken.
+ * <p>
+ * Bind parameters are redacted: numbers, booleans and dates are written out, but text,
+ * binary values and anything else only as their kind and length, so names, contact
+ * details and password hashes never reach the log.
+ * <p>
+ * Optionally, the plan of a slow statement is added to the entry, planned on the same
+ * connection with the same parameters. Only statements declared read-only through
+ * {@link #declareReadOnly} are run again, under {@code EXPLAIN (ANALYZE, BUFFERS)}, which
+ * doubles their cost. Anything else, including a {@code SELECT} that calls a function
+ * such as {@code pg_advisory_lock}, gets a plain {@code EXPLAIN}, which plans the
+ * statement without running it. Each SQL text is explained at most once per
+ * {@link #EXPLAIN_INTERVAL}.
+ */
+public class SlowQueryLog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("com.pharmacy.slowquery");
+
+    /** How long after explaining a statement its next slow run is explained again. */
+    static final Duration EXPLAIN_INTERVAL = Duration.ofMinutes(10);
+
+    // Statements remembered for the explain interval; cleared rather than evicted when full
+    private static final int MAX_EXPLAINED = 1000;
+
+    /** SQL texts that may be run a second time to measure them. */
+    private static final Set<String> READ_ONLY = ConcurrentHashMap.newKeySet();
+
+    private final long thresholdNanos;
+    private final boolean explain;
+    private final Map<String, Long> lastExplained = new ConcurrentHashMap<>();
+
+    /**
+     * @param threshold statements taking at least this long are logged
+     * @param explain   whether to add the plan of slow {@code SELECT}s
+     */
+    public SlowQueryLog(Duration threshold, boolean explain) {
+        if (threshold == null || threshold.isNegative())
+            throw new IllegalArgumentException("Threshold cannot be negative.");
+        this.thresholdNanos = threshold.toNanos();
+        this.explain = explain;
+    }
+
+    /**
+     * Declares a statement free of side effects, so that a slow run of it may be repeated
+     * under {@code EXPLAIN ANALYZE}. The text must be exactly the one that is prepared.
+     *
+     * @param sql the statement's SQL text
+     */
+    public static void declareReadOnly(String sql) {
+        READ_ONLY.add(sql);
+    }
+
+    /**
+     * Watches the statements run on a connection. Closing the returned connection closes
+     * the one passed in.
+     *
+     * @param connection the connection to watch
+     * @return a connection that logs its slow statements
+     */
+    public Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new WatchedConnection(connection));
+    }
+
+    private void report(Connection connection, String sql, Object[] parameters, int parameterCount,
+                        long elapsedNanos, long rows) {
+        if (elapsedNanos < thresholdNanos || !LOGGER.isWarnEnabled()) return;
+        StringBuilder entry = new StringBuilder(256);
+        entry.append(String.format(Locale.ROOT, "%.1f ms", elapsedNanos / 1_000_000.0));
+        if (rows >= 0) entry.append(", ").append(rows).append(rows == 1 ? " row" : " rows");
+        entry.append(": ").append(sql == null ? "<unknown>" : sql.strip());
+        if (parameterCount > 0) {
+            entry.append(System.lineSeparator()).append("  parameters: ").append(redact(parameters, parameterCount));
+        }
+        if (explain && sql != null && isExplainable(sql) && claimExplain(sql)) {
+            entry.append(System.lineSeparator())
+                    .append(explain(connection, sql, parameters, parameterCount, isReadOnly(sql)));
+        }
+        LOGGER.warn(entry.toString());
+    }
+
+    private boolean claimExplain(String sql) {
+        long now = System.nanoTime();
+        if (lastExplained.size() >= MAX_EXPLAINED) lastExplained.clear();
+        Long previous = lastExplained.get(sql);
+        if (previous != null && now - previous < EXPLAIN_INTERVAL.toNanos()) return false;
+        return previous == null
+                ? lastExplained.putIfAbsent(sql, now) == null
+                : lastExplained.replace(sql, previous, now);
+    }
+
+    /**
+     * Plans the statement, and with {@code analyze} also runs it again. Inside a transaction
+     * the attempt is fenced by a savepoint, so a failure does not abort the caller's
+     * transaction.
+     */
+    private static String explain(Connection connection, String sql, Object[] parameters, int parameterCount,
+                                  boolean analyze) {
+        StringBuilder plan = new StringBuilder(analyze ? "  plan (analyzed):" : "  plan (estimated):");
+        Savepoint savepoint = null;
+        try {
+            if (!connection.getAutoCommit()) savepoint = connection.setSavepoint();
+            String prefix = analyze ? "EXPLAIN (ANALYZE, BUFFERS) " : "EXPLAIN ";
+            try (PreparedStatement pstmt = connection.prepareStatement(prefix + sql)) {
+                for (int i = 1; i <= parameterCount; i++) {
+                    pstmt.setObject(i, parameters[i]);
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        plan.append(System.lineSeparator()).append("    ").append(rs.getString(1));
+                    }
+                }
+            }
+            if (savepoint != null) connection.releaseSavepoint(savepoint);
+        } catch (SQLException e) {
+            plan.append(" unavailable (").append(e.getMessage()).append(')');
+            if (savepoint != null) {
+                try {
+                    connection.rollback(savepoint);
+                } catch (SQLException ignored) {
+                    // The connection is broken; the caller will find out on its next call
+                }
+            }
+        }
+        return plan.toString();
+    }
+
+    /** Whether EXPLAIN accepts the statement at all; utility statements such as COPY are left alone. */
+    static boolean isExplainable(String sql) {
+        String head = sql.stripLeading();
+        for (String keyword : EXPLAINABLE_KEYWORDS) {
+            if (head.regionMatches(true, 0, keyword, 0, keyword.length())
+                    && (head.length() == keyword.length() || !Character.isLetterOrDigit(head.charAt(keyword.length())))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final List<String> EXPLAINABLE_KEYWORDS = List.of("SELECT", "WITH", "VALUES", "INSERT", "UPDATE", "DELETE");
+
+    /** Whether the statement was declared safe to run a second time. */
+    static boolean isReadOnly(String sql) {
+        return READ_ONLY.contains(sql);
+    }
+
+    /**
+     * Describes bind parameters without their sensitive contents. Slot 0 is unused, as
+     * JDBC parameters start at 1.
+     */
+    static String redact(Object[] parameters, int parameterCount) {
+        StringBuilder redacted = new StringBuilder("[");
+        for (int i = 1; i <= parameterCount; i++) {
+            if (i > 1) redacted.append(", ");
+            redacted.append('$').append(i).append('=');
+            Object value = parameters[i];
+            if (value == null) {
+                redacted.append("NULL");
+            } else if (value instanceof Number || value instanceof Boolean
+                    || value instanceof java.util.Date || value instanceof TemporalAccessor) {
+                redacted.append(value);
+            } else if (value instanceof CharSequence text) {
+                redacted.append("<text, ").append(text.length()).append(" chars>");
+            } else if (value instanceof byte[] bytes) {
+                redacted.append("<binary, ").append(bytes.length).append(" bytes>");
+            } else {
+                redacted.append('<').append(value.getClass().getSimpleName()).append('>');
+            }
+        }
+        return redacted.append(']').toString();
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Hands out watched statements; everything else goes straight to the connection.
+     */
+    private final class WatchedConnection implements InvocationHandler {
+        private final Connection target;
+
+        WatchedConnection(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return watch(PreparedStatement.class,
+                            (Statement) SlowQueryLog.invoke(target, method, args), (String) args[0]);
+                case "createStatement":
+                    return watch(Statement.class, (Statement) SlowQueryLog.invoke(target, method, args), null);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return SlowQueryLog.invoke(target, method, args);
+            }
+        }
+
+        private Object watch(Class<? extends Statement> type, Statement statement, String sql) {
+            return Proxy.newProxyInstance(
+                    type.getClassLoader(),
+                    new Class<?>[]{type},
+                    new WatchedStatement(target, statement, sql));
+        }
+    }
+
+    /**
+     * Times one statement's executions and keeps its bind parameters for the log.
+     */
+    private final class WatchedStatement implements InvocationHandler {
+        private final Connection connection;
+        private final Statement target;
+        private String sql;
+        private Object[] parameters;
+        private int parameterCount;
+        private WatchedResultSet open;
+
+        WatchedStatement(Connection connection, Statement target, String sql) {
+            this.connection = connection;
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index
+                    && target instanceof PreparedStatement) {
+                bind(index, name.equals("setNull") ? null : args[1]);
+                return SlowQueryLog.invoke(target, method, args);
+            }
+            switch (name) {
+                case "clearParameters":
+                    if (parameters != null) Arrays.fill(parameters, null);
+                    parameterCount = 0;
+                    return SlowQueryLog.invoke(target, method, args);
+                case "close":
+                    finishOpen();
+                    return SlowQueryLog.invoke(target, method, args);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (!name.startsWith("execute")) {
+                return SlowQueryLog.invoke(target, method, args);
+            }
+
+            finishOpen();
+            if (args != null && args.length > 0 && args[0] instanceof String text) {
+                sql = text;
+            }
+            long start = System.nanoTime();
+            Object result = SlowQueryLog.invoke(target, method, args);
+            long elapsed = System.nanoTime() - start;
+            if (result instanceof ResultSet rs) {
+                open = new WatchedResultSet(this, rs, elapsed);
+                return Proxy.newProxyInstance(
+                        ResultSet.class.getClassLoader(),
+                        new Class<?>[]{ResultSet.class},
+                        open);
+            }
+            report(connection, sql, parameters, parameterCount, elapsed, rowsAffected(result));
+            return result;
+        }
+
+        private void bind(int index, Object value) {
+            if (index < 1) return;
+            if (parameters == null || index >= parameters.length) {
+                parameters = Arrays.copyOf(parameters == null ? new Object[0] : parameters, Math.max(index + 1, 8));
+            }
+            parameters[index] = value;
+            parameterCount = Math.max(parameterCount, index);
+        }
+
+        /** A result set closed along with its statement still gets reported. */
+        private void finishOpen() {
+            if (open != null) {
+                open.finish();
+                open = null;
+            }
+        }
+
+        private long rowsAffected(Object result) {
+            if (result instanceof Integer count) return count;
+            if (result instanceof Long count) return count;
+            if (result instanceof int[] counts) return Arrays.stream(counts).filter(c -> c > 0).asLongStream().sum();
+            if (result instanceof long[] counts) return Arrays.stream(counts).filter(c -> c > 0).sum();
+            return -1;
+        }
+
+        void finished(WatchedResultSet resultSet, long elapsedNanos, long rows) {
+            if (open == resultSet) open = null;
+            report(connection, sql, parameters, parameterCount, elapsedNanos, rows);
+        }
+    }
+
+    /**
+     * Counts a query's rows and the time spent fetching them.
+     */
+    private static final class WatchedResultSet implements InvocationHandler {
+        private final WatchedStatement statement;
+        private final ResultSet target;
+        private long elapsedNanos;
+        private long rows;
+        private boolean finished;
+
+        WatchedResultSet(WatchedStatement statement, ResultSet target, long executeNanos) {
+            this.statement = statement;
+            this.target = target;
+            this.elapsedNanos = executeNanos;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next":
+                    long start = System.nanoTime();
+                    boolean hasRow = (Boolean) SlowQueryLog.invoke(target, method, args);
+                    elapsedNanos += System.nanoTime() - start;
+                    if (hasRow) rows++;
+                    return hasRow;
+                case "close":
+                    finish();
+                    return SlowQueryLog.invoke(target, method, args);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return SlowQueryLog.invoke(target, method, args);
+            }
+        }
+
+        void finish() {
+            if (finished) return;
+            finished = true;
+            statement.finished(this, elapsedNanos, rows);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SlowQueryLog[threshold=" + TimeUnit.NANOSECONDS.toMillis(thresholdNanos) + "ms, explain=" + explain + "]";
+    }
+}
@@ -0,0 +1,257 @@
+package com.pharmacy.utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Connection provider that lets several DAO calls share one transaction.
+ * <p>
+ * Outside a transaction every borrow goes straight to the underlying provider, so each
+ * DAO operation has its own connection for its duration and threads never share one.
+ * Inside {@link #inTransaction} the current thread's borrows all return the transaction's
+ * connection instead, and the work commits or rolls back as a whole.
+ * <p>
+ * DAOs need no changes to take part. A DAO that runs its own local transaction, by turning
+ * auto-commit off and committing or rolling back, gets a savepoint instead: its rollback
+ * undoes only its own statements, and its commit is left to the enclosing transaction.
+ * <p>
+ * Caches and other in-memory copies of the data can defer their updates with
+ * {@link #afterCommit}, so that no other thread sees a change that may still roll back.
+ * <p>
+ * A transaction belongs to the thread that started it. Work handed to another thread runs
+ * outside it.
+ */
+public class TransactionManager implements ConnectionProvider {
+
+    /**
+     * Database work run inside a transaction.
+     *
+     * @param <T> the result type
+     */
+    @FunctionalInterface
+    public interface Work<T> {
+        T execute() throws SQLException;
+    }
+
+    private final ConnectionProvider delegate;
+    private final ThreadLocal<Connection> current = new ThreadLocal<>();
+    private final ThreadLocal<List<Runnable>> afterCommit = ThreadLocal.withInitial(ArrayList::new);
+
+    /**
+     * @param delegate the provider physical connections are borrowed from
+     */
+    public TransactionManager(ConnectionProvider delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Borrows a connection, joining the current thread's transaction if there is one.
+     *
+     * @return an open connection, to be closed by the caller
+     * @throws SQLException if no connection could be obtained
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection transaction = current.get();
+        if (transaction == null) {
+            return delegate.getConnection();
+        }
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new Participant(transaction));
+    }
+
+    /**
+     * @return whether the current thread is inside {@link #inTransaction}
+     */
+    public boolean isInTransaction() {
+        return current.get() != null;
+    }
+
+    /**
+     * Runs an action once the current thread's transaction has committed, or at once outside
+     * a transaction. If the transaction, or the savepoint the action was registered in,
+     * rolls back, the action is dropped.
+     *
+     * @param action the action, which should not throw
+     */
+    public void afterCommit(Runnable action) {
+        if (current.get() == null) {
+            action.run();
+        } else {
+            afterCommit.get().add(action);
+        }
+    }
+
+    /**
+     * Runs work in one transaction. Every connection borrowed from this provider on the
+     * current thread while the work runs belongs to that transaction.
+     * <p>
+     * If the work throws, everything it did is rolled back and the exception is rethrown.
+     * Called inside another transaction, the work runs behind a savepoint, so a failure
+     * undoes only this work and the caller may carry on.
+     *
+     * @param work the work
+     * @return the work's result
+     * @throws SQLException if the work or the commit fails
+     */
+    public <T> T inTransaction(Work<T> work) throws SQLException {
+        return inTransaction(-1, work);
+    }
+
+    /**
+     * Runs work in one transaction at the given isolation level, for example
+     * {@link Connection#TRANSACTION_REPEATABLE_READ} so that several queries see the same
+     * snapshot. Inside another transaction the work joins it at that transaction's level.
+     *
+     * @param isolation one of the {@code Connection.TRANSACTION_*} levels
+     * @param work      the work
+     * @return the work's result
+     * @throws SQLException if the work or the commit fails
+     * @see #inTransaction(Work)
+     */
+    public <T> T inTransaction(int isolation, Work<T> work) throws SQLException {
+        Connection transaction = current.get();
+        if (transaction != null) {
+            return inSavepoint(transaction, work);
+        }
+        try (Connection connection = delegate.getConnection()) {
+            int previousIsolation = connection.getTransactionIsolation();
+            if (isolation >= 0) connection.setTransactionIsolation(isolation);
+            connection.setAutoCommit(false);
+            current.set(connection);
+            List<Runnable> actions = afterCommit.get();
+            actions.clear(); // left over if a previous commit was followed by a failed reset
+            T result;
+            try {
+                result = work.execute();
+                connection.commit();
+            } catch (Throwable e) {
+                rollbackQuietly(connection, e);
+                actions.clear();
+                throw e;
+            } finally {
+                current.remove();
+                connection.setAutoCommit(true);
+                // Pooled connections outlive us; do not leave the level behind
+                if (isolation >= 0) connection.setTransactionIsolation(previousIsolation);
+            }
+            runAfterCommit(actions);
+            return result;
+        }
+    }
+
+    private void runAfterCommit(List<Runnable> actions) {
+        List<Runnable> committed = new ArrayList<>(actions);
+        actions.clear();
+        afterCommit.remove();
+        for (Runnable action : committed) {
+            action.run();
+        }
+    }
+
+    private <T> T inSavepoint(Connection transaction, Work<T> work) throws SQLException {
+        Savepoint savepoint = transaction.setSavepoint();
+        List<Runnable> actions = afterCommit.get();
+        int registeredBefore = actions.size();
+        try {
+            T result = work.execute();
+            transaction.releaseSavepoint(savepoint);
+            return result;
+        } catch (Throwable e) {
+            try {
+                transaction.rollback(savepoint);
+            } catch (SQLException rollbackFailure) {
+                e.addSuppressed(rollbackFailure);
+            }
+            actions.subList(registeredBefore, actions.size()).clear();
+            throw e;
+        }
+    }
+
+    private static void rollbackQuietly(Connection connection, Throwable primary) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            primary.addSuppressed(e);
+        }
+    }
+
+    /**
+     * A DAO's view of the transaction's connection. Closing it leaves the transaction open,
+     * and the DAO's own transaction control is mapped onto a savepoint.
+     */
+    private static final class Participant implements InvocationHandler {
+        private final Connection transaction;
+        private Savepoint local;
+        private boolean closed;
+
+        Participant(Connection transaction) {
+            this.transaction = transaction;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed && local != null) {
+                        // Left without finishing its local transaction; undo it
+                        transaction.rollback(local);
+                        local = null;
+                    }
+                    closed = true;
+                    return null;
+                case "isClosed":
+                    return closed || transaction.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Participant[" + transaction + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Connection has already been closed.");
+            }
+            switch (method.getName()) {
+                case "getAutoCommit":
+                    return local == null;
+                case "setAutoCommit":
+                    boolean autoCommit = (Boolean) args[0];
+                    if (!autoCommit && local == null) {
+                        local = transaction.setSavepoint();
+                    } else if (autoCommit && local != null) {
+                        transaction.releaseSavepoint(local);
+                        local = null;
+                    }
+                    return null;
+                case "commit":
+                    // The enclosing transaction commits
+                    return null;
+                case "rollback":
+                    if (args == null || args.length == 0) {
+                        if (local != null) transaction.rollback(local);
+                        return null;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(transaction, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
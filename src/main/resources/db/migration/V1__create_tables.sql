@@ -0,0 +1,73 @@
+-- Tables the DAOs read and write. IF NOT EXISTS lets databases that were set up by hand
+-- before migrations existed adopt this history without losing data.
+
+CREATE TABLE IF NOT EXISTS drugs (
+    drug_id        TEXT PRIMARY KEY,
+    drug_name      TEXT NOT NULL,
+    quantity       INTEGER NOT NULL CHECK (quantity >= 0),
+    stock_quantity INTEGER NOT NULL DEFAULT 0 CHECK (stock_quantity >= 0),
+    price          NUMERIC(12, 2) NOT NULL CHECK (price >= 0)
+);
+
+CREATE TABLE IF NOT EXISTS customers (
+    customer_id  TEXT PRIMARY KEY,
+    name         TEXT NOT NULL,
+    contact_info TEXT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS suppliers (
+    id       TEXT PRIMARY KEY,
+    name     TEXT NOT NULL,
+    contact  TEXT NOT NULL,
+    location TEXT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS personnel (
+    username        TEXT PRIMARY KEY,
+    hashed_password TEXT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS purchases (
+    id            TEXT PRIMARY KEY,
+    purchase_date DATE NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS sales (
+    sales_id      TEXT PRIMARY KEY,
+    sales_date    DATE NOT NULL,
+    total_amount  NUMERIC(12, 2) NOT NULL CHECK (total_amount >= 0),
+    customer_name TEXT NOT NULL
+);
+
+-- A deleted drug leaves its sale lines behind with no drug; reads drop such lines
+CREATE TABLE IF NOT EXISTS sales_items (
+    item_id  BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    sales_id TEXT NOT NULL REFERENCES sales (sales_id) ON DELETE CASCADE,
+    drug_id  TEXT REFERENCES drugs (drug_id) ON DELETE SET NULL,
+    quantity INTEGER NOT NULL
+);
+
+-- Append-only history; it outlives the drugs it mentions, so drug_id is not a foreign key
+CREATE TABLE IF NOT EXISTS inventory_ledger (
+    entry_id    BIGSERIAL PRIMARY KEY,
+    drug_id     TEXT NOT NULL,
+    entry_type  TEXT NOT NULL CHECK (entry_type IN ('RECEIPT', 'SALE', 'ADJUSTMENT')),
+    quantity    INTEGER NOT NULL,
+    reference   TEXT,
+    recorded_at TIMESTAMP NOT NULL DEFAULT now()
+);
+
+CREATE TABLE IF NOT EXISTS inventory_snapshots (
+    snapshot_entry_id BIGINT NOT NULL,
+    drug_id           TEXT NOT NULL,
+    on_hand           BIGINT NOT NULL,
+    received          BIGINT NOT NULL,
+    sold              BIGINT NOT NULL,
+    PRIMARY KEY (snapshot_entry_id, drug_id)
+);
+
+CREATE TABLE IF NOT EXISTS export_watermarks (
+    export_name      TEXT PRIMARY KEY,
+    exported_through DATE NOT NULL,
+    updated_at       TIMESTAMP NOT NULL DEFAULT now()
+);
@@ -0,0 +1,22 @@
+-- Indexes for the DAO queries. Without them each of these reads scans its whole table.
+
+-- DrugDAO.searchDrugsByName: ILIKE '%text%' can only use a trigram index
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS drugs_name_trgm_idx ON drugs USING gin (drug_name gin_trgm_ops);
+
+-- Keyset pages by name, and catalogue imports matching rows by exact name
+CREATE INDEX IF NOT EXISTS drugs_name_idx ON drugs (drug_name, drug_id);
+
+-- Customer search and keyset pages by name
+CREATE INDEX IF NOT EXISTS customers_name_idx ON customers (name, customer_id);
+
+-- Date-range reports, exports and keyset pages by date
+CREATE INDEX IF NOT EXISTS sales_date_idx ON sales (sales_date, sales_id);
+CREATE INDEX IF NOT EXISTS purchases_date_idx ON purchases (purchase_date, id);
+
+-- Loading a sale's lines, and the foreign keys' checks on delete
+CREATE INDEX IF NOT EXISTS sales_items_sales_idx ON sales_items (sales_id);
+CREATE INDEX IF NOT EXISTS sales_items_drug_idx ON sales_items (drug_id);
+
+-- A drug's movements, oldest first
+CREATE INDEX IF NOT EXISTS inventory_ledger_drug_idx ON inventory_ledger (drug_id, entry_id);
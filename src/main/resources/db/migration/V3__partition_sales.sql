@@ -0,0 +1,130 @@
+-- Sales and their line items split into one partition per calendar month of sales_date,
+-- so date-range reads only visit the months they cover and old months can be detached
+-- whole. Needs PostgreSQL 15 or later: earlier versions turn an update that moves a sale
+-- to another month into a delete, which would cascade to its line items.
+--
+-- A partitioned table's keys must include the partition column, so the sales key is
+-- (sales_id, sales_date) and line items carry their sale's date. That also puts every line
+-- item in the same month as its sale. Sale IDs stay unique through sales_ids, which is not
+-- partitioned and also tells a lookup by ID alone which month to read.
+
+-- Keep the existing rows aside under names the new tables will not need
+ALTER TABLE sales_items RENAME TO sales_items_legacy;
+ALTER TABLE sales RENAME TO sales_legacy;
+ALTER INDEX IF EXISTS sales_pkey RENAME TO sales_legacy_pkey;
+ALTER INDEX IF EXISTS sales_items_pkey RENAME TO sales_items_legacy_pkey;
+ALTER SEQUENCE IF EXISTS sales_items_item_id_seq RENAME TO sales_items_legacy_item_id_seq;
+DROP INDEX IF EXISTS sales_date_idx;
+DROP INDEX IF EXISTS sales_items_sales_idx;
+DROP INDEX IF EXISTS sales_items_drug_idx;
+
+-- Deleting an ID, or changing its date, cascades to the sale and from there to its items
+CREATE TABLE sales_ids (
+    sales_id   TEXT PRIMARY KEY,
+    sales_date DATE NOT NULL,
+    CONSTRAINT sales_ids_sale_key UNIQUE (sales_id, sales_date)
+);
+
+CREATE TABLE sales (
+    sales_id      TEXT NOT NULL,
+    sales_date    DATE NOT NULL,
+    total_amount  NUMERIC(12, 2) NOT NULL CHECK (total_amount >= 0),
+    customer_name TEXT NOT NULL,
+    CONSTRAINT sales_pkey PRIMARY KEY (sales_id, sales_date),
+    CONSTRAINT sales_id_fkey FOREIGN KEY (sales_id, sales_date)
+        REFERENCES sales_ids (sales_id, sales_date) ON UPDATE CASCADE ON DELETE CASCADE
+) PARTITION BY RANGE (sales_date);
+
+-- Identity columns are not supported on partitioned tables everywhere, so the IDs come
+-- from a plain sequence
+CREATE SEQUENCE sales_items_item_id_seq;
+
+CREATE TABLE sales_items (
+    item_id    BIGINT NOT NULL DEFAULT nextval('sales_items_item_id_seq'),
+    sales_id   TEXT NOT NULL,
+    sales_date DATE NOT NULL,
+    drug_id    TEXT REFERENCES drugs (drug_id) ON DELETE SET NULL,
+    quantity   INTEGER NOT NULL,
+    CONSTRAINT sales_items_pkey PRIMARY KEY (item_id, sales_date),
+    CONSTRAINT sales_items_sale_fkey FOREIGN KEY (sales_id, sales_date)
+        REFERENCES sales (sales_id, sales_date) ON UPDATE CASCADE ON DELETE CASCADE
+) PARTITION BY RANGE (sales_date);
+
+ALTER SEQUENCE sales_items_item_id_seq OWNED BY sales_items.item_id;
+
+-- Creates the partitions of both tables for the month containing the given day, unless
+-- they exist. Returns whether it created them. The lock makes concurrent callers wait for
+-- each other instead of failing on the second CREATE TABLE.
+CREATE FUNCTION ensure_sales_partition(day DATE) RETURNS BOOLEAN
+LANGUAGE plpgsql AS $$
+DECLARE
+    month_start DATE := date_trunc('month', day)::date;
+    month_end   DATE := (date_trunc('month', day) + INTERVAL '1 month')::date;
+    suffix      TEXT := to_char(day, 'YYYY_MM');
+BEGIN
+    IF to_regclass('sales_' || suffix) IS NOT NULL THEN
+        RETURN FALSE;
+    END IF;
+    PERFORM pg_advisory_xact_lock(hashtext('ensure_sales_partition'));
+    IF to_regclass('sales_' || suffix) IS NOT NULL THEN
+        RETURN FALSE;
+    END IF;
+    EXECUTE format('CREATE TABLE %I PARTITION OF sales FOR VALUES FROM (%L) TO (%L)',
+                   'sales_' || suffix, month_start, month_end);
+    EXECUTE format('CREATE TABLE %I PARTITION OF sales_items FOR VALUES FROM (%L) TO (%L)',
+                   'sales_items_' || suffix, month_start, month_end);
+    RETURN TRUE;
+END
+$$;
+
+-- Detached months are moved here. They stay queryable, but the application no longer sees them.
+CREATE SCHEMA IF NOT EXISTS sales_archive;
+
+-- Detaches the month containing the given day from both tables and moves its two
+-- partitions to sales_archive. Line items go first: while they are attached, the sales
+-- they reference cannot be detached. The archived sales keep their rows in sales_ids, so
+-- their IDs are not handed out again, but no longer follow changes to them. Returns false
+-- if the month has no partition.
+CREATE FUNCTION archive_sales_partition(day DATE) RETURNS BOOLEAN
+LANGUAGE plpgsql AS $$
+DECLARE
+    suffix TEXT := to_char(day, 'YYYY_MM');
+BEGIN
+    IF to_regclass('sales_' || suffix) IS NULL THEN
+        RETURN FALSE;
+    END IF;
+    EXECUTE format('ALTER TABLE sales_items DETACH PARTITION %I', 'sales_items_' || suffix);
+    EXECUTE format('ALTER TABLE %I DROP CONSTRAINT IF EXISTS sales_items_sale_fkey', 'sales_items_' || suffix);
+    EXECUTE format('ALTER TABLE %I SET SCHEMA sales_archive', 'sales_items_' || suffix);
+    EXECUTE format('ALTER TABLE sales DETACH PARTITION %I', 'sales_' || suffix);
+    EXECUTE format('ALTER TABLE %I DROP CONSTRAINT IF EXISTS sales_id_fkey', 'sales_' || suffix);
+    EXECUTE format('ALTER TABLE %I SET SCHEMA sales_archive', 'sales_' || suffix);
+    RETURN TRUE;
+END
+$$;
+
+-- One partition per month that has sales, plus the current month
+SELECT ensure_sales_partition(month::date)
+FROM generate_series((SELECT date_trunc('month', min(sales_date)) FROM sales_legacy),
+                     (SELECT date_trunc('month', max(sales_date)) FROM sales_legacy),
+                     INTERVAL '1 month') AS month;
+SELECT ensure_sales_partition(current_date);
+
+INSERT INTO sales_ids (sales_id, sales_date)
+SELECT sales_id, sales_date FROM sales_legacy;
+
+INSERT INTO sales (sales_id, sales_date, total_amount, customer_name)
+SELECT sales_id, sales_date, total_amount, customer_name FROM sales_legacy;
+
+-- Item IDs are assigned afresh: tables set up by hand before migrations have no item_id
+INSERT INTO sales_items (sales_id, sales_date, drug_id, quantity)
+SELECT si.sales_id, s.sales_date, si.drug_id, si.quantity
+FROM sales_items_legacy si JOIN sales_legacy s ON s.sales_id = si.sales_id;
+
+DROP TABLE sales_items_legacy;
+DROP TABLE sales_legacy;
+
+-- Created on the parents, so every partition gets them, including future ones
+CREATE INDEX sales_date_idx ON sales (sales_date, sales_id);
+CREATE INDEX sales_items_sales_idx ON sales_items (sales_id, sales_date);
+CREATE INDEX sales_items_drug_idx ON sales_items (drug_id);
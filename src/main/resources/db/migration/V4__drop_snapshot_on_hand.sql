@@ -0,0 +1,3 @@
+-- The stock on hand is drugs.stock_quantity. A ledger total of it left out the stock each
+-- drug was created with, so snapshots keep only the received and sold totals.
+ALTER TABLE inventory_snapshots DROP COLUMN IF EXISTS on_hand;
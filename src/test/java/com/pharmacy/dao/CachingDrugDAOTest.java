@@ -0,0 +1,98 @@
+package com.pharmacy.dao;
+
+import com.pharmacy.entities.Drug;
+import com.pharmacy.utils.TransactionManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CachingDrugDAOTest {
+
+    private InMemoryDrugTable table;
+    private TransactionManager transactions;
+    private CachingDrugDAO dao;
+
+    @BeforeEach
+    void setUp() {
+        table = new InMemoryDrugTable();
+        table.insert("d1", "Panadol", 24, 100, 4.50);
+        transactions = new TransactionManager(table);
+        dao = new CachingDrugDAO(transactions, 100, Duration.ofMinutes(5));
+    }
+
+    @Test
+    void servesRepeatedReadsFromMemory() throws SQLException {
+        dao.getDrugById("d1");
+        dao.getDrugById("d1");
+
+        assertEquals(1, dao.getStats().getHitCount());
+        assertEquals(1, dao.getStats().getMissCount());
+    }
+
+    @Test
+    void readInsideTransactionSeesOwnWriteButDoesNotCacheIt() throws SQLException {
+        dao.getDrugById("d1");
+
+        assertThrows(IllegalStateException.class, () -> transactions.inTransaction(() -> {
+            dao.updateDrug(new Drug("d1", "Panadol", 24, 100, 9.99));
+            assertEquals(9.99, dao.getDrugById("d1").getPrice(), 0.0);
+            throw new IllegalStateException("rolled back");
+        }));
+
+        assertEquals(4.50, dao.getDrugById("d1").getPrice(), 0.0);
+        assertEquals(0, dao.getStats().getHitCount());
+    }
+
+    @Test
+    void uncommittedStockIsNeverCached() throws SQLException {
+        assertThrows(IllegalStateException.class, () -> transactions.inTransaction(() -> {
+            dao.adjustStock("d1", -40);
+            assertEquals(60, dao.getDrugById("d1").getStockQuantity());
+            throw new IllegalStateException("rolled back");
+        }));
+
+        assertEquals(100, dao.getDrugById("d1").getStockQuantity());
+        assertEquals(100, table.committedStock("d1"));
+    }
+
+    @Test
+    void committedWriteIsCached() throws SQLException {
+        transactions.inTransaction(() -> {
+            dao.updateDrug(new Drug("d1", "Panadol Extra", 24, 100, 5.25));
+            return null;
+        });
+
+        Drug drug = dao.getDrugById("d1");
+
+        assertEquals("Panadol Extra", drug.getDrugName());
+        assertEquals(5.25, drug.getPrice(), 0.0);
+        assertEquals(1, dao.getStats().getHitCount());
+    }
+
+    @Test
+    void staysWithinItsSize() throws SQLException {
+        CachingDrugDAO small = new CachingDrugDAO(transactions, 10, Duration.ofMinutes(5));
+        for (int i = 0; i < 25; i++) {
+            table.insert("bulk" + i, "Drug " + i, 1, 10, 1.00);
+            small.getDrugById("bulk" + i);
+        }
+
+        assertTrue(small.getStats().getSize() <= 10, small.getStats().toString());
+        assertTrue(small.getStats().getEvictionCount() >= 15, small.getStats().toString());
+        assertEquals("Drug 24", small.getDrugById("bulk24").getDrugName());
+        assertEquals(1, small.getStats().getHitCount());
+    }
+
+    @Test
+    void returnedDrugsAreCopies() throws SQLException {
+        dao.getDrugById("d1").setPrice(0.01);
+
+        assertEquals(4.50, dao.getDrugById("d1").getPrice(), 0.0);
+    }
+}
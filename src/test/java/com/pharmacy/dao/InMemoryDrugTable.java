@@ -0,0 +1,198 @@
+package com.pharmacy.dao;
+
+import com.pharmacy.utils.ConnectionProvider;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A drugs table in memory, behind just enough JDBC for {@link DrugDAO}'s by-ID read, update
+ * and stock adjustment. Each connection sees the committed rows plus its own uncommitted
+ * writes, and supports commit, rollback and savepoints.
+ */
+final class InMemoryDrugTable implements ConnectionProvider {
+
+    private final Map<String, Object[]> committed = new ConcurrentHashMap<>();
+
+    void insert(String drugId, String name, int quantity, int stock, double price) {
+        committed.put(drugId, new Object[]{drugId, name, quantity, stock, price});
+    }
+
+    /** @return the committed stock of a drug */
+    int committedStock(String drugId) {
+        return (Integer) committed.get(drugId)[3];
+    }
+
+    @Override
+    public Connection getConnection() {
+        FakeConnection state = new FakeConnection();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getAutoCommit" -> state.pending == null;
+                    case "setAutoCommit" -> {
+                        state.setAutoCommit((Boolean) args[0]);
+                        yield null;
+                    }
+                    case "commit" -> {
+                        state.commit();
+                        yield null;
+                    }
+                    case "rollback" -> {
+                        state.rollback(args == null ? null : (Savepoint) args[0]);
+                        yield null;
+                    }
+                    case "setSavepoint" -> state.setSavepoint();
+                    case "releaseSavepoint" -> {
+                        state.savepoints.remove(args[0]);
+                        yield null;
+                    }
+                    case "getTransactionIsolation" -> Connection.TRANSACTION_READ_COMMITTED;
+                    case "setTransactionIsolation", "close" -> null;
+                    case "isClosed" -> false;
+                    case "prepareStatement" -> state.prepare((String) args[0]);
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private final class FakeConnection {
+        Map<String, Object[]> pending;
+        boolean dirty;
+        final Deque<FakeSavepoint> savepoints = new ArrayDeque<>();
+
+        Map<String, Object[]> view() {
+            return pending != null ? pending : committed;
+        }
+
+        void setAutoCommit(boolean autoCommit) {
+            if (autoCommit && pending != null) {
+                commit();
+                pending = null;
+            } else if (!autoCommit && pending == null) {
+                pending = copy(committed);
+            }
+        }
+
+        void commit() {
+            if (pending == null) return;
+            if (dirty) {
+                committed.clear();
+                committed.putAll(copy(pending));
+            }
+            pending = copy(committed);
+            dirty = false;
+            savepoints.clear();
+        }
+
+        void rollback(Savepoint savepoint) {
+            if (pending == null) return;
+            if (savepoint == null) {
+                pending = copy(committed);
+                dirty = false;
+                savepoints.clear();
+                return;
+            }
+            FakeSavepoint target = (FakeSavepoint) savepoint;
+            while (!savepoints.isEmpty() && savepoints.peek() != target) savepoints.pop();
+            pending = copy(target.rows);
+        }
+
+        Savepoint setSavepoint() {
+            FakeSavepoint savepoint = new FakeSavepoint(copy(pending));
+            savepoints.push(savepoint);
+            return savepoint;
+        }
+
+        PreparedStatement prepare(String sql) {
+            Object[] parameters = new Object[8];
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                        String name = method.getName();
+                        if (name.startsWith("set")) {
+                            parameters[(Integer) args[0]] = args[1];
+                            return null;
+                        }
+                        if (name.equals("close")) return null;
+                        if (name.equals("executeQuery")) return execute(sql, parameters);
+                        throw new UnsupportedOperationException(name);
+                    });
+        }
+
+        private ResultSet execute(String sql, Object[] p) throws SQLException {
+            Map<String, Object[]> rows = view();
+            if (sql.startsWith("SELECT") && sql.endsWith("WHERE drug_id = ?")) {
+                Object[] row = rows.get((String) p[1]);
+                return results(row == null ? List.of() : List.<Object[]>of(row.clone()));
+            }
+            if (sql.startsWith("UPDATE drugs SET drug_name")) {
+                Object[] row = rows.get((String) p[4]);
+                if (row == null) return results(List.of());
+                dirty = true;
+                row[1] = p[1];
+                row[2] = p[2];
+                row[4] = p[3];
+                return results(List.<Object[]>of(new Object[]{row[3]}));
+            }
+            if (sql.startsWith("UPDATE drugs SET stock_quantity = stock_quantity + ?")) {
+                Object[] row = rows.get((String) p[2]);
+                int delta = (Integer) p[1];
+                if (row == null || (Integer) row[3] + delta < 0) return results(List.of());
+                dirty = true;
+                row[3] = (Integer) row[3] + delta;
+                return results(List.<Object[]>of(new Object[]{row[3]}));
+            }
+            throw new SQLException("Unsupported statement: " + sql);
+        }
+    }
+
+    private static Map<String, Object[]> copy(Map<String, Object[]> rows) {
+        Map<String, Object[]> copy = new HashMap<>();
+        rows.forEach((id, row) -> copy.put(id, row.clone()));
+        return copy;
+    }
+
+    private static ResultSet results(List<Object[]> rows) {
+        List<Object[]> remaining = new ArrayList<>(rows);
+        Object[][] current = new Object[1][];
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "next" -> {
+                        current[0] = remaining.isEmpty() ? null : remaining.remove(0);
+                        yield current[0] != null;
+                    }
+                    case "getString" -> (String) current[0][(Integer) args[0] - 1];
+                    case "getInt" -> ((Number) current[0][(Integer) args[0] - 1]).intValue();
+                    case "getDouble" -> ((Number) current[0][(Integer) args[0] - 1]).doubleValue();
+                    case "close" -> null;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static final class FakeSavepoint implements Savepoint {
+        final Map<String, Object[]> rows;
+
+        FakeSavepoint(Map<String, Object[]> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public int getSavepointId() {
+            return System.identityHashCode(this);
+        }
+
+        @Override
+        public String getSavepointName() {
+            return null;
+        }
+    }
+}
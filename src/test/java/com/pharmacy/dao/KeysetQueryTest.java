@@ -0,0 +1,124 @@
+package com.pharmacy.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeysetQueryTest {
+
+    private final KeysetQuery<String[]> query = new KeysetQuery<>(
+            List.of("sales_date", "sales_id"), List.of("CAST(? AS date)", "?"), row -> row);
+
+    @Test
+    void firstPageHasNoWhereClause() {
+        assertEquals("", query.where(null, SortOrder.ASCENDING));
+    }
+
+    @Test
+    void seeksPastTheKeyInEitherDirection() {
+        assertEquals(" WHERE (sales_date, sales_id) > (CAST(? AS date), ?)", query.where("key", SortOrder.ASCENDING));
+        assertEquals(" WHERE (sales_date, sales_id) < (CAST(? AS date), ?)", query.where("key", SortOrder.DESCENDING));
+    }
+
+    @Test
+    void ordersByEveryKeyColumn() {
+        assertEquals(" ORDER BY sales_date ASC, sales_id ASC", query.orderBy(null, SortOrder.ASCENDING));
+        assertEquals(" ORDER BY s.sales_date DESC, s.sales_id DESC", query.orderBy("s", SortOrder.DESCENDING));
+    }
+
+    @Test
+    void bindsKeyPartsThenLookAheadLimit() throws Exception {
+        List<Object> bound = new ArrayList<>();
+        PreparedStatement pstmt = recording(bound);
+
+        int next = query.bind(pstmt, 1, Page.encodeKey("2024-03-01", "S-7"), 50);
+
+        assertEquals(4, next);
+        assertEquals(List.of(1, "2024-03-01", 2, "S-7", 3, 51), bound);
+    }
+
+    @Test
+    void bindsOnlyTheLimitForTheFirstPage() throws Exception {
+        List<Object> bound = new ArrayList<>();
+
+        assertEquals(3, query.bind(recording(bound), 2, null, 10));
+        assertEquals(List.of(2, 11), bound);
+    }
+
+    @Test
+    void trimsLookAheadRowAndKeysTheEnds() {
+        List<String[]> rows = List.of(new String[]{"2024-03-01", "a"}, new String[]{"2024-03-02", "b"},
+                new String[]{"2024-03-03", "c"});
+
+        Page<String[]> page = query.toPage(rows, 2);
+
+        assertEquals(2, page.getItems().size());
+        assertTrue(page.hasMore());
+        assertArrayEquals(new String[]{"2024-03-01", "a"}, Page.decodeKey(page.getStartKey(), 2));
+        assertArrayEquals(new String[]{"2024-03-02", "b"}, Page.decodeKey(page.getEndKey(), 2));
+    }
+
+    @Test
+    void lastPageHasNoMore() {
+        Page<String[]> page = query.toPage(List.<String[]>of(new String[]{"2024-03-01", "a"}), 2);
+
+        assertEquals(1, page.getItems().size());
+        assertFalse(page.hasMore());
+    }
+
+    @Test
+    void emptyPageHasNoKeys() {
+        Page<String[]> page = query.toPage(List.of(), 2);
+
+        assertTrue(page.getItems().isEmpty());
+        assertNull(page.getStartKey());
+        assertNull(page.getEndKey());
+        assertFalse(page.hasMore());
+    }
+
+    @Test
+    void keysRoundTripAnyText() {
+        String[] parts = {"Children's Panadol, 120ml", "", "caf\u00e9 \u00fcber / + =", "id-1"};
+
+        String key = Page.encodeKey(parts);
+
+        assertTrue(key.matches("[A-Za-z0-9_-]+"), key);
+        assertArrayEquals(parts, Page.decodeKey(key, parts.length));
+    }
+
+    @Test
+    void rejectsMalformedKeys() {
+        assertThrows(IllegalArgumentException.class, () -> Page.decodeKey("not a key!", 2));
+        assertThrows(IllegalArgumentException.class, () -> Page.decodeKey(Page.encodeKey("a", "b", "c"), 2));
+        assertThrows(IllegalArgumentException.class, () -> Page.decodeKey(Page.encodeKey("a"), 2));
+    }
+
+    @Test
+    void rejectsNonPositivePageSize() {
+        assertThrows(IllegalArgumentException.class, () -> KeysetQuery.checkLimit(0));
+        KeysetQuery.checkLimit(1);
+    }
+
+    /** A statement that only records the parameters bound to it, as index and value pairs. */
+    private static PreparedStatement recording(List<Object> bound) {
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("setString") || method.getName().equals("setInt")) {
+                        bound.add(args[0]);
+                        bound.add(args[1]);
+                        return null;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
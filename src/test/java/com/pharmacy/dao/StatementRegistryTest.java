@@ -0,0 +1,66 @@
+package com.pharmacy.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StatementRegistryTest {
+
+    private final List<String> prepared = new ArrayList<>();
+
+    @Test
+    void timesEveryTextOfDynamicStatementUnderItsName() throws SQLException {
+        StatementRegistry.Sql page = StatementRegistry.registerDynamic("test.dynamicPage");
+        Connection connection = connection();
+
+        try (PreparedStatement first = page.prepareText(connection, "SELECT 1 ORDER BY 1")) {
+            first.executeQuery();
+        }
+        try (PreparedStatement next = page.prepareText(connection, "SELECT 1 WHERE 1 > ? ORDER BY 1 DESC")) {
+            next.executeQuery();
+        }
+
+        assertEquals(List.of("SELECT 1 ORDER BY 1", "SELECT 1 WHERE 1 > ? ORDER BY 1 DESC"), prepared);
+        StatementRegistry.StatementStats stats = stats("test.dynamicPage");
+        assertEquals(2, stats.getExecutionCount());
+        assertNull(stats.getSql());
+    }
+
+    @Test
+    void keepsFixedAndDynamicStatementsApart() {
+        StatementRegistry.Sql fixed = StatementRegistry.register("test.fixed", "SELECT 2");
+        StatementRegistry.Sql dynamic = StatementRegistry.registerDynamic("test.dynamic");
+
+        assertThrows(IllegalStateException.class, () -> fixed.prepareText(connection(), "SELECT 3"));
+        assertThrows(IllegalStateException.class, () -> dynamic.prepare(connection()));
+        assertThrows(IllegalStateException.class, () -> StatementRegistry.registerDynamic("test.fixed"));
+    }
+
+    private static StatementRegistry.StatementStats stats(String name) {
+        return StatementRegistry.getStats().stream()
+                .filter(stats -> stats.getName().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private Connection connection() {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("prepareStatement")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    prepared.add((String) args[0]);
+                    return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                            new Class<?>[]{PreparedStatement.class}, (statement, call, callArgs) -> null);
+                });
+    }
+}
@@ -0,0 +1,139 @@
+package com.pharmacy.functionalities;
+
+import com.pharmacy.dao.SalesDAO;
+import com.pharmacy.entities.Sales;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CheckoutServiceTest {
+
+    private final RecordingSalesDAO salesDAO = new RecordingSalesDAO();
+    private CheckoutService checkout;
+
+    @AfterEach
+    void tearDown() {
+        salesDAO.release.countDown();
+        if (checkout != null) checkout.close();
+    }
+
+    @Test
+    void rejectsFailingSaleAloneAndCommitsTheRestOfItsGroup() throws Exception {
+        checkout = new CheckoutService(salesDAO, null, 10, Duration.ofMillis(200), 100);
+
+        CompletableFuture<Sales> first = checkout.submit(sale("s1"));
+        CompletableFuture<Sales> rejected = checkout.submit(sale("short-s2"));
+        CompletableFuture<Sales> third = checkout.submit(sale("s3"));
+
+        assertEquals("s1", first.get(5, TimeUnit.SECONDS).getSalesId());
+        assertEquals("s3", third.get(5, TimeUnit.SECONDS).getSalesId());
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> rejected.get(5, TimeUnit.SECONDS));
+        assertEquals("Not enough stock for short-s2", failure.getCause().getMessage());
+        assertEquals(List.of(List.of("s1", "short-s2", "s3")), salesDAO.batches);
+        assertEquals(2, checkout.getCommittedCount());
+        assertEquals(1, checkout.getRejectedCount());
+    }
+
+    @Test
+    void failedTransactionFailsEverySaleInTheGroup() throws Exception {
+        checkout = new CheckoutService(salesDAO, null, 10, Duration.ofMillis(200), 100);
+        SQLException outage = new SQLException("connection lost");
+        salesDAO.transactionFailure = outage;
+
+        CompletableFuture<Sales> first = checkout.submit(sale("s1"));
+        CompletableFuture<Sales> second = checkout.submit(sale("s2"));
+
+        for (CompletableFuture<Sales> result : List.of(first, second)) {
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertSame(outage, failure.getCause());
+        }
+        assertEquals(0, checkout.getCommittedCount());
+        assertEquals(2, checkout.getRejectedCount());
+    }
+
+    @Test
+    void closeWritesQueuedSalesBeforeStopping() throws Exception {
+        checkout = new CheckoutService(salesDAO, null, 10, Duration.ZERO, 100);
+        salesDAO.blockFirstBatch = true;
+
+        CompletableFuture<Sales> writing = checkout.submit(sale("s1"));
+        assertTrue(salesDAO.entered.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Sales> queued1 = checkout.submit(sale("s2"));
+        CompletableFuture<Sales> queued2 = checkout.submit(sale("s3"));
+
+        Thread closer = new Thread(checkout::close);
+        closer.start();
+        while (closer.getState() != Thread.State.WAITING && closer.isAlive()) {
+            Thread.sleep(1);
+        }
+        salesDAO.release.countDown();
+        closer.join(5_000);
+
+        assertEquals("s1", writing.get(5, TimeUnit.SECONDS).getSalesId());
+        assertEquals("s2", queued1.get(5, TimeUnit.SECONDS).getSalesId());
+        assertEquals("s3", queued2.get(5, TimeUnit.SECONDS).getSalesId());
+        assertEquals(List.of(List.of("s1"), List.of("s2", "s3")), salesDAO.batches);
+
+        ExecutionException refused = assertThrows(ExecutionException.class,
+                () -> checkout.submit(sale("s4")).get(5, TimeUnit.SECONDS));
+        assertTrue(refused.getCause() instanceof RejectedExecutionException);
+    }
+
+    private static Sales sale(String salesId) {
+        return new Sales(salesId, LocalDate.of(2024, 3, 1), "walk-in", 4.50);
+    }
+
+    /**
+     * Stores nothing; records each group and rejects sales whose ID starts with "short".
+     */
+    private static final class RecordingSalesDAO extends SalesDAO {
+        final List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile boolean blockFirstBatch;
+        volatile SQLException transactionFailure;
+
+        RecordingSalesDAO() {
+            super(() -> {
+                throw new SQLException("No database in this test.");
+            });
+        }
+
+        @Override
+        public List<SQLException> addSalesIsolated(List<Sales> salesList) throws SQLException {
+            if (blockFirstBatch && batches.isEmpty()) {
+                entered.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            batches.add(salesList.stream().map(Sales::getSalesId).toList());
+            if (transactionFailure != null) throw transactionFailure;
+            List<SQLException> outcomes = new ArrayList<>();
+            for (Sales sales : salesList) {
+                outcomes.add(sales.getSalesId().startsWith("short")
+                        ? new SQLException("Not enough stock for " + sales.getSalesId())
+                        : null);
+            }
+            return outcomes;
+        }
+    }
+}
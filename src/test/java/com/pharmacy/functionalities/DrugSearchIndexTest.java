@@ -0,0 +1,154 @@
+package com.pharmacy.functionalities;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DrugSearchIndexTest {
+
+    private DrugSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new DrugSearchIndex();
+        index.put("1", "Panadol");
+        index.put("2", "Panadol Extra");
+        index.put("3", "Children's Panadol");
+        index.put("4", "Amoxicillin");
+        index.put("5", "Ibuprofen");
+        index.put("6", "Paracetamol");
+    }
+
+    @Test
+    void ranksExactThenNamePrefixThenWordPrefix() {
+        assertEquals(List.of("1", "2", "3"), ids(index.search("panadol", 10)));
+    }
+
+    @Test
+    void matchesWordStartsInsideTheName() {
+        assertEquals(List.of("2"), ids(index.search("extra", 10)));
+    }
+
+    @Test
+    void substringMatchesRankAfterPrefixMatches() {
+        index.put("7", "Amoxil");
+
+        // "moxi" starts no word, so both are substring matches; the shorter name comes first
+        assertEquals(List.of("7", "4"), ids(index.search("moxi", 10)));
+    }
+
+    @Test
+    void foldsCaseAndWhitespace() {
+        assertEquals(List.of("2"), ids(index.search("  PANADOL   extra ", 10)));
+    }
+
+    @Test
+    void toleratesTypos() {
+        List<DrugSearchIndex.Match> matches = index.search("ibuprofin", 10);
+
+        assertEquals(List.of("5"), ids(matches));
+        assertEquals(1, matches.get(0).getDistance());
+    }
+
+    @Test
+    void toleratesTransposedLetters() {
+        List<DrugSearchIndex.Match> matches = index.search("amoixcillin", 10);
+
+        assertEquals(List.of("4"), ids(matches));
+        assertEquals(1, matches.get(0).getDistance());
+    }
+
+    @Test
+    void skipsTypoMatchingWhenEnoughExactMatches() {
+        index.put("8", "Panadok");
+
+        assertEquals(List.of("1"), ids(index.search("panadol", 1)));
+        assertTrue(ids(index.search("panadol", 10)).contains("8"));
+    }
+
+    @Test
+    void honoursTheLimit() {
+        assertEquals(List.of("1", "2"), ids(index.search("pan", 2)));
+    }
+
+    @Test
+    void renamedDrugIsFoundOnlyByItsNewName() {
+        index.put("5", "Nurofen");
+
+        assertTrue(index.search("ibuprofen", 10).isEmpty());
+        assertEquals(List.of("5"), ids(index.search("nuro", 10)));
+    }
+
+    @Test
+    void removedDrugIsNotFound() {
+        index.remove("2");
+
+        assertEquals(List.of("1", "3"), ids(index.search("panadol", 10)));
+        assertTrue(index.search("extra", 10).isEmpty());
+    }
+
+    @Test
+    void emptyQueriesFindNothing() {
+        assertTrue(index.search(null, 10).isEmpty());
+        assertTrue(index.search("   ", 10).isEmpty());
+        assertTrue(index.search("panadol", 0).isEmpty());
+    }
+
+    @Test
+    void prefixDistanceMatchesAnyWordPrefix() {
+        assertEquals(0, DrugSearchIndex.prefixDistance("ext", "panadol extra", 2));
+        assertEquals(1, DrugSearchIndex.prefixDistance("exta", "panadol extra", 2));
+        assertEquals(1, DrugSearchIndex.prefixDistance("paandol", "panadol", 2));
+        assertTrue(DrugSearchIndex.prefixDistance("xyz", "panadol", 1) > 1);
+    }
+
+    @Test
+    void concurrentWritersKeepPostingsInStepWithNames() throws Exception {
+        DrugSearchIndex shared = new DrugSearchIndex();
+        int threads = 8;
+        int drugs = 200;
+        int rounds = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                writers.add(executor.submit(() -> {
+                    // Every thread renames and removes the same drugs, so their writes interleave
+                    for (int round = 0; round < rounds; round++) {
+                        for (int d = 0; d < drugs; d++) {
+                            shared.put("id" + d, "drug" + d + " batch" + thread + " round" + round);
+                            if (round < rounds - 1 && (d + round + thread) % 7 == 0) shared.remove("id" + d);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) writer.get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Whichever thread renamed a drug last, the drug is found under that name
+        for (int d = 0; d < drugs; d++) {
+            assertEquals(List.of("id" + d), ids(shared.search("drug" + d + " batch", 1)), "drug " + d);
+        }
+        for (int d = 0; d < drugs; d++) {
+            shared.remove("id" + d);
+        }
+        assertEquals(0, shared.getPostingCount());
+    }
+
+    private static List<String> ids(List<DrugSearchIndex.Match> matches) {
+        return matches.stream().map(DrugSearchIndex.Match::getDrugId).collect(Collectors.toList());
+    }
+}
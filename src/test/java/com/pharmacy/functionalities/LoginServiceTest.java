@@ -0,0 +1,34 @@
+package com.pharmacy.functionalities;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LoginServiceTest {
+
+    private final PasswordVerifier verifier = new PasswordVerifier(1, 1, Duration.ofSeconds(5));
+    private final LoginService service = new LoginService(() -> {
+        throw new SQLException("connection refused");
+    }, verifier, new SessionManager(Duration.ofHours(1), Duration.ofMinutes(5)));
+
+    @AfterEach
+    void tearDown() {
+        verifier.close();
+    }
+
+    @Test
+    void databaseOutageIsNotCountedAsFailedLogin() {
+        for (int i = 0; i < 5; i++) {
+            assertThrows(SQLException.class, () -> service.login("alice", "secret"));
+        }
+
+        assertEquals(0, verifier.getTrackedCount());
+        assertEquals(0, verifier.getMetrics().getRejectedCount());
+        assertEquals(PasswordVerifier.Outcome.REJECTED, verifier.reject("alice", null));
+    }
+}
@@ -0,0 +1,166 @@
+package com.pharmacy.functionalities;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PasswordVerifierTest {
+
+    private static final String TERMINAL = "10.0.0.7";
+
+    private final PasswordVerifier verifier = new PasswordVerifier(2, 4, Duration.ofSeconds(5));
+    private final AtomicInteger checks = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        verifier.close();
+    }
+
+    @Test
+    void throttlesUserAfterRepeatedFailuresWithoutHashing() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(PasswordVerifier.Outcome.REJECTED, attempt("alice", TERMINAL, false));
+        }
+
+        assertEquals(PasswordVerifier.Outcome.THROTTLED, attempt("alice", TERMINAL, true));
+        assertEquals(3, checks.get());
+        assertEquals(PasswordVerifier.Outcome.VERIFIED, attempt("bob", TERMINAL, true));
+    }
+
+    @Test
+    void successClearsTheUsersFailures() {
+        attempt("alice", TERMINAL, false);
+        attempt("alice", TERMINAL, false);
+        assertEquals(PasswordVerifier.Outcome.VERIFIED, attempt("alice", TERMINAL, true));
+
+        attempt("alice", TERMINAL, false);
+        attempt("alice", TERMINAL, false);
+        assertEquals(PasswordVerifier.Outcome.VERIFIED, attempt("alice", TERMINAL, true));
+    }
+
+    @Test
+    void throttlesSourceAfterFailuresAcrossUsers() {
+        for (int user = 0; user < 5; user++) {
+            attempt("user" + user, TERMINAL, false);
+            attempt("user" + user, TERMINAL, false);
+        }
+
+        assertEquals(PasswordVerifier.Outcome.THROTTLED, attempt("carol", TERMINAL, true));
+        assertEquals(PasswordVerifier.Outcome.VERIFIED, attempt("carol", "10.0.0.8", true));
+    }
+
+    @Test
+    void successForgivesOneUsersWorthOfSourceFailures() {
+        for (int user = 0; user < 4; user++) {
+            attempt("user" + user, TERMINAL, false);
+            attempt("user" + user, TERMINAL, false);
+        }
+        attempt("user4", TERMINAL, false);
+        assertEquals(PasswordVerifier.Outcome.VERIFIED, attempt("carol", TERMINAL, true));
+
+        // Nine failures less three forgiven: three more stay under the source's limit of ten
+        for (int user = 5; user < 8; user++) {
+            assertEquals(PasswordVerifier.Outcome.REJECTED, attempt("user" + user, TERMINAL, false));
+        }
+        assertEquals(PasswordVerifier.Outcome.VERIFIED, attempt("dave", TERMINAL, true));
+    }
+
+    @Test
+    void attemptsWithoutSourceAreThrottledByUserOnly() {
+        for (int user = 0; user < 20; user++) {
+            attempt("user" + user, null, false);
+            attempt("user" + user, null, false);
+        }
+
+        assertEquals(PasswordVerifier.Outcome.VERIFIED, attempt("carol", null, true));
+    }
+
+    @Test
+    void unknownUsernamesCountAsFailures() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(PasswordVerifier.Outcome.REJECTED, verifier.reject("mallory", TERMINAL));
+        }
+
+        assertEquals(PasswordVerifier.Outcome.THROTTLED, verifier.reject("mallory", TERMINAL));
+        assertEquals(PasswordVerifier.Outcome.THROTTLED, attempt("mallory", TERMINAL, true));
+    }
+
+    @Test
+    void floodOfMadeUpNamesStaysBounded() {
+        for (int user = 0; user < 12_000; user++) {
+            verifier.reject("made-up-" + user, null);
+        }
+
+        assertTrue(verifier.getTrackedCount() <= 10_000, "tracking " + verifier.getTrackedCount());
+    }
+
+    @Test
+    void turnsAwayChecksWhenSaturated() throws Exception {
+        PasswordVerifier small = new PasswordVerifier(1, 1, Duration.ofSeconds(5));
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture<PasswordVerifier.Outcome> first = CompletableFuture.supplyAsync(
+                    () -> small.verify("a", null, () -> {
+                        running.countDown();
+                        awaitQuietly(release);
+                        return true;
+                    }));
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            CompletableFuture<PasswordVerifier.Outcome> queued = CompletableFuture.supplyAsync(
+                    () -> small.verify("b", null, () -> true));
+            while (small.getMetrics().getQueueDepth() == 0) {
+                Thread.sleep(1);
+            }
+
+            assertEquals(PasswordVerifier.Outcome.BUSY, small.verify("c", null, () -> true));
+
+            release.countDown();
+            assertEquals(PasswordVerifier.Outcome.VERIFIED, first.get(5, TimeUnit.SECONDS));
+            assertEquals(PasswordVerifier.Outcome.VERIFIED, queued.get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            small.close();
+        }
+    }
+
+    @Test
+    void givesUpOnChecksThatRunTooLong() {
+        PasswordVerifier slow = new PasswordVerifier(1, 1, Duration.ofMillis(50), Duration.ofMillis(50));
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            assertEquals(PasswordVerifier.Outcome.BUSY, slow.verify("alice", TERMINAL, () -> {
+                awaitQuietly(release);
+                return false;
+            }));
+            assertEquals(1, slow.getMetrics().getBusyCount());
+            assertEquals(0, slow.getTrackedCount());
+        } finally {
+            release.countDown();
+            slow.close();
+        }
+    }
+
+    private PasswordVerifier.Outcome attempt(String username, String source, boolean matches) {
+        return verifier.verify(username, source, () -> {
+            checks.incrementAndGet();
+            return matches;
+        });
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.pharmacy.functionalities;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionManagerTest {
+
+    private final SessionManager sessions = new SessionManager(Duration.ofHours(1), Duration.ofMinutes(5));
+
+    @Test
+    void validTokenNamesItsUser() {
+        String token = sessions.issue("alice", "secret");
+
+        assertEquals(Optional.of("alice"), sessions.validate(token));
+        assertFalse(sessions.isLocked(token));
+    }
+
+    @Test
+    void rejectsTamperedTokens() {
+        String token = sessions.issue("alice", "secret");
+        String[] parts = token.split("\\.");
+        String otherUser = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("mallory".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(Optional.empty(), sessions.validate(String.join(".", parts[0], otherUser, parts[2], parts[3], parts[4])));
+        assertEquals(Optional.empty(), sessions.validate(
+                String.join(".", parts[0], parts[1], parts[2], String.valueOf(Long.parseLong(parts[3]) + 1), parts[4])));
+        String flipped = (parts[4].charAt(0) == 'A' ? "B" : "A") + parts[4].substring(1);
+        assertEquals(Optional.empty(), sessions.validate(String.join(".", parts[0], parts[1], parts[2], parts[3], flipped)));
+        assertEquals(Optional.empty(), sessions.validate(token.substring(0, token.lastIndexOf('.'))));
+        assertEquals(Optional.empty(), sessions.validate(token + "!"));
+        assertEquals(Optional.empty(), sessions.validate(null));
+        assertEquals(Optional.empty(), new SessionManager(Duration.ofHours(1), Duration.ofMinutes(5)).validate(token));
+
+        assertEquals(Optional.of("alice"), sessions.validate(token));
+    }
+
+    @Test
+    void expiredTokenIsRejectedAndCannotBeUnlocked() {
+        SessionManager expiring = new SessionManager(Duration.ZERO, Duration.ofMinutes(5));
+        String token = expiring.issue("alice", "secret");
+
+        assertEquals(Optional.empty(), expiring.validate(token));
+        assertFalse(expiring.isLocked(token));
+        assertFalse(expiring.unlock(token, "secret"));
+    }
+
+    @Test
+    void idleSessionLocksUntilPasswordIsEntered() throws InterruptedException {
+        SessionManager idle = new SessionManager(Duration.ofHours(1), Duration.ofMillis(20));
+        String token = idle.issue("alice", "secret");
+
+        Thread.sleep(60);
+
+        assertTrue(idle.isLocked(token));
+        assertEquals(Optional.empty(), idle.validate(token));
+        assertFalse(idle.unlock(token, "wrong"));
+        assertTrue(idle.unlock(token, "secret"));
+        assertEquals(Optional.of("alice"), idle.validate(token));
+    }
+
+    @Test
+    void lockedSessionIsRefusedUntilUnlocked() {
+        String token = sessions.issue("alice", "secret");
+
+        sessions.lock(token);
+
+        assertTrue(sessions.isLocked(token));
+        assertEquals(Optional.empty(), sessions.validate(token));
+        assertTrue(sessions.unlock(token, "secret"));
+        assertEquals(Optional.of("alice"), sessions.validate(token));
+    }
+
+    @Test
+    void tooManyWrongUnlocksEndTheSession() {
+        String token = sessions.issue("alice", "secret");
+        sessions.lock(token);
+
+        for (int i = 0; i < 5; i++) {
+            assertFalse(sessions.unlock(token, "guess" + i));
+        }
+
+        assertFalse(sessions.unlock(token, "secret"));
+        assertFalse(sessions.isLocked(token));
+        assertEquals(Optional.empty(), sessions.validate(token));
+    }
+
+    @Test
+    void successfulUnlockResetsTheFailureCount() {
+        String token = sessions.issue("alice", "secret");
+        for (int round = 0; round < 2; round++) {
+            sessions.lock(token);
+            for (int i = 0; i < 4; i++) {
+                assertFalse(sessions.unlock(token, "guess" + i));
+            }
+            assertTrue(sessions.unlock(token, "secret"));
+        }
+
+        assertEquals(Optional.of("alice"), sessions.validate(token));
+    }
+
+    @Test
+    void revokingUserEndsOnlyTheirSessions() {
+        String alice = sessions.issue("alice", "secret");
+        String bob = sessions.issue("bob", "hunter2");
+
+        sessions.revokeUser("alice");
+
+        assertEquals(Optional.empty(), sessions.validate(alice));
+        assertEquals(Optional.of("bob"), sessions.validate(bob));
+        sessions.logout(bob);
+        assertEquals(Optional.empty(), sessions.validate(bob));
+    }
+}
@@ -0,0 +1,115 @@
+package com.pharmacy.utils;
+
+import org.bouncycastle.crypto.generators.Argon2BytesGenerator;
+import org.bouncycastle.crypto.generators.SCrypt;
+import org.bouncycastle.crypto.params.Argon2Parameters;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CredentialEngineTest {
+
+    // Small costs keep the tests fast; the format does not depend on them
+    private static final CredentialEngine.Parameters CHEAP = new CredentialEngine.Parameters(64, 1, 1);
+
+    private final CredentialEngine engine = new CredentialEngine(CHEAP);
+
+    @Test
+    void hashIsPhcEncodedWithItsParameters() {
+        String hash = engine.hash("secret");
+        String[] parts = hash.split("\\$");
+
+        assertEquals(6, parts.length);
+        assertEquals("argon2id", parts[1]);
+        assertEquals("v=19", parts[2]);
+        assertEquals("m=64,t=1,p=1", parts[3]);
+        assertEquals(16, Base64.getDecoder().decode(parts[4]).length);
+        assertEquals(32, Base64.getDecoder().decode(parts[5]).length);
+    }
+
+    @Test
+    void hashRoundTrips() {
+        String hash = engine.hash("correct horse");
+
+        assertTrue(engine.verify("correct horse", hash));
+        assertFalse(engine.verify("correct horsE", hash));
+        assertFalse(engine.needsRehash(hash));
+    }
+
+    @Test
+    void saltsEveryHash() {
+        assertNotEquals(engine.hash("secret"), engine.hash("secret"));
+    }
+
+    @Test
+    void verifiesHashesMadeWithOtherCosts() {
+        String hash = new CredentialEngine(new CredentialEngine.Parameters(128, 2, 2)).hash("secret");
+
+        assertTrue(engine.verify("secret", hash));
+        assertTrue(engine.needsRehash(hash));
+    }
+
+    @Test
+    void verifiesLegacyScryptHashes() {
+        byte[] salt = Hex.decode("00112233445566778899aabbccddeeff");
+        byte[] hash = SCrypt.generate("secret".getBytes(StandardCharsets.UTF_8), salt, 16384, 8, 1, 32);
+        String encoded = Hex.toHexString(salt) + "$" + Hex.toHexString(hash);
+
+        assertTrue(engine.verify("secret", encoded));
+        assertFalse(engine.verify("Secret", encoded));
+        assertTrue(engine.needsRehash(encoded));
+    }
+
+    @Test
+    void verifiesLegacyArgon2Hashes() {
+        byte[] salt = new byte[16];
+        for (int i = 0; i < salt.length; i++) salt[i] = (byte) i;
+        byte[] hash = new byte[32];
+        Argon2BytesGenerator generator = new Argon2BytesGenerator();
+        generator.init(new Argon2Parameters.Builder(Argon2Parameters.ARGON2_id)
+                .withVersion(Argon2Parameters.ARGON2_VERSION_13)
+                .withSalt(salt)
+                .withParallelism(1)
+                .withMemoryAsKB(65536)
+                .withIterations(2)
+                .build());
+        generator.generateBytes("secret".getBytes(StandardCharsets.UTF_8), hash);
+        byte[] saltAndHash = new byte[48];
+        System.arraycopy(salt, 0, saltAndHash, 0, 16);
+        System.arraycopy(hash, 0, saltAndHash, 16, 32);
+        String encoded = Base64.getEncoder().encodeToString(saltAndHash);
+
+        assertTrue(engine.verify("secret", encoded));
+        assertFalse(engine.verify("secret!", encoded));
+        assertTrue(engine.needsRehash(encoded));
+    }
+
+    @Test
+    void malformedHashesDoNotVerify() {
+        assertFalse(engine.verify("secret", null));
+        assertFalse(engine.verify(null, engine.hash("secret")));
+        assertFalse(engine.verify("secret", "$argon2id$v=19$m=64,t=1$c2FsdA$aGFzaA"));
+        assertFalse(engine.verify("secret", "$argon2id$v=19$m=64,t=1,p=1,x=2$c2FsdA$aGFzaA"));
+        assertFalse(engine.verify("secret", "$argon2id$v=nineteen$m=64,t=1,p=1$c2FsdA$aGFzaA"));
+        assertFalse(engine.verify("secret", "zz$zz"));
+        assertFalse(engine.verify("secret", "not base64!"));
+        assertFalse(engine.verify("secret", Base64.getEncoder().encodeToString(new byte[10])));
+        assertTrue(engine.needsRehash("$argon2id$v=19$garbage"));
+        assertTrue(engine.needsRehash(null));
+    }
+
+    @Test
+    void rejectsInvalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new CredentialEngine.Parameters(4, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new CredentialEngine.Parameters(64, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new CredentialEngine.Parameters(64, 1, 0));
+    }
+}
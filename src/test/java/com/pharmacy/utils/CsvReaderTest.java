@@ -0,0 +1,112 @@
+package com.pharmacy.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CsvReaderTest {
+
+    @Test
+    void readsPlainRecords() throws IOException {
+        assertEquals(List.of(List.of("name", "price"), List.of("Panadol", "4.50")),
+                readAll("name,price\nPanadol,4.50\n"));
+    }
+
+    @Test
+    void keepsEmptyFields() throws IOException {
+        assertEquals(List.of(List.of("", "a", "", "")), readAll(",a,,"));
+    }
+
+    @Test
+    void quotedFieldsMayContainCommasQuotesAndLineBreaks() throws IOException {
+        List<List<String>> records = readAll("\"Panadol, Extra\",\"say \"\"hi\"\"\",\"two\r\nlines\"\nnext,row\n");
+
+        assertEquals(List.of(List.of("Panadol, Extra", "say \"hi\"", "two\r\nlines"), List.of("next", "row")), records);
+    }
+
+    @Test
+    void quotesOnlyPartOfAField() throws IOException {
+        assertEquals(List.of(List.of("ab,c")), readAll("a\"b,\"c"));
+    }
+
+    @Test
+    void acceptsCrlfAndSkipsBlankLines() throws IOException {
+        assertEquals(List.of(List.of("a", "b"), List.of("c", "d")), readAll("\r\na,b\r\n\r\n\nc,d\r\n"));
+    }
+
+    @Test
+    void lastRecordNeedsNoLineEnd() throws IOException {
+        assertEquals(List.of(List.of("a"), List.of("b", "c")), readAll("a\nb,c"));
+    }
+
+    @Test
+    void skipsLeadingByteOrderMark() throws IOException {
+        assertEquals(List.of(List.of("drug_name", "price")), readAll("\uFEFFdrug_name,price\n"));
+    }
+
+    @Test
+    void keepsByteOrderMarkAfterTheStart() throws IOException {
+        assertEquals(List.of(List.of("a"), List.of("\uFEFFb")), readAll("a\n\uFEFFb\n"));
+    }
+
+    @Test
+    void reportsTheLineEachRecordStartsOn() throws IOException {
+        try (CsvReader reader = new CsvReader(new StringReader("a\n\"b\nc\"\n\nd\n"))) {
+            reader.next();
+            assertEquals(1, reader.getLineNumber());
+            reader.next();
+            assertEquals(2, reader.getLineNumber());
+            reader.next();
+            assertEquals(5, reader.getLineNumber());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void rejectsUnterminatedQuote() {
+        IOException e = assertThrows(IOException.class, () -> readAll("a\n\"open,field\n"));
+
+        assertEquals("Unterminated quoted field starting on line 2.", e.getMessage());
+    }
+
+    @Test
+    void readsRecordsSpanningBufferRefills() throws IOException {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            input.append(i).append(",\"quoted ").append(i).append("\"\n");
+        }
+        // Hand out a few characters at a time, so records and quotes straddle refills
+        List<List<String>> records = readAll(new StringReader(input.toString()) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, 7));
+            }
+        });
+
+        assertEquals(20_000, records.size());
+        assertEquals(List.of("19999", "quoted 19999"), records.get(19_999));
+    }
+
+    private static List<List<String>> readAll(String input) throws IOException {
+        return readAll(new StringReader(input));
+    }
+
+    private static List<List<String>> readAll(Reader input) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+        try (CsvReader reader = new CsvReader(input)) {
+            List<String> record;
+            while ((record = reader.next()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+}
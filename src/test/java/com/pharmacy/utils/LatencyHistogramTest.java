@@ -0,0 +1,103 @@
+package com.pharmacy.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void emptyHistogramReportsZero() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getPercentileNanos(50));
+        assertEquals(0, snapshot.getPercentileNanos(99.9));
+        assertEquals(0.0, snapshot.getMeanNanos(), 0.0);
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 60; value++) {
+            histogram.record(value);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(60, snapshot.getCount());
+        assertEquals(30, snapshot.getPercentileNanos(50));
+        assertEquals(54, snapshot.getPercentileNanos(90));
+        assertEquals(60, snapshot.getPercentileNanos(100));
+        assertEquals(1, snapshot.getPercentileNanos(0));
+        assertEquals(30.5, snapshot.getMeanNanos(), 1e-9);
+    }
+
+    @Test
+    void largeValuesAreReportedWithinBucketPrecision() {
+        long[] values = {64, 65, 100, 127, 128, 1_000, 4_095, 4_096, 123_456, 7_654_321, 999_999_999,
+                TimeUnit.MINUTES.toNanos(59)};
+        for (long value : values) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(value);
+            // A larger sample keeps the maximum from capping the reported median
+            histogram.record(value * 4);
+            long reported = histogram.snapshot().getPercentileNanos(50);
+
+            assertTrue(reported >= value, value + " reported as " + reported);
+            assertTrue(reported <= value + value / 32, value + " reported as " + reported);
+        }
+    }
+
+    @Test
+    void bucketsCoverEveryValueWithoutGaps() {
+        // The median of {v, huge} is the top of v's bucket, so it must never drop as v grows
+        long previous = 0;
+        for (long value = 0; value < 1 << 16; value++) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(value);
+            histogram.record(TimeUnit.MINUTES.toNanos(30));
+            long reported = histogram.snapshot().getPercentileNanos(50);
+
+            assertTrue(reported >= value, value + " reported as " + reported);
+            assertTrue(reported >= previous, value + " reported below a smaller value");
+            previous = reported;
+        }
+    }
+
+    @Test
+    void percentileNeverExceedsMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_000_001);
+
+        assertEquals(1_000_001, histogram.snapshot().getPercentileNanos(100));
+        assertEquals(1_000_001, histogram.snapshot().getMaxNanos());
+    }
+
+    @Test
+    void negativeDurationsCountAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(1, snapshot.getCount());
+        assertEquals(0, snapshot.getTotalNanos());
+        assertEquals(0, snapshot.getPercentileNanos(100));
+    }
+
+    @Test
+    void durationsPastAnHourLandInTheLastBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long twoHours = TimeUnit.HOURS.toNanos(2);
+        histogram.record(twoHours);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(twoHours, snapshot.getMaxNanos());
+        assertEquals(twoHours, snapshot.getTotalNanos());
+        // Percentiles are only tracked up to an hour; the maximum keeps the true value
+        long reported = snapshot.getPercentileNanos(50);
+        assertTrue(reported >= TimeUnit.HOURS.toNanos(1) && reported < twoHours, "reported " + reported);
+    }
+}
@@ -0,0 +1,128 @@
+package com.pharmacy.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PooledConnectionProviderTest {
+
+    private static final String URL = "jdbc:pooltest:";
+    private static final AtomicInteger opened = new AtomicInteger();
+    private static final AtomicInteger validations = new AtomicInteger();
+    private static final AtomicBoolean valid = new AtomicBoolean(true);
+
+    static {
+        try {
+            DriverManager.registerDriver(new FakeDriver());
+        } catch (SQLException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private PooledConnectionProvider pool;
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) pool.close();
+        opened.set(0);
+        validations.set(0);
+        valid.set(true);
+    }
+
+    @Test
+    void lendsRecentlyReturnedConnectionWithoutValidating() throws SQLException {
+        pool = new PooledConnectionProvider(URL, new Properties(), 2,
+                Duration.ofMinutes(5), Duration.ofSeconds(1), Duration.ofMinutes(1));
+
+        for (int i = 0; i < 3; i++) {
+            pool.getConnection().close();
+        }
+
+        assertEquals(1, opened.get());
+        assertEquals(0, validations.get());
+    }
+
+    @Test
+    void validatesConnectionIdleLongerThanInterval() throws SQLException {
+        pool = new PooledConnectionProvider(URL, new Properties(), 2,
+                Duration.ofMinutes(5), Duration.ofSeconds(1), Duration.ZERO);
+
+        pool.getConnection().close();
+        pool.getConnection().close();
+        assertEquals(1, opened.get());
+        assertEquals(1, validations.get());
+
+        valid.set(false);
+        pool.getConnection().close();
+        assertEquals(2, opened.get());
+        assertEquals(2, validations.get());
+        assertEquals(1, pool.getMetrics().getEvictedCount());
+    }
+
+    private static final class FakeDriver implements Driver {
+        @Override
+        public Connection connect(String url, Properties info) {
+            if (!acceptsURL(url)) return null;
+            opened.incrementAndGet();
+            AtomicBoolean closed = new AtomicBoolean();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> switch (method.getName()) {
+                        case "isValid" -> {
+                            validations.incrementAndGet();
+                            yield valid.get();
+                        }
+                        case "close" -> {
+                            closed.set(true);
+                            yield null;
+                        }
+                        case "isClosed" -> closed.get();
+                        case "getAutoCommit" -> true;
+                        case "isReadOnly" -> false;
+                        default -> null;
+                    });
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url.startsWith(URL);
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() {
+            return Logger.getGlobal();
+        }
+    }
+}
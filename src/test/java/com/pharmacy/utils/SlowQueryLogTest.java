@@ -0,0 +1,67 @@
+package com.pharmacy.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlowQueryLogTest {
+
+    @Test
+    void redactsTextAndBinaryButKeepsNumbersAndDates() {
+        Object[] parameters = {null, "hunter2", 42, new BigDecimal("4.50"), true, LocalDate.of(2024, 3, 1),
+                Date.valueOf("2024-03-02"), new byte[]{1, 2, 3}, null, UUID.fromString("00000000-0000-0000-0000-000000000001")};
+
+        assertEquals("[$1=<text, 7 chars>, $2=42, $3=4.50, $4=true, $5=2024-03-01, $6=2024-03-02, "
+                        + "$7=<binary, 3 bytes>, $8=NULL, $9=<UUID>]",
+                SlowQueryLog.redact(parameters, 9));
+    }
+
+    @Test
+    void redactsOnlyTheBoundSlots() {
+        Object[] parameters = {null, "a", "left over from a wider statement"};
+
+        assertEquals("[$1=<text, 1 chars>]", SlowQueryLog.redact(parameters, 1));
+        assertEquals("[]", SlowQueryLog.redact(parameters, 0));
+    }
+
+    @Test
+    void explainsQueriesAndDataChanges() {
+        assertTrue(SlowQueryLog.isExplainable("SELECT 1"));
+        assertTrue(SlowQueryLog.isExplainable("  \n select * from drugs"));
+        assertTrue(SlowQueryLog.isExplainable("WITH t AS (SELECT 1) SELECT * FROM t"));
+        assertTrue(SlowQueryLog.isExplainable("VALUES (1)"));
+        assertTrue(SlowQueryLog.isExplainable("insert into sales values (?)"));
+        assertTrue(SlowQueryLog.isExplainable("UPDATE drugs SET price = ?"));
+        assertTrue(SlowQueryLog.isExplainable("DELETE FROM drug_import"));
+        assertTrue(SlowQueryLog.isExplainable("SELECT(1)"));
+    }
+
+    @Test
+    void leavesUtilityStatementsAlone() {
+        assertFalse(SlowQueryLog.isExplainable("COPY drug_import FROM STDIN"));
+        assertFalse(SlowQueryLog.isExplainable("CREATE TEMP TABLE t (id int)"));
+        assertFalse(SlowQueryLog.isExplainable("TRUNCATE drug_import"));
+        assertFalse(SlowQueryLog.isExplainable("SELECTED"));
+        assertFalse(SlowQueryLog.isExplainable("updates"));
+        assertFalse(SlowQueryLog.isExplainable(""));
+    }
+
+    @Test
+    void analyzesOnlyStatementsDeclaredReadOnly() {
+        String query = "SELECT drug_id FROM drugs WHERE drug_name = ? /* SlowQueryLogTest */";
+        String update = "UPDATE drugs SET stock_quantity = ? /* SlowQueryLogTest */";
+
+        SlowQueryLog.declareReadOnly(query);
+
+        assertTrue(SlowQueryLog.isReadOnly(query));
+        assertFalse(SlowQueryLog.isReadOnly(update));
+        assertFalse(SlowQueryLog.isReadOnly(" " + query));
+    }
+}
@@ -0,0 +1,174 @@
+package com.pharmacy.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionManagerTest {
+
+    /** Calls made on the physical connections, in order. */
+    private final List<String> log = new ArrayList<>();
+    private final List<String> ran = new ArrayList<>();
+    private int borrowed;
+    private int isolation = Connection.TRANSACTION_READ_COMMITTED;
+
+    private final TransactionManager transactions = new TransactionManager(this::borrow);
+
+    @Test
+    void runsAfterCommitActionsOnlyOnceCommitted() throws SQLException {
+        transactions.inTransaction(() -> {
+            transactions.afterCommit(() -> ran.add("first"));
+            transactions.afterCommit(() -> ran.add("second"));
+            assertTrue(ran.isEmpty());
+            return null;
+        });
+
+        assertEquals(List.of("first", "second"), ran);
+        assertTrue(log.contains("commit"));
+        assertFalse(transactions.isInTransaction());
+
+        transactions.afterCommit(() -> ran.add("outside"));
+        assertEquals(List.of("first", "second", "outside"), ran);
+    }
+
+    @Test
+    void failedWorkRollsBackAndDropsItsActions() {
+        IllegalStateException failure = new IllegalStateException("boom");
+
+        IllegalStateException thrown = assertThrows(IllegalStateException.class, () -> transactions.inTransaction(() -> {
+            transactions.afterCommit(() -> ran.add("dropped"));
+            throw failure;
+        }));
+
+        assertSame(failure, thrown);
+        assertTrue(log.contains("rollback"));
+        assertFalse(log.contains("commit"));
+        assertTrue(ran.isEmpty());
+        assertFalse(transactions.isInTransaction());
+
+        transactions.afterCommit(() -> ran.add("outside"));
+        assertEquals(List.of("outside"), ran);
+    }
+
+    @Test
+    void nestedFailureUndoesOnlyItsSavepointAndItsActions() throws SQLException {
+        transactions.inTransaction(() -> {
+            transactions.afterCommit(() -> ran.add("outer before"));
+            assertThrows(IllegalStateException.class, () -> transactions.inTransaction(() -> {
+                transactions.afterCommit(() -> ran.add("inner"));
+                throw new IllegalStateException("inner failed");
+            }));
+            transactions.afterCommit(() -> ran.add("outer after"));
+            return null;
+        });
+
+        assertEquals(List.of("outer before", "outer after"), ran);
+        assertEquals(List.of("setSavepoint sp1", "rollback sp1", "commit"), transactionControl());
+        assertEquals(1, borrowed);
+    }
+
+    @Test
+    void nestedSuccessKeepsItsActions() throws SQLException {
+        transactions.inTransaction(() -> transactions.inTransaction(() -> {
+            transactions.afterCommit(() -> ran.add("inner"));
+            return null;
+        }));
+
+        assertEquals(List.of("inner"), ran);
+        assertEquals(List.of("setSavepoint sp1", "releaseSavepoint sp1", "commit"), transactionControl());
+    }
+
+    @Test
+    void daoLocalTransactionBecomesSavepoint() throws SQLException {
+        transactions.inTransaction(() -> {
+            try (Connection dao = transactions.getConnection()) {
+                dao.setAutoCommit(false);
+                assertFalse(dao.getAutoCommit());
+                dao.rollback();
+                dao.commit();
+                dao.setAutoCommit(true);
+            }
+            try (Connection unfinished = transactions.getConnection()) {
+                unfinished.setAutoCommit(false);
+            }
+            return null;
+        });
+
+        assertEquals(List.of("setSavepoint sp1", "rollback sp1", "releaseSavepoint sp1",
+                "setSavepoint sp2", "rollback sp2", "commit"), transactionControl());
+        assertEquals(1, borrowed);
+        assertEquals(1, log.stream().filter("close"::equals).count());
+    }
+
+    @Test
+    void closedParticipantRefusesFurtherUse() throws SQLException {
+        transactions.inTransaction(() -> {
+            Connection dao = transactions.getConnection();
+            dao.close();
+            assertTrue(dao.isClosed());
+            assertThrows(SQLException.class, () -> dao.setAutoCommit(false));
+            return null;
+        });
+    }
+
+    @Test
+    void restoresIsolationLevel() throws SQLException {
+        transactions.inTransaction(Connection.TRANSACTION_REPEATABLE_READ, () -> {
+            assertEquals(Connection.TRANSACTION_REPEATABLE_READ, isolation);
+            return null;
+        });
+
+        assertEquals(Connection.TRANSACTION_READ_COMMITTED, isolation);
+    }
+
+    private List<String> transactionControl() {
+        return log.stream()
+                .filter(call -> call.startsWith("setSavepoint") || call.startsWith("rollback")
+                        || call.startsWith("releaseSavepoint") || call.equals("commit"))
+                .toList();
+    }
+
+    private Connection borrow() {
+        borrowed++;
+        int[] savepoints = new int[1];
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "setSavepoint" -> {
+                        Savepoint savepoint = savepoint("sp" + ++savepoints[0]);
+                        log.add("setSavepoint " + savepoint.getSavepointName());
+                        yield savepoint;
+                    }
+                    case "rollback", "releaseSavepoint" -> {
+                        log.add(args == null ? method.getName()
+                                : method.getName() + " " + ((Savepoint) args[0]).getSavepointName());
+                        yield null;
+                    }
+                    case "getTransactionIsolation" -> isolation;
+                    case "setTransactionIsolation" -> {
+                        isolation = (Integer) args[0];
+                        yield null;
+                    }
+                    case "isClosed" -> false;
+                    default -> {
+                        log.add(method.getName());
+                        yield null;
+                    }
+                });
+    }
+
+    private static Savepoint savepoint(String name) {
+        return (Savepoint) Proxy.newProxyInstance(Savepoint.class.getClassLoader(), new Class<?>[]{Savepoint.class},
+                (proxy, method, args) -> method.getName().equals("getSavepointName") ? name : null);
+    }
+}